@@ -0,0 +1,244 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.matheclipse.commons.parser.client.eval.ComplexJavaSourceGenerator;
+import org.matheclipse.commons.parser.client.eval.DoubleJavaSourceGenerator;
+import org.matheclipse.commons.parser.client.eval.api.AbstractJavaSourceGenerator;
+import org.matheclipse.commons.parser.client.eval.dfp.DfpJavaSourceGenerator;
+
+/**
+ * Compiles the formula files (<code>*.m</code>) of a source directory into
+ * Java source files at build time.
+ * 
+ * Every formula file <code>cubic_spline.m</code> becomes a final class
+ * <code>CubicSpline</code> in the configured package, with one
+ * <code>public static</code> method for each definition
+ * <code>f[x_, y_] := ...</code> of the file. The number type of the methods is
+ * selected by the <code>target</code> parameter: <code>double</code>,
+ * <code>complex</code> (Apache Commons Math <code>Complex</code>) or
+ * <code>dfp</code> (Apache Commons Math <code>Dfp</code> with
+ * <code>decimalDigits</code> precision). The generated sources are added
+ * to the compile source roots of the project, so formulas are checked and
+ * translated by the build and need no parser at runtime.
+ * 
+ * A formula class is only generated again, if its formula file is newer or
+ * the configuration of the generator has changed.
+ * 
+ * @see DoubleJavaSourceGenerator
+ * @see ComplexJavaSourceGenerator
+ * @see DfpJavaSourceGenerator
+ */
+@Mojo(name = "generate", defaultPhase = LifecyclePhase.GENERATE_SOURCES, threadSafe = true)
+public class GenerateFormulasMojo extends AbstractMojo {
+
+	private static final String FORMULA_EXTENSION = ".m";
+
+	/**
+	 * The file in the output directory, which stores the configuration of the
+	 * last generation.
+	 */
+	static final String CONFIGURATION_FILE = ".formulas-configuration";
+
+	@Parameter(defaultValue = "${project}", readonly = true, required = true)
+	private MavenProject project;
+
+	/**
+	 * The directory which contains the formula files.
+	 */
+	@Parameter(defaultValue = "${project.basedir}/src/main/formulas", required = true)
+	private File sourceDirectory;
+
+	/**
+	 * The directory for the generated Java source files.
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/generated-sources/formulas", required = true)
+	private File outputDirectory;
+
+	/**
+	 * The package of the generated classes.
+	 */
+	@Parameter(required = true)
+	private String packageName;
+
+	/**
+	 * If <code>true</code> the formula files use the relaxed syntax (i.e.
+	 * <code>f(x_):=sin(x)</code>).
+	 */
+	@Parameter(defaultValue = "false")
+	private boolean relaxedSyntax;
+
+	/**
+	 * The number type of the generated methods: <code>double</code>,
+	 * <code>complex</code> or <code>dfp</code>.
+	 */
+	@Parameter(defaultValue = "double")
+	private String target;
+
+	/**
+	 * The precision of the <code>dfp</code> target.
+	 */
+	@Parameter(defaultValue = "50")
+	private int decimalDigits;
+
+	@Parameter(defaultValue = "${project.build.sourceEncoding}")
+	private String encoding;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		if (!sourceDirectory.isDirectory()) {
+			getLog().info("No formula directory " + sourceDirectory);
+			return;
+		}
+		File[] files = sourceDirectory.listFiles((dir, name) -> name.endsWith(FORMULA_EXTENSION));
+		if (files == null) {
+			throw new MojoExecutionException("Unable to list the formula directory " + sourceDirectory);
+		}
+		Arrays.sort(files);
+		AbstractJavaSourceGenerator generator = createGenerator();
+		Charset charset = encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+		File packageDirectory = new File(outputDirectory, packageName.replace('.', File.separatorChar));
+		File configurationFile = new File(outputDirectory, CONFIGURATION_FILE);
+		String configuration = getConfiguration(charset);
+		boolean configurationChanged = !configuration.equals(readConfiguration(configurationFile));
+		int generated = 0;
+		for (File file : files) {
+			String className = toClassName(file.getName());
+			File target = new File(packageDirectory, className + ".java");
+			if (!configurationChanged && target.exists() && target.lastModified() >= file.lastModified()) {
+				continue;
+			}
+			String source;
+			try {
+				String formulas = new String(Files.readAllBytes(file.toPath()), charset);
+				source = generator.generate(packageName, className, formulas);
+			} catch (IOException e) {
+				throw new MojoExecutionException("Unable to read " + file, e);
+			} catch (RuntimeException e) {
+				throw new MojoFailureException(file + ": " + e.getMessage(), e);
+			}
+			try {
+				Files.createDirectories(packageDirectory.toPath());
+				Files.write(target.toPath(), source.getBytes(charset));
+			} catch (IOException e) {
+				throw new MojoExecutionException("Unable to write " + target, e);
+			}
+			generated++;
+		}
+		if (configurationChanged) {
+			try {
+				Files.createDirectories(outputDirectory.toPath());
+				Files.write(configurationFile.toPath(), configuration.getBytes(StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				throw new MojoExecutionException("Unable to write " + configurationFile, e);
+			}
+		}
+		getLog().info("Generated " + generated + " of " + files.length + " formula classes in " + outputDirectory);
+		project.addCompileSourceRoot(outputDirectory.getAbsolutePath());
+	}
+
+	/**
+	 * Create the source generator of the configured target.
+	 * 
+	 * @return
+	 * @throws MojoFailureException
+	 *             if the target is unknown
+	 */
+	private AbstractJavaSourceGenerator createGenerator() throws MojoFailureException {
+		if (target == null || target.equals("double")) {
+			return new DoubleJavaSourceGenerator(relaxedSyntax);
+		}
+		if (target.equals("complex")) {
+			return new ComplexJavaSourceGenerator(relaxedSyntax);
+		}
+		if (target.equals("dfp")) {
+			if (decimalDigits <= 0) {
+				throw new MojoFailureException("Invalid decimalDigits for the dfp target: " + decimalDigits);
+			}
+			return new DfpJavaSourceGenerator(decimalDigits, relaxedSyntax);
+		}
+		throw new MojoFailureException("Unknown formula target " + target + ", expected double, complex or dfp");
+	}
+
+	/**
+	 * Returns the parameters, which influence the generated sources.
+	 * 
+	 * @param charset
+	 *            the encoding of the formula and source files
+	 * @return
+	 */
+	private String getConfiguration(Charset charset) {
+		return "packageName=" + packageName + "\nrelaxedSyntax=" + relaxedSyntax + "\ntarget=" + target
+				+ "\ndecimalDigits=" + decimalDigits + "\nencoding=" + charset.name() + "\n";
+	}
+
+	/**
+	 * Returns the configuration of the last generation.
+	 * 
+	 * @param configurationFile
+	 * @return <code>null</code> if there's no readable configuration file
+	 */
+	private static String readConfiguration(File configurationFile) {
+		try {
+			return new String(Files.readAllBytes(configurationFile.toPath()), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Convert a file name like <code>cubic_spline.m</code> into the class name
+	 * <code>CubicSpline</code>.
+	 * 
+	 * @param fileName
+	 *            the formula file name
+	 * @return the Java class name
+	 * @throws MojoFailureException
+	 *             if no valid class name can be derived from the file name
+	 */
+	static String toClassName(String fileName) throws MojoFailureException {
+		String baseName = fileName.substring(0, fileName.length() - FORMULA_EXTENSION.length());
+		StringBuilder buf = new StringBuilder(baseName.length());
+		boolean upperCase = true;
+		for (int i = 0; i < baseName.length(); i++) {
+			char ch = baseName.charAt(i);
+			if (Character.isJavaIdentifierPart(ch) && ch != '_' && ch != '$') {
+				buf.append(upperCase ? Character.toUpperCase(ch) : ch);
+				upperCase = false;
+			} else {
+				upperCase = true;
+			}
+		}
+		if (buf.length() == 0 || !Character.isJavaIdentifierStart(buf.charAt(0))) {
+			throw new MojoFailureException("No valid Java class name for formula file: " + fileName);
+		}
+		return buf.toString();
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the <code>formulas:generate</code> goal.
+ */
+public class GenerateFormulasMojoTestCase extends TestCase {
+
+	private Path fBaseDirectory;
+
+	public GenerateFormulasMojoTestCase(String name) {
+		super(name);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		fBaseDirectory = Files.createTempDirectory("formulas");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		try (Stream<Path> paths = Files.walk(fBaseDirectory)) {
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	private GenerateFormulasMojo createMojo(MavenProject project, String packageName, boolean relaxedSyntax)
+			throws ReflectiveOperationException {
+		return createMojo(project, packageName, relaxedSyntax, "double");
+	}
+
+	private GenerateFormulasMojo createMojo(MavenProject project, String packageName, boolean relaxedSyntax,
+			String target) throws ReflectiveOperationException {
+		GenerateFormulasMojo mojo = new GenerateFormulasMojo();
+		setField(mojo, "project", project);
+		setField(mojo, "sourceDirectory", fBaseDirectory.resolve("formulas").toFile());
+		setField(mojo, "outputDirectory", fBaseDirectory.resolve("generated").toFile());
+		setField(mojo, "packageName", packageName);
+		setField(mojo, "relaxedSyntax", relaxedSyntax);
+		setField(mojo, "target", target);
+		setField(mojo, "decimalDigits", 30);
+		setField(mojo, "encoding", "UTF-8");
+		return mojo;
+	}
+
+	private static void setField(Object object, String name, Object value) throws ReflectiveOperationException {
+		Field field = object.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(object, value);
+	}
+
+	private void writeFormulas(String fileName, String formulas) throws IOException {
+		Path directory = Files.createDirectories(fBaseDirectory.resolve("formulas"));
+		Files.write(directory.resolve(fileName), formulas.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String readSource(String fileName) throws IOException {
+		return new String(Files.readAllBytes(fBaseDirectory.resolve("generated").resolve(fileName)),
+				StandardCharsets.UTF_8);
+	}
+
+	public void testToClassName() throws Exception {
+		assertEquals(GenerateFormulasMojo.toClassName("cubic_spline.m"), "CubicSpline");
+		assertEquals(GenerateFormulasMojo.toClassName("area.m"), "Area");
+		assertEquals(GenerateFormulasMojo.toClassName("net-present-value.m"), "NetPresentValue");
+		try {
+			GenerateFormulasMojo.toClassName("1st_order.m");
+			assertEquals("", "MojoFailureException expected");
+		} catch (MojoFailureException e) {
+			assertEquals(e.getMessage(), "No valid Java class name for formula file: 1st_order.m");
+		}
+	}
+
+	public void testGenerate() throws Exception {
+		writeFormulas("cubic_spline.m", "area[r_] := Pi*r^2");
+		MavenProject project = new MavenProject();
+		createMojo(project, "org.example", false).execute();
+		String source = readSource("org/example/CubicSpline.java");
+		assertTrue(source.startsWith("package org.example;"));
+		assertTrue(source.contains("public static double area(double r) {"));
+		assertTrue(project.getCompileSourceRoots()
+				.contains(fBaseDirectory.resolve("generated").toFile().getAbsolutePath()));
+	}
+
+	public void testGenerateUpToDate() throws Exception {
+		writeFormulas("area.m", "area[r_] := Pi*r^2");
+		createMojo(new MavenProject(), "org.example", false).execute();
+		// an unchanged formula file with an unchanged configuration is skipped
+		File target = fBaseDirectory.resolve("generated/org/example/Area.java").toFile();
+		Files.write(target.toPath(), "unchanged".getBytes(StandardCharsets.UTF_8));
+		createMojo(new MavenProject(), "org.example", false).execute();
+		assertEquals(readSource("org/example/Area.java"), "unchanged");
+
+		// a changed configuration generates the sources again
+		createMojo(new MavenProject(), "org.example", true).execute();
+		assertTrue(readSource("org/example/Area.java").contains("public static double area(double r) {"));
+	}
+
+	public void testGenerateInvalidFormula() throws Exception {
+		writeFormulas("invalid.m", "f[x_] := g[x]");
+		try {
+			createMojo(new MavenProject(), "org.example", false).execute();
+			assertEquals("", "MojoFailureException expected");
+		} catch (MojoFailureException e) {
+			assertTrue(e.getMessage()
+					.endsWith("invalid.m: DoubleJavaSourceGenerator#translate() not possible for: g(x)"));
+		}
+	}
+
+	public void testGenerateTargets() throws Exception {
+		writeFormulas("area.m", "area[r_] := Pi*r^2");
+		createMojo(new MavenProject(), "org.example", false, "complex").execute();
+		String source = readSource("org/example/Area.java");
+		assertTrue(source.contains("import org.apache.commons.math3.complex.Complex;"));
+		assertTrue(source.contains("public static Complex area(Complex r) {"));
+
+		// a changed target generates the sources again
+		createMojo(new MavenProject(), "org.example", false, "dfp").execute();
+		source = readSource("org/example/Area.java");
+		assertTrue(source.contains("public static final DfpField FIELD = new DfpField(30);"));
+		assertTrue(source.contains("public static Dfp area(Dfp r) {"));
+	}
+
+	public void testGenerateUnknownTarget() throws Exception {
+		writeFormulas("area.m", "area[r_] := Pi*r^2");
+		try {
+			createMojo(new MavenProject(), "org.example", false, "float").execute();
+			assertEquals("", "MojoFailureException expected");
+		} catch (MojoFailureException e) {
+			assertEquals(e.getMessage(), "Unknown formula target float, expected double, complex or dfp");
+		}
+	}
+}
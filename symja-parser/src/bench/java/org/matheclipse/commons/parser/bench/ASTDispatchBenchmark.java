@@ -0,0 +1,172 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.complex.Complex;
+import org.matheclipse.commons.parser.client.Parser;
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FloatNode;
+import org.matheclipse.commons.parser.client.ast.FractionNode;
+import org.matheclipse.commons.parser.client.ast.FunctionNode;
+import org.matheclipse.commons.parser.client.ast.IntegerNode;
+import org.matheclipse.commons.parser.client.ast.NumberNode;
+import org.matheclipse.commons.parser.client.ast.PatternNode;
+import org.matheclipse.commons.parser.client.ast.StringNode;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
+import org.matheclipse.commons.parser.client.eval.ComplexEvaluator;
+import org.matheclipse.commons.parser.client.eval.ComplexNode;
+import org.matheclipse.commons.parser.client.eval.ComplexVariable;
+import org.matheclipse.commons.parser.client.eval.DoubleNode;
+import org.matheclipse.commons.parser.client.eval.api.FieldElementFunctionNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the <code>accept()</code> dispatch of
+ * <code>AbstractASTVisitor#evaluateNode()</code> with the former
+ * <code>instanceof</code> chain.
+ * 
+ * The <code>bound</code> trees contain the <code>FieldElementFunctionNode</code>s
+ * of <code>evaluate(String)</code>; the <code>unbound</code> trees are plain
+ * parser output, whose functions are looked up by the visitor.
+ * 
+ * Run it with <code>mvn -Pbench test-compile exec:exec</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ASTDispatchBenchmark {
+
+	/**
+	 * The evaluator with the current <code>accept()</code> dispatch.
+	 */
+	static class AcceptEvaluator extends ComplexEvaluator {
+		AcceptEvaluator() {
+			super(false);
+			defineVariable("x", new ComplexVariable(new Complex(0.5, 0.25)));
+		}
+
+		ASTNode parse(String expression, boolean bound) {
+			if (bound) {
+				return bindFunctions(parseOptimized(expression));
+			}
+			return new Parser().parse(expression);
+		}
+	}
+
+	/**
+	 * The evaluator with the former <code>instanceof</code> chain.
+	 */
+	static final class InstanceofEvaluator extends AcceptEvaluator {
+		@SuppressWarnings("unchecked")
+		@Override
+		public Complex evaluateNode(ASTNode node) {
+			if (node instanceof DoubleNode) {
+				return visit((DoubleNode) node);
+			}
+			if (node instanceof ComplexNode) {
+				return visit((ComplexNode) node);
+			}
+			if (node instanceof FieldElementFunctionNode && ((FieldElementFunctionNode<?>) node).isBoundTo(this)) {
+				return ((FieldElementFunctionNode<Complex>) node).evaluate(this);
+			}
+			if (node instanceof FunctionNode) {
+				return visit((FunctionNode) node);
+			}
+			if (node instanceof NumberNode) {
+				if (node instanceof FloatNode) {
+					return visit((FloatNode) node);
+				}
+				if (node instanceof FractionNode) {
+					return visit((FractionNode) node);
+				}
+				if (node instanceof IntegerNode) {
+					return visit((IntegerNode) node);
+				}
+			}
+			if (node instanceof PatternNode) {
+				return visit((PatternNode) node);
+			}
+			if (node instanceof StringNode) {
+				return visit((StringNode) node);
+			}
+			if (node instanceof SymbolNode) {
+				return visit((SymbolNode) node);
+			}
+			return null;
+		}
+	}
+
+	@Param({ "polynomial", "nested" })
+	public String expression;
+
+	@Param({ "bound", "unbound" })
+	public String tree;
+
+	private AcceptEvaluator fAcceptEngine;
+
+	private ASTNode fAcceptNode;
+
+	private InstanceofEvaluator fInstanceofEngine;
+
+	private ASTNode fInstanceofNode;
+
+	@Setup
+	public void setUp() {
+		String input;
+		if (expression.equals("polynomial")) {
+			input = "3*x^5-2*x^4+7*x^3-x^2+4*x-9+Sin[x]*Cos[x]-Exp[x/2]";
+		} else {
+			StringBuilder buf = new StringBuilder("x");
+			for (int i = 0; i < 24; i++) {
+				buf.insert(0, i % 2 == 0 ? "Sin[" : "Cos[").append("+x]");
+			}
+			input = buf.toString();
+		}
+		boolean bound = tree.equals("bound");
+		fAcceptEngine = new AcceptEvaluator();
+		fAcceptNode = fAcceptEngine.parse(input, bound);
+		fInstanceofEngine = new InstanceofEvaluator();
+		fInstanceofNode = fInstanceofEngine.parse(input, bound);
+		if (!fAcceptEngine.evaluateNode(fAcceptNode).equals(fInstanceofEngine.evaluateNode(fInstanceofNode))) {
+			throw new IllegalStateException("ASTDispatchBenchmark: the dispatch paths give different results");
+		}
+	}
+
+	@Benchmark
+	public Complex accept() {
+		return fAcceptEngine.evaluateNode(fAcceptNode);
+	}
+
+	@Benchmark
+	public Complex instanceofChain() {
+		return fInstanceofEngine.evaluateNode(fInstanceofNode);
+	}
+}
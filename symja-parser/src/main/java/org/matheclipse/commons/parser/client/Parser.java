@@ -305,7 +305,7 @@ public class Parser extends Scanner {
 				oper = fFactory.get("Times");
 				if (oper.getPrecedence() >= min_precedence) {
 					rhs = parseLookaheadOperator(oper.getPrecedence());
-					lhs = fFactory.createFunction(fFactory.createSymbol(oper.getFunctionName()), lhs, rhs);
+					lhs = ((InfixOperator) oper).createFunction(fFactory, lhs, rhs);
 					continue;
 				}
 			} else {
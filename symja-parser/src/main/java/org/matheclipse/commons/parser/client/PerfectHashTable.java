@@ -0,0 +1,308 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, order preserving minimal perfect hash table for a fixed set
+ * of names (i.e. the operators, functions and constants of the parser and
+ * the evaluators).
+ * 
+ * The names are distributed into buckets by a first hash. For each bucket a
+ * seed is searched, so that the second hash of its names hits free slots
+ * only (&quot;hash and displace&quot;). A lookup computes two hashes and
+ * compares one candidate name; it doesn't allocate objects and has no
+ * collision chains. In <i>case folded</i> mode names, which only differ in
+ * upper and lower case characters, are the same.
+ * 
+ * The seeds of a fixed set of names can be computed in advance (see the
+ * <code>GenerateOperatorArrays</code> tool) and passed to
+ * {@link #PerfectHashTable(String[], int[], int[])} or
+ * {@link #PerfectHashTable(String[], int[], int[], boolean)}.
+ */
+public final class PerfectHashTable {
+
+	/**
+	 * The upper bound for the seed search of a single bucket.
+	 */
+	private static final int MAX_SEED = 1 << 24;
+
+	private final String[] fNames;
+
+	private final int[] fSeeds;
+
+	/**
+	 * Maps a slot of the table to the index of its name in
+	 * <code>fNames</code>.
+	 */
+	private final int[] fIndexes;
+
+	private final boolean fIgnoreCase;
+
+	/**
+	 * Create a table for the given names. The index of a name in the table is
+	 * its index in the <code>names</code> array.
+	 * 
+	 * @param names
+	 *            the names; the array isn't copied and must not be modified
+	 *            afterwards
+	 * @throws IllegalArgumentException
+	 *             if a name occurs twice
+	 */
+	public PerfectHashTable(String[] names) {
+		this(names, false);
+	}
+
+	/**
+	 * Create a table for the given names. The index of a name in the table is
+	 * its index in the <code>names</code> array.
+	 * 
+	 * @param names
+	 *            the names; the array isn't copied and must not be modified
+	 *            afterwards
+	 * @param ignoreCase
+	 *            if <code>true</code> create a case folded table
+	 * @throws IllegalArgumentException
+	 *             if a name occurs twice
+	 */
+	public PerfectHashTable(String[] names, boolean ignoreCase) {
+		fNames = names;
+		fIgnoreCase = ignoreCase;
+		final int size = names.length;
+		fSeeds = new int[Math.max(size, 1)];
+		fIndexes = new int[size];
+
+		// distribute the names into the buckets
+		int[] bucketSizes = new int[fSeeds.length];
+		int[] bucketOf = new int[size];
+		for (int i = 0; i < size; i++) {
+			bucketOf[i] = hash(names[i], 0, ignoreCase) % fSeeds.length;
+			bucketSizes[bucketOf[i]]++;
+		}
+		int[][] buckets = new int[fSeeds.length][];
+		for (int b = 0; b < buckets.length; b++) {
+			buckets[b] = new int[bucketSizes[b]];
+			bucketSizes[b] = 0;
+		}
+		for (int i = 0; i < size; i++) {
+			int b = bucketOf[i];
+			buckets[b][bucketSizes[b]++] = i;
+		}
+
+		// place the largest buckets first
+		Integer[] order = new Integer[buckets.length];
+		for (int b = 0; b < order.length; b++) {
+			order[b] = Integer.valueOf(b);
+		}
+		Arrays.sort(order, (b1, b2) -> buckets[b2.intValue()].length - buckets[b1.intValue()].length);
+
+		boolean[] used = new boolean[size];
+		int[] slots = new int[size];
+		for (Integer b : order) {
+			int[] bucket = buckets[b.intValue()];
+			if (bucket.length == 0) {
+				break;
+			}
+			checkDuplicates(bucket);
+			int seed = findSeed(bucket, used, slots);
+			fSeeds[b.intValue()] = seed;
+			for (int j = 0; j < bucket.length; j++) {
+				used[slots[j]] = true;
+				fIndexes[slots[j]] = bucket[j];
+			}
+		}
+	}
+
+	/**
+	 * Create a table from precomputed seeds.
+	 * 
+	 * @param names
+	 *            the names; the array isn't copied and must not be modified
+	 *            afterwards
+	 * @param seeds
+	 *            the seeds of the buckets
+	 * @param indexes
+	 *            maps the slots of the table to the indexes of the names
+	 * @throws IllegalArgumentException
+	 *             if the seeds weren't computed for the given names
+	 * @see #getSeeds()
+	 * @see #getIndexes()
+	 */
+	public PerfectHashTable(String[] names, int[] seeds, int[] indexes) {
+		this(names, seeds, indexes, false);
+	}
+
+	/**
+	 * Create a table from precomputed seeds.
+	 * 
+	 * @param names
+	 *            the names; the array isn't copied and must not be modified
+	 *            afterwards
+	 * @param seeds
+	 *            the seeds of the buckets
+	 * @param indexes
+	 *            maps the slots of the table to the indexes of the names
+	 * @param ignoreCase
+	 *            if <code>true</code> the seeds belong to a case folded table
+	 * @throws IllegalArgumentException
+	 *             if the seeds weren't computed for the given names
+	 * @see #getSeeds()
+	 * @see #getIndexes()
+	 */
+	public PerfectHashTable(String[] names, int[] seeds, int[] indexes, boolean ignoreCase) {
+		if (indexes.length != names.length || seeds.length != Math.max(names.length, 1)) {
+			throw new IllegalArgumentException("PerfectHashTable: the seeds don't match the names");
+		}
+		fNames = names;
+		fSeeds = seeds;
+		fIndexes = indexes;
+		fIgnoreCase = ignoreCase;
+		// a linear check instead of the seed search
+		for (int i = 0; i < names.length; i++) {
+			if (indexOf(names[i]) != i) {
+				throw new IllegalArgumentException("PerfectHashTable: the seeds don't match the name " + names[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the given name.
+	 * 
+	 * @param name
+	 * @return <code>-1</code> if the name isn't defined in this table
+	 */
+	public int indexOf(final String name) {
+		final int size = fIndexes.length;
+		if (size == 0) {
+			return -1;
+		}
+		final int seed = fSeeds[hash(name, 0, fIgnoreCase) % fSeeds.length];
+		final int index = fIndexes[hash(name, seed, fIgnoreCase) % size];
+		return equal(fNames[index], name) ? index : -1;
+	}
+
+	/**
+	 * Returns the name at the given index.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public String getName(int index) {
+		return fNames[index];
+	}
+
+	/**
+	 * Returns a copy of the mapping from the table slots to the name indexes.
+	 * 
+	 * @return
+	 */
+	public int[] getIndexes() {
+		return fIndexes.clone();
+	}
+
+	/**
+	 * Returns a copy of the seeds of the buckets.
+	 * 
+	 * @return
+	 */
+	public int[] getSeeds() {
+		return fSeeds.clone();
+	}
+
+	public boolean isIgnoreCase() {
+		return fIgnoreCase;
+	}
+
+	public int size() {
+		return fNames.length;
+	}
+
+	private void checkDuplicates(int[] bucket) {
+		for (int i = 0; i < bucket.length; i++) {
+			for (int j = i + 1; j < bucket.length; j++) {
+				if (equal(fNames[bucket[i]], fNames[bucket[j]])) {
+					throw new IllegalArgumentException("PerfectHashTable: duplicate name " + fNames[bucket[j]]);
+				}
+			}
+		}
+	}
+
+	private boolean equal(String name1, String name2) {
+		return fIgnoreCase ? name1.equalsIgnoreCase(name2) : name1.equals(name2);
+	}
+
+	/**
+	 * Search a seed, which maps the names of the bucket to distinct free
+	 * slots.
+	 * 
+	 * @param bucket
+	 *            the indexes of the names of the bucket
+	 * @param used
+	 *            the already occupied slots
+	 * @param slots
+	 *            returns the slots of the names
+	 * @return the seed
+	 */
+	private int findSeed(int[] bucket, boolean[] used, int[] slots) {
+		final int size = used.length;
+		for (int seed = 1; seed < MAX_SEED; seed++) {
+			int j = 0;
+			while (j < bucket.length) {
+				int slot = hash(fNames[bucket[j]], seed, fIgnoreCase) % size;
+				if (used[slot]) {
+					break;
+				}
+				int k = 0;
+				while (k < j && slots[k] != slot) {
+					k++;
+				}
+				if (k < j) {
+					break;
+				}
+				slots[j++] = slot;
+			}
+			if (j == bucket.length) {
+				return seed;
+			}
+		}
+		throw new IllegalStateException("PerfectHashTable: no seed found for " + fNames[bucket[0]]);
+	}
+
+	/**
+	 * A seeded FNV-1a hash of the characters of the name. In case folded mode
+	 * the characters are folded like in {@link String#equalsIgnoreCase(String)}.
+	 * 
+	 * @param name
+	 * @param seed
+	 * @param ignoreCase
+	 * @return a non negative hash value
+	 */
+	static int hash(final String name, final int seed, final boolean ignoreCase) {
+		int h = (seed * 0x9E3779B9) ^ 0x811C9DC5;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (ignoreCase) {
+				c = Character.toLowerCase(Character.toUpperCase(c));
+			}
+			h = (h ^ c) * 0x01000193;
+		}
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		return h & 0x7FFFFFFF;
+	}
+}
@@ -15,18 +15,42 @@
  */
 package org.matheclipse.commons.parser.client.ast;
 
+import org.apache.commons.math3.FieldElement;
+import org.matheclipse.commons.parser.client.eval.api.IASTVisitor;
+
 /**
  * The basic node for a parsed expression string
  * 
  */
 public abstract class ASTNode {
 
+	/**
+	 * The initial value of the 64-bit FNV-1a hash of {@link #fingerprint()}.
+	 */
+	protected static final long FINGERPRINT_OFFSET = 0xcbf29ce484222325L;
+
+	private static final long FINGERPRINT_PRIME = 0x100000001b3L;
+
 	protected final String fStringValue;
 
 	protected ASTNode(final String value) {
 		fStringValue = value;
 	}
 
+	/**
+	 * Call the <code>visit()</code> method of the <code>visitor</code> for the
+	 * type of this node, so an evaluator dispatches on the node type with a
+	 * single virtual call.
+	 * 
+	 * @param visitor
+	 * @return the result of the <code>visit()</code> method or
+	 *         <code>null</code>, if the visitor has no method for this node
+	 *         type
+	 */
+	public <T extends FieldElement<T>> T accept(final IASTVisitor<T> visitor) {
+		return null;
+	}
+
 	public boolean dependsOn(String variableName) {
 		return false;
 	}
@@ -51,6 +75,42 @@ public abstract class ASTNode {
 		return fStringValue;
 	}
 
+	/**
+	 * Returns a 64-bit structural fingerprint of this node. Equal trees have
+	 * equal fingerprints in every JVM, so the fingerprint of a canonical tree
+	 * (see <code>CanonicalForm</code>) can be used as the key of a parse or
+	 * compile cache.
+	 * 
+	 * @return
+	 */
+	public long fingerprint() {
+		return fingerprint(FINGERPRINT_OFFSET, getClass().getSimpleName() + ':' + toString());
+	}
+
+	/**
+	 * Combine the FNV-1a <code>hash</code> with the characters of
+	 * <code>str</code>.
+	 */
+	protected static long fingerprint(long hash, final String str) {
+		for (int i = 0; i < str.length(); i++) {
+			char ch = str.charAt(i);
+			hash = (hash ^ (ch & 0xff)) * FINGERPRINT_PRIME;
+			hash = (hash ^ (ch >>> 8)) * FINGERPRINT_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * Combine the FNV-1a <code>hash</code> with the bytes of
+	 * <code>value</code>.
+	 */
+	protected static long fingerprint(long hash, long value) {
+		for (int i = 0; i < 64; i += 8) {
+			hash = (hash ^ ((value >>> i) & 0xff)) * FINGERPRINT_PRIME;
+		}
+		return hash;
+	}
+
 	@Override
 	public int hashCode() {
 		return fStringValue.hashCode();
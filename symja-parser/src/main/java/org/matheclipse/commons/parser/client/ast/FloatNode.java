@@ -15,6 +15,9 @@
  */
 package org.matheclipse.commons.parser.client.ast;
 
+import org.apache.commons.math3.FieldElement;
+import org.matheclipse.commons.parser.client.eval.api.IASTVisitor;
+
 /**
  * A node for a parsed floating number string. The floating point string is not
  * converted to a binary float or double type. only the String representation is
@@ -26,6 +29,11 @@ public class FloatNode extends NumberNode {
 		super(value);
 	}
 
+	@Override
+	public <T extends FieldElement<T>> T accept(final IASTVisitor<T> visitor) {
+		return visitor.visit(this);
+	}
+
 	public boolean equals(Object obj) {
 		if (this == obj) {
 			return true;
@@ -15,6 +15,9 @@
  */
 package org.matheclipse.commons.parser.client.ast;
 
+import org.apache.commons.math3.FieldElement;
+import org.matheclipse.commons.parser.client.eval.api.IASTVisitor;
+
 /**
  * A node for a parsed fraction string
  * 
@@ -30,6 +33,11 @@ public class FractionNode extends NumberNode {
 		fDenominator = denominator;
 	}
 
+	@Override
+	public <T extends FieldElement<T>> T accept(final IASTVisitor<T> visitor) {
+		return visitor.visit(this);
+	}
+
 	public IntegerNode getDenominator() {
 		return fDenominator;
 	}
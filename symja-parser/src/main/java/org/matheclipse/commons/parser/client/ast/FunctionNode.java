@@ -21,11 +21,19 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 
+import org.apache.commons.math3.FieldElement;
+import org.matheclipse.commons.parser.client.eval.api.IASTVisitor;
+
 /**
  * A list of <code>ASTNode</code>'s which represents a parsed function.
  * <br/s> The head of the function (i.e. Sin, Cos, Times,...) is stored in the
  * 0-th index of the list.<br/>
  * The arguments of the function are stored in the 1...n-th index of the list.
+ * <br/>
+ * A function node isn't modified after it's parsed, so a parsed tree can be
+ * shared by several evaluators and threads. Transformations like
+ * <code>IEvaluator#optimizeFunction()</code> return new nodes, which share the
+ * unchanged subtrees.
  */
 public class FunctionNode extends ASTNode implements java.util.List<ASTNode> {
 	private ArrayList<ASTNode> fNodesList;
@@ -51,6 +59,16 @@ public class FunctionNode extends ASTNode implements java.util.List<ASTNode> {
 		fNodesList.add(arg1);
 	}
 
+	private FunctionNode(final ArrayList<ASTNode> nodesList) {
+		super(null);
+		fNodesList = nodesList;
+	}
+
+	@Override
+	public <T extends FieldElement<T>> T accept(final IASTVisitor<T> visitor) {
+		return visitor.visit(this);
+	}
+
 	@Override
 	public boolean add(final ASTNode e) {
 		return fNodesList.add(e);
@@ -86,6 +104,16 @@ public class FunctionNode extends ASTNode implements java.util.List<ASTNode> {
 		return fNodesList.containsAll(c);
 	}
 
+	/**
+	 * Returns a shallow copy of this function node, which shares the head and
+	 * the arguments with this node.
+	 * 
+	 * @return a new function node
+	 */
+	public FunctionNode copy() {
+		return new FunctionNode(new ArrayList<ASTNode>(fNodesList));
+	}
+
 	@Override
 	public boolean dependsOn(String variableName) {
 		for (int i = 1; i < size(); i++) {
@@ -111,6 +139,15 @@ public class FunctionNode extends ASTNode implements java.util.List<ASTNode> {
 		return false;
 	}
 
+	@Override
+	public long fingerprint() {
+		long hash = fingerprint(FINGERPRINT_OFFSET, fNodesList.size());
+		for (ASTNode node : fNodesList) {
+			hash = fingerprint(hash, node.fingerprint());
+		}
+		return hash;
+	}
+
 	@Override
 	public ASTNode get(final int index) {
 		return fNodesList.get(index);
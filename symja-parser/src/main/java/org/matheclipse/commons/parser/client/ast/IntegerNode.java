@@ -15,6 +15,9 @@
  */
 package org.matheclipse.commons.parser.client.ast;
 
+import org.apache.commons.math3.FieldElement;
+import org.matheclipse.commons.parser.client.eval.api.IASTVisitor;
+
 /**
  * A node for a parsed integer string
  * 
@@ -42,6 +45,11 @@ public class IntegerNode extends NumberNode {
 		fIntValue = intValue;
 	}
 
+	@Override
+	public <T extends FieldElement<T>> T accept(final IASTVisitor<T> visitor) {
+		return visitor.visit(this);
+	}
+
 	public String toString() {
 		if (fStringValue == null) {
 			if (sign) {
@@ -15,6 +15,9 @@
  */
 package org.matheclipse.commons.parser.client.ast;
 
+import org.apache.commons.math3.FieldElement;
+import org.matheclipse.commons.parser.client.eval.api.IASTVisitor;
+
 /**
  * A node for a parsed pattern expression (i.e. <code>_</code> or
  * <code>x_</code>)
@@ -36,6 +39,11 @@ public class PatternNode extends ASTNode {
 		fDefault = optional;
 	}
 
+	@Override
+	public <T extends FieldElement<T>> T accept(final IASTVisitor<T> visitor) {
+		return visitor.visit(this);
+	}
+
 	public ASTNode getConstraint() {
 		return fConstraint;
 	}
@@ -15,6 +15,8 @@
  */
 package org.matheclipse.commons.parser.client.ast;
 
+import org.apache.commons.math3.FieldElement;
+import org.matheclipse.commons.parser.client.eval.api.IASTVisitor;
 
 /**
  * A node for a parsed string (i.e. delimited by double quotes)
@@ -25,4 +27,9 @@ public class StringNode extends ASTNode {
 	public StringNode(final String value) {
 		super(value);
 	}
+
+	@Override
+	public <T extends FieldElement<T>> T accept(final IASTVisitor<T> visitor) {
+		return visitor.visit(this);
+	}
 }
@@ -15,6 +15,8 @@
  */
 package org.matheclipse.commons.parser.client.ast;
 
+import org.apache.commons.math3.FieldElement;
+import org.matheclipse.commons.parser.client.eval.api.IASTVisitor;
 
 /**
  * A node for a parsed symbol string (i.e. Sin, Cos, Pi, $x,...)
@@ -25,6 +27,11 @@ public class SymbolNode extends ASTNode {
 	public SymbolNode(final String value) {
 		super(value);
 	}
+
+	@Override
+	public <T extends FieldElement<T>> T accept(final IASTVisitor<T> visitor) {
+		return visitor.visit(this);
+	}
 	
 	public boolean dependsOn(String variableName) {
 		return fStringValue.equals(variableName);
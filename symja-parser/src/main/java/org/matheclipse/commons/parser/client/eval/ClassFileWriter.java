@@ -0,0 +1,481 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal writer for JVM class files, which is used by the
+ * <code>DoubleBytecodeCompiler</code>.
+ * 
+ * The class files are written in version 49 (Java 5) format, so no
+ * <code>StackMapTable</code> attributes have to be computed for the branch
+ * instructions.
+ */
+final class ClassFileWriter {
+
+	static final int ACC_PUBLIC = 0x0001;
+	static final int ACC_PRIVATE = 0x0002;
+	static final int ACC_FINAL = 0x0010;
+	static final int ACC_SUPER = 0x0020;
+
+	static final int ACONST_NULL = 0x01;
+	static final int ICONST_0 = 0x03;
+	static final int ICONST_1 = 0x04;
+	static final int DCONST_0 = 0x0e;
+	static final int DCONST_1 = 0x0f;
+	static final int SIPUSH = 0x11;
+	static final int LDC_W = 0x13;
+	static final int LDC2_W = 0x14;
+	static final int DLOAD = 0x18;
+	static final int ALOAD_0 = 0x2a;
+	static final int ALOAD_1 = 0x2b;
+	static final int ALOAD_2 = 0x2c;
+	static final int DALOAD = 0x31;
+	static final int AALOAD = 0x32;
+	static final int DSTORE = 0x39;
+	static final int DASTORE = 0x52;
+	static final int POP2 = 0x58;
+	static final int DUP = 0x59;
+	static final int DUP2 = 0x5c;
+	static final int DUP2_X2 = 0x5e;
+	static final int DADD = 0x63;
+	static final int DSUB = 0x67;
+	static final int DMUL = 0x6b;
+	static final int DDIV = 0x6f;
+	static final int DNEG = 0x77;
+	static final int IAND = 0x7e;
+	static final int IOR = 0x80;
+	static final int IXOR = 0x82;
+	static final int L2D = 0x8a;
+	static final int DCMPL = 0x97;
+	static final int DCMPG = 0x98;
+	static final int IFEQ = 0x99;
+	static final int IFNE = 0x9a;
+	static final int IFLT = 0x9b;
+	static final int IFGE = 0x9c;
+	static final int IFGT = 0x9d;
+	static final int IFLE = 0x9e;
+	static final int GOTO = 0xa7;
+	static final int DRETURN = 0xaf;
+	static final int RETURN = 0xb1;
+	static final int GETSTATIC = 0xb2;
+	static final int GETFIELD = 0xb4;
+	static final int PUTFIELD = 0xb5;
+	static final int INVOKESPECIAL = 0xb7;
+	static final int INVOKESTATIC = 0xb8;
+	static final int INVOKEINTERFACE = 0xb9;
+	static final int NEW = 0xbb;
+	static final int ATHROW = 0xbf;
+	static final int WIDE = 0xc4;
+
+	/**
+	 * A jump target in the code of the current method.
+	 */
+	static final class Label {
+		int fPosition = -1;
+
+		final List<Integer> fReferences = new ArrayList<Integer>();
+	}
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_STRING = 8;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	private final ByteArrayOutputStream fPoolBytes = new ByteArrayOutputStream();
+
+	private final DataOutputStream fPool = new DataOutputStream(fPoolBytes);
+
+	private final Map<String, Integer> fPoolIndex = new HashMap<String, Integer>();
+
+	private int fPoolCount = 1;
+
+	private final ByteArrayOutputStream fFieldBytes = new ByteArrayOutputStream();
+
+	private final DataOutputStream fFields = new DataOutputStream(fFieldBytes);
+
+	private int fFieldCount = 0;
+
+	private final ByteArrayOutputStream fMethodBytes = new ByteArrayOutputStream();
+
+	private final DataOutputStream fMethods = new DataOutputStream(fMethodBytes);
+
+	private int fMethodCount = 0;
+
+	private byte[] fCode = new byte[256];
+
+	private int fCodeLength;
+
+	private int fStack;
+
+	private int fMaxStack;
+
+	private final List<Label> fLabels = new ArrayList<Label>();
+
+	private final String fClassName;
+
+	/**
+	 * 
+	 * @param className
+	 *            the internal name (i.e. <code>java/lang/Object</code>) of the
+	 *            generated class
+	 */
+	ClassFileWriter(String className) {
+		fClassName = className;
+	}
+
+	String getClassName() {
+		return fClassName;
+	}
+
+	private int constant(String key, int tag, int arg1, int arg2) {
+		Integer index = fPoolIndex.get(key);
+		if (index != null) {
+			return index.intValue();
+		}
+		try {
+			fPool.writeByte(tag);
+			fPool.writeShort(arg1);
+			if (arg2 >= 0) {
+				fPool.writeShort(arg2);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return register(key, 1);
+	}
+
+	private int register(String key, int entries) {
+		int index = fPoolCount;
+		fPoolCount += entries;
+		if (fPoolCount > 0xffff) {
+			throw new IllegalStateException("ClassFileWriter: constant pool too large");
+		}
+		fPoolIndex.put(key, index);
+		return index;
+	}
+
+	int utf8(String value) {
+		String key = "U" + value;
+		Integer index = fPoolIndex.get(key);
+		if (index != null) {
+			return index.intValue();
+		}
+		try {
+			fPool.writeByte(CONSTANT_UTF8);
+			fPool.writeUTF(value);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return register(key, 1);
+	}
+
+	int classRef(String internalName) {
+		return constant("C" + internalName, CONSTANT_CLASS, utf8(internalName), -1);
+	}
+
+	int stringRef(String value) {
+		return constant("S" + value, CONSTANT_STRING, utf8(value), -1);
+	}
+
+	int nameAndType(String name, String descriptor) {
+		return constant("N" + name + ' ' + descriptor, CONSTANT_NAME_AND_TYPE, utf8(name), utf8(descriptor));
+	}
+
+	int fieldRef(String owner, String name, String descriptor) {
+		return constant("F" + owner + '.' + name + ' ' + descriptor, CONSTANT_FIELDREF, classRef(owner),
+				nameAndType(name, descriptor));
+	}
+
+	int methodRef(String owner, String name, String descriptor) {
+		return constant("M" + owner + '.' + name + descriptor, CONSTANT_METHODREF, classRef(owner),
+				nameAndType(name, descriptor));
+	}
+
+	int interfaceMethodRef(String owner, String name, String descriptor) {
+		return constant("I" + owner + '.' + name + descriptor, CONSTANT_INTERFACE_METHODREF, classRef(owner),
+				nameAndType(name, descriptor));
+	}
+
+	int integerConstant(int value) {
+		String key = "i" + value;
+		Integer index = fPoolIndex.get(key);
+		if (index != null) {
+			return index.intValue();
+		}
+		try {
+			fPool.writeByte(CONSTANT_INTEGER);
+			fPool.writeInt(value);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return register(key, 1);
+	}
+
+	int doubleConstant(double value) {
+		long bits = Double.doubleToRawLongBits(value);
+		String key = "D" + bits;
+		Integer index = fPoolIndex.get(key);
+		if (index != null) {
+			return index.intValue();
+		}
+		try {
+			fPool.writeByte(CONSTANT_DOUBLE);
+			fPool.writeLong(bits);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		// a double constant takes two constant pool entries
+		return register(key, 2);
+	}
+
+	void addField(int access, String name, String descriptor) {
+		try {
+			fFields.writeShort(access);
+			fFields.writeShort(utf8(name));
+			fFields.writeShort(utf8(descriptor));
+			fFields.writeShort(0);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		fFieldCount++;
+	}
+
+	/**
+	 * Start the code of a new method.
+	 */
+	void beginCode() {
+		fCodeLength = 0;
+		fStack = 0;
+		fMaxStack = 0;
+		fLabels.clear();
+	}
+
+	/**
+	 * Resolve the jump targets and add the code of the current method to the
+	 * class file.
+	 * 
+	 * @param access
+	 * @param name
+	 * @param descriptor
+	 * @param maxLocals
+	 */
+	void endCode(int access, String name, String descriptor, int maxLocals) {
+		if (fCodeLength > Short.MAX_VALUE) {
+			// the 16 bit branch offsets cannot reach all targets
+			throw new IllegalStateException("ClassFileWriter: method code too large");
+		}
+		for (Label label : fLabels) {
+			for (Integer reference : label.fReferences) {
+				int instruction = reference.intValue() - 1;
+				int offset = label.fPosition - instruction;
+				fCode[reference.intValue()] = (byte) (offset >> 8);
+				fCode[reference.intValue() + 1] = (byte) offset;
+			}
+		}
+		try {
+			fMethods.writeShort(access);
+			fMethods.writeShort(utf8(name));
+			fMethods.writeShort(utf8(descriptor));
+			fMethods.writeShort(1);
+			fMethods.writeShort(utf8("Code"));
+			fMethods.writeInt(12 + fCodeLength);
+			fMethods.writeShort(fMaxStack);
+			fMethods.writeShort(maxLocals);
+			fMethods.writeInt(fCodeLength);
+			fMethods.write(fCode, 0, fCodeLength);
+			fMethods.writeShort(0);
+			fMethods.writeShort(0);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		fMethodCount++;
+	}
+
+	private void write(int b) {
+		if (fCodeLength == fCode.length) {
+			byte[] code = new byte[fCode.length * 2];
+			System.arraycopy(fCode, 0, code, 0, fCodeLength);
+			fCode = code;
+		}
+		fCode[fCodeLength++] = (byte) b;
+	}
+
+	private void stack(int stackDelta) {
+		fStack += stackDelta;
+		if (fStack > fMaxStack) {
+			if (fStack > 0xffff) {
+				throw new IllegalStateException("ClassFileWriter: operand stack too large");
+			}
+			fMaxStack = fStack;
+		}
+	}
+
+	/**
+	 * Returns the current operand stack size.
+	 * 
+	 * @return
+	 */
+	int getStack() {
+		return fStack;
+	}
+
+	/**
+	 * Reset the operand stack size, i.e. at a label which is only reachable by
+	 * a jump.
+	 * 
+	 * @param stack
+	 */
+	void setStack(int stack) {
+		fStack = stack;
+	}
+
+	void op(int opcode, int stackDelta) {
+		write(opcode);
+		stack(stackDelta);
+	}
+
+	void op1(int opcode, int operand, int stackDelta) {
+		write(opcode);
+		write(operand);
+		stack(stackDelta);
+	}
+
+	/**
+	 * Emit a load or store instruction for a local variable. Indexes above
+	 * <code>255</code> get the <code>WIDE</code> prefix with a two byte
+	 * operand.
+	 * 
+	 * @param opcode
+	 *            i.e. <code>DLOAD</code> or <code>DSTORE</code>
+	 * @param local
+	 *            the index of the local variable
+	 * @param stackDelta
+	 */
+	void opLocal(int opcode, int local, int stackDelta) {
+		if (local > 0xff) {
+			write(WIDE);
+			op2(opcode, local, stackDelta);
+		} else {
+			op1(opcode, local, stackDelta);
+		}
+	}
+
+	void op2(int opcode, int operand, int stackDelta) {
+		write(opcode);
+		write(operand >> 8);
+		write(operand);
+		stack(stackDelta);
+	}
+
+	void invokeInterface(int methodRef, int argumentSlots, int stackDelta) {
+		write(INVOKEINTERFACE);
+		write(methodRef >> 8);
+		write(methodRef);
+		write(argumentSlots + 1);
+		write(0);
+		stack(stackDelta);
+	}
+
+	void pushInt(int value) {
+		if (value >= 0 && value <= 5) {
+			op(ICONST_0 + value, 1);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			op2(SIPUSH, value, 1);
+		} else {
+			op2(LDC_W, integerConstant(value), 1);
+		}
+	}
+
+	void pushDouble(double value) {
+		long bits = Double.doubleToRawLongBits(value);
+		if (bits == 0L) {
+			op(DCONST_0, 2);
+		} else if (bits == Double.doubleToRawLongBits(1.0)) {
+			op(DCONST_1, 2);
+		} else {
+			op2(LDC2_W, doubleConstant(value), 2);
+		}
+	}
+
+	Label newLabel() {
+		Label label = new Label();
+		fLabels.add(label);
+		return label;
+	}
+
+	void mark(Label label) {
+		label.fPosition = fCodeLength;
+	}
+
+	void jump(int opcode, Label label, int stackDelta) {
+		write(opcode);
+		label.fReferences.add(Integer.valueOf(fCodeLength));
+		write(0);
+		write(0);
+		stack(stackDelta);
+	}
+
+	/**
+	 * Returns the complete class file.
+	 * 
+	 * @param superName
+	 *            the internal name of the super class
+	 * @param interfaceName
+	 *            the internal name of the implemented interface
+	 * @return
+	 */
+	byte[] toByteArray(String superName, String interfaceName) {
+		int thisIndex = classRef(fClassName);
+		int superIndex = classRef(superName);
+		int interfaceIndex = classRef(interfaceName);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				fPoolBytes.size() + fFieldBytes.size() + fMethodBytes.size() + 32);
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(0xcafebabe);
+			out.writeShort(0);
+			out.writeShort(49);
+			out.writeShort(fPoolCount);
+			fPoolBytes.writeTo(out);
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisIndex);
+			out.writeShort(superIndex);
+			out.writeShort(1);
+			out.writeShort(interfaceIndex);
+			out.writeShort(fFieldCount);
+			fFieldBytes.writeTo(out);
+			out.writeShort(fMethodCount);
+			fMethodBytes.writeTo(out);
+			out.writeShort(0);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+import java.util.Arrays;
+
+import org.matheclipse.commons.parser.client.math.ArithmeticMathException;
+
+/**
+ * An immutable, compiled <code>double</code> expression created by
+ * <code>DoubleEvaluator#compile()</code>.
+ * 
+ * All function and constant lookups are resolved at compile time. The declared
+ * variables are read from a <code>double[]</code> frame by index, so the
+ * expression can be reevaluated without any map lookups or
+ * <code>instanceof</code> dispatch on the AST.
+ * 
+ * @see DoubleEvaluator#compile(String, String...)
+ * @see DoubleEvaluator#compile(org.matheclipse.commons.parser.client.ast.ASTNode,
+ *      String...)
+ */
+public final class CompiledDoubleExpression {
+
+	private final IDoubleFrameFunction fFunction;
+
+	private final String[] fVariables;
+
+	private final int fFrameSize;
+
+	/**
+	 * The reused frame of the calling thread, if the expression needs more
+	 * slots than the declared variables. It's <code>null</code> while the
+	 * frame is in use, so a nested evaluation of the same expression gets its
+	 * own frame.
+	 */
+	private final ThreadLocal<double[]> fFrames;
+
+	CompiledDoubleExpression(IDoubleFrameFunction function, String[] variables, int frameSize) {
+		fFunction = function;
+		fVariables = variables;
+		fFrameSize = frameSize;
+		fFrames = frameSize > variables.length ? ThreadLocal.withInitial(() -> new double[frameSize]) : null;
+	}
+
+	/**
+	 * Evaluate the compiled expression for the given variable values.
+	 * 
+	 * If the expression assigns to a declared variable (i.e.
+	 * <code>x = x + 1</code>), the new value is written into the
+	 * <code>args</code> array.
+	 * 
+	 * @param args
+	 *            the values of the variables in the order they were declared
+	 *            in the <code>compile()</code> call
+	 * @return the resulting double value
+	 * 
+	 * @throws ArithmeticMathException
+	 *             if the number of arguments doesn't match the number of
+	 *             declared variables or the expression cannot be evaluated.
+	 */
+	public double evaluate(double... args) {
+		if (args.length != fVariables.length) {
+			throw new ArithmeticMathException("CompiledDoubleExpression#evaluate(double[]) expects "
+					+ fVariables.length + " arguments, but got: " + args.length);
+		}
+		if (fFrameSize == args.length) {
+			return fFunction.applyAsDouble(args);
+		}
+		// the local variables or registers need additional slots
+		double[] frame = fFrames.get();
+		if (frame == null) {
+			frame = new double[fFrameSize];
+		} else {
+			fFrames.set(null);
+		}
+		try {
+			System.arraycopy(args, 0, frame, 0, args.length);
+			Arrays.fill(frame, args.length, fFrameSize, 0.0);
+			double result = fFunction.applyAsDouble(frame);
+			System.arraycopy(frame, 0, args, 0, args.length);
+			return result;
+		} finally {
+			fFrames.set(frame);
+		}
+	}
+
+	/**
+	 * Evaluate the compiled expression in a frame supplied by the caller. The
+	 * first slots of the frame contain the values of the variables in the
+	 * order they were declared in the <code>compile()</code> call; the
+	 * remaining slots are used for the local variables and registers.
+	 * 
+	 * @param frame
+	 *            a frame with at least <code>getFrameSize()</code> slots
+	 * @return the resulting double value
+	 * 
+	 * @throws ArithmeticMathException
+	 *             if the frame is too small or the expression cannot be
+	 *             evaluated.
+	 */
+	public double evaluateFrame(double[] frame) {
+		if (frame.length < fFrameSize) {
+			throw new ArithmeticMathException("CompiledDoubleExpression#evaluateFrame(double[]) expects "
+					+ fFrameSize + " slots, but got: " + frame.length);
+		}
+		return fFunction.applyAsDouble(frame);
+	}
+
+	/**
+	 * Returns the number of slots in a variable frame. This is the number of
+	 * declared variables plus the number of local variables assigned with
+	 * <code>Set</code> in the expression (plus the temporary registers of a
+	 * <code>DoubleRegisterProgram</code>).
+	 * 
+	 * @return the frame size
+	 */
+	public int getFrameSize() {
+		return fFrameSize;
+	}
+
+	/**
+	 * Returns the frame function which evaluates this expression.
+	 * 
+	 * @return the frame function
+	 */
+	public IDoubleFrameFunction getFunction() {
+		return fFunction;
+	}
+
+	/**
+	 * Returns the declared variable names in slot order.
+	 * 
+	 * @return a copy of the declared variable names
+	 */
+	public String[] getVariables() {
+		return fVariables.clone();
+	}
+}
@@ -15,8 +15,8 @@
  */
 package org.matheclipse.commons.parser.client.eval;
 
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.math3.Field;
 import org.apache.commons.math3.complex.Complex;
@@ -32,15 +32,17 @@ import org.matheclipse.commons.parser.client.ast.StringNode;
 import org.matheclipse.commons.parser.client.ast.SymbolNode;
 import org.matheclipse.commons.parser.client.eval.api.FieldElementEvaluator;
 import org.matheclipse.commons.parser.client.eval.api.FieldElementVariable;
+import org.matheclipse.commons.parser.client.eval.api.FunctionRegistry;
 import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean1Function;
-import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean2Function;
 import org.matheclipse.commons.parser.client.eval.api.IBooleanFieldElement2Function;
 import org.matheclipse.commons.parser.client.eval.api.IBooleanFunction;
+import org.matheclipse.commons.parser.client.eval.api.IBooleanLazy2Function;
 import org.matheclipse.commons.parser.client.eval.api.IFieldElement0Function;
 import org.matheclipse.commons.parser.client.eval.api.IFieldElement1Function;
 import org.matheclipse.commons.parser.client.eval.api.IFieldElement2Function;
 import org.matheclipse.commons.parser.client.eval.api.IFieldElementFunction;
 import org.matheclipse.commons.parser.client.eval.api.IFieldElementInt2Function;
+import org.matheclipse.commons.parser.client.eval.api.RegistryHashTables;
 import org.matheclipse.commons.parser.client.eval.api.function.CompoundExpressionFunction;
 import org.matheclipse.commons.parser.client.eval.api.function.PlusFunction;
 import org.matheclipse.commons.parser.client.eval.api.function.SetFunction;
@@ -74,76 +76,81 @@ public class ComplexEvaluator extends FieldElementEvaluator<Complex> {
 		}
 	}
 
-	private static Map<String, IBooleanFunction<Complex>> FUNCTION_BOOLEAN_MAP;
-
-	private static Map<String, Complex> SYMBOL_MAP;
-
-	private static Map<String, Boolean> SYMBOL_BOOLEAN_MAP;
-
-	private static Map<String, IFieldElementFunction<Complex>> FUNCTION_MAP;
+	private static final FunctionRegistry<IFieldElementFunction<Complex>, IBooleanFunction<Complex>,
+			Complex> DEFAULT_REGISTRY;
 
 	static {
-		FUNCTION_BOOLEAN_MAP = new ConcurrentHashMap<>();
+		Map<String, IBooleanFunction<Complex>> booleanFunctions = new HashMap<String, IBooleanFunction<Complex>>();
 
-		FUNCTION_BOOLEAN_MAP.put("And", new IBooleanBoolean2Function<Complex>() {
+		booleanFunctions.put("And", new IBooleanLazy2Function<Complex>() {
 			@Override
 			public boolean evaluate(boolean arg1, boolean arg2) {
 				return arg1 && arg2;
 			}
+
+			@Override
+			public boolean getShortCircuitValue() {
+				return false;
+			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Not", new IBooleanBoolean1Function<Complex>() {
+		booleanFunctions.put("Not", new IBooleanBoolean1Function<Complex>() {
 			@Override
 			public boolean evaluate(boolean arg1) {
 				return !arg1;
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Or", new IBooleanBoolean2Function<Complex>() {
+		booleanFunctions.put("Or", new IBooleanLazy2Function<Complex>() {
 			@Override
 			public boolean evaluate(boolean arg1, boolean arg2) {
 				return arg1 || arg2;
 			}
+
+			@Override
+			public boolean getShortCircuitValue() {
+				return true;
+			}
 		});
 
-		FUNCTION_BOOLEAN_MAP.put("Equal", new IBooleanFieldElement2Function<Complex>() {
+		booleanFunctions.put("Equal", new IBooleanFieldElement2Function<Complex>() {
 			@Override
 			public boolean evaluate(Complex arg1, Complex arg2) {
 				return arg1.equals(arg2);
 			}
 		});
 
-		FUNCTION_BOOLEAN_MAP.put("Unequal", new IBooleanFieldElement2Function<Complex>() {
+		booleanFunctions.put("Unequal", new IBooleanFieldElement2Function<Complex>() {
 			@Override
 			public boolean evaluate(Complex arg1, Complex arg2) {
 				return !arg1.equals(arg2);
 			}
 		});
 
-		SYMBOL_MAP = new ConcurrentHashMap<>();
-		SYMBOL_MAP.put("Catalan", new Complex(0.91596559417721901505460351493238411077414937428167, 0.0));
-		SYMBOL_MAP.put("Degree", new Complex(Math.PI / 180, 0.0));
-		SYMBOL_MAP.put("E", new Complex(Math.E, 0.0));
-		SYMBOL_MAP.put("I", new Complex(0.0, 1.0));
-		SYMBOL_MAP.put("Pi", new Complex(Math.PI, 0.0));
-		SYMBOL_MAP.put("EulerGamma", new Complex(0.57721566490153286060651209008240243104215933593992, 0.0));
-		SYMBOL_MAP.put("Glaisher", new Complex(1.2824271291006226368753425688697917277676889273250, 0.0));
-		SYMBOL_MAP.put("GoldenRatio", new Complex(1.6180339887498948482045868343656381177203091798058, 0.0));
-		SYMBOL_MAP.put("Khinchin", new Complex(2.6854520010653064453097148354817956938203822939945, 0.0));
-
-		SYMBOL_BOOLEAN_MAP = new ConcurrentHashMap<>();
-		SYMBOL_BOOLEAN_MAP.put("False", Boolean.FALSE);
-		SYMBOL_BOOLEAN_MAP.put("True", Boolean.TRUE);
-
-		FUNCTION_MAP = new ConcurrentHashMap<>();
-		FUNCTION_MAP.put("ArcTan", new ArcTanFunction());
-		FUNCTION_MAP.put("Log", new LogFunction());
-		FUNCTION_MAP.put("CompoundExpression", new CompoundExpressionFunction<Complex>());
-		FUNCTION_MAP.put("Set", new SetFunction<Complex>());
-		FUNCTION_MAP.put("Plus", new PlusFunction<Complex>());
-		FUNCTION_MAP.put("Times", new TimesFunction<Complex>());
+		Map<String, Complex> symbols = new HashMap<String, Complex>();
+		symbols.put("Catalan", new Complex(0.91596559417721901505460351493238411077414937428167, 0.0));
+		symbols.put("Degree", new Complex(Math.PI / 180, 0.0));
+		symbols.put("E", new Complex(Math.E, 0.0));
+		symbols.put("I", new Complex(0.0, 1.0));
+		symbols.put("Pi", new Complex(Math.PI, 0.0));
+		symbols.put("EulerGamma", new Complex(0.57721566490153286060651209008240243104215933593992, 0.0));
+		symbols.put("Glaisher", new Complex(1.2824271291006226368753425688697917277676889273250, 0.0));
+		symbols.put("GoldenRatio", new Complex(1.6180339887498948482045868343656381177203091798058, 0.0));
+		symbols.put("Khinchin", new Complex(2.6854520010653064453097148354817956938203822939945, 0.0));
+
+		Map<String, Boolean> booleanSymbols = new HashMap<String, Boolean>();
+		booleanSymbols.put("False", Boolean.FALSE);
+		booleanSymbols.put("True", Boolean.TRUE);
+
+		Map<String, IFieldElementFunction<Complex>> functions = new HashMap<String, IFieldElementFunction<Complex>>();
+		functions.put("ArcTan", new ArcTanFunction());
+		functions.put("Log", new LogFunction());
+		functions.put("CompoundExpression", new CompoundExpressionFunction<Complex>());
+		functions.put("Set", new SetFunction<Complex>());
+		functions.put("Plus", new PlusFunction<Complex>());
+		functions.put("Times", new TimesFunction<Complex>());
 		//
 		// Functions with 0 argument
 		//
-		FUNCTION_MAP.put("Random", new IFieldElement0Function<Complex>() {
+		functions.put("Random", new IFieldElement0Function<Complex>() {
 			@Override
 			public Complex evaluate() {
 				return new Complex(Math.random(), Math.random());
@@ -152,68 +159,68 @@ public class ComplexEvaluator extends FieldElementEvaluator<Complex> {
 		//
 		// Functions with 1 argument
 		//
-		FUNCTION_MAP.put("Abs", new IFieldElement1Function<Complex>() {
+		functions.put("Abs", new IFieldElement1Function<Complex>() {
 			@Override
 			public Complex evaluate(Complex arg1) {
 				return new Complex(arg1.abs());
 			}
 		});
-		FUNCTION_MAP.put("ArcCos", new IFieldElement1Function<Complex>() {
+		functions.put("ArcCos", new IFieldElement1Function<Complex>() {
 			@Override
 			public Complex evaluate(Complex arg1) {
 				return arg1.acos();
 			}
 		});
-		FUNCTION_MAP.put("ArcSin", new IFieldElement1Function<Complex>() {
+		functions.put("ArcSin", new IFieldElement1Function<Complex>() {
 			@Override
 			public Complex evaluate(Complex arg1) {
 				return arg1.asin();
 			}
 		});
 
-		FUNCTION_MAP.put("Cos", new IFieldElement1Function<Complex>() {
+		functions.put("Cos", new IFieldElement1Function<Complex>() {
 			@Override
 			public Complex evaluate(Complex arg1) {
 				return arg1.cos();
 			}
 		});
-		FUNCTION_MAP.put("Cosh", new IFieldElement1Function<Complex>() {
+		functions.put("Cosh", new IFieldElement1Function<Complex>() {
 			@Override
 			public Complex evaluate(Complex arg1) {
 				return arg1.cosh();
 			}
 		});
-		FUNCTION_MAP.put("Exp", new IFieldElement1Function<Complex>() {
+		functions.put("Exp", new IFieldElement1Function<Complex>() {
 			@Override
 			public Complex evaluate(Complex arg1) {
 				return arg1.exp();
 			}
 		});
-		FUNCTION_MAP.put("Sin", new IFieldElement1Function<Complex>() {
+		functions.put("Sin", new IFieldElement1Function<Complex>() {
 			@Override
 			public Complex evaluate(Complex arg1) {
 				return arg1.sin();
 			}
 		});
-		FUNCTION_MAP.put("Sinh", new IFieldElement1Function<Complex>() {
+		functions.put("Sinh", new IFieldElement1Function<Complex>() {
 			@Override
 			public Complex evaluate(Complex arg1) {
 				return arg1.sinh();
 			}
 		});
-		FUNCTION_MAP.put("Sqrt", new IFieldElement1Function<Complex>() {
+		functions.put("Sqrt", new IFieldElement1Function<Complex>() {
 			@Override
 			public Complex evaluate(Complex arg1) {
 				return arg1.sqrt();
 			}
 		});
-		FUNCTION_MAP.put("Tan", new IFieldElement1Function<Complex>() {
+		functions.put("Tan", new IFieldElement1Function<Complex>() {
 			@Override
 			public Complex evaluate(Complex arg1) {
 				return arg1.tan();
 			}
 		});
-		FUNCTION_MAP.put("Tanh", new IFieldElement1Function<Complex>() {
+		functions.put("Tanh", new IFieldElement1Function<Complex>() {
 			@Override
 			public Complex evaluate(Complex arg1) {
 				return arg1.tanh();
@@ -223,7 +230,7 @@ public class ComplexEvaluator extends FieldElementEvaluator<Complex> {
 		//
 		// Functions with 2 arguments
 		//
-		FUNCTION_MAP.put("Power", new IFieldElementInt2Function<Complex>() {
+		functions.put("Power", new IFieldElementInt2Function<Complex>() {
 			@Override
 			public Complex evaluate(Complex arg1, Complex arg2) {
 				if (arg1.equals(Complex.ZERO) && !arg2.equals(Complex.ZERO)) {
@@ -240,7 +247,19 @@ public class ComplexEvaluator extends FieldElementEvaluator<Complex> {
 				return arg1.pow(n);
 			}
 		});
+		DEFAULT_REGISTRY = new FunctionRegistry<>(functions, booleanFunctions, symbols, booleanSymbols,
+				RegistryHashTables.COMPLEX);
+	}
 
+	/**
+	 * Returns the default functions and constants of the <code>ComplexEvaluator</code>.
+	 * Derive new registries from it with the <code>with...()</code> methods.
+	 * 
+	 * @return
+	 */
+	public static FunctionRegistry<IFieldElementFunction<Complex>, IBooleanFunction<Complex>,
+			Complex> getDefaultRegistry() {
+		return DEFAULT_REGISTRY;
 	}
 
 	/**
@@ -270,22 +289,19 @@ public class ComplexEvaluator extends FieldElementEvaluator<Complex> {
 	}
 
 	public ComplexEvaluator(boolean relaxedSyntax) {
-		super(relaxedSyntax);
-		if (fRelaxedSyntax && SYMBOL_MAP.get("pi") == null) {
-			// init tables for relaxed mode
-			for (Map.Entry<String, Complex> entry : SYMBOL_MAP.entrySet()) {
-				SYMBOL_MAP.put(entry.getKey().toLowerCase(), entry.getValue());
-			}
-			for (Map.Entry<String, Boolean> entry : SYMBOL_BOOLEAN_MAP.entrySet()) {
-				SYMBOL_BOOLEAN_MAP.put(entry.getKey().toLowerCase(), entry.getValue());
-			}
-			for (Map.Entry<String, IFieldElementFunction<Complex>> entry : FUNCTION_MAP.entrySet()) {
-				FUNCTION_MAP.put(entry.getKey().toLowerCase(), entry.getValue());
-			}
-			for (Map.Entry<String, IBooleanFunction<Complex>> entry : FUNCTION_BOOLEAN_MAP.entrySet()) {
-				FUNCTION_BOOLEAN_MAP.put(entry.getKey().toLowerCase(), entry.getValue());
-			}
-		}
+		this(relaxedSyntax, DEFAULT_REGISTRY);
+	}
+
+	/**
+	 * 
+	 * @param relaxedSyntax
+	 * @param registry
+	 *            the functions and constants of this evaluator
+	 * @see #getDefaultRegistry()
+	 */
+	public ComplexEvaluator(boolean relaxedSyntax,
+			FunctionRegistry<IFieldElementFunction<Complex>, IBooleanFunction<Complex>, Complex> registry) {
+		super(registry, DEFAULT_REGISTRY, relaxedSyntax);
 	}
 
 	/**
@@ -301,6 +317,11 @@ public class ComplexEvaluator extends FieldElementEvaluator<Complex> {
 		return new ComplexVariable(value);
 	}
 
+	@Override
+	public ASTNode createNode(Complex value) {
+		return new ComplexNode(value);
+	}
+
 	/**
 	 * Define a boolean value for a given variable name.
 	 * 
@@ -328,26 +349,6 @@ public class ComplexEvaluator extends FieldElementEvaluator<Complex> {
 		return ComplexField.getInstance();
 	}
 
-	@Override
-	public IBooleanFunction<Complex> getFunctionBooleanMap(String symbolName) {
-		return FUNCTION_BOOLEAN_MAP.get(symbolName);
-	}
-
-	@Override
-	public IFieldElementFunction<Complex> getFunctionMap(String symbolName) {
-		return FUNCTION_MAP.get(symbolName);
-	}
-
-	@Override
-	public Boolean getSymbolBooleanMap(String symbolName) {
-		return SYMBOL_BOOLEAN_MAP.get(symbolName);
-	}
-
-	@Override
-	public Complex getSymbolFieldElementMap(String symbolName) {
-		return SYMBOL_MAP.get(symbolName);
-	}
-
 	/**
 	 * Returns the Complex variable value to which the specified variableName is
 	 * mapped, or {@code null} if this map contains no mapping for the
@@ -363,7 +364,9 @@ public class ComplexEvaluator extends FieldElementEvaluator<Complex> {
 
 	/**
 	 * Optimize an already parsed in <code>functionNode</code> into an
-	 * <code>ASTNode</code>.
+	 * <code>ASTNode</code>. The <code>functionNode</code> isn't modified; the
+	 * result is a new tree, which shares the unchanged subtrees with the given
+	 * <code>functionNode</code>.
 	 * 
 	 * @param functionNode
 	 * @return the resulting ASTNode
@@ -373,35 +376,48 @@ public class ComplexEvaluator extends FieldElementEvaluator<Complex> {
 	public ASTNode optimizeFunction(final FunctionNode functionNode) {
 		if (!functionNode.isEmpty()) {
 			boolean complexOnly = true;
+			FunctionNode result = functionNode;
 			ASTNode node;
 			for (int i = 1; i < functionNode.size(); i++) {
 				node = functionNode.getNode(i);
+				ASTNode optNode = node;
 				if (node instanceof NumberNode) {
-					functionNode.set(i, new ComplexNode(((NumberNode) functionNode.getNode(i)).doubleValue()));
-				} else if (functionNode.getNode(i) instanceof FunctionNode) {
-					ASTNode optNode = optimizeFunction((FunctionNode) functionNode.getNode(i));
+					optNode = new ComplexNode(((NumberNode) node).doubleValue());
+				} else if (node instanceof ComplexNode) {
+					// already optimized
+				} else if (node instanceof FunctionNode) {
+					optNode = optimizeFunction((FunctionNode) node);
 					if (!(optNode instanceof ComplexNode)) {
 						complexOnly = false;
 					}
-					functionNode.set(i, optNode);
 				} else if (node instanceof SymbolNode) {
-					Complex c = SYMBOL_MAP.get(node.toString());
+					Complex c = getSymbolFieldElementMap(node.toString());
 					if (c != null) {
-						functionNode.set(i, new ComplexNode(c));
+						optNode = new ComplexNode(c);
 					} else {
 						complexOnly = false;
 					}
 				} else {
 					complexOnly = false;
 				}
+				if (optNode != node) {
+					if (result == functionNode) {
+						result = functionNode.copy();
+					}
+					result.set(i, optNode);
+				}
+			}
+			if (isIfFunction(result)) {
+				return optimizeIf(result);
 			}
 			if (complexOnly) {
 				try {
-					return new ComplexNode(visit(functionNode));
+					return new ComplexNode(visit(result));
 				} catch (RuntimeException e) {
 
 				}
 			}
+			return result;
 		}
 		return functionNode;
 	}
@@ -457,7 +473,7 @@ public class ComplexEvaluator extends FieldElementEvaluator<Complex> {
 		if (v != null) {
 			return v.getValue();
 		}
-		Complex c = SYMBOL_MAP.get(node.toString());
+		Complex c = getSymbolFieldElementMap(node.toString());
 		if (c != null) {
 			return c;
 		}
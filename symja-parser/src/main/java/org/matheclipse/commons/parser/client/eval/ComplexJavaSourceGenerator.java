@@ -0,0 +1,245 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.math3.complex.Complex;
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FunctionNode;
+import org.matheclipse.commons.parser.client.ast.NumberNode;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
+import org.matheclipse.commons.parser.client.eval.api.AbstractJavaSourceGenerator;
+
+/**
+ * Generates the source code of a Java class from formula definitions, so that
+ * the formulas can be compiled at build time. Each definition of the form
+ * <code>f[x_, y_] := x^2 + y</code> becomes a method <code>public static
+ * Complex f(Complex x, Complex y)</code>.
+ * 
+ * The generated code depends on the Apache Commons Math <code>Complex</code>
+ * class and evaluates the formulas with the same semantics as the
+ * <code>ComplexEvaluator</code>. The numbers of the formulas become
+ * <code>private static final</code> constants of the generated class.
+ * 
+ * @see DoubleJavaSourceGenerator
+ */
+public class ComplexJavaSourceGenerator extends AbstractJavaSourceGenerator {
+
+	/**
+	 * Maps the built-in function names to the <code>Complex</code> methods
+	 * without arguments.
+	 */
+	private static final Map<String, String> UNARY_FUNCTIONS = new HashMap<String, String>();
+
+	/**
+	 * The names of the built-in functions.
+	 */
+	private static final List<String> BUILTIN_NAMES = new ArrayList<String>();
+
+	/**
+	 * The names of the generated helper methods.
+	 */
+	private static final List<String> HELPER_NAMES = Arrays.asList("$power");
+
+	static {
+		UNARY_FUNCTIONS.put("ArcCos", "acos");
+		UNARY_FUNCTIONS.put("ArcSin", "asin");
+		UNARY_FUNCTIONS.put("ArcTan", "atan");
+		UNARY_FUNCTIONS.put("Cos", "cos");
+		UNARY_FUNCTIONS.put("Cosh", "cosh");
+		UNARY_FUNCTIONS.put("Exp", "exp");
+		UNARY_FUNCTIONS.put("Log", "log");
+		UNARY_FUNCTIONS.put("Sin", "sin");
+		UNARY_FUNCTIONS.put("Sinh", "sinh");
+		UNARY_FUNCTIONS.put("Sqrt", "sqrt");
+		UNARY_FUNCTIONS.put("Tan", "tan");
+		UNARY_FUNCTIONS.put("Tanh", "tanh");
+
+		BUILTIN_NAMES.addAll(ComplexEvaluator.getDefaultRegistry().getFunctionNames());
+		BUILTIN_NAMES.addAll(ComplexEvaluator.getDefaultRegistry().getBooleanFunctionNames());
+	}
+
+	private final ComplexEvaluator fEngine;
+
+	private boolean fUsesPower;
+
+	public ComplexJavaSourceGenerator() {
+		this(false);
+	}
+
+	public ComplexJavaSourceGenerator(boolean relaxedSyntax) {
+		super(relaxedSyntax, BUILTIN_NAMES, HELPER_NAMES);
+		fEngine = new ComplexEvaluator(relaxedSyntax);
+	}
+
+	@Override
+	protected String getTypeName() {
+		return "Complex";
+	}
+
+	@Override
+	protected ASTNode optimizeFunction(FunctionNode functionNode) {
+		return fEngine.optimizeFunction(functionNode);
+	}
+
+	@Override
+	protected Boolean getSymbolBoolean(String symbol) {
+		return fEngine.getSymbolBooleanMap(symbol);
+	}
+
+	@Override
+	protected void reset() {
+		fUsesPower = false;
+	}
+
+	@Override
+	protected void generateImports(StringBuilder buf) {
+		buf.append("import org.apache.commons.math3.complex.Complex;\n\n");
+	}
+
+	@Override
+	protected void generateHelpers(StringBuilder buf) {
+		if (fUsesPower) {
+			buf.append("\n");
+			buf.append("\tprivate static Complex $power(Complex base, Complex exponent) {\n");
+			buf.append("\t\tif (base.equals(Complex.ZERO) && !exponent.equals(Complex.ZERO)) {\n");
+			buf.append("\t\t\treturn Complex.ZERO;\n");
+			buf.append("\t\t}\n");
+			buf.append("\t\treturn base.pow(exponent);\n");
+			buf.append("\t}\n");
+		}
+	}
+
+	private void literal(Complex value, StringBuilder buf) {
+		StringBuilder initializer = new StringBuilder("new Complex(");
+		literal(value.getReal(), initializer);
+		initializer.append(", ");
+		literal(value.getImaginary(), initializer);
+		initializer.append(')');
+		buf.append(constant(initializer.toString()));
+	}
+
+	@Override
+	protected boolean translateValue(ASTNode node, StringBuilder buf) {
+		if (node instanceof ComplexNode) {
+			literal(((ComplexNode) node).complexValue(), buf);
+			return true;
+		}
+		if (node instanceof SymbolNode) {
+			Complex c = fEngine.getSymbolFieldElementMap(node.toString());
+			if (c != null) {
+				literal(c, buf);
+				return true;
+			}
+		} else if (node instanceof NumberNode) {
+			literal(new Complex(((NumberNode) node).doubleValue()), buf);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Translate the arguments of the function into a chain of method calls,
+	 * i.e. <code>x.add(y).add(z)</code>.
+	 * 
+	 * @param functionNode
+	 * @param method
+	 * @param buf
+	 */
+	private void translateChain(FunctionNode functionNode, String method, StringBuilder buf) {
+		translate(functionNode.getNode(1), buf);
+		for (int i = 2; i < functionNode.size(); i++) {
+			buf.append('.').append(method).append('(');
+			translate(functionNode.getNode(i), buf);
+			buf.append(')');
+		}
+	}
+
+	@Override
+	protected boolean translateBuiltin(String name, FunctionNode functionNode, StringBuilder buf) {
+		int size = functionNode.size();
+		if (name.equals("Plus")) {
+			if (size == 1) {
+				buf.append("Complex.ZERO");
+			} else {
+				translateChain(functionNode, "add", buf);
+			}
+			return true;
+		}
+		if (name.equals("Times")) {
+			if (size == 1) {
+				buf.append("Complex.ONE");
+			} else {
+				translateChain(functionNode, "multiply", buf);
+			}
+			return true;
+		}
+		if (size == 1 && name.equals("Random")) {
+			buf.append("new Complex(Math.random(), Math.random())");
+			return true;
+		}
+		if (size == 2) {
+			if (name.equals("Abs")) {
+				buf.append("new Complex(");
+				translate(functionNode.getNode(1), buf);
+				buf.append(".abs())");
+				return true;
+			}
+			String method = UNARY_FUNCTIONS.get(name);
+			if (method != null) {
+				translate(functionNode.getNode(1), buf);
+				buf.append('.').append(method).append("()");
+				return true;
+			}
+		} else if (size == 3) {
+			if (name.equals("Power")) {
+				fUsesPower = true;
+				buf.append("$power");
+				translateArguments(functionNode, ", ", buf);
+				return true;
+			}
+			if (name.equals("Log")) {
+				// Log[base, z] == log(z) / log(base)
+				translate(functionNode.getNode(2), buf);
+				buf.append(".log().divide(");
+				translate(functionNode.getNode(1), buf);
+				buf.append(".log())");
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	protected boolean translateComparison(String name, FunctionNode functionNode, StringBuilder buf) {
+		if (name.equals("Equal") || name.equals("Unequal")) {
+			if (name.equals("Unequal")) {
+				buf.append('!');
+			}
+			translate(functionNode.getNode(1), buf);
+			buf.append(".equals(");
+			translate(functionNode.getNode(2), buf);
+			buf.append(')');
+			return true;
+		}
+		return false;
+	}
+}
@@ -15,9 +15,11 @@
  */
 package org.matheclipse.commons.parser.client.eval;
 
+import org.apache.commons.math3.FieldElement;
 import org.apache.commons.math3.complex.Complex;
 import org.apache.commons.math3.util.MathUtils;
 import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.eval.api.IASTVisitor;
 
 /**
  * 
@@ -41,6 +43,11 @@ public class ComplexNode extends ASTNode {
 		this.value = new Complex(real, imag);
 	}
 
+	@Override
+	public <T extends FieldElement<T>> T accept(final IASTVisitor<T> visitor) {
+		return visitor.visit(this);
+	}
+
 	public Complex complexValue() {
 		return value;
 	}
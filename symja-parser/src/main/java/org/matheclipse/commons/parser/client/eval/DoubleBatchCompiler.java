@@ -0,0 +1,331 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleUnaryOperator;
+
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FunctionNode;
+import org.matheclipse.commons.parser.client.ast.NumberNode;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.BinaryKernel;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.ColumnKernel;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.ConstantKernel;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.FrameKernel;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.IfKernel;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.InvariantKernel;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.Kernel;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.LaneKernel;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.MaxKernel;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.MinKernel;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.PlusKernel;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.PowerKernel;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.SupplierKernel;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.TimesKernel;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.UnaryKernel;
+import org.matheclipse.commons.parser.client.eval.DoubleBatchProgram.VariableKernel;
+
+/**
+ * Compiles a <code>double</code> expression into a
+ * <code>DoubleBatchProgram</code>.
+ * 
+ * The arithmetic built-in functions become chunk kernels. Subexpressions which
+ * have no kernel (i.e. <code>If</code>, <code>CompoundExpression</code> or
+ * callback functions) are evaluated row by row in their closure compiled form.
+ * Expressions which assign variables with <code>Set</code> are completely
+ * evaluated row by row, because the assignments have to be visible in the
+ * evaluation order of a single row.
+ * 
+ * <code>If</code> with a comparison condition is compiled into a mask
+ * selection of both cases, if the cases have no side effects.
+ * 
+ * Subexpressions without side effects, which don't depend on a column variable
+ * (i.e. <code>a*Exp[-b*c]</code> in <code>a*Exp[-b*c]*x + Log[k]</code>
+ * evaluated for a column <code>x</code>), are loop invariant. They are hoisted
+ * out of the row loops and evaluated once per batch.
+ */
+final class DoubleBatchCompiler {
+
+	/**
+	 * Compile the <code>node</code> into a batch program.
+	 * 
+	 * @param engine
+	 *            the evaluator which resolves the symbols
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param slots
+	 *            the column indices of the variables. Local variables assigned
+	 *            with <code>Set</code> are added to this map.
+	 * @return
+	 * @throws org.matheclipse.commons.parser.client.math.ArithmeticMathException
+	 *             if the <code>node</code> cannot be compiled.
+	 */
+	static DoubleBatchProgram compile(DoubleEvaluator engine, ASTNode node, Map<String, Integer> slots) {
+		DoubleBatchCompiler compiler = new DoubleBatchCompiler(engine, slots);
+		Kernel root;
+		if (DoubleEvaluator.containsSet(node, engine.getRegistry())) {
+			root = compiler.frameKernel(node);
+		} else {
+			root = compiler.compileNode(node);
+		}
+		return new DoubleBatchProgram(root, compiler.fBufferCount, slots.size(), compiler.fInvariantCount);
+	}
+
+	private final DoubleEvaluator fEngine;
+
+	private final Map<String, Integer> fSlots;
+
+	private final int fVariableCount;
+
+	private int fBufferCount;
+
+	/**
+	 * The number of hoisted loop invariant subexpressions.
+	 */
+	private int fInvariantCount;
+
+	/**
+	 * The number of compiled kernels, which have side effects or are evaluated
+	 * row by row.
+	 */
+	private int fImpureCount;
+
+	private DoubleBatchCompiler(DoubleEvaluator engine, Map<String, Integer> slots) {
+		fEngine = engine;
+		fSlots = slots;
+		fVariableCount = slots.size();
+		fBufferCount = 0;
+		fInvariantCount = 0;
+		fImpureCount = 0;
+	}
+
+	private Kernel frameKernel(ASTNode node) {
+		fImpureCount++;
+		return new FrameKernel(fEngine.compileNode(node, fSlots), fVariableCount);
+	}
+
+	private Kernel compileNode(ASTNode node) {
+		if (node instanceof NumberNode) {
+			return new ConstantKernel(((NumberNode) node).doubleValue());
+		}
+		if (node instanceof DoubleNode) {
+			return new ConstantKernel(((DoubleNode) node).doubleValue());
+		}
+		if (node instanceof SymbolNode) {
+			String name = node.toString();
+			Integer slot = fSlots.get(name);
+			if (slot != null) {
+				return new ColumnKernel(slot.intValue());
+			}
+			IDoubleValue v = fEngine.getVariable(name);
+			if (v != null) {
+				return new VariableKernel(v);
+			}
+			Double dbl = fEngine.getSymbolDouble(name);
+			if (dbl != null) {
+				return new ConstantKernel(dbl.doubleValue());
+			}
+		} else if (node instanceof FunctionNode) {
+			if (isInvariant(node)) {
+				return new InvariantKernel(fEngine.compileNode(node, fSlots), fInvariantCount++);
+			}
+			Kernel kernel = compileFunction((FunctionNode) node);
+			if (kernel != null) {
+				return kernel;
+			}
+		}
+		return frameKernel(node);
+	}
+
+	/**
+	 * Test if the <code>node</code> is loop invariant, i.e. it doesn't depend
+	 * on a column variable and has no side effects.
+	 * 
+	 * @param node
+	 * @return
+	 */
+	private boolean isInvariant(ASTNode node) {
+		for (String variableName : fSlots.keySet()) {
+			if (node.dependsOn(variableName)) {
+				return false;
+			}
+		}
+		return isPure(node);
+	}
+
+	/**
+	 * Test if the <code>node</code> only calls built-in functions without side
+	 * effects (i.e. no <code>Set</code>, <code>Random</code> or callback
+	 * functions).
+	 * 
+	 * @param node
+	 * @return
+	 */
+	private boolean isPure(ASTNode node) {
+		if (!(node instanceof FunctionNode)) {
+			return true;
+		}
+		FunctionNode functionNode = (FunctionNode) node;
+		if (functionNode.isEmpty() || !(functionNode.getNode(0) instanceof SymbolNode)) {
+			return false;
+		}
+		String symbol = functionNode.getNode(0).toString();
+		Object obj = fEngine.getFunctionDouble(symbol);
+		if (!(obj instanceof DoubleUnaryOperator || obj instanceof DoubleBinaryOperator
+				|| fEngine.getFunctionBoolean(symbol) != null || "If".equals(symbol)
+				|| (fEngine.isRelaxedSyntax() && "if".equalsIgnoreCase(symbol)))) {
+			return false;
+		}
+		for (int i = 1; i < functionNode.size(); i++) {
+			if (!isPure(functionNode.getNode(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compile an arithmetic built-in function into a kernel.
+	 * 
+	 * @param functionNode
+	 * @return <code>null</code> if the function has no kernel
+	 */
+	private Kernel compileFunction(FunctionNode functionNode) {
+		if (functionNode.isEmpty() || !(functionNode.getNode(0) instanceof SymbolNode)) {
+			return null;
+		}
+		String symbol = functionNode.getNode(0).toString();
+		int argSize = functionNode.size() - 1;
+		if (argSize == 3 && ("If".equals(symbol) || (fEngine.isRelaxedSyntax() && "if".equalsIgnoreCase(symbol)))) {
+			return compileIf(functionNode);
+		}
+		Object obj = fEngine.getFunctionDouble(symbol);
+		if (obj instanceof DoubleEvaluator.PlusFunction || obj instanceof DoubleEvaluator.TimesFunction
+				|| obj instanceof DoubleEvaluator.MaxFunction || obj instanceof DoubleEvaluator.MinFunction) {
+			if (argSize == 0) {
+				if (obj instanceof DoubleEvaluator.PlusFunction) {
+					return new ConstantKernel(0.0);
+				}
+				if (obj instanceof DoubleEvaluator.TimesFunction) {
+					return new ConstantKernel(1.0);
+				}
+				return new ConstantKernel(Double.NaN);
+			}
+			Kernel[] args = new Kernel[argSize];
+			for (int i = 0; i < argSize; i++) {
+				args[i] = compileNode(functionNode.getNode(i + 1));
+			}
+			int buffer = fBufferCount++;
+			if (obj instanceof DoubleEvaluator.PlusFunction) {
+				return new PlusKernel(args, buffer);
+			}
+			if (obj instanceof DoubleEvaluator.TimesFunction) {
+				return new TimesKernel(args, buffer);
+			}
+			if (obj instanceof DoubleEvaluator.MaxFunction) {
+				return new MaxKernel(args, buffer);
+			}
+			return new MinKernel(args, buffer);
+		}
+		if (obj instanceof IDoubleFunction) {
+			return null;
+		}
+		if (argSize == 0 && obj instanceof DoubleSupplier) {
+			fImpureCount++;
+			return new SupplierKernel((DoubleSupplier) obj);
+		}
+		if (argSize == 1 && obj instanceof DoubleUnaryOperator) {
+			Kernel arg1 = compileNode(functionNode.getNode(1));
+			if (DoubleEvaluator.isBuiltinFunction(obj, "Sqrt")) {
+				return new LaneKernel(LaneKernel.SQRT, arg1);
+			}
+			if (DoubleEvaluator.isBuiltinFunction(obj, "Abs")) {
+				return new LaneKernel(LaneKernel.ABS, arg1);
+			}
+			return new UnaryKernel((DoubleUnaryOperator) obj, arg1);
+		}
+		if (argSize == 2 && DoubleEvaluator.isBuiltinFunction(obj, "Power")
+				&& functionNode.getNode(2) instanceof NumberNode) {
+			double exponent = ((NumberNode) functionNode.getNode(2)).doubleValue();
+			if (exponent == -1.0 || exponent == 2.0 || exponent == 3.0 || exponent == 4.0) {
+				return new PowerKernel(compileNode(functionNode.getNode(1)), (int) exponent);
+			}
+		}
+		if (argSize == 2 && obj instanceof DoubleBinaryOperator) {
+			Kernel arg1 = compileNode(functionNode.getNode(1));
+			Kernel arg2 = compileNode(functionNode.getNode(2));
+			return new BinaryKernel((DoubleBinaryOperator) obj, arg1, arg2, fBufferCount++);
+		}
+		return null;
+	}
+
+	/**
+	 * Compile <code>If[condition, trueCase, falseCase]</code> into a mask
+	 * selection.
+	 * 
+	 * @param functionNode
+	 * @return <code>null</code> if the condition isn't a comparison or a case
+	 *         has side effects
+	 */
+	private Kernel compileIf(FunctionNode functionNode) {
+		if (!(functionNode.getNode(1) instanceof FunctionNode)) {
+			return null;
+		}
+		FunctionNode condition = (FunctionNode) functionNode.getNode(1);
+		if (condition.size() != 3 || !(condition.getNode(0) instanceof SymbolNode)) {
+			return null;
+		}
+		int comparison = comparison(fEngine.getFunctionBoolean(condition.getNode(0).toString()));
+		if (comparison < 0) {
+			return null;
+		}
+		Kernel left = compileNode(condition.getNode(1));
+		Kernel right = compileNode(condition.getNode(2));
+		int impureCount = fImpureCount;
+		Kernel trueCase = compileNode(functionNode.getNode(2));
+		Kernel falseCase = compileNode(functionNode.getNode(3));
+		if (impureCount != fImpureCount) {
+			return null;
+		}
+		int buffer = fBufferCount;
+		fBufferCount += 3;
+		return new IfKernel(comparison, left, right, trueCase, falseCase, buffer);
+	}
+
+	/**
+	 * Returns the <code>DoubleLanes</code> constant of the comparison function.
+	 * 
+	 * @param function
+	 * @return <code>-1</code> if the function isn't a comparison
+	 */
+	private int comparison(Object function) {
+		if (function == null) {
+			return -1;
+		}
+		String[] names = { "Equal", "Unequal", "Less", "LessEqual", "Greater", "GreaterEqual" };
+		int[] comparisons = { DoubleLanes.EQUAL, DoubleLanes.UNEQUAL, DoubleLanes.LESS, DoubleLanes.LESS_EQUAL,
+				DoubleLanes.GREATER, DoubleLanes.GREATER_EQUAL };
+		for (int i = 0; i < names.length; i++) {
+			if (DoubleEvaluator.isBuiltinBooleanFunction(function, names[i])) {
+				return comparisons[i];
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,628 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A <code>double</code> expression compiled for the columnar evaluation of
+ * many rows. Each node of the expression is a kernel, which evaluates a whole
+ * chunk of rows in a tight loop before its parent node is evaluated, so the
+ * tree dispatch is paid once per chunk and not once per row.
+ * 
+ * The program itself is immutable. The temporary chunk buffers are allocated
+ * per call of {@link #evaluate(double[][], int, int, double[])}, so the same
+ * program can evaluate disjoint row ranges in parallel, see
+ * {@link #evaluate(ForkJoinPool, double[][], int, int, double[])}.
+ * 
+ * @see DoubleBatchCompiler
+ */
+final class DoubleBatchProgram {
+
+	/**
+	 * The number of rows which are evaluated by one kernel call.
+	 */
+	static final int CHUNK_SIZE = 512;
+
+	/**
+	 * The evaluation time of a parallel task, which amortizes the overhead of
+	 * forking and joining the task.
+	 */
+	static final long TASK_NANOS = 250_000L;
+
+	private static final DoubleLanes LANES = DoubleLanes.INSTANCE;
+
+	/**
+	 * The state of one evaluation: the input columns, the temporary chunk
+	 * buffers and the frame of the row wise evaluated subexpressions.
+	 */
+	static final class Workspace {
+		final double[][] columns;
+
+		final double[][] buffers;
+
+		final double[] frame;
+
+		/**
+		 * The values of the loop invariant subexpressions, which are evaluated
+		 * by the first chunk of this workspace.
+		 */
+		final double[] invariants;
+
+		final boolean[] hoisted;
+
+		Workspace(double[][] columns, int bufferCount, int frameSize, int invariantCount) {
+			this.columns = columns;
+			this.buffers = new double[bufferCount][CHUNK_SIZE];
+			this.frame = new double[frameSize];
+			this.invariants = new double[invariantCount];
+			this.hoisted = new boolean[invariantCount];
+		}
+	}
+
+	/**
+	 * A node of the program, which evaluates the rows
+	 * <code>[row, row + length)</code> into
+	 * <code>result[offset, offset + length)</code>.
+	 */
+	static abstract class Kernel {
+		abstract void evaluate(Workspace workspace, int row, int length, double[] result, int offset);
+	}
+
+	static final class ConstantKernel extends Kernel {
+		final double value;
+
+		ConstantKernel(double value) {
+			this.value = value;
+		}
+
+		@Override
+		void evaluate(Workspace workspace, int row, int length, double[] result, int offset) {
+			Arrays.fill(result, offset, offset + length, value);
+		}
+	}
+
+	static final class ColumnKernel extends Kernel {
+		final int index;
+
+		ColumnKernel(int index) {
+			this.index = index;
+		}
+
+		@Override
+		void evaluate(Workspace workspace, int row, int length, double[] result, int offset) {
+			System.arraycopy(workspace.columns[index], row, result, offset, length);
+		}
+	}
+
+	/**
+	 * A variable of the <code>DoubleEvaluator</code>, which is read once per
+	 * chunk.
+	 */
+	static final class VariableKernel extends Kernel {
+		final IDoubleValue variable;
+
+		VariableKernel(IDoubleValue variable) {
+			this.variable = variable;
+		}
+
+		@Override
+		void evaluate(Workspace workspace, int row, int length, double[] result, int offset) {
+			Arrays.fill(result, offset, offset + length, variable.getValue());
+		}
+	}
+
+	/**
+	 * A subexpression, which doesn't depend on the columns. It's evaluated once
+	 * per workspace (i.e. per batch or parallel task) and not for every row.
+	 */
+	static final class InvariantKernel extends Kernel {
+		final IDoubleFrameFunction function;
+
+		final int index;
+
+		InvariantKernel(IDoubleFrameFunction function, int index) {
+			this.function = function;
+			this.index = index;
+		}
+
+		double value(Workspace workspace) {
+			if (!workspace.hoisted[index]) {
+				workspace.invariants[index] = function.applyAsDouble(workspace.frame);
+				workspace.hoisted[index] = true;
+			}
+			return workspace.invariants[index];
+		}
+
+		@Override
+		void evaluate(Workspace workspace, int row, int length, double[] result, int offset) {
+			Arrays.fill(result, offset, offset + length, value(workspace));
+		}
+	}
+
+	static final class SupplierKernel extends Kernel {
+		final DoubleSupplier supplier;
+
+		SupplierKernel(DoubleSupplier supplier) {
+			this.supplier = supplier;
+		}
+
+		@Override
+		void evaluate(Workspace workspace, int row, int length, double[] result, int offset) {
+			for (int i = offset; i < offset + length; i++) {
+				result[i] = supplier.getAsDouble();
+			}
+		}
+	}
+
+	static final class UnaryKernel extends Kernel {
+		final DoubleUnaryOperator operator;
+
+		final Kernel arg1;
+
+		UnaryKernel(DoubleUnaryOperator operator, Kernel arg1) {
+			this.operator = operator;
+			this.arg1 = arg1;
+		}
+
+		@Override
+		void evaluate(Workspace workspace, int row, int length, double[] result, int offset) {
+			arg1.evaluate(workspace, row, length, result, offset);
+			for (int i = offset; i < offset + length; i++) {
+				result[i] = operator.applyAsDouble(result[i]);
+			}
+		}
+	}
+
+	static final class BinaryKernel extends Kernel {
+		final DoubleBinaryOperator operator;
+
+		final Kernel arg1;
+
+		final Kernel arg2;
+
+		final int buffer;
+
+		BinaryKernel(DoubleBinaryOperator operator, Kernel arg1, Kernel arg2, int buffer) {
+			this.operator = operator;
+			this.arg1 = arg1;
+			this.arg2 = arg2;
+			this.buffer = buffer;
+		}
+
+		@Override
+		void evaluate(Workspace workspace, int row, int length, double[] result, int offset) {
+			double[] temp = workspace.buffers[buffer];
+			arg1.evaluate(workspace, row, length, result, offset);
+			arg2.evaluate(workspace, row, length, temp, 0);
+			for (int i = 0; i < length; i++) {
+				result[offset + i] = operator.applyAsDouble(result[offset + i], temp[i]);
+			}
+		}
+	}
+
+	/**
+	 * Evaluates a subexpression, which has no kernel (i.e. <code>If</code> or
+	 * a callback function), row by row in its closure compiled form.
+	 */
+	static final class FrameKernel extends Kernel {
+		final IDoubleFrameFunction function;
+
+		final int variableCount;
+
+		FrameKernel(IDoubleFrameFunction function, int variableCount) {
+			this.function = function;
+			this.variableCount = variableCount;
+		}
+
+		@Override
+		void evaluate(Workspace workspace, int row, int length, double[] result, int offset) {
+			double[] frame = workspace.frame;
+			double[][] columns = workspace.columns;
+			for (int i = 0; i < length; i++) {
+				for (int j = 0; j < variableCount; j++) {
+					frame[j] = columns[j][row + i];
+				}
+				result[offset + i] = function.applyAsDouble(frame);
+			}
+		}
+	}
+
+	/**
+	 * A function with any number of arguments, which folds its arguments into
+	 * the result one after another. Constant and column arguments are combined
+	 * without copying them into a buffer.
+	 */
+	static abstract class FoldKernel extends Kernel {
+		final Kernel[] args;
+
+		final int buffer;
+
+		FoldKernel(Kernel[] args, int buffer) {
+			this.args = args;
+			this.buffer = buffer;
+		}
+
+		@Override
+		void evaluate(Workspace workspace, int row, int length, double[] result, int offset) {
+			args[0].evaluate(workspace, row, length, result, offset);
+			for (int j = 1; j < args.length; j++) {
+				Kernel arg = args[j];
+				if (arg instanceof ConstantKernel) {
+					fold(result, offset, ((ConstantKernel) arg).value, length);
+				} else if (arg instanceof InvariantKernel) {
+					fold(result, offset, ((InvariantKernel) arg).value(workspace), length);
+				} else if (arg instanceof ColumnKernel) {
+					fold(result, offset, workspace.columns[((ColumnKernel) arg).index], row, length);
+				} else {
+					double[] temp = workspace.buffers[buffer];
+					arg.evaluate(workspace, row, length, temp, 0);
+					fold(result, offset, temp, 0, length);
+				}
+			}
+		}
+
+		abstract void fold(double[] result, int offset, double value, int length);
+
+		abstract void fold(double[] result, int offset, double[] arg, int argOffset, int length);
+	}
+
+	static final class PlusKernel extends FoldKernel {
+		PlusKernel(Kernel[] args, int buffer) {
+			super(args, buffer);
+		}
+
+		@Override
+		void fold(double[] result, int offset, double value, int length) {
+			LANES.plus(result, offset, value, length);
+		}
+
+		@Override
+		void fold(double[] result, int offset, double[] arg, int argOffset, int length) {
+			LANES.plus(result, offset, arg, argOffset, length);
+		}
+	}
+
+	static final class TimesKernel extends FoldKernel {
+		TimesKernel(Kernel[] args, int buffer) {
+			super(args, buffer);
+		}
+
+		@Override
+		void fold(double[] result, int offset, double value, int length) {
+			LANES.times(result, offset, value, length);
+		}
+
+		@Override
+		void fold(double[] result, int offset, double[] arg, int argOffset, int length) {
+			LANES.times(result, offset, arg, argOffset, length);
+		}
+	}
+
+	static final class MaxKernel extends FoldKernel {
+		MaxKernel(Kernel[] args, int buffer) {
+			super(args, buffer);
+		}
+
+		@Override
+		void fold(double[] result, int offset, double value, int length) {
+			LANES.max(result, offset, value, length);
+		}
+
+		@Override
+		void fold(double[] result, int offset, double[] arg, int argOffset, int length) {
+			LANES.max(result, offset, arg, argOffset, length);
+		}
+	}
+
+	static final class MinKernel extends FoldKernel {
+		MinKernel(Kernel[] args, int buffer) {
+			super(args, buffer);
+		}
+
+		@Override
+		void fold(double[] result, int offset, double value, int length) {
+			LANES.min(result, offset, value, length);
+		}
+
+		@Override
+		void fold(double[] result, int offset, double[] arg, int argOffset, int length) {
+			LANES.min(result, offset, arg, argOffset, length);
+		}
+	}
+
+	/**
+	 * <code>Sqrt</code> and <code>Abs</code>, which have a lane operation.
+	 */
+	static final class LaneKernel extends Kernel {
+		static final int SQRT = 0;
+
+		static final int ABS = 1;
+
+		final int operation;
+
+		final Kernel arg1;
+
+		LaneKernel(int operation, Kernel arg1) {
+			this.operation = operation;
+			this.arg1 = arg1;
+		}
+
+		@Override
+		void evaluate(Workspace workspace, int row, int length, double[] result, int offset) {
+			arg1.evaluate(workspace, row, length, result, offset);
+			if (operation == SQRT) {
+				LANES.sqrt(result, offset, length);
+			} else {
+				LANES.abs(result, offset, length);
+			}
+		}
+	}
+
+	/**
+	 * <code>Power[x, n]</code> for the small integer exponents of
+	 * {@link DoubleLanes#power(double[], int, int, int)}.
+	 */
+	static final class PowerKernel extends Kernel {
+		final Kernel base;
+
+		final int exponent;
+
+		PowerKernel(Kernel base, int exponent) {
+			this.base = base;
+			this.exponent = exponent;
+		}
+
+		@Override
+		void evaluate(Workspace workspace, int row, int length, double[] result, int offset) {
+			base.evaluate(workspace, row, length, result, offset);
+			LANES.power(result, offset, exponent, length);
+		}
+	}
+
+	/**
+	 * <code>If[comparison, trueCase, falseCase]</code>, which evaluates both
+	 * cases for the whole chunk and selects the results with the mask of the
+	 * comparison. It's only used if both cases are free of side effects.
+	 */
+	static final class IfKernel extends Kernel {
+		final int comparison;
+
+		final Kernel left;
+
+		final Kernel right;
+
+		final Kernel trueCase;
+
+		final Kernel falseCase;
+
+		final int buffer;
+
+		IfKernel(int comparison, Kernel left, Kernel right, Kernel trueCase, Kernel falseCase, int buffer) {
+			this.comparison = comparison;
+			this.left = left;
+			this.right = right;
+			this.trueCase = trueCase;
+			this.falseCase = falseCase;
+			this.buffer = buffer;
+		}
+
+		@Override
+		void evaluate(Workspace workspace, int row, int length, double[] result, int offset) {
+			double[] leftValues = workspace.buffers[buffer];
+			double[] rightValues = workspace.buffers[buffer + 1];
+			double[] trueValues = workspace.buffers[buffer + 2];
+			left.evaluate(workspace, row, length, leftValues, 0);
+			right.evaluate(workspace, row, length, rightValues, 0);
+			trueCase.evaluate(workspace, row, length, trueValues, 0);
+			falseCase.evaluate(workspace, row, length, result, offset);
+			LANES.select(comparison, leftValues, rightValues, trueValues, 0, result, offset, length);
+		}
+	}
+
+	/**
+	 * The state shared by the tasks of one parallel evaluation. The per row
+	 * cost is measured by every task, so the task size follows the actual
+	 * cost of the expression (i.e. after the JIT compiled the kernels).
+	 */
+	static final class ParallelEvaluation {
+		final DoubleBatchProgram program;
+
+		final double[][] columns;
+
+		final double[] out;
+
+		final int maxTaskRows;
+
+		volatile double nanosPerRow;
+
+		ParallelEvaluation(DoubleBatchProgram program, double[][] columns, double[] out, int maxTaskRows,
+				double nanosPerRow) {
+			this.program = program;
+			this.columns = columns;
+			this.out = out;
+			this.maxTaskRows = maxTaskRows;
+			this.nanosPerRow = nanosPerRow;
+		}
+
+		/**
+		 * Evaluate the rows <code>[from, to)</code> and update the measured
+		 * cost per row.
+		 */
+		void evaluate(int from, int to) {
+			long start = System.nanoTime();
+			program.evaluate(columns, from, to, out);
+			double measured = (double) Math.max(System.nanoTime() - start, 1L) / (to - from);
+			// races between the tasks only lose a measurement
+			nanosPerRow = (nanosPerRow + measured) * 0.5;
+		}
+
+		/**
+		 * The number of rows, which a task evaluates without splitting its row
+		 * range.
+		 */
+		int taskRows() {
+			double rows = TASK_NANOS / nanosPerRow;
+			if (rows >= maxTaskRows) {
+				return maxTaskRows;
+			}
+			return Math.max(CHUNK_SIZE, (int) rows);
+		}
+	}
+
+	static final class BatchTask extends RecursiveAction {
+		private static final long serialVersionUID = 4181938575493785046L;
+
+		final ParallelEvaluation evaluation;
+
+		final int from;
+
+		final int to;
+
+		BatchTask(ParallelEvaluation evaluation, int from, int to) {
+			this.evaluation = evaluation;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			int rows = to - from;
+			if (rows <= evaluation.taskRows()) {
+				evaluation.evaluate(from, to);
+				return;
+			}
+			// split at a chunk boundary
+			int middle = from + ((rows / 2 + CHUNK_SIZE - 1) / CHUNK_SIZE) * CHUNK_SIZE;
+			invokeAll(new BatchTask(evaluation, from, middle), new BatchTask(evaluation, middle, to));
+		}
+	}
+
+	private final Kernel fRoot;
+
+	private final int fBufferCount;
+
+	private final int fFrameSize;
+
+	private final int fInvariantCount;
+
+	DoubleBatchProgram(Kernel root, int bufferCount, int frameSize, int invariantCount) {
+		fRoot = root;
+		fBufferCount = bufferCount;
+		fFrameSize = frameSize;
+		fInvariantCount = invariantCount;
+	}
+
+	/**
+	 * Evaluate the rows <code>[from, to)</code> of the <code>columns</code>
+	 * into the same rows of <code>out</code>.
+	 * 
+	 * @param columns
+	 *            the values of the variables; <code>columns[i][row]</code> is
+	 *            the value of the variable in slot <code>i</code>
+	 * @param from
+	 *            the first row (inclusive)
+	 * @param to
+	 *            the last row (exclusive)
+	 * @param out
+	 *            the results
+	 */
+	void evaluate(double[][] columns, int from, int to, double[] out) {
+		Workspace workspace = new Workspace(columns, fBufferCount, fFrameSize, fInvariantCount);
+		for (int row = from; row < to; row += CHUNK_SIZE) {
+			fRoot.evaluate(workspace, row, Math.min(CHUNK_SIZE, to - row), out, row);
+		}
+	}
+
+	/**
+	 * Evaluate the rows <code>[from, to)</code> of the <code>columns</code>
+	 * into the same rows of <code>out</code> on the given fork/join pool. Every
+	 * task evaluates its rows in its own workspace.
+	 * 
+	 * The first chunk is evaluated by the calling thread to estimate the cost
+	 * per row. The remaining rows are split into tasks, which run at least
+	 * {@link #TASK_NANOS} nanoseconds (but give every worker of the pool some
+	 * rows), and the estimate is refined by every finished task.
+	 * 
+	 * @param pool
+	 *            the fork/join pool
+	 * @param columns
+	 *            the values of the variables; <code>columns[i][row]</code> is
+	 *            the value of the variable in slot <code>i</code>
+	 * @param from
+	 *            the first row (inclusive)
+	 * @param to
+	 *            the last row (exclusive)
+	 * @param out
+	 *            the results
+	 */
+	void evaluate(ForkJoinPool pool, double[][] columns, int from, int to, double[] out) {
+		int sampleEnd = Math.min(to, from + CHUNK_SIZE);
+		long start = System.nanoTime();
+		evaluate(columns, from, sampleEnd, out);
+		if (sampleEnd == to) {
+			return;
+		}
+		double nanosPerRow = (double) Math.max(System.nanoTime() - start, 1L) / (sampleEnd - from);
+		int rows = to - sampleEnd;
+		int maxTaskRows = Math.max(CHUNK_SIZE, rows / pool.getParallelism());
+		ParallelEvaluation evaluation = new ParallelEvaluation(this, columns, out, maxTaskRows, nanosPerRow);
+		if (rows <= evaluation.taskRows()) {
+			evaluate(columns, sampleEnd, to, out);
+			return;
+		}
+		pool.invoke(new BatchTask(evaluation, sampleEnd, to));
+	}
+
+	/**
+	 * Evaluate <code>rows</code> rows of the <code>columns</code> buffers
+	 * (starting at their positions) into the <code>out</code> buffer (starting
+	 * at its position). Every chunk of the columns is read into a chunk sized
+	 * array, so the buffers are never copied as a whole. The positions of the
+	 * buffers aren't changed.
+	 * 
+	 * @param columns
+	 *            the values of the variables
+	 * @param out
+	 *            the results
+	 * @param rows
+	 *            the number of rows
+	 */
+	void evaluate(DoubleBuffer[] columns, DoubleBuffer out, int rows) {
+		double[][] chunks = new double[columns.length][CHUNK_SIZE];
+		DoubleBuffer[] inputs = new DoubleBuffer[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			inputs[i] = columns[i].duplicate();
+		}
+		DoubleBuffer output = out.duplicate();
+		double[] result = new double[CHUNK_SIZE];
+		Workspace workspace = new Workspace(chunks, fBufferCount, fFrameSize, fInvariantCount);
+		for (int row = 0; row < rows; row += CHUNK_SIZE) {
+			int length = Math.min(CHUNK_SIZE, rows - row);
+			for (int i = 0; i < inputs.length; i++) {
+				inputs[i].get(chunks[i], 0, length);
+			}
+			fRoot.evaluate(workspace, 0, length, result, 0);
+			output.put(result, 0, length);
+		}
+	}
+}
@@ -0,0 +1,742 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FunctionNode;
+import org.matheclipse.commons.parser.client.ast.NumberNode;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
+import org.matheclipse.commons.parser.client.eval.ClassFileWriter.Label;
+
+/**
+ * Compiles a <code>double</code> expression into a JVM class, which implements
+ * <code>IDoubleFrameFunction</code>. Each class is defined in its own class
+ * loader, so it can be garbage collected together with the compiled expression.
+ * 
+ * The built-in functions are inlined as direct <code>java.lang.Math</code>
+ * calls. All other subexpressions (i.e. callback functions or variables defined
+ * in the <code>DoubleEvaluator</code>) are delegated to the closure compiled
+ * form of <code>DoubleEvaluator#compile()</code>.
+ */
+final class DoubleBytecodeCompiler {
+
+	/**
+	 * A class loader which defines exactly one generated class.
+	 */
+	static final class DoubleClassLoader extends ClassLoader {
+		DoubleClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> defineClass(String name, byte[] classFile) {
+			return defineClass(name, classFile, 0, classFile.length);
+		}
+	}
+
+	private static final String PACKAGE = "org/matheclipse/commons/parser/client/eval/";
+
+	private static final String CLASS_PREFIX = PACKAGE + "bytecode/DoubleFunction";
+
+	private static final String FRAME_FUNCTION = PACKAGE + "IDoubleFrameFunction";
+
+	private static final String FRAME_PREDICATE = PACKAGE + "IDoubleFramePredicate";
+
+	private static final String FUNCTIONS_DESCRIPTOR = "[L" + FRAME_FUNCTION + ";";
+
+	private static final String PREDICATES_DESCRIPTOR = "[L" + FRAME_PREDICATE + ";";
+
+	private static final String EVALUATOR = PACKAGE + "DoubleEvaluator";
+
+	private static final String EXCEPTION = "org/matheclipse/commons/parser/client/math/ArithmeticMathException";
+
+	private static final String MATH = "java/lang/Math";
+
+	private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+	/**
+	 * Maps the built-in function names to the <code>java.lang.Math</code>
+	 * methods with one <code>double</code> argument.
+	 */
+	private static final Map<String, String> UNARY_INTRINSICS = new HashMap<String, String>();
+
+	/**
+	 * Maps the lower case names of the intrinsic functions to their names.
+	 */
+	private static final Map<String, String> RELAXED_NAMES = new HashMap<String, String>();
+
+	static {
+		UNARY_INTRINSICS.put("Abs", "abs");
+		UNARY_INTRINSICS.put("ArcCos", "acos");
+		UNARY_INTRINSICS.put("ArcSin", "asin");
+		UNARY_INTRINSICS.put("ArcTan", "atan");
+		UNARY_INTRINSICS.put("Ceiling", "ceil");
+		UNARY_INTRINSICS.put("Cos", "cos");
+		UNARY_INTRINSICS.put("Cosh", "cosh");
+		UNARY_INTRINSICS.put("Exp", "exp");
+		UNARY_INTRINSICS.put("Floor", "floor");
+		UNARY_INTRINSICS.put("Log", "log");
+		UNARY_INTRINSICS.put("Sign", "signum");
+		UNARY_INTRINSICS.put("Sin", "sin");
+		UNARY_INTRINSICS.put("Sinh", "sinh");
+		UNARY_INTRINSICS.put("Sqrt", "sqrt");
+		UNARY_INTRINSICS.put("Tan", "tan");
+		UNARY_INTRINSICS.put("Tanh", "tanh");
+
+		String[] names = { "If", "Round", "Power", "Divide", "Minus", "Random", "And", "Or", "Not", "Equal",
+				"Unequal", "Less", "LessEqual", "Greater", "GreaterEqual" };
+		for (String name : names) {
+			RELAXED_NAMES.put(name.toLowerCase(), name);
+		}
+		for (String name : UNARY_INTRINSICS.keySet()) {
+			RELAXED_NAMES.put(name.toLowerCase(), name);
+		}
+	}
+
+	/**
+	 * Compile the <code>node</code> into a new JVM class.
+	 * 
+	 * @param engine
+	 *            the evaluator which resolves the symbols
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param slots
+	 *            the slot indices of the variables in the evaluation frame.
+	 *            Local variables assigned with <code>Set</code> are added to
+	 *            this map.
+	 * @return <code>null</code> if the class couldn't be generated or defined
+	 *         in this JVM
+	 * @throws org.matheclipse.commons.parser.client.math.ArithmeticMathException
+	 *             if the <code>node</code> cannot be compiled.
+	 */
+	static IDoubleFrameFunction compile(DoubleEvaluator engine, ASTNode node, Map<String, Integer> slots) {
+		DoubleBytecodeCompiler compiler = new DoubleBytecodeCompiler(engine, slots,
+				CLASS_PREFIX + CLASS_COUNTER.incrementAndGet());
+		return compiler.compile(node);
+	}
+
+	private final DoubleEvaluator fEngine;
+
+	private final Map<String, Integer> fSlots;
+
+	private final ClassFileWriter fWriter;
+
+	private final List<IDoubleFrameFunction> fFunctions = new ArrayList<IDoubleFrameFunction>();
+
+	private final List<IDoubleFramePredicate> fPredicates = new ArrayList<IDoubleFramePredicate>();
+
+	/**
+	 * The index of the next free local variable of the
+	 * <code>applyAsDouble</code> method (<code>this</code> and the
+	 * <code>frame</code> argument use the first two slots). The temporary
+	 * locals are freed in the reverse order of their allocation.
+	 */
+	private int fLocals = 2;
+
+	/**
+	 * The maximum number of local variables of the <code>applyAsDouble</code>
+	 * method.
+	 */
+	private int fMaxLocals = 2;
+
+	private DoubleBytecodeCompiler(DoubleEvaluator engine, Map<String, Integer> slots, String className) {
+		fEngine = engine;
+		fSlots = slots;
+		fWriter = new ClassFileWriter(className);
+	}
+
+	private IDoubleFrameFunction compile(ASTNode node) {
+		byte[] classFile;
+		try {
+			classFile = generate(node);
+		} catch (IllegalStateException e) {
+			// the expression exceeds the limits of the class file format
+			return null;
+		}
+		try {
+			DoubleClassLoader loader = new DoubleClassLoader(DoubleBytecodeCompiler.class.getClassLoader());
+			Class<?> clazz = loader.defineClass(fWriter.getClassName().replace('/', '.'), classFile);
+			return (IDoubleFrameFunction) clazz
+					.getConstructor(IDoubleFrameFunction[].class, IDoubleFramePredicate[].class)
+					.newInstance(fFunctions.toArray(new IDoubleFrameFunction[fFunctions.size()]),
+							fPredicates.toArray(new IDoubleFramePredicate[fPredicates.size()]));
+		} catch (ReflectiveOperationException | LinkageError | SecurityException e) {
+			// defining classes at runtime isn't possible in this environment
+			return null;
+		}
+	}
+
+	private byte[] generate(ASTNode node) {
+		String className = fWriter.getClassName();
+		fWriter.addField(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL, "fFunctions", FUNCTIONS_DESCRIPTOR);
+		fWriter.addField(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL, "fPredicates",
+				PREDICATES_DESCRIPTOR);
+
+		// constructor
+		fWriter.beginCode();
+		fWriter.op(ClassFileWriter.ALOAD_0, 1);
+		fWriter.op2(ClassFileWriter.INVOKESPECIAL, fWriter.methodRef("java/lang/Object", "<init>", "()V"), -1);
+		fWriter.op(ClassFileWriter.ALOAD_0, 1);
+		fWriter.op(ClassFileWriter.ALOAD_1, 1);
+		fWriter.op2(ClassFileWriter.PUTFIELD, fWriter.fieldRef(className, "fFunctions", FUNCTIONS_DESCRIPTOR), -2);
+		fWriter.op(ClassFileWriter.ALOAD_0, 1);
+		fWriter.op(ClassFileWriter.ALOAD_2, 1);
+		fWriter.op2(ClassFileWriter.PUTFIELD, fWriter.fieldRef(className, "fPredicates", PREDICATES_DESCRIPTOR),
+				-2);
+		fWriter.op(ClassFileWriter.RETURN, 0);
+		fWriter.endCode(ClassFileWriter.ACC_PUBLIC, "<init>",
+				"(" + FUNCTIONS_DESCRIPTOR + PREDICATES_DESCRIPTOR + ")V", 3);
+
+		// double applyAsDouble(double[] frame)
+		fWriter.beginCode();
+		compileNode(node);
+		fWriter.op(ClassFileWriter.DRETURN, -2);
+		fWriter.endCode(ClassFileWriter.ACC_PUBLIC, "applyAsDouble", "([D)D", fMaxLocals);
+
+		return fWriter.toByteArray("java/lang/Object", FRAME_FUNCTION);
+	}
+
+	/**
+	 * Returns the built-in name of the given symbol, if it's an intrinsic
+	 * function name.
+	 * 
+	 * @param symbol
+	 * @return
+	 */
+	private String intrinsicName(String symbol) {
+		if (fEngine.isRelaxedSyntax()) {
+			String name = RELAXED_NAMES.get(symbol.toLowerCase());
+			return name != null ? name : symbol;
+		}
+		return symbol;
+	}
+
+	/**
+	 * Allocate a temporary <code>double</code> local variable.
+	 * 
+	 * @return the index of the local variable
+	 * @see #freeLocals(int)
+	 */
+	private int newLocal() {
+		int local = fLocals;
+		fLocals += 2;
+		if (fLocals > 0xffff) {
+			throw new IllegalStateException("DoubleBytecodeCompiler: too many local variables");
+		}
+		if (fLocals > fMaxLocals) {
+			fMaxLocals = fLocals;
+		}
+		return local;
+	}
+
+	/**
+	 * Free the given local variable and all local variables allocated after
+	 * it, so they can be reused by the following subexpressions.
+	 * 
+	 * @param local
+	 *            the first local variable, which isn't used anymore
+	 */
+	private void freeLocals(int local) {
+		fLocals = local;
+	}
+
+	private void loadLocal(int local) {
+		fWriter.opLocal(ClassFileWriter.DLOAD, local, 2);
+	}
+
+	private void storeLocal(int local) {
+		fWriter.opLocal(ClassFileWriter.DSTORE, local, -2);
+	}
+
+	private void invokeMath(String name, String descriptor, int stackDelta) {
+		fWriter.op2(ClassFileWriter.INVOKESTATIC, fWriter.methodRef(MATH, name, descriptor), stackDelta);
+	}
+
+	/**
+	 * Delegate the evaluation of the <code>node</code> to its closure compiled
+	 * form.
+	 * 
+	 * @param node
+	 */
+	private void fallback(ASTNode node) {
+		IDoubleFrameFunction function = fEngine.compileNode(node, fSlots);
+		int index = fFunctions.size();
+		fFunctions.add(function);
+		fWriter.op(ClassFileWriter.ALOAD_0, 1);
+		fWriter.op2(ClassFileWriter.GETFIELD,
+				fWriter.fieldRef(fWriter.getClassName(), "fFunctions", FUNCTIONS_DESCRIPTOR), 0);
+		fWriter.pushInt(index);
+		fWriter.op(ClassFileWriter.AALOAD, -1);
+		fWriter.op(ClassFileWriter.ALOAD_1, 1);
+		fWriter.invokeInterface(fWriter.interfaceMethodRef(FRAME_FUNCTION, "applyAsDouble", "([D)D"), 1, 0);
+	}
+
+	/**
+	 * Delegate the evaluation of the logical <code>node</code> to its closure
+	 * compiled form.
+	 * 
+	 * @param node
+	 */
+	private void fallbackLogical(ASTNode node) {
+		IDoubleFramePredicate predicate = fEngine.compileNodeLogical(node, fSlots);
+		int index = fPredicates.size();
+		fPredicates.add(predicate);
+		fWriter.op(ClassFileWriter.ALOAD_0, 1);
+		fWriter.op2(ClassFileWriter.GETFIELD,
+				fWriter.fieldRef(fWriter.getClassName(), "fPredicates", PREDICATES_DESCRIPTOR), 0);
+		fWriter.pushInt(index);
+		fWriter.op(ClassFileWriter.AALOAD, -1);
+		fWriter.op(ClassFileWriter.ALOAD_1, 1);
+		fWriter.invokeInterface(fWriter.interfaceMethodRef(FRAME_PREDICATE, "test", "([D)Z"), 1, -1);
+	}
+
+	/**
+	 * Emit the code, which pushes the <code>double</code> value of the
+	 * <code>node</code> on the operand stack.
+	 * 
+	 * @param node
+	 */
+	private void compileNode(ASTNode node) {
+		if (node instanceof DoubleNode) {
+			fWriter.pushDouble(((DoubleNode) node).doubleValue());
+			return;
+		}
+		if (node instanceof FunctionNode) {
+			compileFunction((FunctionNode) node);
+			return;
+		}
+		if (node instanceof SymbolNode) {
+			Integer slot = fSlots.get(node.toString());
+			if (slot != null) {
+				fWriter.op(ClassFileWriter.ALOAD_1, 1);
+				fWriter.pushInt(slot.intValue());
+				fWriter.op(ClassFileWriter.DALOAD, -2 + 2);
+				return;
+			}
+			Double dbl = fEngine.getSymbolDouble(node.toString());
+			if (dbl != null && !fEngine.isVariable(node.toString())) {
+				fWriter.pushDouble(dbl.doubleValue());
+				return;
+			}
+		} else if (node instanceof NumberNode) {
+			fWriter.pushDouble(((NumberNode) node).doubleValue());
+			return;
+		}
+		fallback(node);
+	}
+
+	private void compileFunction(FunctionNode functionNode) {
+		if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode) {
+			String symbol = functionNode.getNode(0).toString();
+			String name = intrinsicName(symbol);
+			int size = functionNode.size();
+			if (name.equals("If")) {
+				if (size == 3 || size == 4) {
+					compileIf(functionNode);
+					return;
+				}
+			} else {
+				Object obj = fEngine.getFunctionDouble(symbol);
+				if (obj instanceof IDoubleFunction) {
+					if (compileFunctionNode((IDoubleFunction) obj, functionNode)) {
+						return;
+					}
+				} else if (DoubleEvaluator.isBuiltinFunction(obj, name)) {
+					// a function, which the registry overrides, isn't inlined
+					if (size == 1 && name.equals("Random")) {
+						invokeMath("random", "()D", 2);
+						return;
+					}
+					if (size == 2) {
+						if (name.equals("Minus")) {
+							compileNode(functionNode.getNode(1));
+							fWriter.op(ClassFileWriter.DNEG, 0);
+							return;
+						}
+						if (name.equals("Round")) {
+							compileNode(functionNode.getNode(1));
+							invokeMath("round", "(D)J", 0);
+							fWriter.op(ClassFileWriter.L2D, 0);
+							return;
+						}
+						String method = UNARY_INTRINSICS.get(name);
+						if (method != null) {
+							compileNode(functionNode.getNode(1));
+							invokeMath(method, "(D)D", 0);
+							return;
+						}
+					} else if (size == 3) {
+						if (name.equals("Power")) {
+							compilePower(functionNode);
+							return;
+						}
+						if (name.equals("Divide")) {
+							compileDivide(functionNode);
+							return;
+						}
+						if (name.equals("ArcTan")) {
+							compileNode(functionNode.getNode(1));
+							compileNode(functionNode.getNode(2));
+							invokeMath("atan2", "(DD)D", -2);
+							return;
+						}
+						if (name.equals("Log")) {
+							// Log[base, z] == log(z) / log(base)
+							int base = newLocal();
+							compileNode(functionNode.getNode(1));
+							invokeMath("log", "(D)D", 0);
+							storeLocal(base);
+							compileNode(functionNode.getNode(2));
+							invokeMath("log", "(D)D", 0);
+							loadLocal(base);
+							fWriter.op(ClassFileWriter.DDIV, -2);
+							freeLocals(base);
+							return;
+						}
+					}
+				}
+			}
+		}
+		fallback(functionNode);
+	}
+
+	private void compileIf(FunctionNode functionNode) {
+		compileNodeLogical(functionNode.getNode(1));
+		Label elseLabel = fWriter.newLabel();
+		Label endLabel = fWriter.newLabel();
+		fWriter.jump(ClassFileWriter.IFEQ, elseLabel, -1);
+		int stack = fWriter.getStack();
+		compileNode(functionNode.getNode(2));
+		fWriter.jump(ClassFileWriter.GOTO, endLabel, 0);
+		fWriter.mark(elseLabel);
+		fWriter.setStack(stack);
+		if (functionNode.size() == 4) {
+			compileNode(functionNode.getNode(3));
+		} else {
+			String message = "EvalDouble#evaluateFunction(FunctionNode) not possible for: " + functionNode.toString();
+			fWriter.op2(ClassFileWriter.NEW, fWriter.classRef(EXCEPTION), 1);
+			fWriter.op(ClassFileWriter.DUP, 1);
+			fWriter.op2(ClassFileWriter.LDC_W, fWriter.stringRef(message), 1);
+			fWriter.op2(ClassFileWriter.INVOKESPECIAL,
+					fWriter.methodRef(EXCEPTION, "<init>", "(Ljava/lang/String;)V"), -2);
+			fWriter.op(ClassFileWriter.ATHROW, -1);
+			fWriter.setStack(stack + 2);
+		}
+		fWriter.mark(endLabel);
+	}
+
+	/**
+	 * <code>Divide[a, b]</code> returns <code>a * b</code> if
+	 * <code>b == 0.0</code> (like <code>Times[a, Power[b, -1]]</code>),
+	 * otherwise <code>a / b</code>.
+	 * 
+	 * @param functionNode
+	 */
+	private void compileDivide(FunctionNode functionNode) {
+		int numerator = newLocal();
+		int denominator = newLocal();
+		compileNode(functionNode.getNode(1));
+		storeLocal(numerator);
+		compileNode(functionNode.getNode(2));
+		storeLocal(denominator);
+		Label divideLabel = fWriter.newLabel();
+		Label endLabel = fWriter.newLabel();
+		int stack = fWriter.getStack();
+		loadLocal(numerator);
+		loadLocal(denominator);
+		loadLocal(denominator);
+		fWriter.op(ClassFileWriter.DCONST_0, 2);
+		fWriter.op(ClassFileWriter.DCMPL, -3);
+		fWriter.jump(ClassFileWriter.IFNE, divideLabel, -1);
+		fWriter.op(ClassFileWriter.DMUL, -2);
+		fWriter.jump(ClassFileWriter.GOTO, endLabel, 0);
+		fWriter.mark(divideLabel);
+		fWriter.setStack(stack + 4);
+		fWriter.op(ClassFileWriter.DDIV, -2);
+		fWriter.mark(endLabel);
+		freeLocals(numerator);
+	}
+
+	/**
+	 * <code>Power[a, b]</code> returns <code>a</code> if <code>a == 0.0</code>
+	 * and <code>b != 0.0</code>, otherwise <code>Math.pow(a, b)</code>.
+	 * 
+	 * @param functionNode
+	 */
+	private void compilePower(FunctionNode functionNode) {
+		int base = newLocal();
+		int exponent = newLocal();
+		compileNode(functionNode.getNode(1));
+		storeLocal(base);
+		compileNode(functionNode.getNode(2));
+		storeLocal(exponent);
+		Label powLabel = fWriter.newLabel();
+		Label endLabel = fWriter.newLabel();
+		int stack = fWriter.getStack();
+		loadLocal(base);
+		fWriter.op(ClassFileWriter.DCONST_0, 2);
+		fWriter.op(ClassFileWriter.DCMPL, -3);
+		fWriter.jump(ClassFileWriter.IFNE, powLabel, -1);
+		loadLocal(exponent);
+		fWriter.op(ClassFileWriter.DCONST_0, 2);
+		fWriter.op(ClassFileWriter.DCMPL, -3);
+		fWriter.jump(ClassFileWriter.IFEQ, powLabel, -1);
+		loadLocal(base);
+		fWriter.jump(ClassFileWriter.GOTO, endLabel, 0);
+		fWriter.mark(powLabel);
+		fWriter.setStack(stack);
+		loadLocal(base);
+		loadLocal(exponent);
+		invokeMath("pow", "(DD)D", -2);
+		fWriter.mark(endLabel);
+		freeLocals(base);
+	}
+
+	/**
+	 * Compile the built-in functions, which evaluate the
+	 * <code>FunctionNode</code> arguments on their own.
+	 * 
+	 * @return <code>false</code> if the function cannot be compiled.
+	 */
+	private boolean compileFunctionNode(IDoubleFunction function, FunctionNode functionNode) {
+		int size = functionNode.size();
+		if (function instanceof DoubleEvaluator.SetFunction) {
+			if (size == 3 && functionNode.getNode(1) instanceof SymbolNode) {
+				compileNode(functionNode.getNode(2));
+				String variableName = functionNode.getNode(1).toString();
+				Integer slot = fSlots.get(variableName);
+				if (slot == null) {
+					// allocate a new slot for a local variable
+					slot = Integer.valueOf(fSlots.size());
+					fSlots.put(variableName, slot);
+				}
+				int value = newLocal();
+				fWriter.op(ClassFileWriter.DUP2, 2);
+				storeLocal(value);
+				fWriter.op(ClassFileWriter.ALOAD_1, 1);
+				fWriter.pushInt(slot.intValue());
+				loadLocal(value);
+				fWriter.op(ClassFileWriter.DASTORE, -4);
+				freeLocals(value);
+				return true;
+			}
+			return false;
+		}
+		if (function instanceof DoubleEvaluator.PlusFunction) {
+			fWriter.pushDouble(0.0);
+			for (int i = 1; i < size; i++) {
+				compileNode(functionNode.getNode(i));
+				fWriter.op(ClassFileWriter.DADD, -2);
+			}
+			return true;
+		}
+		if (function instanceof DoubleEvaluator.TimesFunction) {
+			if (size == 1) {
+				fWriter.pushDouble(1.0);
+			}
+			for (int i = 1; i < size; i++) {
+				compileNode(functionNode.getNode(i));
+				if (i > 1) {
+					fWriter.op(ClassFileWriter.DMUL, -2);
+				}
+			}
+			return true;
+		}
+		if (function instanceof DoubleEvaluator.CompoundExpressionFunction) {
+			if (size == 1) {
+				fWriter.pushDouble(Double.NaN);
+			}
+			for (int i = 1; i < size; i++) {
+				compileNode(functionNode.getNode(i));
+				if (i < size - 1) {
+					fWriter.op(ClassFileWriter.POP2, -2);
+				}
+			}
+			return true;
+		}
+		if (function instanceof DoubleEvaluator.MaxFunction) {
+			compileMinMax(functionNode, "max", ClassFileWriter.DCMPL, ClassFileWriter.IFLE);
+			return true;
+		}
+		if (function instanceof DoubleEvaluator.MinFunction) {
+			compileMinMax(functionNode, "min", ClassFileWriter.DCMPG, ClassFileWriter.IFGE);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * <code>Max</code> and <code>Min</code> replace the current result only if
+	 * the new value is greater (or less) than the result, so <code>NaN</code>
+	 * arguments after the first argument are ignored.
+	 * 
+	 * @param functionNode
+	 * @param method
+	 *            <code>max</code> or <code>min</code>
+	 * @param compareOpcode
+	 *            <code>DCMPL</code> for <code>max</code> and
+	 *            <code>DCMPG</code> for <code>min</code>, so that a
+	 *            <code>NaN</code> comparison also skips the update
+	 * @param skipOpcode
+	 *            the jump instruction which skips the update of the result
+	 */
+	private void compileMinMax(FunctionNode functionNode, String method, int compareOpcode, int skipOpcode) {
+		int size = functionNode.size();
+		if (size == 1) {
+			fWriter.pushDouble(Double.NaN);
+			return;
+		}
+		int result = newLocal();
+		int temp = newLocal();
+		compileNode(functionNode.getNode(1));
+		storeLocal(result);
+		for (int i = 2; i < size; i++) {
+			loadLocal(result);
+			compileNode(functionNode.getNode(i));
+			invokeMath(method, "(DD)D", -2);
+			storeLocal(temp);
+			Label skipLabel = fWriter.newLabel();
+			loadLocal(temp);
+			loadLocal(result);
+			fWriter.op(compareOpcode, -3);
+			fWriter.jump(skipOpcode, skipLabel, -1);
+			loadLocal(temp);
+			storeLocal(result);
+			fWriter.mark(skipLabel);
+		}
+		loadLocal(result);
+		freeLocals(result);
+	}
+
+	/**
+	 * Emit the code, which pushes the boolean value of the <code>node</code> as
+	 * <code>int</code> (<code>0</code> or <code>1</code>) on the operand stack.
+	 * 
+	 * @param node
+	 */
+	private void compileNodeLogical(ASTNode node) {
+		if (node instanceof FunctionNode) {
+			compileFunctionLogical((FunctionNode) node);
+			return;
+		}
+		if (node instanceof SymbolNode) {
+			Boolean boole = fEngine.getSymbolBoolean(node.toString());
+			if (boole != null && !fEngine.isVariable(node.toString())) {
+				fWriter.pushInt(boole.booleanValue() ? 1 : 0);
+				return;
+			}
+		}
+		fallbackLogical(node);
+	}
+
+	private void compileFunctionLogical(FunctionNode functionNode) {
+		if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode) {
+			String symbol = functionNode.getNode(0).toString();
+			String name = intrinsicName(symbol);
+			if (DoubleEvaluator.isBuiltinBooleanFunction(fEngine.getFunctionBoolean(symbol), name)) {
+				if (functionNode.size() == 2) {
+					if (name.equals("Not")) {
+						compileNodeLogical(functionNode.getNode(1));
+						fWriter.pushInt(1);
+						fWriter.op(ClassFileWriter.IXOR, -1);
+						return;
+					}
+				} else if (functionNode.size() >= 3 && (name.equals("And") || name.equals("Or"))) {
+					// jump to the short circuit result at the first argument,
+					// which decides the result
+					boolean shortCircuit = name.equals("Or");
+					Label shortCircuitLabel = fWriter.newLabel();
+					Label endLabel = fWriter.newLabel();
+					int stack = fWriter.getStack();
+					for (int i = 1; i < functionNode.size() - 1; i++) {
+						compileNodeLogical(functionNode.getNode(i));
+						fWriter.jump(shortCircuit ? ClassFileWriter.IFNE : ClassFileWriter.IFEQ, shortCircuitLabel, -1);
+					}
+					compileNodeLogical(functionNode.getNode(functionNode.size() - 1));
+					fWriter.jump(ClassFileWriter.GOTO, endLabel, 0);
+					fWriter.mark(shortCircuitLabel);
+					fWriter.setStack(stack);
+					fWriter.pushInt(shortCircuit ? 1 : 0);
+					fWriter.mark(endLabel);
+					return;
+				} else if (functionNode.size() == 3) {
+					if (name.equals("Equal") || name.equals("Unequal")) {
+						// Math.abs(a - b) < EPSILON
+						compileNode(functionNode.getNode(1));
+						compileNode(functionNode.getNode(2));
+						fWriter.op(ClassFileWriter.DSUB, -2);
+						invokeMath("abs", "(D)D", 0);
+						fWriter.op2(ClassFileWriter.GETSTATIC, fWriter.fieldRef(EVALUATOR, "EPSILON", "D"), 2);
+						compileCompare(ClassFileWriter.DCMPG,
+								name.equals("Equal") ? ClassFileWriter.IFGE : ClassFileWriter.IFLT);
+						return;
+					}
+					int compareOpcode = -1;
+					int falseOpcode = -1;
+					if (name.equals("Less")) {
+						compareOpcode = ClassFileWriter.DCMPG;
+						falseOpcode = ClassFileWriter.IFGE;
+					} else if (name.equals("LessEqual")) {
+						compareOpcode = ClassFileWriter.DCMPG;
+						falseOpcode = ClassFileWriter.IFGT;
+					} else if (name.equals("Greater")) {
+						compareOpcode = ClassFileWriter.DCMPL;
+						falseOpcode = ClassFileWriter.IFLE;
+					} else if (name.equals("GreaterEqual")) {
+						compareOpcode = ClassFileWriter.DCMPL;
+						falseOpcode = ClassFileWriter.IFLT;
+					}
+					if (compareOpcode >= 0) {
+						compileNode(functionNode.getNode(1));
+						compileNode(functionNode.getNode(2));
+						compileCompare(compareOpcode, falseOpcode);
+						return;
+					}
+				}
+			}
+		}
+		fallbackLogical(functionNode);
+	}
+
+	/**
+	 * Compare the two <code>double</code> values on top of the operand stack and
+	 * push <code>0</code> or <code>1</code>.
+	 * 
+	 * @param compareOpcode
+	 *            <code>DCMPL</code> or <code>DCMPG</code>, which determines the
+	 *            result for <code>NaN</code> values
+	 * @param falseOpcode
+	 *            the jump instruction for a <code>false</code> result
+	 */
+	private void compileCompare(int compareOpcode, int falseOpcode) {
+		Label falseLabel = fWriter.newLabel();
+		Label endLabel = fWriter.newLabel();
+		fWriter.op(compareOpcode, -3);
+		fWriter.jump(falseOpcode, falseLabel, -1);
+		int stack = fWriter.getStack();
+		fWriter.pushInt(1);
+		fWriter.jump(ClassFileWriter.GOTO, endLabel, 0);
+		fWriter.mark(falseLabel);
+		fWriter.setStack(stack);
+		fWriter.pushInt(0);
+		fWriter.mark(endLabel);
+	}
+}
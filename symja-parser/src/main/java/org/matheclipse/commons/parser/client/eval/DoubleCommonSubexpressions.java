@@ -0,0 +1,335 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FunctionNode;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
+import org.matheclipse.commons.parser.client.eval.api.FunctionRegistry;
+import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean1Function;
+import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean2Function;
+
+/**
+ * Common subexpression elimination for <code>double</code> expressions.
+ * 
+ * The expression tree is hash-consed into a DAG, in which all equal
+ * subexpressions are the same node. Every subexpression, which occurs more
+ * than once and is evaluated unconditionally (i.e. not only in a branch of
+ * <code>If</code>), is assigned to a temporary variable before the expression
+ * is evaluated:
+ * 
+ * <pre>
+ * Cos[x]^2 + Sin[x]*Cos[x]
+ * </pre>
+ * 
+ * becomes
+ * 
+ * <pre>
+ * CompoundExpression[Set[#cse1, Cos[x]], #cse1^2 + Sin[x]*#cse1]
+ * </pre>
+ * 
+ * The names of the temporary variables cannot be parsed as symbols, so they
+ * don't collide with the variables of the expression. Only functions without
+ * side effects are eliminated (i.e. no <code>Random</code> and no callback
+ * functions).
+ */
+final class DoubleCommonSubexpressions {
+
+	/**
+	 * The prefix of the temporary variable names.
+	 */
+	static final String TEMPORARY_PREFIX = "#cse";
+
+	/**
+	 * The hash-consing key of a node: the canonical head and arguments of a
+	 * function compared by identity or a leaf compared by its
+	 * <code>String</code> representation.
+	 */
+	private static final class Key {
+		private final Object fLeaf;
+
+		private final ASTNode[] fNodes;
+
+		private final int fHash;
+
+		Key(ASTNode leaf) {
+			fLeaf = leaf.getClass().getName() + ':' + leaf.toString();
+			fNodes = null;
+			fHash = fLeaf.hashCode();
+		}
+
+		Key(ASTNode[] nodes) {
+			fLeaf = null;
+			fNodes = nodes;
+			int hash = 1;
+			for (ASTNode node : nodes) {
+				hash = 31 * hash + System.identityHashCode(node);
+			}
+			fHash = hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			if (fNodes == null) {
+				return other.fNodes == null && fLeaf.equals(other.fLeaf);
+			}
+			if (other.fNodes == null || fNodes.length != other.fNodes.length) {
+				return false;
+			}
+			for (int i = 0; i < fNodes.length; i++) {
+				if (fNodes[i] != other.fNodes[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			return fHash;
+		}
+	}
+
+	/**
+	 * The number of unconditional and conditional evaluations of a canonical
+	 * function node.
+	 */
+	private static final class Info {
+		int fUnconditional = 0;
+
+		int fConditional = 0;
+
+		boolean fPure;
+	}
+
+	/**
+	 * Eliminate the common subexpressions of the given <code>node</code>.
+	 * 
+	 * @param node
+	 *            abstract syntax tree node, which doesn't contain
+	 *            <code>Set</code>
+	 * @param registry
+	 *            the functions of the evaluator
+	 * @return the <code>node</code> itself, if there are no common
+	 *         subexpressions or the registry overrides <code>Set</code> or
+	 *         <code>CompoundExpression</code>
+	 */
+	static ASTNode eliminate(ASTNode node, FunctionRegistry<Object, Object, Double> registry) {
+		if (!DoubleEvaluator.isBuiltinFunction(registry.getFunction("Set"), "Set") || !DoubleEvaluator
+				.isBuiltinFunction(registry.getFunction("CompoundExpression"), "CompoundExpression")) {
+			return node;
+		}
+		DoubleCommonSubexpressions cse = new DoubleCommonSubexpressions(registry);
+		ASTNode dag = cse.canonical(node);
+		cse.visit(dag, false);
+		for (ASTNode functionNode : cse.fPostOrder) {
+			Info info = cse.fInfos.get(functionNode);
+			if (info.fPure && info.fUnconditional > 0 && info.fUnconditional + info.fConditional > 1) {
+				cse.fNames.put(functionNode, new SymbolNode(TEMPORARY_PREFIX + (cse.fTemporaries.size() + 1)));
+				cse.fTemporaries.add(functionNode);
+			}
+		}
+		if (cse.fTemporaries.isEmpty()) {
+			return node;
+		}
+		FunctionNode result = new FunctionNode(new SymbolNode("CompoundExpression"));
+		for (ASTNode temporary : cse.fTemporaries) {
+			SymbolNode symbol = cse.fNames.get(temporary);
+			result.add(new FunctionNode(new SymbolNode("Set"), symbol, cse.rewriteArguments(temporary)));
+		}
+		result.add(cse.rewrite(dag));
+		return result;
+	}
+
+	private final Map<Key, ASTNode> fTable = new HashMap<Key, ASTNode>();
+
+	private final Map<ASTNode, Info> fInfos = new IdentityHashMap<ASTNode, Info>();
+
+	/**
+	 * The canonical function nodes in the order in which their first
+	 * evaluation is finished.
+	 */
+	private final List<ASTNode> fPostOrder = new ArrayList<ASTNode>();
+
+	/**
+	 * The common subexpressions in the order of their evaluation.
+	 */
+	private final List<ASTNode> fTemporaries = new ArrayList<ASTNode>();
+
+	private final Map<ASTNode, SymbolNode> fNames = new IdentityHashMap<ASTNode, SymbolNode>();
+
+	private final FunctionRegistry<Object, Object, Double> fRegistry;
+
+	private DoubleCommonSubexpressions(FunctionRegistry<Object, Object, Double> registry) {
+		fRegistry = registry;
+	}
+
+	/**
+	 * Returns the canonical node, which represents all nodes equal to the given
+	 * <code>node</code>.
+	 */
+	private ASTNode canonical(ASTNode node) {
+		Key key;
+		if (node instanceof FunctionNode) {
+			FunctionNode functionNode = (FunctionNode) node;
+			ASTNode[] nodes = new ASTNode[functionNode.size()];
+			for (int i = 0; i < nodes.length; i++) {
+				nodes[i] = canonical(functionNode.getNode(i));
+			}
+			key = new Key(nodes);
+			ASTNode result = fTable.get(key);
+			if (result == null) {
+				FunctionNode canonical = new FunctionNode(nodes[0]);
+				canonical.addAll(Arrays.asList(nodes).subList(1, nodes.length));
+				result = canonical;
+				fTable.put(key, result);
+			}
+			return result;
+		}
+		key = new Key(node);
+		ASTNode result = fTable.get(key);
+		if (result == null) {
+			result = node;
+			fTable.put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Count the evaluations of the canonical <code>node</code>. The arguments
+	 * are only visited for the first evaluation, because a common subexpression
+	 * evaluates its arguments only once.
+	 * 
+	 * @param node
+	 *            a canonical node
+	 * @param conditional
+	 *            <code>true</code> if the node is only evaluated in a branch
+	 *            of <code>If</code> or a short circuit argument
+	 * @return <code>true</code> if the node has no side effects
+	 */
+	private boolean visit(ASTNode node, boolean conditional) {
+		if (!(node instanceof FunctionNode)) {
+			return true;
+		}
+		Info info = fInfos.get(node);
+		boolean visited = info != null;
+		if (!visited) {
+			info = new Info();
+			fInfos.put(node, info);
+		}
+		if (conditional) {
+			info.fConditional++;
+		} else {
+			info.fUnconditional++;
+		}
+		if (!visited) {
+			info.fPure = visitArguments((FunctionNode) node, conditional);
+			fPostOrder.add(node);
+		}
+		return info.fPure;
+	}
+
+	private boolean visitArguments(FunctionNode functionNode, boolean conditional) {
+		if (!(functionNode.getNode(0) instanceof SymbolNode)) {
+			return false;
+		}
+		String symbol = functionNode.getNode(0).toString();
+		boolean pure = true;
+		if ("If".equalsIgnoreCase(symbol)) {
+			pure &= visitLogical(functionNode.getNode(1), conditional);
+			for (int i = 2; i < functionNode.size(); i++) {
+				pure &= visit(functionNode.getNode(i), true);
+			}
+			return pure;
+		}
+		Object function = fRegistry.getFunction(symbol);
+		if (function == null || function instanceof DoubleSupplier
+				|| function instanceof DoubleEvaluator.SetFunction) {
+			// callback functions and random numbers aren't eliminated
+			pure = false;
+		}
+		for (int i = 1; i < functionNode.size(); i++) {
+			pure &= visit(functionNode.getNode(i), conditional);
+		}
+		return pure;
+	}
+
+	/**
+	 * Count the evaluations of the <code>double</code> arguments of a
+	 * condition. The conditions themselves aren't eliminated.
+	 */
+	private boolean visitLogical(ASTNode node, boolean conditional) {
+		if (!(node instanceof FunctionNode)) {
+			return true;
+		}
+		FunctionNode functionNode = (FunctionNode) node;
+		if (!(functionNode.getNode(0) instanceof SymbolNode)) {
+			return false;
+		}
+		Object function = fRegistry.getBooleanFunction(functionNode.getNode(0).toString());
+		boolean pure = true;
+		if (function instanceof IBooleanBoolean1Function || function instanceof IBooleanBoolean2Function) {
+			for (int i = 1; i < functionNode.size(); i++) {
+				// the arguments after the first one may be short circuited
+				pure &= visitLogical(functionNode.getNode(i), conditional || i > 1);
+			}
+			return pure;
+		}
+		if (function == null) {
+			pure = false;
+		}
+		for (int i = 1; i < functionNode.size(); i++) {
+			pure &= visit(functionNode.getNode(i), conditional);
+		}
+		return pure;
+	}
+
+	/**
+	 * Replace the common subexpressions in the canonical <code>node</code>
+	 * with their temporary variables.
+	 */
+	private ASTNode rewrite(ASTNode node) {
+		SymbolNode temporary = fNames.get(node);
+		if (temporary != null) {
+			return temporary;
+		}
+		if (node instanceof FunctionNode) {
+			return rewriteArguments(node);
+		}
+		return node;
+	}
+
+	private FunctionNode rewriteArguments(ASTNode node) {
+		FunctionNode functionNode = (FunctionNode) node;
+		FunctionNode result = new FunctionNode(functionNode.getNode(0));
+		for (int i = 1; i < functionNode.size(); i++) {
+			result.add(rewrite(functionNode.getNode(i)));
+		}
+		return result;
+	}
+}
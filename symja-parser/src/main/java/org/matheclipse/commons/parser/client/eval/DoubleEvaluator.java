@@ -15,10 +15,17 @@
  */
 package org.matheclipse.commons.parser.client.eval;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.DoubleBinaryOperator;
 import java.util.function.DoubleSupplier;
 import java.util.function.DoubleUnaryOperator;
@@ -29,8 +36,13 @@ import org.matheclipse.commons.parser.client.ast.ASTNode;
 import org.matheclipse.commons.parser.client.ast.FunctionNode;
 import org.matheclipse.commons.parser.client.ast.NumberNode;
 import org.matheclipse.commons.parser.client.ast.SymbolNode;
+import org.matheclipse.commons.parser.client.eval.api.FunctionRegistry;
+import org.matheclipse.commons.parser.client.eval.api.HornerForm;
 import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean1Function;
 import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean2Function;
+import org.matheclipse.commons.parser.client.eval.api.IBooleanLazy2Function;
+import org.matheclipse.commons.parser.client.eval.api.RegistryHashTables;
+import org.matheclipse.commons.parser.client.eval.api.TieredCompiler;
 import org.matheclipse.commons.parser.client.math.ArithmeticMathException;
 import org.matheclipse.commons.parser.client.operator.ASTNodeFactory;
 
@@ -42,13 +54,16 @@ public class DoubleEvaluator {
 
 	public static double EPSILON = 1.0e-15;
 
-	private static Map<String, Double> SYMBOL_DOUBLE_MAP;
-
-	private static Map<String, Boolean> SYMBOL_BOOLEAN_MAP;
-
-	private static Map<String, Object> FUNCTION_DOUBLE_MAP;
+	/**
+	 * The number of rows of the memory mapped windows in
+	 * {@link #evaluateBatch(ASTNode, String[], Path[], Path)}.
+	 */
+	public static final int BATCH_WINDOW_ROWS = 1 << 24;
 
-	private static Map<String, Object> FUNCTION_BOOLEAN_MAP;
+	/**
+	 * The built-in functions and constants.
+	 */
+	private static final FunctionRegistry<Object, Object, Double> DEFAULT_REGISTRY;
 
 	private IDoubleCallbackFunction fCallbackFunction = null;
 
@@ -69,6 +84,7 @@ public class DoubleEvaluator {
 	 */
 	public void setCallbackFunction(IDoubleCallbackFunction callbackFunction) {
 		fCallbackFunction = callbackFunction;
+		fTieredCompiler.invalidate();
 	}
 
 	static class ArcTanFunction implements DoubleUnaryOperator, DoubleBinaryOperator {
@@ -123,7 +139,7 @@ public class DoubleEvaluator {
 			double result = engine.evaluateNode(function.getNode(2));
 			IDoubleValue dv = engine.getVariable(variableName);
 			if (dv == null) {
-				dv = new DoubleVariable(result);
+				dv = new OwnedDoubleVariable(result);
 			} else {
 				dv.setValue(result);
 			}
@@ -132,6 +148,17 @@ public class DoubleEvaluator {
 		}
 	}
 
+	/**
+	 * A variable, which was created by the evaluator itself (and not by the
+	 * caller), so <code>defineVariable(String, double)</code> may update it in
+	 * place.
+	 */
+	static final class OwnedDoubleVariable extends DoubleVariable {
+		OwnedDoubleVariable(double value) {
+			super(value);
+		}
+	}
+
 	static class MaxFunction implements IDoubleFunction, DoubleBinaryOperator {
 		@Override
 		public double applyAsDouble(double arg1, double arg2) {
@@ -213,91 +240,101 @@ public class DoubleEvaluator {
 	}
 
 	static {
-		SYMBOL_DOUBLE_MAP = new ConcurrentHashMap<String, Double>();
-		SYMBOL_DOUBLE_MAP.put("Catalan", new Double(0.91596559417721901505460351493238411077414937428167));
-		SYMBOL_DOUBLE_MAP.put("Degree", new Double(Math.PI / 180));
-		SYMBOL_DOUBLE_MAP.put("E", new Double(Math.E));
-		SYMBOL_DOUBLE_MAP.put("Pi", new Double(Math.PI));
-		SYMBOL_DOUBLE_MAP.put("EulerGamma", new Double(0.57721566490153286060651209008240243104215933593992));
-		SYMBOL_DOUBLE_MAP.put("Glaisher", new Double(1.2824271291006226368753425688697917277676889273250));
-		SYMBOL_DOUBLE_MAP.put("GoldenRatio", new Double(1.6180339887498948482045868343656381177203091798058));
-		SYMBOL_DOUBLE_MAP.put("Khinchin", new Double(2.6854520010653064453097148354817956938203822939945));
-
-		SYMBOL_BOOLEAN_MAP = new ConcurrentHashMap<String, Boolean>();
-		SYMBOL_BOOLEAN_MAP.put("False", Boolean.FALSE);
-		SYMBOL_BOOLEAN_MAP.put("True", Boolean.TRUE);
-
-		FUNCTION_BOOLEAN_MAP = new ConcurrentHashMap<String, Object>();
-
-		FUNCTION_BOOLEAN_MAP.put("And", new IBooleanBoolean2Function() {
+		Map<String, Double> symbols = new HashMap<String, Double>();
+		symbols.put("Catalan", new Double(0.91596559417721901505460351493238411077414937428167));
+		symbols.put("Degree", new Double(Math.PI / 180));
+		symbols.put("E", new Double(Math.E));
+		symbols.put("Pi", new Double(Math.PI));
+		symbols.put("EulerGamma", new Double(0.57721566490153286060651209008240243104215933593992));
+		symbols.put("Glaisher", new Double(1.2824271291006226368753425688697917277676889273250));
+		symbols.put("GoldenRatio", new Double(1.6180339887498948482045868343656381177203091798058));
+		symbols.put("Khinchin", new Double(2.6854520010653064453097148354817956938203822939945));
+
+		Map<String, Boolean> booleanSymbols = new HashMap<String, Boolean>();
+		booleanSymbols.put("False", Boolean.FALSE);
+		booleanSymbols.put("True", Boolean.TRUE);
+
+		Map<String, Object> booleanFunctions = new HashMap<String, Object>();
+
+		booleanFunctions.put("And", new IBooleanLazy2Function() {
 			@Override
 			public boolean evaluate(boolean arg1, boolean arg2) {
 				return arg1 && arg2;
 			}
+
+			@Override
+			public boolean getShortCircuitValue() {
+				return false;
+			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Not", new IBooleanBoolean1Function() {
+		booleanFunctions.put("Not", new IBooleanBoolean1Function() {
 			@Override
 			public boolean evaluate(boolean arg1) {
 				return !arg1;
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Or", new IBooleanBoolean2Function() {
+		booleanFunctions.put("Or", new IBooleanLazy2Function() {
 			@Override
 			public boolean evaluate(boolean arg1, boolean arg2) {
 				return arg1 || arg2;
 			}
+
+			@Override
+			public boolean getShortCircuitValue() {
+				return true;
+			}
 		});
 
-		FUNCTION_BOOLEAN_MAP.put("Equal", new DoubleBinaryPredicate() {
+		booleanFunctions.put("Equal", new DoubleBinaryPredicate() {
 			@Override
 			public boolean test(double arg1, double arg2) {
 				return Math.abs(arg1 - arg2) < EPSILON;
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Greater", new DoubleBinaryPredicate() {
+		booleanFunctions.put("Greater", new DoubleBinaryPredicate() {
 			@Override
 			public boolean test(double arg1, double arg2) {
 				return arg1 > arg2;
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("GreaterEqual", new DoubleBinaryPredicate() {
+		booleanFunctions.put("GreaterEqual", new DoubleBinaryPredicate() {
 			@Override
 			public boolean test(double arg1, double arg2) {
 				return arg1 >= arg2;
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Less", new DoubleBinaryPredicate() {
+		booleanFunctions.put("Less", new DoubleBinaryPredicate() {
 			@Override
 			public boolean test(double arg1, double arg2) {
 				return arg1 < arg2;
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("LessEqual", new DoubleBinaryPredicate() {
+		booleanFunctions.put("LessEqual", new DoubleBinaryPredicate() {
 			@Override
 			public boolean test(double arg1, double arg2) {
 				return arg1 <= arg2;
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Unequal", new DoubleBinaryPredicate() {
+		booleanFunctions.put("Unequal", new DoubleBinaryPredicate() {
 			@Override
 			public boolean test(double arg1, double arg2) {
 				return !(Math.abs(arg1 - arg2) < EPSILON);
 			}
 		});
 
-		FUNCTION_DOUBLE_MAP = new ConcurrentHashMap<String, Object>();
-		FUNCTION_DOUBLE_MAP.put("ArcTan", new ArcTanFunction());
-		FUNCTION_DOUBLE_MAP.put("CompoundExpression", new CompoundExpressionFunction());
-		FUNCTION_DOUBLE_MAP.put("Set", new SetFunction());
-		FUNCTION_DOUBLE_MAP.put("Log", new LogFunction());
-		FUNCTION_DOUBLE_MAP.put("Max", new MaxFunction());
-		FUNCTION_DOUBLE_MAP.put("Min", new MinFunction());
-		FUNCTION_DOUBLE_MAP.put("Plus", new PlusFunction());
-		FUNCTION_DOUBLE_MAP.put("Times", new TimesFunction());
+		Map<String, Object> functions = new HashMap<String, Object>();
+		functions.put("ArcTan", new ArcTanFunction());
+		functions.put("CompoundExpression", new CompoundExpressionFunction());
+		functions.put("Set", new SetFunction());
+		functions.put("Log", new LogFunction());
+		functions.put("Max", new MaxFunction());
+		functions.put("Min", new MinFunction());
+		functions.put("Plus", new PlusFunction());
+		functions.put("Times", new TimesFunction());
 		//
 		// Functions with 0 argument
 		//
-		FUNCTION_DOUBLE_MAP.put("Random", new DoubleSupplier() {
+		functions.put("Random", new DoubleSupplier() {
 			@Override
 			public double getAsDouble() {
 				return Math.random();
@@ -306,26 +343,37 @@ public class DoubleEvaluator {
 		//
 		// Functions with 1 argument
 		//
-		FUNCTION_DOUBLE_MAP.put("Abs", (DoubleUnaryOperator) arg -> Math.abs(arg));
-		FUNCTION_DOUBLE_MAP.put("ArcCos", (DoubleUnaryOperator) arg -> Math.acos(arg));
-		FUNCTION_DOUBLE_MAP.put("ArcSin", (DoubleUnaryOperator) arg -> Math.asin(arg));
-		FUNCTION_DOUBLE_MAP.put("Ceiling", (DoubleUnaryOperator) arg -> Math.ceil(arg));
-		FUNCTION_DOUBLE_MAP.put("Cos", (DoubleUnaryOperator) arg -> Math.cos(arg));
-		FUNCTION_DOUBLE_MAP.put("Cosh", (DoubleUnaryOperator) arg -> Math.cosh(arg));
-		FUNCTION_DOUBLE_MAP.put("Exp", (DoubleUnaryOperator) arg -> Math.exp(arg));
-		FUNCTION_DOUBLE_MAP.put("Floor", (DoubleUnaryOperator) arg -> Math.floor(arg));
-		FUNCTION_DOUBLE_MAP.put("Round", (DoubleUnaryOperator) arg -> Math.round(arg));
-		FUNCTION_DOUBLE_MAP.put("Sign", (DoubleUnaryOperator) arg -> Math.signum(arg));
-		FUNCTION_DOUBLE_MAP.put("Sin", (DoubleUnaryOperator) arg -> Math.sin(arg));
-		FUNCTION_DOUBLE_MAP.put("Sinh", (DoubleUnaryOperator) arg -> Math.sinh(arg));
-		FUNCTION_DOUBLE_MAP.put("Sqrt", (DoubleUnaryOperator) arg -> Math.sqrt(arg));
-		FUNCTION_DOUBLE_MAP.put("Tan", (DoubleUnaryOperator) arg -> Math.tan(arg));
-		FUNCTION_DOUBLE_MAP.put("Tanh", (DoubleUnaryOperator) arg -> Math.tanh(arg));
+		functions.put("Abs", (DoubleUnaryOperator) arg -> Math.abs(arg));
+		functions.put("ArcCos", (DoubleUnaryOperator) arg -> Math.acos(arg));
+		functions.put("ArcSin", (DoubleUnaryOperator) arg -> Math.asin(arg));
+		functions.put("Ceiling", (DoubleUnaryOperator) arg -> Math.ceil(arg));
+		functions.put("Cos", (DoubleUnaryOperator) arg -> Math.cos(arg));
+		functions.put("Cosh", (DoubleUnaryOperator) arg -> Math.cosh(arg));
+		functions.put("Exp", (DoubleUnaryOperator) arg -> Math.exp(arg));
+		functions.put("Floor", (DoubleUnaryOperator) arg -> Math.floor(arg));
+		functions.put("Minus", (DoubleUnaryOperator) arg -> -arg);
+		functions.put("Round", (DoubleUnaryOperator) arg -> Math.round(arg));
+		functions.put("Sign", (DoubleUnaryOperator) arg -> Math.signum(arg));
+		functions.put("Sin", (DoubleUnaryOperator) arg -> Math.sin(arg));
+		functions.put("Sinh", (DoubleUnaryOperator) arg -> Math.sinh(arg));
+		functions.put("Sqrt", (DoubleUnaryOperator) arg -> Math.sqrt(arg));
+		functions.put("Tan", (DoubleUnaryOperator) arg -> Math.tan(arg));
+		functions.put("Tanh", (DoubleUnaryOperator) arg -> Math.tanh(arg));
 
 		//
 		// Functions with 2 arguments
 		//
-		FUNCTION_DOUBLE_MAP.put("Power", new DoubleBinaryOperator() {
+		functions.put("Divide", new DoubleBinaryOperator() {
+			@Override
+			public double applyAsDouble(double arg1, double arg2) {
+				if (arg2 == 0.0) {
+					// like Times[arg1, Power[0.0, -1]]
+					return arg1 * arg2;
+				}
+				return arg1 / arg2;
+			}
+		});
+		functions.put("Power", new DoubleBinaryOperator() {
 			@Override
 			public double applyAsDouble(double arg1, double arg2) {
 				if (arg1 == 0.0 && arg2 != 0.0) {
@@ -334,6 +382,9 @@ public class DoubleEvaluator {
 				return Math.pow(arg1, arg2);
 			}
 		});
+
+		DEFAULT_REGISTRY = new FunctionRegistry<Object, Object, Double>(functions, booleanFunctions, symbols,
+				booleanSymbols, RegistryHashTables.DOUBLE);
 	}
 
 	private Map<String, IDoubleValue> fVariableMap;
@@ -346,6 +397,10 @@ public class DoubleEvaluator {
 
 	private final ASTNodeFactory fASTFactory;
 
+	private final FunctionRegistry<Object, Object, Double> fRegistry;
+
+	private final TieredCompiler<CompiledDoubleExpression> fTieredCompiler;
+
 	public DoubleEvaluator() {
 		this(null, false);
 	}
@@ -355,28 +410,27 @@ public class DoubleEvaluator {
 	}
 
 	public DoubleEvaluator(ASTNode node, boolean relaxedSyntax) {
+		this(node, relaxedSyntax, DEFAULT_REGISTRY);
+	}
+
+	/**
+	 * Create an evaluator, which uses the functions and constants of the given
+	 * <code>registry</code> instead of the built-in ones. In relaxed mode the
+	 * lower case names of the registry are also defined.
+	 * 
+	 * @param node
+	 * @param relaxedSyntax
+	 * @param registry
+	 *            usually derived from {@link #getDefaultRegistry()}
+	 */
+	public DoubleEvaluator(ASTNode node, boolean relaxedSyntax, FunctionRegistry<Object, Object, Double> registry) {
 		fASTFactory = new ASTNodeFactory(relaxedSyntax);
 		fVariableMap = new HashMap<String, IDoubleValue>();
 		fBooleanVariables = new HashMap<String, BooleanVariable>();
 		fNode = node;
 		fRelaxedSyntax = relaxedSyntax;
-		if (fRelaxedSyntax) {
-			if (SYMBOL_DOUBLE_MAP.get("pi") == null) {
-				// init tables for relaxed mode
-				for (String key : SYMBOL_DOUBLE_MAP.keySet()) {
-					SYMBOL_DOUBLE_MAP.put(key.toLowerCase(), SYMBOL_DOUBLE_MAP.get(key));
-				}
-				for (String key : SYMBOL_BOOLEAN_MAP.keySet()) {
-					SYMBOL_BOOLEAN_MAP.put(key.toLowerCase(), SYMBOL_BOOLEAN_MAP.get(key));
-				}
-				for (String key : FUNCTION_DOUBLE_MAP.keySet()) {
-					FUNCTION_DOUBLE_MAP.put(key.toLowerCase(), FUNCTION_DOUBLE_MAP.get(key));
-				}
-				for (String key : FUNCTION_BOOLEAN_MAP.keySet()) {
-					FUNCTION_BOOLEAN_MAP.put(key.toLowerCase(), FUNCTION_BOOLEAN_MAP.get(key));
-				}
-			}
-		}
+		fRegistry = relaxedSyntax ? registry.relaxed() : registry;
+		fTieredCompiler = new TieredCompiler<CompiledDoubleExpression>(this::compileTier);
 	}
 
 	/**
@@ -388,17 +442,52 @@ public class DoubleEvaluator {
 	 * @throws SyntaxError
 	 */
 	public ASTNode parse(String expression) {
+		fNode = bindFunctions(parseOptimized(expression));
+		return fNode;
+	}
+
+	/**
+	 * Parse the given <code>expression String</code> with the syntax of this
+	 * evaluator and optimize the resulting ASTNode (constant folding and
+	 * strength reduction).
+	 * 
+	 * @param expression
+	 * @return
+	 * @throws SyntaxError
+	 */
+	private ASTNode parseOptimized(String expression) {
+		return parseOptimized(expression, false);
+	}
+
+	/**
+	 * Parse the given <code>expression String</code> with the syntax of this
+	 * evaluator and optimize the resulting ASTNode (constant folding and
+	 * strength reduction).
+	 * 
+	 * @param expression
+	 * @param hornerForm
+	 *            if <code>true</code> the polynomial sums are rewritten into
+	 *            Horner form. Only the compiled forms use it, because the
+	 *            rewrite changes the rounding of the results.
+	 * @return
+	 * @throws SyntaxError
+	 */
+	private ASTNode parseOptimized(String expression, boolean hornerForm) {
 		Parser p;
 		if (fRelaxedSyntax) {
 			p = new Parser(ASTNodeFactory.RELAXED_STYLE_FACTORY, true);
 		} else {
 			p = new Parser(ASTNodeFactory.MMA_STYLE_FACTORY, false);
 		}
-		fNode = p.parse(expression);
-		if (fNode instanceof FunctionNode) {
-			fNode = optimizeFunction((FunctionNode) fNode);
+		ASTNode node = p.parse(expression);
+		if (node instanceof FunctionNode) {
+			FunctionNode functionNode = (FunctionNode) node;
+			if (hornerForm && isBuiltin("Plus", "Times", "Power")) {
+				functionNode = HornerForm.transform(functionNode, fRelaxedSyntax);
+			}
+			return optimizeFunction(functionNode);
 		}
-		return fNode;
+		return node;
 	}
 
 	/**
@@ -423,16 +512,7 @@ public class DoubleEvaluator {
 	 * @throws SyntaxError
 	 */
 	public double evaluate(String expression) {
-		Parser p;
-		if (fRelaxedSyntax) {
-			p = new Parser(ASTNodeFactory.RELAXED_STYLE_FACTORY, true);
-		} else {
-			p = new Parser(ASTNodeFactory.MMA_STYLE_FACTORY, false);
-		}
-		fNode = p.parse(expression);
-		if (fNode instanceof FunctionNode) {
-			fNode = optimizeFunction((FunctionNode) fNode);
-		}
+		fNode = bindFunctions(parseOptimized(expression));
 		return evaluateNode(fNode);
 	}
 
@@ -440,6 +520,9 @@ public class DoubleEvaluator {
 	 * Reevaluate the <code>expression</code> (possibly after a new Variable
 	 * assignment)
 	 * 
+	 * After <code>getTieredCompiler().getThreshold()</code> reevaluations the
+	 * expression is transparently promoted to its compiled form.
+	 * 
 	 * @param Expression
 	 * @return the resulting double value
 	 * @throws SyntaxError
@@ -448,6 +531,10 @@ public class DoubleEvaluator {
 		if (fNode == null) {
 			throw new SyntaxError(0, 0, 0, " ", "No parser input defined", 1);
 		}
+		CompiledDoubleExpression compiled = fTieredCompiler.get(fNode);
+		if (compiled != null) {
+			return compiled.evaluate();
+		}
 		return evaluateNode(fNode);
 	}
 
@@ -467,6 +554,9 @@ public class DoubleEvaluator {
 		if (node instanceof DoubleNode) {
 			return ((DoubleNode) node).doubleValue();
 		}
+		if (node instanceof DoubleFunctionNode && ((DoubleFunctionNode) node).isBoundTo(this)) {
+			return ((DoubleFunctionNode) node).evaluate(this);
+		}
 		if (node instanceof FunctionNode) {
 			return evaluateFunction((FunctionNode) node);
 		}
@@ -475,7 +565,7 @@ public class DoubleEvaluator {
 			if (v != null) {
 				return v.getValue();
 			}
-			Double dbl = SYMBOL_DOUBLE_MAP.get(node.toString());
+			Double dbl = fRegistry.getSymbol(node.toString());
 			if (dbl != null) {
 				return dbl.doubleValue();
 			}
@@ -512,7 +602,7 @@ public class DoubleEvaluator {
 					}
 				}
 			} else {
-				Object obj = FUNCTION_DOUBLE_MAP.get(symbol);
+				Object obj = fRegistry.getFunction(symbol);
 				if (obj instanceof IDoubleFunction) {
 					return ((IDoubleFunction) obj).applyAsDouble(this, functionNode);
 				}
@@ -544,202 +634,1187 @@ public class DoubleEvaluator {
 	}
 
 	/**
-	 * Check if the given symbol is a <code>SymbolNode</code> and test if the
-	 * names are equal.
+	 * Parse the given <code>expression String</code> and compile it into an
+	 * immutable <code>CompiledDoubleExpression</code>. The given
+	 * <code>variables</code> are read from the evaluation frame in the given
+	 * order.
 	 * 
-	 * @param symbol1
-	 * @param symbol2Name
-	 * @return
+	 * @param expression
+	 * @param variables
+	 *            the variable names which are assigned to the slots of the
+	 *            evaluation frame
+	 * @return the compiled expression
+	 * @throws SyntaxError
+	 * @throws ArithmeticMathException
+	 *             if the expression cannot be compiled.
 	 */
-	public boolean isSymbol(SymbolNode symbol1, String symbol2Name) {
-		if (fRelaxedSyntax) {
-			return symbol1.getString().equalsIgnoreCase(symbol2Name);
-		}
-		return symbol1.getString().equals(symbol2Name);
+	public CompiledDoubleExpression compile(String expression, String... variables) {
+		return compile(parseOptimized(expression, true), variables);
 	}
 
 	/**
-	 * Check if the given symbol is a <code>SymbolNode</code> and test if the
-	 * names are equal.
+	 * Compile an already parsed in abstract syntax tree node into an immutable
+	 * <code>CompiledDoubleExpression</code>. The given <code>variables</code>
+	 * are read from the evaluation frame in the given order.
 	 * 
-	 * @param symbol1
-	 * @param symbol2
-	 * @return
+	 * Symbols which aren't declared in <code>variables</code> are resolved at
+	 * compile time to the variables defined in this evaluator or to the
+	 * built-in constants.
+	 * 
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param variables
+	 *            the variable names which are assigned to the slots of the
+	 *            evaluation frame
+	 * @return the compiled expression
+	 * @throws ArithmeticMathException
+	 *             if the <code>node</code> cannot be compiled.
 	 */
-	public boolean isSymbol(SymbolNode symbol1, SymbolNode symbol2) {
-		if (fRelaxedSyntax) {
-			return symbol1.getString().equalsIgnoreCase(symbol2.getString());
-		}
-		return symbol1.equals(symbol2);
+	public CompiledDoubleExpression compile(final ASTNode node, String... variables) {
+		Map<String, Integer> slots = createSlots(variables);
+		IDoubleFrameFunction function = compileNode(eliminateCommonSubexpressions(node, fRegistry), slots);
+		return new CompiledDoubleExpression(function, variables.clone(), slots.size());
 	}
 
 	/**
+	 * Parse the given <code>expression String</code> and compile it into a
+	 * generated JVM class. See {@link #compileBytecode(ASTNode, String...)}
 	 * 
-	 * @param node
-	 * @param var
-	 * @return
+	 * @param expression
+	 * @param variables
+	 *            the variable names which are assigned to the slots of the
+	 *            evaluation frame
+	 * @return the compiled expression
+	 * @throws SyntaxError
+	 * @throws ArithmeticMathException
+	 *             if the expression cannot be compiled.
 	 */
-	public ASTNode derivative(final ASTNode node, String var) {
-		SymbolNode sym = fASTFactory.createSymbol(var);
-		return derivative(node, sym);
+	public CompiledDoubleExpression compileBytecode(String expression, String... variables) {
+		return compileBytecode(parseOptimized(expression, true), variables);
 	}
 
 	/**
+	 * Compile an already parsed in abstract syntax tree node into a generated
+	 * JVM class, so that the built-in functions are called directly without
+	 * any interpretation overhead. Subexpressions which cannot be translated
+	 * into bytecode (i.e. callback functions or variables defined in this
+	 * evaluator) are evaluated in their {@link #compile(ASTNode, String...)}
+	 * form.
 	 * 
-	 * TODO: add more derivation rules
+	 * If classes cannot be defined at runtime (or the expression exceeds the
+	 * limits of a JVM method) the result of
+	 * {@link #compile(ASTNode, String...)} is returned.
 	 * 
 	 * @param node
-	 * @param var
-	 * @return
+	 *            abstract syntax tree node
+	 * @param variables
+	 *            the variable names which are assigned to the slots of the
+	 *            evaluation frame
+	 * @return the compiled expression
+	 * @throws ArithmeticMathException
+	 *             if the <code>node</code> cannot be compiled.
 	 */
-	public ASTNode derivative(final ASTNode node, SymbolNode var) {
-		if (node.isFree(var)) {
-			return new DoubleNode(0.0);
-		}
-		if (node instanceof FunctionNode) {
-			FunctionNode f = (FunctionNode) node;
-			if (f.size() > 1 && f.getNode(0) instanceof SymbolNode) {
-				SymbolNode head = (SymbolNode) f.getNode(0);
-				if (f.size() == 2) {
-					ASTNode arg1Derived = derivative(f.getNode(1), var);
-					if (isSymbol(head, "Exp")) {
-						FunctionNode fun = new FunctionNode(fASTFactory.createSymbol("Exp"));
-						fun.add(f.getNode(1));
-						return getDerivativeResult(arg1Derived, fun);
-					}
-					if (isSymbol(head, "Cos")) {
-						FunctionNode fun = new FunctionNode(fASTFactory.createSymbol("Times"));
-						fun.add(new DoubleNode(-1.0));
-						fun.add(new FunctionNode(fASTFactory.createSymbol("Cos"), f.getNode(1)));
-						return getDerivativeResult(arg1Derived, fun);
-					}
-					if (isSymbol(head, "Sin")) {
-						FunctionNode fun = new FunctionNode(fASTFactory.createSymbol("Cos"));
-						fun.add(f.getNode(1));
-						return getDerivativeResult(arg1Derived, fun);
-					}
-				} else if (f.size() == 3 && isSymbol(head, "Power")) {
-					if (f.get(2).isFree(var)) {// derive x^r
-						ASTNode arg1Derived = derivative(f.getNode(1), var);
-						// (r-1)
-						FunctionNode exponent = fASTFactory.createFunction(fASTFactory.createSymbol("Plus"),
-								new DoubleNode(-1.0), f.get(2));
-						// r*x^(r-1)
-						FunctionNode fun = fASTFactory.createFunction(fASTFactory.createSymbol("Times"), f.get(2),
-								fASTFactory.createFunction(fASTFactory.createSymbol("Power"), f.get(1), exponent));
-						return getDerivativeResult(arg1Derived, fun);
-					}
-					if (f.get(1).isFree(var)) {// derive a^x
-						ASTNode arg2Derived = derivative(f.getNode(2), var);
-						// log(a) * a^x
-						FunctionNode fun = fASTFactory.createFunction(fASTFactory.createSymbol("Times"),
-								fASTFactory.createFunction(fASTFactory.createSymbol("Log"), f.get(1)), f);
-						return getDerivativeResult(arg2Derived, fun);
-					}
-				} else {
-					if (isSymbol(head, "Plus")) {
-						FunctionNode result = new FunctionNode(f.getNode(0));
-						for (int i = 1; i < f.size(); i++) {
-							ASTNode deriv = derivative(f.getNode(i), var);
-							if (!deriv.equals(new DoubleNode(0.0))) {
-								result.add(deriv);
-							}
-						}
-						return result;
-					}
-					if (isSymbol(head, "Times")) {
-						FunctionNode plusResult = new FunctionNode(fASTFactory.createSymbol("Plus"));
-						for (int i = 1; i < f.size(); i++) {
-							FunctionNode timesResult = new FunctionNode(f.getNode(0));
-							boolean valid = true;
-							for (int j = 1; j < f.size(); j++) {
-								if (j == i) {
-									ASTNode deriv = derivative(f.getNode(j), var);
-									if (deriv.equals(new DoubleNode(0.0))) {
-										valid = false;
-									} else {
-										timesResult.add(deriv);
-									}
-								} else {
-									timesResult.add(f.getNode(j));
-								}
-							}
-							if (valid) {
-								plusResult.add(timesResult);
-							}
-						}
-						return plusResult;
-					}
-				}
-			}
-			return new FunctionNode(new SymbolNode("D"), node, var);
-			// return evaluateFunction((FunctionNode) node);
-		}
-		if (node instanceof SymbolNode) {
-			if (isSymbol((SymbolNode) node, var)) {
-				return new DoubleNode(1.0);
-			}
-			IDoubleValue v = fVariableMap.get(node.toString());
-			if (v != null) {
-				return new DoubleNode(0.0);
-			}
-			Double dbl = SYMBOL_DOUBLE_MAP.get(node.toString());
-			if (dbl != null) {
-				return new DoubleNode(0.0);
-			}
-			return new DoubleNode(0.0);
-		} else if (node instanceof NumberNode) {
-			return new DoubleNode(0.0);
+	public CompiledDoubleExpression compileBytecode(final ASTNode node, String... variables) {
+		ASTNode dag = eliminateCommonSubexpressions(node, fRegistry);
+		Map<String, Integer> slots = createSlots(variables);
+		IDoubleFrameFunction function = DoubleBytecodeCompiler.compile(this, dag, slots);
+		if (function == null) {
+			slots = createSlots(variables);
+			function = compileNode(dag, slots);
 		}
-
-		throw new ArithmeticMathException("EvalDouble#evaluate(ASTNode) not possible for: " + node.toString());
+		return new CompiledDoubleExpression(function, variables.clone(), slots.size());
 	}
 
-	private ASTNode getDerivativeResult(ASTNode arg1Derived, FunctionNode fun) {
-		if (!arg1Derived.equals(new DoubleNode(1.0))) {
-			FunctionNode res = new FunctionNode(fASTFactory.createSymbol("Times"));
-			res.add(arg1Derived);
-			res.add(fun);
-			return res;
-		}
-		return fun;
+	/**
+	 * Parse the given <code>expression String</code> and compile it into a
+	 * composed method handle. See
+	 * {@link #compileMethodHandle(ASTNode, String...)}
+	 * 
+	 * @param expression
+	 * @param variables
+	 *            the variable names which are assigned to the slots of the
+	 *            evaluation frame
+	 * @return the compiled expression
+	 * @throws SyntaxError
+	 * @throws ArithmeticMathException
+	 *             if the expression cannot be compiled.
+	 */
+	public CompiledDoubleExpression compileMethodHandle(String expression, String... variables) {
+		return compileMethodHandle(parseOptimized(expression, true), variables);
 	}
 
-	public boolean evaluateNodeLogical(final ASTNode node) {
-		if (node instanceof FunctionNode) {
-			return evaluateFunctionLogical((FunctionNode) node);
-		}
-		if (node instanceof SymbolNode) {
-			BooleanVariable v = fBooleanVariables.get(node.toString());
-			if (v != null) {
-				return v.getValue();
-			}
-			Boolean boole = SYMBOL_BOOLEAN_MAP.get(node.toString());
-			if (boole != null) {
-				return boole.booleanValue();
-			}
-		}
+	/**
+	 * Compile an already parsed in abstract syntax tree node into a composed
+	 * <code>java.lang.invoke.MethodHandle</code> graph, whose leaf handles are
+	 * bound to the built-in function objects. The JIT can inline the constant
+	 * method handle chain without generating any classes at runtime, so this
+	 * mode can be used if {@link #compileBytecode(ASTNode, String...)} isn't
+	 * allowed to define classes.
+	 * 
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param variables
+	 *            the variable names which are assigned to the slots of the
+	 *            evaluation frame
+	 * @return the compiled expression
+	 * @throws ArithmeticMathException
+	 *             if the <code>node</code> cannot be compiled.
+	 */
+	public CompiledDoubleExpression compileMethodHandle(final ASTNode node, String... variables) {
+		Map<String, Integer> slots = createSlots(variables);
+		IDoubleFrameFunction function = DoubleMethodHandleCompiler.compile(this,
+				eliminateCommonSubexpressions(node, fRegistry), slots);
+		return new CompiledDoubleExpression(function, variables.clone(), slots.size());
+	}
 
-		throw new ArithmeticMathException(
-				"EvalDouble#evaluateNodeLogical(ASTNode) not possible for: " + node.toString());
+	/**
+	 * Parse the given <code>expression String</code> and compile it into a
+	 * register program. See
+	 * {@link #compileRegisterProgram(ASTNode, String...)}
+	 * 
+	 * @param expression
+	 * @param variables
+	 *            the variable names which are assigned to the slots of the
+	 *            evaluation frame
+	 * @return the compiled expression
+	 * @throws SyntaxError
+	 * @throws ArithmeticMathException
+	 *             if the expression cannot be compiled.
+	 */
+	public CompiledDoubleExpression compileRegisterProgram(String expression, String... variables) {
+		return compileRegisterProgram(parseOptimized(expression, true), variables);
 	}
 
-	public boolean evaluateFunctionLogical(final FunctionNode functionNode) {
-		if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode) {
-			String symbol = functionNode.getNode(0).toString();
+	/**
+	 * Compile an already parsed in abstract syntax tree node into a
+	 * <code>DoubleRegisterProgram</code>, a linear instruction stream which is
+	 * executed by a flat interpreter loop on a <code>double[]</code> register
+	 * file. The frame of the returned expression is the register file, so
+	 * {@link CompiledDoubleExpression#getFrameSize()} includes the temporary
+	 * registers.
+	 * 
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param variables
+	 *            the variable names which are assigned to the first registers
+	 * @return the compiled expression, whose
+	 *         {@link CompiledDoubleExpression#getFunction()} is the
+	 *         <code>DoubleRegisterProgram</code>
+	 * @throws ArithmeticMathException
+	 *             if the <code>node</code> cannot be compiled.
+	 */
+	public CompiledDoubleExpression compileRegisterProgram(final ASTNode node, String... variables) {
+		Map<String, Integer> slots = createSlots(variables);
+		DoubleRegisterProgram program = DoubleRegisterCompiler.compile(this,
+				eliminateCommonSubexpressions(node, fRegistry), slots);
+		return new CompiledDoubleExpression(program, variables.clone(), program.getRegisterCount());
+	}
+
+	/**
+	 * Parse the given <code>expression String</code> and evaluate it for all
+	 * rows of the given columns. See
+	 * {@link #evaluateBatch(ASTNode, String[], double[][], double[])}
+	 * 
+	 * @param expression
+	 * @param variables
+	 *            the variable names, which are bound to the columns
+	 * @param columns
+	 *            the variable values; <code>columns[i][row]</code> is the value
+	 *            of <code>variables[i]</code> in the given <code>row</code>
+	 * @param out
+	 *            the result values; <code>out.length</code> is the number of
+	 *            evaluated rows
+	 * @throws SyntaxError
+	 * @throws ArithmeticMathException
+	 *             if the expression cannot be evaluated.
+	 */
+	public void evaluateBatch(String expression, String[] variables, double[][] columns, double[] out) {
+		evaluateBatch(parseOptimized(expression, true), variables, columns, out);
+	}
+
+	/**
+	 * Evaluate an already parsed in abstract syntax tree node for all rows of
+	 * the given columns. The variable <code>variables[i]</code> is bound to the
+	 * column <code>columns[i]</code> and the result of row <code>row</code> is
+	 * stored in <code>out[row]</code>.
+	 * 
+	 * The expression is evaluated node by node over chunks of rows, so the tree
+	 * dispatch isn't repeated for every row. Subexpressions without a columnar
+	 * form (i.e. <code>If</code> or callback functions) are evaluated row by
+	 * row in their {@link #compile(ASTNode, String...)} form.
+	 * 
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param variables
+	 *            the variable names, which are bound to the columns
+	 * @param columns
+	 *            the variable values; <code>columns[i][row]</code> is the value
+	 *            of <code>variables[i]</code> in the given <code>row</code>
+	 * @param out
+	 *            the result values; <code>out.length</code> is the number of
+	 *            evaluated rows
+	 * @throws ArithmeticMathException
+	 *             if the <code>node</code> cannot be evaluated or a column has
+	 *             less rows than <code>out</code>.
+	 */
+	public void evaluateBatch(final ASTNode node, String[] variables, double[][] columns, double[] out) {
+		checkColumns(variables, columns, out.length);
+		Map<String, Integer> slots = createSlots(variables);
+		DoubleBatchProgram program = DoubleBatchCompiler.compile(this, node, slots);
+		program.evaluate(columns, 0, out.length, out);
+	}
+
+	/**
+	 * Evaluate an already parsed in abstract syntax tree node for the rows of
+	 * the given column buffers like
+	 * {@link #evaluateBatch(ASTNode, String[], double[][], double[])}. The
+	 * buffers can be direct or memory mapped buffers, which are read chunk by
+	 * chunk without copying them to the heap.
+	 * 
+	 * The rows are read from the positions of the <code>columns</code> and the
+	 * <code>out.remaining()</code> results are written from the position of
+	 * <code>out</code>. The positions of the buffers aren't changed.
+	 * 
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param variables
+	 *            the variable names, which are bound to the columns
+	 * @param columns
+	 *            the variable values
+	 * @param out
+	 *            the result values
+	 * @throws ArithmeticMathException
+	 *             if the <code>node</code> cannot be evaluated or a column has
+	 *             less remaining rows than <code>out</code>.
+	 */
+	public void evaluateBatch(final ASTNode node, String[] variables, DoubleBuffer[] columns, DoubleBuffer out) {
+		int rows = out.remaining();
+		checkColumnCount(variables, columns.length);
+		for (int i = 0; i < columns.length; i++) {
+			checkColumnRows(variables[i], columns[i].remaining(), rows);
+		}
+		Map<String, Integer> slots = createSlots(variables);
+		DoubleBatchProgram program = DoubleBatchCompiler.compile(this, node, slots);
+		program.evaluate(columns, out, rows);
+	}
+
+	/**
+	 * Evaluate an already parsed in abstract syntax tree node for the rows of
+	 * the given byte buffers, which contain <code>double</code> values in the
+	 * byte order of each buffer (i.e. set
+	 * <code>ByteOrder.LITTLE_ENDIAN</code> for little-endian data). See
+	 * {@link #evaluateBatch(ASTNode, String[], DoubleBuffer[], DoubleBuffer)}
+	 * 
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param variables
+	 *            the variable names, which are bound to the columns
+	 * @param columns
+	 *            the variable values
+	 * @param out
+	 *            the result values
+	 * @throws ArithmeticMathException
+	 *             if the <code>node</code> cannot be evaluated or a column has
+	 *             less remaining rows than <code>out</code>.
+	 */
+	public void evaluateBatch(final ASTNode node, String[] variables, ByteBuffer[] columns, ByteBuffer out) {
+		DoubleBuffer[] doubleColumns = new DoubleBuffer[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			doubleColumns[i] = columns[i].asDoubleBuffer();
+		}
+		evaluateBatch(node, variables, doubleColumns, out.asDoubleBuffer());
+	}
+
+	/**
+	 * Evaluate an already parsed in abstract syntax tree node for the rows of
+	 * the given column files, which contain little-endian <code>double</code>
+	 * values, and write the results as little-endian <code>double</code> values
+	 * into <code>outFile</code>. The number of rows is determined by the
+	 * shortest column file.
+	 * 
+	 * The files are memory mapped in windows of
+	 * {@link #BATCH_WINDOW_ROWS} rows, so files larger than 2 GB can be
+	 * evaluated and the I/O is left to the page cache of the operating system.
+	 * 
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param variables
+	 *            the variable names, which are bound to the columns
+	 * @param columnFiles
+	 *            the files with the variable values
+	 * @param outFile
+	 *            the file for the results, which is created or overwritten
+	 * @return the number of evaluated rows
+	 * @throws IOException
+	 * @throws ArithmeticMathException
+	 *             if the <code>node</code> cannot be evaluated.
+	 */
+	public long evaluateBatch(final ASTNode node, String[] variables, Path[] columnFiles, Path outFile)
+			throws IOException {
+		checkColumnCount(variables, columnFiles.length);
+		Map<String, Integer> slots = createSlots(variables);
+		DoubleBatchProgram program = DoubleBatchCompiler.compile(this, node, slots);
+		FileChannel[] inputs = new FileChannel[columnFiles.length];
+		try (FileChannel output = FileChannel.open(outFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long rows = Long.MAX_VALUE;
+			for (int i = 0; i < columnFiles.length; i++) {
+				inputs[i] = FileChannel.open(columnFiles[i], StandardOpenOption.READ);
+				rows = Math.min(rows, inputs[i].size() / Double.BYTES);
+			}
+			if (rows == Long.MAX_VALUE) {
+				rows = 0L;
+			}
+			DoubleBuffer[] columns = new DoubleBuffer[inputs.length];
+			for (long row = 0L; row < rows; row += BATCH_WINDOW_ROWS) {
+				int windowRows = (int) Math.min(BATCH_WINDOW_ROWS, rows - row);
+				long position = row * Double.BYTES;
+				long size = (long) windowRows * Double.BYTES;
+				for (int i = 0; i < inputs.length; i++) {
+					columns[i] = inputs[i].map(FileChannel.MapMode.READ_ONLY, position, size)
+							.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+				}
+				program.evaluate(columns,
+						output.map(FileChannel.MapMode.READ_WRITE, position, size).order(ByteOrder.LITTLE_ENDIAN)
+								.asDoubleBuffer(),
+						windowRows);
+			}
+			return rows;
+		} finally {
+			for (int i = 0; i < inputs.length; i++) {
+				if (inputs[i] != null) {
+					inputs[i].close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parse the given <code>expression String</code> and evaluate it for all
+	 * rows of the given columns on the common fork/join pool. See
+	 * {@link #evaluateBatchParallel(ASTNode, String[], double[][], double[], ForkJoinPool)}
+	 * 
+	 * @param expression
+	 * @param variables
+	 *            the variable names, which are bound to the columns
+	 * @param columns
+	 *            the variable values; <code>columns[i][row]</code> is the value
+	 *            of <code>variables[i]</code> in the given <code>row</code>
+	 * @param out
+	 *            the result values; <code>out.length</code> is the number of
+	 *            evaluated rows
+	 * @throws SyntaxError
+	 * @throws ArithmeticMathException
+	 *             if the expression cannot be evaluated.
+	 */
+	public void evaluateBatchParallel(String expression, String[] variables, double[][] columns, double[] out) {
+		evaluateBatchParallel(parseOptimized(expression, true), variables, columns, out, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Evaluate an already parsed in abstract syntax tree node for all rows of
+	 * the given columns like
+	 * {@link #evaluateBatch(ASTNode, String[], double[][], double[])}, but
+	 * split the rows into tasks, which are evaluated on the given fork/join
+	 * pool. The size of the tasks adapts to the measured evaluation time per
+	 * row, so cheap expressions are evaluated in few large tasks.
+	 * 
+	 * The expression is compiled once in the calling thread, and every task
+	 * evaluates its rows with its own buffers and variable frame. The variables
+	 * defined in this evaluator must not be changed and the callback function
+	 * must be thread-safe during the evaluation.
+	 * 
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param variables
+	 *            the variable names, which are bound to the columns
+	 * @param columns
+	 *            the variable values; <code>columns[i][row]</code> is the value
+	 *            of <code>variables[i]</code> in the given <code>row</code>
+	 * @param out
+	 *            the result values; <code>out.length</code> is the number of
+	 *            evaluated rows
+	 * @param pool
+	 *            the fork/join pool which evaluates the tasks
+	 * @throws ArithmeticMathException
+	 *             if the <code>node</code> cannot be evaluated or a column has
+	 *             less rows than <code>out</code>.
+	 */
+	public void evaluateBatchParallel(final ASTNode node, String[] variables, double[][] columns, double[] out,
+			ForkJoinPool pool) {
+		checkColumns(variables, columns, out.length);
+		Map<String, Integer> slots = createSlots(variables);
+		DoubleBatchProgram program = DoubleBatchCompiler.compile(this, node, slots);
+		program.evaluate(pool, columns, 0, out.length, out);
+	}
+
+	private static void checkColumns(String[] variables, double[][] columns, int rows) {
+		checkColumnCount(variables, columns.length);
+		for (int i = 0; i < columns.length; i++) {
+			checkColumnRows(variables[i], columns[i].length, rows);
+		}
+	}
+
+	private static void checkColumnCount(String[] variables, int columnCount) {
+		if (variables.length != columnCount) {
+			throw new ArithmeticMathException(
+					"EvalDouble#evaluateBatch() " + variables.length + " variables but " + columnCount + " columns");
+		}
+	}
+
+	private static void checkColumnRows(String variable, int columnRows, int rows) {
+		if (columnRows < rows) {
+			throw new ArithmeticMathException(
+					"EvalDouble#evaluateBatch() column of variable " + variable + " has less than " + rows + " rows");
+		}
+	}
+
+	/**
+	 * Compile the expression of <code>evaluate()</code>, when it's promoted by
+	 * the tiered compiler.
+	 * 
+	 * @param node
+	 * @return <code>null</code> if the expression should stay in the
+	 *         interpreter
+	 */
+	private CompiledDoubleExpression compileTier(final ASTNode node) {
+		if (containsSet(node, fRegistry)) {
+			// the interpreted Set defines the variable in this evaluator
+			return null;
+		}
+		return compileBytecode(node);
+	}
+
+	/**
+	 * Returns the tiered compiler, which promotes the expression of
+	 * <code>evaluate()</code> to its compiled form. It's used to configure the
+	 * promotion threshold and the background compilation, and to query the
+	 * promotion statistics.
+	 * 
+	 * @return
+	 */
+	public TieredCompiler<CompiledDoubleExpression> getTieredCompiler() {
+		return fTieredCompiler;
+	}
+
+	/**
+	 * Eliminate the common subexpressions of the <code>node</code>. Equal
+	 * subtrees are shared in a DAG and every subexpression without side
+	 * effects, which is evaluated more than once, is assigned to a temporary
+	 * variable <code>#cse1, #cse2, ...</code> at the beginning of a
+	 * <code>CompoundExpression</code>.
+	 * 
+	 * The <code>compile...()</code> methods apply this pass, so that the
+	 * temporaries are stored in the slots of the evaluation frame. The result
+	 * shouldn't be evaluated with <code>evaluateNode()</code>, because this
+	 * would define the temporaries as variables of this evaluator.
+	 * 
+	 * @param node
+	 *            abstract syntax tree node
+	 * @return the <code>node</code> itself, if it has no common subexpressions
+	 *         or contains an assignment with <code>Set</code>
+	 */
+	public static ASTNode eliminateCommonSubexpressions(final ASTNode node) {
+		return eliminateCommonSubexpressions(node, DEFAULT_REGISTRY.relaxed());
+	}
+
+	private static ASTNode eliminateCommonSubexpressions(final ASTNode node,
+			final FunctionRegistry<Object, Object, Double> registry) {
+		if (containsSet(node, registry)) {
+			// the evaluation order of the assignments must not change
+			return node;
+		}
+		return DoubleCommonSubexpressions.eliminate(node, registry);
+	}
+
+	/**
+	 * Test if the <code>node</code> contains an assignment with
+	 * <code>Set</code>.
+	 * 
+	 * @param node
+	 * @param registry
+	 *            the functions of the evaluator
+	 * @return
+	 */
+	static boolean containsSet(ASTNode node, FunctionRegistry<Object, Object, Double> registry) {
+		if (node instanceof FunctionNode) {
+			FunctionNode functionNode = (FunctionNode) node;
+			if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode
+					&& registry.getFunction(functionNode.getNode(0).toString()) instanceof SetFunction) {
+				return true;
+			}
+			for (int i = 1; i < functionNode.size(); i++) {
+				if (containsSet(functionNode.getNode(i), registry)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Assign the slot indices of the evaluation frame to the variable names.
+	 * 
+	 * @param variables
+	 * @return
+	 */
+	private Map<String, Integer> createSlots(String... variables) {
+		Map<String, Integer> slots = new HashMap<String, Integer>();
+		for (int i = 0; i < variables.length; i++) {
+			String variableName = fRelaxedSyntax ? variables[i].toLowerCase() : variables[i];
+			if (slots.put(variableName, i) != null) {
+				throw new ArithmeticMathException(
+						"EvalDouble#compile(ASTNode, String[]) duplicate variable: " + variables[i]);
+			}
+		}
+		return slots;
+	}
+
+	IDoubleFrameFunction compileNode(final ASTNode node, final Map<String, Integer> slots) {
+		if (node instanceof DoubleNode) {
+			final double value = ((DoubleNode) node).doubleValue();
+			return frame -> value;
+		}
+		if (node instanceof FunctionNode) {
+			return compileFunction((FunctionNode) node, slots);
+		}
+		if (node instanceof SymbolNode) {
+			Integer slot = slots.get(node.toString());
+			if (slot != null) {
+				final int index = slot.intValue();
+				return frame -> frame[index];
+			}
+			final IDoubleValue v = fVariableMap.get(node.toString());
+			if (v != null) {
+				return frame -> v.getValue();
+			}
+			Double dbl = fRegistry.getSymbol(node.toString());
+			if (dbl != null) {
+				final double value = dbl.doubleValue();
+				return frame -> value;
+			}
+		} else if (node instanceof NumberNode) {
+			final double value = ((NumberNode) node).doubleValue();
+			return frame -> value;
+		}
+
+		throw new ArithmeticMathException("EvalDouble#compile(ASTNode) not possible for: " + node.toString());
+	}
+
+	private IDoubleFrameFunction[] compileArguments(final FunctionNode functionNode,
+			final Map<String, Integer> slots) {
+		IDoubleFrameFunction[] args = new IDoubleFrameFunction[functionNode.size() - 1];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = compileNode(functionNode.getNode(i + 1), slots);
+		}
+		return args;
+	}
+
+	private IDoubleFrameFunction compileFunction(final FunctionNode functionNode, final Map<String, Integer> slots) {
+		if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode) {
+			String symbol = functionNode.getNode(0).toString();
+			if ("If".equals(symbol) || (fRelaxedSyntax && "if".equalsIgnoreCase(symbol))) {
+				if (functionNode.size() == 3) {
+					final IDoubleFramePredicate condition = compileNodeLogical(functionNode.getNode(1), slots);
+					final IDoubleFrameFunction trueCase = compileNode(functionNode.getNode(2), slots);
+					final String message = "EvalDouble#evaluateFunction(FunctionNode) not possible for: "
+							+ functionNode.toString();
+					return frame -> {
+						if (condition.test(frame)) {
+							return trueCase.applyAsDouble(frame);
+						}
+						throw new ArithmeticMathException(message);
+					};
+				} else if (functionNode.size() == 4) {
+					final IDoubleFramePredicate condition = compileNodeLogical(functionNode.getNode(1), slots);
+					final IDoubleFrameFunction trueCase = compileNode(functionNode.getNode(2), slots);
+					final IDoubleFrameFunction falseCase = compileNode(functionNode.getNode(3), slots);
+					return frame -> condition.test(frame) ? trueCase.applyAsDouble(frame)
+							: falseCase.applyAsDouble(frame);
+				}
+			} else {
+				Object obj = fRegistry.getFunction(symbol);
+				if (obj instanceof IDoubleFunction) {
+					IDoubleFrameFunction function = compileFunctionNode((IDoubleFunction) obj, functionNode, slots);
+					if (function != null) {
+						return function;
+					}
+				} else if (functionNode.size() == 1) {
+					if (obj instanceof DoubleSupplier) {
+						final DoubleSupplier supplier = (DoubleSupplier) obj;
+						return frame -> supplier.getAsDouble();
+					}
+				} else if (functionNode.size() == 2) {
+					if (obj instanceof DoubleUnaryOperator) {
+						final DoubleUnaryOperator operator = (DoubleUnaryOperator) obj;
+						final IDoubleFrameFunction arg1 = compileNode(functionNode.getNode(1), slots);
+						return frame -> operator.applyAsDouble(arg1.applyAsDouble(frame));
+					}
+				} else if (functionNode.size() == 3) {
+					if (obj instanceof DoubleBinaryOperator) {
+						final DoubleBinaryOperator operator = (DoubleBinaryOperator) obj;
+						final IDoubleFrameFunction arg1 = compileNode(functionNode.getNode(1), slots);
+						final IDoubleFrameFunction arg2 = compileNode(functionNode.getNode(2), slots);
+						return frame -> operator.applyAsDouble(arg1.applyAsDouble(frame), arg2.applyAsDouble(frame));
+					}
+				}
+				if (fCallbackFunction != null && !(obj instanceof IDoubleFunction)) {
+					final IDoubleCallbackFunction callbackFunction = fCallbackFunction;
+					final IDoubleFrameFunction[] args = compileArguments(functionNode, slots);
+					return frame -> {
+						double doubleArgs[] = new double[args.length];
+						for (int i = 0; i < args.length; i++) {
+							doubleArgs[i] = args[i].applyAsDouble(frame);
+						}
+						return callbackFunction.applyAsDouble(this, functionNode, doubleArgs);
+					};
+				}
+			}
+		}
+		throw new ArithmeticMathException(
+				"EvalDouble#compile(FunctionNode) not possible for: " + functionNode.toString());
+	}
+
+	/**
+	 * Compile the built-in functions, which evaluate the <code>FunctionNode</code>
+	 * arguments on their own.
+	 * 
+	 * @return <code>null</code> if the function cannot be compiled.
+	 */
+	private IDoubleFrameFunction compileFunctionNode(final IDoubleFunction function, final FunctionNode functionNode,
+			final Map<String, Integer> slots) {
+		if (function instanceof SetFunction) {
+			if (functionNode.size() == 3 && functionNode.getNode(1) instanceof SymbolNode) {
+				final IDoubleFrameFunction value = compileNode(functionNode.getNode(2), slots);
+				String variableName = functionNode.getNode(1).toString();
+				Integer slot = slots.get(variableName);
+				if (slot == null) {
+					// allocate a new slot for a local variable
+					slot = Integer.valueOf(slots.size());
+					slots.put(variableName, slot);
+				}
+				final int index = slot.intValue();
+				return frame -> frame[index] = value.applyAsDouble(frame);
+			}
+			return null;
+		}
+		final IDoubleFrameFunction[] args = compileArguments(functionNode, slots);
+		if (function instanceof PlusFunction) {
+			if (args.length == 2) {
+				final IDoubleFrameFunction arg1 = args[0];
+				final IDoubleFrameFunction arg2 = args[1];
+				return frame -> arg1.applyAsDouble(frame) + arg2.applyAsDouble(frame);
+			}
+			return frame -> {
+				double result = 0.0;
+				for (int i = 0; i < args.length; i++) {
+					result += args[i].applyAsDouble(frame);
+				}
+				return result;
+			};
+		}
+		if (function instanceof TimesFunction) {
+			if (args.length == 2) {
+				final IDoubleFrameFunction arg1 = args[0];
+				final IDoubleFrameFunction arg2 = args[1];
+				return frame -> arg1.applyAsDouble(frame) * arg2.applyAsDouble(frame);
+			}
+			return frame -> {
+				double result = 1.0;
+				for (int i = 0; i < args.length; i++) {
+					result *= args[i].applyAsDouble(frame);
+				}
+				return result;
+			};
+		}
+		if (function instanceof CompoundExpressionFunction) {
+			return frame -> {
+				double result = Double.NaN;
+				for (int i = 0; i < args.length; i++) {
+					result = args[i].applyAsDouble(frame);
+				}
+				return result;
+			};
+		}
+		if (function instanceof MaxFunction) {
+			return frame -> {
+				double result = Double.NaN;
+				if (args.length > 0) {
+					result = args[0].applyAsDouble(frame);
+					for (int i = 1; i < args.length; i++) {
+						double temp = Math.max(result, args[i].applyAsDouble(frame));
+						if (temp > result) {
+							result = temp;
+						}
+					}
+				}
+				return result;
+			};
+		}
+		if (function instanceof MinFunction) {
+			return frame -> {
+				double result = Double.NaN;
+				if (args.length > 0) {
+					result = args[0].applyAsDouble(frame);
+					for (int i = 1; i < args.length; i++) {
+						double temp = Math.min(result, args[i].applyAsDouble(frame));
+						if (temp < result) {
+							result = temp;
+						}
+					}
+				}
+				return result;
+			};
+		}
+		return null;
+	}
+
+	IDoubleFramePredicate compileNodeLogical(final ASTNode node, final Map<String, Integer> slots) {
+		if (node instanceof FunctionNode) {
+			return compileFunctionLogical((FunctionNode) node, slots);
+		}
+		if (node instanceof SymbolNode) {
+			final BooleanVariable v = fBooleanVariables.get(node.toString());
+			if (v != null) {
+				return frame -> v.getValue();
+			}
+			Boolean boole = fRegistry.getBooleanSymbol(node.toString());
+			if (boole != null) {
+				final boolean value = boole.booleanValue();
+				return frame -> value;
+			}
+		}
+
+		throw new ArithmeticMathException("EvalDouble#compileLogical(ASTNode) not possible for: " + node.toString());
+	}
+
+	private IDoubleFramePredicate compileFunctionLogical(final FunctionNode functionNode,
+			final Map<String, Integer> slots) {
+		if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode) {
+			String symbol = functionNode.getNode(0).toString();
+			if (functionNode.size() == 2) {
+				Object obj = fRegistry.getBooleanFunction(symbol);
+				if (obj instanceof IBooleanBoolean1Function) {
+					final IBooleanBoolean1Function<?> function = (IBooleanBoolean1Function<?>) obj;
+					final IDoubleFramePredicate arg1 = compileNodeLogical(functionNode.getNode(1), slots);
+					return frame -> function.evaluate(arg1.test(frame));
+				}
+			} else if (functionNode.size() == 3) {
+				Object obj = fRegistry.getBooleanFunction(symbol);
+				if (obj instanceof DoubleBinaryPredicate) {
+					final DoubleBinaryPredicate predicate = (DoubleBinaryPredicate) obj;
+					final IDoubleFrameFunction arg1 = compileNode(functionNode.getNode(1), slots);
+					final IDoubleFrameFunction arg2 = compileNode(functionNode.getNode(2), slots);
+					return frame -> predicate.test(arg1.applyAsDouble(frame), arg2.applyAsDouble(frame));
+				}
+			}
+			if (functionNode.size() >= 3) {
+				Object obj = fRegistry.getBooleanFunction(symbol);
+				if (obj instanceof IBooleanLazy2Function) {
+					// And[a, b, c] becomes a ? (b ? c : false) : false, the right
+					// operand is only tested if the left operand doesn't decide
+					final boolean shortCircuit = ((IBooleanLazy2Function<?>) obj).getShortCircuitValue();
+					IDoubleFramePredicate result = compileNodeLogical(functionNode.getNode(functionNode.size() - 1),
+							slots);
+					for (int i = functionNode.size() - 2; i >= 1; i--) {
+						final IDoubleFramePredicate arg1 = compileNodeLogical(functionNode.getNode(i), slots);
+						final IDoubleFramePredicate arg2 = result;
+						result = frame -> arg1.test(frame) == shortCircuit ? shortCircuit : arg2.test(frame);
+					}
+					return result;
+				}
+				if (obj instanceof IBooleanBoolean2Function) {
+					// the parser flattens And[a, b, c, ...] and Or[a, b, c, ...]
+					final IBooleanBoolean2Function<?> function = (IBooleanBoolean2Function<?>) obj;
+					IDoubleFramePredicate result = compileNodeLogical(functionNode.getNode(1), slots);
+					for (int i = 2; i < functionNode.size(); i++) {
+						final IDoubleFramePredicate arg1 = result;
+						final IDoubleFramePredicate arg2 = compileNodeLogical(functionNode.getNode(i), slots);
+						result = frame -> function.evaluate(arg1.test(frame), arg2.test(frame));
+					}
+					return result;
+				}
+			}
+		}
+		throw new ArithmeticMathException(
+				"EvalDouble#compileLogical(FunctionNode) not possible for: " + functionNode.toString());
+	}
+
+	/**
+	 * Returns the registry of the built-in functions and constants, which is
+	 * used if no registry is given to the constructor. Custom functions can be
+	 * added to a copy with the <code>with...()</code> methods of the registry.
+	 * 
+	 * @return
+	 */
+	public static FunctionRegistry<Object, Object, Double> getDefaultRegistry() {
+		return DEFAULT_REGISTRY;
+	}
+
+	/**
+	 * Returns the registry of the functions and constants of this evaluator.
+	 * In relaxed mode it contains the additional lower case names.
+	 * 
+	 * @return
+	 */
+	public FunctionRegistry<Object, Object, Double> getRegistry() {
+		return fRegistry;
+	}
+
+	/**
+	 * Returns the <code>double</code> function of this evaluators registry for the given symbol.
+	 * 
+	 * @param symbol
+	 * @return <code>null</code> if no function is defined for the symbol
+	 */
+	Object getFunctionDouble(String symbol) {
+		return fRegistry.getFunction(symbol);
+	}
+
+	/**
+	 * Returns the <code>boolean</code> function of this evaluators registry for the given symbol.
+	 * 
+	 * @param symbol
+	 * @return <code>null</code> if no function is defined for the symbol
+	 */
+	Object getFunctionBoolean(String symbol) {
+		return fRegistry.getBooleanFunction(symbol);
+	}
+
+	/**
+	 * Test if the <code>function</code> is the function of the default
+	 * registry for the given built-in name. Only built-in functions may be
+	 * rewritten by the optimizer or inlined by the compilers, a function which
+	 * a registry overrides must be called.
+	 * 
+	 * @param function
+	 *            a function object of a registry
+	 * @param name
+	 *            the built-in function name (i.e. <code>Power</code>)
+	 * @return
+	 */
+	static boolean isBuiltinFunction(Object function, String name) {
+		return function != null && function == DEFAULT_REGISTRY.getFunction(name);
+	}
+
+	/**
+	 * Test if the <code>function</code> is the boolean function of the default
+	 * registry for the given built-in name.
+	 * 
+	 * @param function
+	 *            a boolean function object of a registry
+	 * @param name
+	 *            the built-in function name (i.e. <code>Less</code>)
+	 * @return
+	 * @see #isBuiltinFunction(Object, String)
+	 */
+	static boolean isBuiltinBooleanFunction(Object function, String name) {
+		return function != null && function == DEFAULT_REGISTRY.getBooleanFunction(name);
+	}
+
+	/**
+	 * Test if this evaluators registry doesn't override the built-in functions
+	 * with the given names.
+	 * 
+	 * @param names
+	 * @return
+	 */
+	private boolean isBuiltin(String... names) {
+		for (String name : names) {
+			if (!isBuiltinFunction(fRegistry.getFunction(name), name)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the <code>double</code> constant of this evaluators registry for the given symbol.
+	 * 
+	 * @param symbol
+	 * @return <code>null</code> if no constant is defined for the symbol
+	 */
+	Double getSymbolDouble(String symbol) {
+		return fRegistry.getSymbol(symbol);
+	}
+
+	/**
+	 * Returns the <code>boolean</code> constant of this evaluators registry for the given symbol.
+	 * 
+	 * @param symbol
+	 * @return <code>null</code> if no constant is defined for the symbol
+	 */
+	Boolean getSymbolBoolean(String symbol) {
+		return fRegistry.getBooleanSymbol(symbol);
+	}
+
+	/**
+	 * Test if a <code>double</code> or <code>boolean</code> variable is defined
+	 * in this evaluator for the given symbol.
+	 * 
+	 * @param symbol
+	 * @return
+	 */
+	boolean isVariable(String symbol) {
+		return fVariableMap.containsKey(symbol) || fBooleanVariables.containsKey(symbol);
+	}
+
+	/**
+	 * Returns <code>true</code> if the evaluator doesn't distinguish between
+	 * upper- and lowercase identifiers.
+	 * 
+	 * @return
+	 */
+	public boolean isRelaxedSyntax() {
+		return fRelaxedSyntax;
+	}
+
+	/**
+	 * Check if the given symbol is a <code>SymbolNode</code> and test if the
+	 * names are equal.
+	 * 
+	 * @param symbol1
+	 * @param symbol2Name
+	 * @return
+	 */
+	public boolean isSymbol(SymbolNode symbol1, String symbol2Name) {
+		if (fRelaxedSyntax) {
+			return symbol1.getString().equalsIgnoreCase(symbol2Name);
+		}
+		return symbol1.getString().equals(symbol2Name);
+	}
+
+	/**
+	 * Check if the given symbol is a <code>SymbolNode</code> and test if the
+	 * names are equal.
+	 * 
+	 * @param symbol1
+	 * @param symbol2
+	 * @return
+	 */
+	public boolean isSymbol(SymbolNode symbol1, SymbolNode symbol2) {
+		if (fRelaxedSyntax) {
+			return symbol1.getString().equalsIgnoreCase(symbol2.getString());
+		}
+		return symbol1.equals(symbol2);
+	}
+
+	/**
+	 * 
+	 * @param node
+	 * @param var
+	 * @return
+	 */
+	public ASTNode derivative(final ASTNode node, String var) {
+		SymbolNode sym = fASTFactory.createSymbol(var);
+		return derivative(node, sym);
+	}
+
+	/**
+	 * 
+	 * TODO: add more derivation rules
+	 * 
+	 * @param node
+	 * @param var
+	 * @return
+	 */
+	public ASTNode derivative(final ASTNode node, SymbolNode var) {
+		if (node.isFree(var)) {
+			return new DoubleNode(0.0);
+		}
+		if (node instanceof FunctionNode) {
+			FunctionNode f = (FunctionNode) node;
+			if (f.size() > 1 && f.getNode(0) instanceof SymbolNode) {
+				SymbolNode head = (SymbolNode) f.getNode(0);
+				ASTNode expanded = expandStrength(f);
+				if (expanded != f) {
+					return derivative(expanded, var);
+				}
+				if (f.size() == 2) {
+					ASTNode arg1Derived = derivative(f.getNode(1), var);
+					if (isSymbol(head, "Exp")) {
+						FunctionNode fun = new FunctionNode(fASTFactory.createSymbol("Exp"));
+						fun.add(f.getNode(1));
+						return getDerivativeResult(arg1Derived, fun);
+					}
+					if (isSymbol(head, "Cos")) {
+						FunctionNode fun = new FunctionNode(fASTFactory.createSymbol("Times"));
+						fun.add(new DoubleNode(-1.0));
+						fun.add(new FunctionNode(fASTFactory.createSymbol("Cos"), f.getNode(1)));
+						return getDerivativeResult(arg1Derived, fun);
+					}
+					if (isSymbol(head, "Sin")) {
+						FunctionNode fun = new FunctionNode(fASTFactory.createSymbol("Cos"));
+						fun.add(f.getNode(1));
+						return getDerivativeResult(arg1Derived, fun);
+					}
+				} else if (f.size() == 3 && isSymbol(head, "Power")) {
+					if (f.get(2).isFree(var)) {// derive x^r
+						ASTNode arg1Derived = derivative(f.getNode(1), var);
+						// (r-1)
+						FunctionNode exponent = fASTFactory.createFunction(fASTFactory.createSymbol("Plus"),
+								new DoubleNode(-1.0), f.get(2));
+						// r*x^(r-1)
+						FunctionNode fun = fASTFactory.createFunction(fASTFactory.createSymbol("Times"), f.get(2),
+								fASTFactory.createFunction(fASTFactory.createSymbol("Power"), f.get(1), exponent));
+						return getDerivativeResult(arg1Derived, fun);
+					}
+					if (f.get(1).isFree(var)) {// derive a^x
+						ASTNode arg2Derived = derivative(f.getNode(2), var);
+						// log(a) * a^x
+						FunctionNode fun = fASTFactory.createFunction(fASTFactory.createSymbol("Times"),
+								fASTFactory.createFunction(fASTFactory.createSymbol("Log"), f.get(1)), f);
+						return getDerivativeResult(arg2Derived, fun);
+					}
+				} else {
+					if (isSymbol(head, "Plus")) {
+						FunctionNode result = new FunctionNode(f.getNode(0));
+						for (int i = 1; i < f.size(); i++) {
+							ASTNode deriv = derivative(f.getNode(i), var);
+							if (!deriv.equals(new DoubleNode(0.0))) {
+								result.add(deriv);
+							}
+						}
+						return result;
+					}
+					if (isSymbol(head, "Times")) {
+						FunctionNode plusResult = new FunctionNode(fASTFactory.createSymbol("Plus"));
+						for (int i = 1; i < f.size(); i++) {
+							FunctionNode timesResult = new FunctionNode(f.getNode(0));
+							boolean valid = true;
+							for (int j = 1; j < f.size(); j++) {
+								if (j == i) {
+									ASTNode deriv = derivative(f.getNode(j), var);
+									if (deriv.equals(new DoubleNode(0.0))) {
+										valid = false;
+									} else {
+										timesResult.add(deriv);
+									}
+								} else {
+									timesResult.add(f.getNode(j));
+								}
+							}
+							if (valid) {
+								plusResult.add(timesResult);
+							}
+						}
+						return plusResult;
+					}
+				}
+			}
+			return new FunctionNode(new SymbolNode("D"), node, var);
+			// return evaluateFunction((FunctionNode) node);
+		}
+		if (node instanceof SymbolNode) {
+			if (isSymbol((SymbolNode) node, var)) {
+				return new DoubleNode(1.0);
+			}
+			IDoubleValue v = fVariableMap.get(node.toString());
+			if (v != null) {
+				return new DoubleNode(0.0);
+			}
+			Double dbl = fRegistry.getSymbol(node.toString());
+			if (dbl != null) {
+				return new DoubleNode(0.0);
+			}
+			return new DoubleNode(0.0);
+		} else if (node instanceof NumberNode) {
+			return new DoubleNode(0.0);
+		}
+
+		throw new ArithmeticMathException("EvalDouble#evaluate(ASTNode) not possible for: " + node.toString());
+	}
+
+	/**
+	 * Expand the <code>Divide, Minus</code> and <code>Sqrt</code> functions
+	 * of the strength reduction into their <code>Times</code> and
+	 * <code>Power</code> forms.
+	 * 
+	 * @param f
+	 * @return <code>f</code> if it cannot be expanded
+	 */
+	private ASTNode expandStrength(FunctionNode f) {
+		SymbolNode head = (SymbolNode) f.getNode(0);
+		if (f.size() == 2) {
+			if (isSymbol(head, "Minus")) {
+				return fASTFactory.createFunction(fASTFactory.createSymbol("Times"), new DoubleNode(-1.0),
+						f.getNode(1));
+			}
+			if (isSymbol(head, "Sqrt")) {
+				return fASTFactory.createFunction(fASTFactory.createSymbol("Power"), f.getNode(1), new DoubleNode(0.5));
+			}
+		} else if (f.size() == 3 && isSymbol(head, "Divide")) {
+			return fASTFactory.createFunction(fASTFactory.createSymbol("Times"), f.getNode(1),
+					fASTFactory.createFunction(fASTFactory.createSymbol("Power"), f.getNode(2), new DoubleNode(-1.0)));
+		}
+		return f;
+	}
+
+	private ASTNode getDerivativeResult(ASTNode arg1Derived, FunctionNode fun) {
+		if (!arg1Derived.equals(new DoubleNode(1.0))) {
+			FunctionNode res = new FunctionNode(fASTFactory.createSymbol("Times"));
+			res.add(arg1Derived);
+			res.add(fun);
+			return res;
+		}
+		return fun;
+	}
+
+	public boolean evaluateNodeLogical(final ASTNode node) {
+		if (node instanceof FunctionNode) {
+			return evaluateFunctionLogical((FunctionNode) node);
+		}
+		if (node instanceof SymbolNode) {
+			BooleanVariable v = fBooleanVariables.get(node.toString());
+			if (v != null) {
+				return v.getValue();
+			}
+			Boolean boole = fRegistry.getBooleanSymbol(node.toString());
+			if (boole != null) {
+				return boole.booleanValue();
+			}
+		}
+
+		throw new ArithmeticMathException(
+				"EvalDouble#evaluateNodeLogical(ASTNode) not possible for: " + node.toString());
+	}
+
+	public boolean evaluateFunctionLogical(final FunctionNode functionNode) {
+		if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode) {
+			String symbol = functionNode.getNode(0).toString();
 			if (functionNode.size() == 2) {
-				Object obj = FUNCTION_BOOLEAN_MAP.get(symbol);
+				Object obj = fRegistry.getBooleanFunction(symbol);
 				if (obj instanceof IBooleanBoolean1Function) {
 					return ((IBooleanBoolean1Function) obj).evaluate(evaluateNodeLogical(functionNode.getNode(1)));
 				}
 			} else if (functionNode.size() == 3) {
-				Object obj = FUNCTION_BOOLEAN_MAP.get(symbol);
+				Object obj = fRegistry.getBooleanFunction(symbol);
 				if (obj instanceof DoubleBinaryPredicate) {
 					return ((DoubleBinaryPredicate) obj).test(evaluateNode(functionNode.getNode(1)),
 							evaluateNode(functionNode.getNode(2)));
-				} else if (obj instanceof IBooleanBoolean2Function) {
-					return ((IBooleanBoolean2Function) obj).evaluate(evaluateNodeLogical(functionNode.getNode(1)),
-							evaluateNodeLogical(functionNode.getNode(2)));
+				}
+			}
+			if (functionNode.size() >= 3) {
+				Object obj = fRegistry.getBooleanFunction(symbol);
+				if (obj instanceof IBooleanLazy2Function) {
+					// short circuit evaluation of And[a, b, c, ...] and Or[a, b, c, ...]
+					final boolean shortCircuit = ((IBooleanLazy2Function<?>) obj).getShortCircuitValue();
+					final int last = functionNode.size() - 1;
+					for (int i = 1; i < last; i++) {
+						if (evaluateNodeLogical(functionNode.getNode(i)) == shortCircuit) {
+							return shortCircuit;
+						}
+					}
+					return evaluateNodeLogical(functionNode.getNode(last));
+				}
+				if (obj instanceof IBooleanBoolean2Function) {
+					// the parser flattens And[a, b, c, ...] and Or[a, b, c, ...]
+					IBooleanBoolean2Function<?> function = (IBooleanBoolean2Function<?>) obj;
+					boolean result = evaluateNodeLogical(functionNode.getNode(1));
+					for (int i = 2; i < functionNode.size(); i++) {
+						result = function.evaluate(result, evaluateNodeLogical(functionNode.getNode(i)));
+					}
+					return result;
 				}
 			}
 		}
@@ -750,7 +1825,9 @@ public class DoubleEvaluator {
 
 	/**
 	 * Optimize an already parsed in <code>functionNode</code> into an
-	 * <code>ASTNode</code>.
+	 * <code>ASTNode</code>. The <code>functionNode</code> isn't modified; the
+	 * result is a new tree, which shares the unchanged subtrees with the given
+	 * <code>functionNode</code>.
 	 * 
 	 * @param functionNode
 	 * @return
@@ -759,50 +1836,414 @@ public class DoubleEvaluator {
 	public ASTNode optimizeFunction(final FunctionNode functionNode) {
 		if (!functionNode.isEmpty()) {
 			boolean doubleOnly = true;
-			ASTNode node;
+			boolean ifFunction = isIfFunction(functionNode);
+			FunctionNode result = functionNode;
 			for (int i = 1; i < functionNode.size(); i++) {
-				node = functionNode.getNode(i);
-				if (node instanceof NumberNode) {
-					functionNode.set(i, new DoubleNode(((NumberNode) functionNode.getNode(i)).doubleValue()));
-				} else if (functionNode.getNode(i) instanceof FunctionNode) {
-					ASTNode optNode = optimizeFunction((FunctionNode) functionNode.getNode(i));
-					if (!(optNode instanceof DoubleNode)) {
-						doubleOnly = false;
-					}
-					functionNode.set(i, optNode);
-				} else if (node instanceof SymbolNode) {
-					Double dbl = SYMBOL_DOUBLE_MAP.get(node.toString());
-					if (dbl != null) {
-						functionNode.set(i, new DoubleNode(dbl.doubleValue()));
-					} else {
-						doubleOnly = false;
-					}
-				} else {
+				ASTNode node = functionNode.getNode(i);
+				ASTNode optNode = (ifFunction && i == 1) ? optimizeNodeLogical(node) : optimizeNode(node);
+				if (!(optNode instanceof DoubleNode)) {
 					doubleOnly = false;
 				}
+				if (optNode != node) {
+					if (result == functionNode) {
+						result = functionNode.copy();
+					}
+					result.set(i, optNode);
+				}
+			}
+			if (ifFunction) {
+				// drop the dead branch of If[True, a, b] or If[False, a, b]
+				Boolean condition = getBooleanConstant(result.getNode(1));
+				if (condition != null) {
+					if (condition.booleanValue()) {
+						return result.getNode(2);
+					}
+					if (result.size() == 4) {
+						return result.getNode(3);
+					}
+				}
+				return result;
 			}
 			if (doubleOnly) {
 				try {
-					return new DoubleNode(evaluateFunction(functionNode));
+					return new DoubleNode(evaluateFunction(result));
 				} catch (RuntimeException e) {
 
 				}
 			}
+			return reduceStrength(result);
 		}
 		return functionNode;
 	}
 
 	/**
-	 * Define a value for a given variable name.
+	 * Replace the function nodes of an optimized tree with
+	 * <code>DoubleFunctionNode</code>s, which hold the resolved function
+	 * objects. Function nodes, which cannot be resolved (i.e. callback
+	 * functions or <code>If</code> without a false case), are kept and
+	 * evaluated by <code>evaluateFunction()</code>. Nodes, which were bound by
+	 * another registry, are bound again.
+	 * 
+	 * @param node
+	 *            an optimized node
+	 * @return
+	 */
+	private ASTNode bindFunctions(final ASTNode node) {
+		if (!(node instanceof FunctionNode)
+				|| (node instanceof DoubleFunctionNode && ((DoubleFunctionNode) node).isBoundTo(this))) {
+			return node;
+		}
+		FunctionNode functionNode = (FunctionNode) node;
+		if (functionNode.isEmpty()) {
+			return functionNode;
+		}
+		ASTNode[] args = new ASTNode[functionNode.size() - 1];
+		boolean changed = false;
+		for (int i = 1; i < functionNode.size(); i++) {
+			args[i - 1] = bindFunctions(functionNode.getNode(i));
+			changed |= args[i - 1] != functionNode.getNode(i);
+		}
+		if (functionNode.getNode(0) instanceof SymbolNode) {
+			SymbolNode head = (SymbolNode) functionNode.getNode(0);
+			DoubleFunctionNode bound;
+			if (isSymbol(head, "If")) {
+				bound = args.length == 3 ? DoubleFunctionNode.createIf(fRegistry, head, args) : null;
+			} else {
+				bound = DoubleFunctionNode.create(fRegistry, head, fRegistry.getFunction(head.toString()), args);
+			}
+			if (bound != null) {
+				return bound;
+			}
+		}
+		if (!changed && !(functionNode instanceof DoubleFunctionNode)) {
+			return functionNode;
+		}
+		FunctionNode result = functionNode.copy();
+		for (int i = 0; i < args.length; i++) {
+			result.set(i + 1, args[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Optimize a <code>double</code> valued argument of a function.
+	 * 
+	 * @param node
+	 * @return a <code>DoubleNode</code>, if the argument is a constant
+	 */
+	private ASTNode optimizeNode(final ASTNode node) {
+		if (node instanceof NumberNode) {
+			return new DoubleNode(((NumberNode) node).doubleValue());
+		}
+		if (node instanceof FunctionNode) {
+			return optimizeFunction((FunctionNode) node);
+		}
+		if (node instanceof SymbolNode) {
+			Double dbl = fRegistry.getSymbol(node.toString());
+			if (dbl != null) {
+				return new DoubleNode(dbl.doubleValue());
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Optimize a <code>boolean</code> valued node (i.e. the condition of
+	 * <code>If</code>). Comparisons of constants and boolean functions of
+	 * constants are folded into the symbols <code>True</code> or
+	 * <code>False</code>. Constant arguments of <code>And</code> and
+	 * <code>Or</code>, which don't decide the result, are removed.
+	 * 
+	 * @param node
+	 * @return
+	 */
+	private ASTNode optimizeNodeLogical(final ASTNode node) {
+		if (!(node instanceof FunctionNode) || ((FunctionNode) node).isEmpty()
+				|| !(((FunctionNode) node).getNode(0) instanceof SymbolNode)) {
+			return node;
+		}
+		FunctionNode functionNode = (FunctionNode) node;
+		Object function = fRegistry.getBooleanFunction(functionNode.getNode(0).toString());
+		if (function == null) {
+			return functionNode;
+		}
+		FunctionNode result = functionNode;
+		for (int i = 1; i < functionNode.size(); i++) {
+			ASTNode arg = functionNode.getNode(i);
+			ASTNode optNode = function instanceof DoubleBinaryPredicate ? optimizeNode(arg) : optimizeNodeLogical(arg);
+			if (optNode != arg) {
+				if (result == functionNode) {
+					result = functionNode.copy();
+				}
+				result.set(i, optNode);
+			}
+		}
+		if (function instanceof DoubleBinaryPredicate) {
+			if (result.size() == 3 && result.getNode(1) instanceof DoubleNode
+					&& result.getNode(2) instanceof DoubleNode) {
+				double arg1 = ((DoubleNode) result.getNode(1)).doubleValue();
+				double arg2 = ((DoubleNode) result.getNode(2)).doubleValue();
+				return createBooleanNode(((DoubleBinaryPredicate) function).test(arg1, arg2));
+			}
+		} else if (function instanceof IBooleanBoolean1Function) {
+			if (result.size() == 2) {
+				Boolean arg = getBooleanConstant(result.getNode(1));
+				if (arg != null) {
+					return createBooleanNode(((IBooleanBoolean1Function<?>) function).evaluate(arg.booleanValue()));
+				}
+			}
+		} else if (function instanceof IBooleanLazy2Function) {
+			if (result.size() >= 3) {
+				// And[x>0, True, y>0] becomes And[x>0, y>0], And[x>0, False] becomes False
+				boolean shortCircuit = ((IBooleanLazy2Function<?>) function).getShortCircuitValue();
+				FunctionNode reduced = fASTFactory.createFunction((SymbolNode) result.getNode(0));
+				for (int i = 1; i < result.size(); i++) {
+					Boolean arg = getBooleanConstant(result.getNode(i));
+					if (arg == null) {
+						reduced.add(result.getNode(i));
+					} else if (arg.booleanValue() == shortCircuit) {
+						return createBooleanNode(shortCircuit);
+					}
+				}
+				if (reduced.size() == 1) {
+					return createBooleanNode(!shortCircuit);
+				}
+				if (reduced.size() == 2) {
+					return reduced.getNode(1);
+				}
+				if (reduced.size() < result.size()) {
+					return reduced;
+				}
+			}
+		} else if (function instanceof IBooleanBoolean2Function) {
+			if (result.size() >= 3) {
+				IBooleanBoolean2Function<?> f = (IBooleanBoolean2Function<?>) function;
+				Boolean value = getBooleanConstant(result.getNode(1));
+				for (int i = 2; value != null && i < result.size(); i++) {
+					Boolean arg = getBooleanConstant(result.getNode(i));
+					value = arg == null ? null : f.evaluate(value.booleanValue(), arg.booleanValue());
+				}
+				if (value != null) {
+					return createBooleanNode(value.booleanValue());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the value of the <code>True</code> or <code>False</code> symbol,
+	 * if it isn't redefined as a variable.
+	 * 
+	 * @param node
+	 * @return <code>null</code> if the <code>node</code> isn't a boolean
+	 *         constant
+	 */
+	private Boolean getBooleanConstant(final ASTNode node) {
+		if (node instanceof SymbolNode && !isVariable(node.toString())) {
+			return fRegistry.getBooleanSymbol(node.toString());
+		}
+		return null;
+	}
+
+	private SymbolNode createBooleanNode(boolean value) {
+		return fASTFactory.createSymbol(value ? "True" : "False");
+	}
+
+	private boolean isIfFunction(final FunctionNode functionNode) {
+		return (functionNode.size() == 3 || functionNode.size() == 4) && functionNode.getNode(0) instanceof SymbolNode
+				&& isSymbol((SymbolNode) functionNode.getNode(0), "If");
+	}
+
+	/**
+	 * Specialize the expression <code>node</code> for the given values of the
+	 * <code>fixed</code> variables. The fixed variables are substituted and all
+	 * subexpressions, which don't depend on the remaining free variables, are
+	 * constant folded by <code>optimizeFunction()</code>. The residual
+	 * expression can be evaluated or compiled for the free variables:
+	 * 
+	 * <pre>
+	 * ASTNode residual = engine.specialize(engine.parse(&quot;a*Sin[b]+a*x&quot;), fixed);
+	 * // with a=2.0 and b=0.5 the residual is Plus(0.958..., Times(2.0, x))
+	 * </pre>
+	 * 
+	 * The given <code>node</code> isn't modified.
+	 * 
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param fixed
+	 *            the values of the fixed variables
+	 * @return the residual expression
+	 */
+	public ASTNode specialize(final ASTNode node, final Map<String, Double> fixed) {
+		Map<String, Double> values = fixed;
+		if (fRelaxedSyntax) {
+			values = new HashMap<String, Double>();
+			for (Map.Entry<String, Double> entry : fixed.entrySet()) {
+				values.put(entry.getKey().toLowerCase(), entry.getValue());
+			}
+		}
+		ASTNode result = substitute(node, values);
+		if (result instanceof FunctionNode) {
+			return optimizeFunction((FunctionNode) result);
+		}
+		return result;
+	}
+
+	/**
+	 * Substitute the <code>fixed</code> variables in <code>node</code> with
+	 * their values. Subtrees, which don't depend on a fixed variable, are
+	 * shared with the given <code>node</code>.
+	 */
+	private static ASTNode substitute(final ASTNode node, final Map<String, Double> fixed) {
+		if (node instanceof SymbolNode) {
+			Double value = fixed.get(node.toString());
+			if (value != null) {
+				return new DoubleNode(value.doubleValue());
+			}
+		} else if (node instanceof FunctionNode) {
+			FunctionNode functionNode = (FunctionNode) node;
+			for (String variableName : fixed.keySet()) {
+				if (functionNode.dependsOn(variableName)) {
+					FunctionNode result = functionNode.copy();
+					for (int i = 1; i < result.size(); i++) {
+						result.set(i, substitute(functionNode.getNode(i), fixed));
+					}
+					return result;
+				}
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Replace the expensive forms of an optimized <code>functionNode</code>
+	 * with cheaper equivalent functions:
+	 * 
+	 * <ul>
+	 * <li><code>Power[x, -1]</code> becomes <code>Divide[1.0, x]</code> and
+	 * <code>Times[a, Divide[1.0, x]]</code> becomes
+	 * <code>Divide[a, x]</code></li>
+	 * <li><code>Power[x, 1]</code> becomes <code>x</code> and
+	 * <code>Power[x, 2|3|4]</code> of a symbol <code>x</code> becomes
+	 * <code>Times[x, x, ...]</code></li>
+	 * <li><code>Power[E, x]</code> becomes <code>Exp[x]</code></li>
+	 * <li><code>Times[-1, x]</code> becomes <code>Minus[x]</code></li>
+	 * </ul>
+	 * 
+	 * A rule is only applied, if the registry of this evaluator doesn't
+	 * override the functions of the rule. <code>Power[x, 0.5]</code> isn't
+	 * rewritten to <code>Sqrt[x]</code>, because <code>Math.pow()</code> and
+	 * <code>Math.sqrt()</code> differ for <code>-Infinity</code> and
+	 * <code>-0.0</code>.
+	 * 
+	 * @param functionNode
+	 *            a function node, whose arguments are already optimized
+	 * @return
+	 */
+	private ASTNode reduceStrength(final FunctionNode functionNode) {
+		if (!(functionNode.getNode(0) instanceof SymbolNode)) {
+			return functionNode;
+		}
+		Object function = fRegistry.getFunction(functionNode.getNode(0).toString());
+		if (isBuiltinFunction(function, "Power") && functionNode.size() == 3) {
+			ASTNode base = functionNode.getNode(1);
+			ASTNode exponent = functionNode.getNode(2);
+			if (base instanceof DoubleNode && ((DoubleNode) base).doubleValue() == Math.E && isBuiltin("Exp")) {
+				return fASTFactory.createFunction(fASTFactory.createSymbol("Exp"), exponent);
+			}
+			if (exponent instanceof DoubleNode) {
+				double value = ((DoubleNode) exponent).doubleValue();
+				if (value == -1.0 && isBuiltin("Divide")) {
+					return fASTFactory.createFunction(fASTFactory.createSymbol("Divide"), new DoubleNode(1.0), base);
+				}
+				if (value == 1.0) {
+					return base;
+				}
+				if ((value == 2.0 || value == 3.0 || value == 4.0) && base instanceof SymbolNode
+						&& isBuiltin("Times")) {
+					// only a variable is cheap enough to be evaluated repeatedly
+					FunctionNode times = fASTFactory.createFunction(fASTFactory.createSymbol("Times"));
+					for (int i = 0; i < value; i++) {
+						times.add(base);
+					}
+					return times;
+				}
+			}
+		} else if (isBuiltinFunction(function, "Times") && functionNode.size() > 2) {
+			if (functionNode.getNode(1) instanceof DoubleNode
+					&& ((DoubleNode) functionNode.getNode(1)).doubleValue() == -1.0 && isBuiltin("Minus")) {
+				FunctionNode times = fASTFactory.createFunction((SymbolNode) functionNode.getNode(0));
+				for (int i = 2; i < functionNode.size(); i++) {
+					times.add(functionNode.getNode(i));
+				}
+				return fASTFactory.createFunction(fASTFactory.createSymbol("Minus"), reduceTimes(times));
+			}
+			return reduceTimes(functionNode);
+		}
+		return functionNode;
+	}
+
+	/**
+	 * Replace a factor <code>Divide[1.0, x]</code> of <code>Times</code> with a
+	 * division by <code>x</code>.
+	 * 
+	 * @param times
+	 * @return
+	 */
+	private ASTNode reduceTimes(final FunctionNode times) {
+		if (times.size() == 2) {
+			return times.getNode(1);
+		}
+		if (!isBuiltin("Divide")) {
+			return times;
+		}
+		for (int i = 1; i < times.size(); i++) {
+			ASTNode factor = times.getNode(i);
+			if (isReciprocal(factor)) {
+				FunctionNode numerator = fASTFactory.createFunction((SymbolNode) times.getNode(0));
+				for (int j = 1; j < times.size(); j++) {
+					if (j != i) {
+						numerator.add(times.getNode(j));
+					}
+				}
+				return fASTFactory.createFunction(fASTFactory.createSymbol("Divide"), reduceTimes(numerator),
+						((FunctionNode) factor).getNode(2));
+			}
+		}
+		return times;
+	}
+
+	private boolean isReciprocal(final ASTNode node) {
+		if (node instanceof FunctionNode) {
+			FunctionNode functionNode = (FunctionNode) node;
+			return functionNode.size() == 3 && functionNode.getNode(0) instanceof SymbolNode
+					&& isSymbol((SymbolNode) functionNode.getNode(0), "Divide")
+					&& functionNode.getNode(1) instanceof DoubleNode
+					&& ((DoubleNode) functionNode.getNode(1)).doubleValue() == 1.0;
+		}
+		return false;
+	}
+
+	/**
+	 * Define a value for a given variable name. If the name is already bound to
+	 * a variable, which was created by this evaluator, the value of this
+	 * variable is updated, so the compiled form of the expression stays valid.
+	 * A variable of the caller (see
+	 * {@link #defineVariable(String, IDoubleValue)}) is never modified; it's
+	 * replaced by a new variable.
 	 * 
 	 * @param variableName
 	 * @param value
 	 */
 	public void defineVariable(String variableName, double value) {
-		if (fRelaxedSyntax) {
-			fVariableMap.put(variableName.toLowerCase(), new DoubleVariable(value));
+		String name = fRelaxedSyntax ? variableName.toLowerCase() : variableName;
+		IDoubleValue v = fVariableMap.get(name);
+		if (v instanceof OwnedDoubleVariable) {
+			v.setValue(value);
 		} else {
-			fVariableMap.put(variableName, new DoubleVariable(value));
+			fVariableMap.put(name, new OwnedDoubleVariable(value));
+			fTieredCompiler.invalidate();
 		}
 	}
 
@@ -813,10 +2254,14 @@ public class DoubleEvaluator {
 	 * @param value
 	 */
 	public void defineVariable(String variableName, IDoubleValue value) {
+		IDoubleValue old;
 		if (fRelaxedSyntax) {
-			fVariableMap.put(variableName.toLowerCase(), value);
+			old = fVariableMap.put(variableName.toLowerCase(), value);
 		} else {
-			fVariableMap.put(variableName, value);
+			old = fVariableMap.put(variableName, value);
+		}
+		if (old != value) {
+			fTieredCompiler.invalidate();
 		}
 	}
 
@@ -827,11 +2272,7 @@ public class DoubleEvaluator {
 	 * @param value
 	 */
 	public void defineVariable(String variableName) {
-		if (fRelaxedSyntax) {
-			fVariableMap.put(variableName.toLowerCase(), new DoubleVariable(0.0));
-		} else {
-			fVariableMap.put(variableName, new DoubleVariable(0.0));
-		}
+		defineVariable(variableName, 0.0);
 	}
 
 	/**
@@ -857,20 +2298,26 @@ public class DoubleEvaluator {
 	 * @param value
 	 */
 	public void defineVariable(String variableName, BooleanVariable value) {
+		BooleanVariable old;
 		if (fRelaxedSyntax) {
-			fBooleanVariables.put(variableName.toLowerCase(), value);
+			old = fBooleanVariables.put(variableName.toLowerCase(), value);
 		} else {
-			fBooleanVariables.put(variableName, value);
+			old = fBooleanVariables.put(variableName, value);
+		}
+		if (old != value) {
+			fTieredCompiler.invalidate();
 		}
-
 	}
 
 	/**
 	 * Clear all defined variables for this evaluator.
 	 */
 	public void clearVariables() {
-		fVariableMap.clear();
-		fBooleanVariables.clear();
+		if (!fVariableMap.isEmpty() || !fBooleanVariables.isEmpty()) {
+			fVariableMap.clear();
+			fBooleanVariables.clear();
+			fTieredCompiler.invalidate();
+		}
 	}
 
 	/**
@@ -898,7 +2345,7 @@ public class DoubleEvaluator {
 		Parser p = new Parser(relaxedSyntax ? ASTNodeFactory.RELAXED_STYLE_FACTORY : ASTNodeFactory.MMA_STYLE_FACTORY,
 				relaxedSyntax);
 		ASTNode node = p.parse(expression);
-		getVariables(node, result);
+		getVariables(node, result, relaxedSyntax ? DEFAULT_REGISTRY.relaxed() : DEFAULT_REGISTRY);
 	}
 
 	/**
@@ -910,18 +2357,23 @@ public class DoubleEvaluator {
 	 *            a set which contains the variable names
 	 */
 	public static void getVariables(final ASTNode node, Set<String> result) {
+		getVariables(node, result, DEFAULT_REGISTRY.relaxed());
+	}
+
+	private static void getVariables(final ASTNode node, Set<String> result,
+			final FunctionRegistry<Object, Object, Double> registry) {
 		if (node instanceof FunctionNode) {
 			FunctionNode functionNode = (FunctionNode) node;
 			if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode) {
 				for (int i = 1; i < functionNode.size(); i++) {
-					getVariables(functionNode.getNode(i), result);
+					getVariables(functionNode.getNode(i), result, registry);
 				}
 			}
 		}
 		if (node instanceof SymbolNode) {
-			Object obj = SYMBOL_DOUBLE_MAP.get(node.toString());
+			Object obj = registry.getSymbol(node.toString());
 			if (obj == null) {
-				obj = SYMBOL_BOOLEAN_MAP.get(node.toString());
+				obj = registry.getBooleanSymbol(node.toString());
 				if (obj == null) {
 					result.add(node.toString());
 				}
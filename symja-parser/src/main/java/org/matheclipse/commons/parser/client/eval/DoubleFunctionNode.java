@@ -0,0 +1,204 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleUnaryOperator;
+
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FunctionNode;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
+import org.matheclipse.commons.parser.client.eval.api.FunctionRegistry;
+
+/**
+ * A <code>FunctionNode</code>, whose function is resolved once, when the
+ * <code>DoubleEvaluator</code> parses an expression. It holds the function
+ * object of the <code>DoubleEvaluator</code> function map and calls it through
+ * the path for its number of arguments, so an evaluation is a single virtual
+ * call without symbol name comparisons and map lookups.
+ * 
+ * The node is an ordinary <code>FunctionNode</code> with the same head and
+ * arguments for all other purposes (i.e. <code>toString()</code>,
+ * <code>equals()</code> or the compilers). Only evaluators with the registry,
+ * which resolved the function, use the resolved function object. The node
+ * must not be modified.
+ */
+public abstract class DoubleFunctionNode extends FunctionNode {
+
+	/**
+	 * <code>If[condition, trueCase, falseCase]</code>
+	 */
+	private static final class IfNode extends DoubleFunctionNode {
+		private final ASTNode fCondition;
+		private final ASTNode fTrueCase;
+		private final ASTNode fFalseCase;
+
+		IfNode(FunctionRegistry<?, ?, ?> registry, SymbolNode head, ASTNode[] args) {
+			super(registry, head, args);
+			fCondition = args[0];
+			fTrueCase = args[1];
+			fFalseCase = args[2];
+		}
+
+		@Override
+		public double evaluate(DoubleEvaluator engine) {
+			return engine.evaluateNode(engine.evaluateNodeLogical(fCondition) ? fTrueCase : fFalseCase);
+		}
+	}
+
+	/**
+	 * A function, which evaluates the <code>FunctionNode</code> arguments on
+	 * its own (i.e. <code>Plus</code> or <code>Times</code>).
+	 */
+	private static final class CallNode extends DoubleFunctionNode {
+		private final IDoubleFunction fFunction;
+
+		CallNode(FunctionRegistry<?, ?, ?> registry, SymbolNode head, IDoubleFunction function, ASTNode[] args) {
+			super(registry, head, args);
+			fFunction = function;
+		}
+
+		@Override
+		public double evaluate(DoubleEvaluator engine) {
+			return fFunction.applyAsDouble(engine, this);
+		}
+	}
+
+	private static final class SupplierNode extends DoubleFunctionNode {
+		private final DoubleSupplier fFunction;
+
+		SupplierNode(FunctionRegistry<?, ?, ?> registry, SymbolNode head, DoubleSupplier function, ASTNode[] args) {
+			super(registry, head, args);
+			fFunction = function;
+		}
+
+		@Override
+		public double evaluate(DoubleEvaluator engine) {
+			return fFunction.getAsDouble();
+		}
+	}
+
+	private static final class UnaryNode extends DoubleFunctionNode {
+		private final DoubleUnaryOperator fFunction;
+		private final ASTNode fArg1;
+
+		UnaryNode(FunctionRegistry<?, ?, ?> registry, SymbolNode head, DoubleUnaryOperator function, ASTNode[] args) {
+			super(registry, head, args);
+			fFunction = function;
+			fArg1 = args[0];
+		}
+
+		@Override
+		public double evaluate(DoubleEvaluator engine) {
+			return fFunction.applyAsDouble(engine.evaluateNode(fArg1));
+		}
+	}
+
+	private static final class BinaryNode extends DoubleFunctionNode {
+		private final DoubleBinaryOperator fFunction;
+		private final ASTNode fArg1;
+		private final ASTNode fArg2;
+
+		BinaryNode(FunctionRegistry<?, ?, ?> registry, SymbolNode head, DoubleBinaryOperator function, ASTNode[] args) {
+			super(registry, head, args);
+			fFunction = function;
+			fArg1 = args[0];
+			fArg2 = args[1];
+		}
+
+		@Override
+		public double evaluate(DoubleEvaluator engine) {
+			return fFunction.applyAsDouble(engine.evaluateNode(fArg1), engine.evaluateNode(fArg2));
+		}
+	}
+
+	/**
+	 * Create a bound node for the <code>If</code> function with a false case.
+	 * 
+	 * @param registry
+	 *            the registry of the evaluator, which binds the node
+	 * @param head
+	 * @param args
+	 *            the condition, the true case and the false case
+	 * @return
+	 */
+	static DoubleFunctionNode createIf(FunctionRegistry<?, ?, ?> registry, SymbolNode head, ASTNode[] args) {
+		return new IfNode(registry, head, args);
+	}
+
+	/**
+	 * Create a bound node for the given function object in the same order as
+	 * <code>DoubleEvaluator#evaluateFunction()</code> tests its interfaces.
+	 * 
+	 * @param registry
+	 *            the registry, which resolved the function
+	 * @param head
+	 * @param function
+	 *            a function object of the <code>DoubleEvaluator</code>
+	 *            function map
+	 * @param args
+	 *            the (already bound) arguments
+	 * @return <code>null</code> if the function cannot be called with the
+	 *         given number of arguments
+	 */
+	static DoubleFunctionNode create(FunctionRegistry<?, ?, ?> registry, SymbolNode head, Object function,
+			ASTNode[] args) {
+		if (function instanceof IDoubleFunction) {
+			return new CallNode(registry, head, (IDoubleFunction) function, args);
+		}
+		if (args.length == 0 && function instanceof DoubleSupplier) {
+			return new SupplierNode(registry, head, (DoubleSupplier) function, args);
+		}
+		if (args.length == 1 && function instanceof DoubleUnaryOperator) {
+			return new UnaryNode(registry, head, (DoubleUnaryOperator) function, args);
+		}
+		if (args.length == 2 && function instanceof DoubleBinaryOperator) {
+			return new BinaryNode(registry, head, (DoubleBinaryOperator) function, args);
+		}
+		return null;
+	}
+
+	private final FunctionRegistry<?, ?, ?> fRegistry;
+
+	private DoubleFunctionNode(FunctionRegistry<?, ?, ?> registry, SymbolNode head, ASTNode[] args) {
+		super(head);
+		fRegistry = registry;
+		for (ASTNode arg : args) {
+			add(arg);
+		}
+	}
+
+	/**
+	 * Evaluate the function with the resolved function object.
+	 * 
+	 * @param engine
+	 *            the evaluator, which evaluates the arguments
+	 * @return
+	 */
+	public abstract double evaluate(DoubleEvaluator engine);
+
+	/**
+	 * Test if the function was resolved by the registry of the given
+	 * <code>engine</code>.
+	 * 
+	 * @param engine
+	 * @return
+	 */
+	public boolean isBoundTo(final DoubleEvaluator engine) {
+		return fRegistry == engine.getRegistry();
+	}
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FunctionNode;
+import org.matheclipse.commons.parser.client.ast.NumberNode;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
+import org.matheclipse.commons.parser.client.eval.api.AbstractJavaSourceGenerator;
+
+/**
+ * Generates the source code of a Java class from formula definitions, so that
+ * the formulas can be compiled at build time. Each definition of the form
+ * <code>f[x_, y_] := x^2 + y</code> (or <code>f(x_, y_) := x^2 + y</code> in
+ * relaxed mode) becomes a method <code>public static double f(double x, double
+ * y)</code>.
+ * 
+ * The generated code only depends on <code>java.lang.Math</code> and evaluates
+ * the formulas with the same semantics as the <code>DoubleEvaluator</code>.
+ * Formulas can call the other formulas defined in the same source.
+ * 
+ * @see ComplexJavaSourceGenerator
+ * @see org.matheclipse.commons.parser.client.eval.dfp.DfpJavaSourceGenerator
+ */
+public class DoubleJavaSourceGenerator extends AbstractJavaSourceGenerator {
+
+	/**
+	 * Maps the built-in function names to the <code>java.lang.Math</code>
+	 * methods with one <code>double</code> argument.
+	 */
+	private static final Map<String, String> UNARY_FUNCTIONS = new HashMap<String, String>();
+
+	/**
+	 * The names of the built-in functions and constants.
+	 */
+	private static final List<String> BUILTIN_NAMES = new ArrayList<String>();
+
+	/**
+	 * The names of the generated helper methods.
+	 */
+	private static final List<String> HELPER_NAMES = Arrays.asList("$power", "$divide", "$max", "$min");
+
+	static {
+		UNARY_FUNCTIONS.put("Abs", "Math.abs");
+		UNARY_FUNCTIONS.put("ArcCos", "Math.acos");
+		UNARY_FUNCTIONS.put("ArcSin", "Math.asin");
+		UNARY_FUNCTIONS.put("ArcTan", "Math.atan");
+		UNARY_FUNCTIONS.put("Ceiling", "Math.ceil");
+		UNARY_FUNCTIONS.put("Cos", "Math.cos");
+		UNARY_FUNCTIONS.put("Cosh", "Math.cosh");
+		UNARY_FUNCTIONS.put("Exp", "Math.exp");
+		UNARY_FUNCTIONS.put("Floor", "Math.floor");
+		UNARY_FUNCTIONS.put("Log", "Math.log");
+		UNARY_FUNCTIONS.put("Sign", "Math.signum");
+		UNARY_FUNCTIONS.put("Sin", "Math.sin");
+		UNARY_FUNCTIONS.put("Sinh", "Math.sinh");
+		UNARY_FUNCTIONS.put("Sqrt", "Math.sqrt");
+		UNARY_FUNCTIONS.put("Tan", "Math.tan");
+		UNARY_FUNCTIONS.put("Tanh", "Math.tanh");
+
+		BUILTIN_NAMES.addAll(Arrays.asList("Plus", "Times", "Power", "Divide", "Minus", "Max", "Min", "Round",
+				"Random", "And", "Or", "Not", "Equal", "Unequal", "Less", "LessEqual", "Greater", "GreaterEqual",
+				"True", "False"));
+		BUILTIN_NAMES.addAll(UNARY_FUNCTIONS.keySet());
+	}
+
+	private final DoubleEvaluator fEngine;
+
+	private boolean fUsesPower;
+
+	private boolean fUsesDivide;
+
+	private boolean fUsesMax;
+
+	private boolean fUsesMin;
+
+	public DoubleJavaSourceGenerator() {
+		this(false);
+	}
+
+	public DoubleJavaSourceGenerator(boolean relaxedSyntax) {
+		super(relaxedSyntax, BUILTIN_NAMES, HELPER_NAMES);
+		fEngine = new DoubleEvaluator(relaxedSyntax);
+	}
+
+	@Override
+	protected String getTypeName() {
+		return "double";
+	}
+
+	@Override
+	protected ASTNode optimizeFunction(FunctionNode functionNode) {
+		return fEngine.optimizeFunction(functionNode);
+	}
+
+	@Override
+	protected Boolean getSymbolBoolean(String symbol) {
+		return fEngine.getSymbolBoolean(symbol);
+	}
+
+	@Override
+	protected String getUndefinedMessage(FunctionNode functionNode) {
+		return "EvalDouble#evaluateFunction(FunctionNode) not possible for: " + functionNode.toString();
+	}
+
+	@Override
+	protected void reset() {
+		fUsesPower = false;
+		fUsesDivide = false;
+		fUsesMax = false;
+		fUsesMin = false;
+	}
+
+	@Override
+	protected void generateHelpers(StringBuilder buf) {
+		if (fUsesPower) {
+			buf.append("\n");
+			buf.append("\tprivate static double $power(double base, double exponent) {\n");
+			buf.append("\t\tif (base == 0.0 && exponent != 0.0) {\n");
+			buf.append("\t\t\treturn base;\n");
+			buf.append("\t\t}\n");
+			buf.append("\t\treturn Math.pow(base, exponent);\n");
+			buf.append("\t}\n");
+		}
+		if (fUsesDivide) {
+			buf.append("\n");
+			buf.append("\tprivate static double $divide(double numerator, double denominator) {\n");
+			buf.append("\t\tif (denominator == 0.0) {\n");
+			buf.append("\t\t\treturn numerator * denominator;\n");
+			buf.append("\t\t}\n");
+			buf.append("\t\treturn numerator / denominator;\n");
+			buf.append("\t}\n");
+		}
+		if (fUsesMax) {
+			buf.append("\n");
+			buf.append("\tprivate static double $max(double result, double arg) {\n");
+			buf.append("\t\tdouble temp = Math.max(result, arg);\n");
+			buf.append("\t\treturn temp > result ? temp : result;\n");
+			buf.append("\t}\n");
+		}
+		if (fUsesMin) {
+			buf.append("\n");
+			buf.append("\tprivate static double $min(double result, double arg) {\n");
+			buf.append("\t\tdouble temp = Math.min(result, arg);\n");
+			buf.append("\t\treturn temp < result ? temp : result;\n");
+			buf.append("\t}\n");
+		}
+	}
+
+	@Override
+	protected boolean translateValue(ASTNode node, StringBuilder buf) {
+		if (node instanceof DoubleNode) {
+			literal(((DoubleNode) node).doubleValue(), buf);
+			return true;
+		}
+		if (node instanceof SymbolNode) {
+			Double dbl = fEngine.getSymbolDouble(node.toString());
+			if (dbl != null) {
+				literal(dbl.doubleValue(), buf);
+				return true;
+			}
+		} else if (node instanceof NumberNode) {
+			literal(((NumberNode) node).doubleValue(), buf);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	protected boolean translateBuiltin(String name, FunctionNode functionNode, StringBuilder buf) {
+		int size = functionNode.size();
+		if (name.equals("Plus")) {
+			if (size == 1) {
+				buf.append("0.0");
+			} else {
+				translateArguments(functionNode, " + ", buf);
+			}
+			return true;
+		}
+		if (name.equals("Times")) {
+			if (size == 1) {
+				buf.append("1.0");
+			} else {
+				translateArguments(functionNode, " * ", buf);
+			}
+			return true;
+		}
+		if (name.equals("Max") || name.equals("Min")) {
+			if (size == 1) {
+				buf.append("Double.NaN");
+				return true;
+			}
+			String helper;
+			if (name.equals("Max")) {
+				fUsesMax = true;
+				helper = "$max(";
+			} else {
+				fUsesMin = true;
+				helper = "$min(";
+			}
+			for (int i = 2; i < size; i++) {
+				buf.append(helper);
+			}
+			translate(functionNode.getNode(1), buf);
+			for (int i = 2; i < size; i++) {
+				buf.append(", ");
+				translate(functionNode.getNode(i), buf);
+				buf.append(')');
+			}
+			return true;
+		}
+		if (size == 1 && name.equals("Random")) {
+			buf.append("Math.random()");
+			return true;
+		}
+		if (size == 2) {
+			if (name.equals("Minus")) {
+				buf.append("(-");
+				translate(functionNode.getNode(1), buf);
+				buf.append(')');
+				return true;
+			}
+			if (name.equals("Round")) {
+				buf.append("((double) Math.round(");
+				translate(functionNode.getNode(1), buf);
+				buf.append("))");
+				return true;
+			}
+			String method = UNARY_FUNCTIONS.get(name);
+			if (method != null) {
+				buf.append(method).append('(');
+				translate(functionNode.getNode(1), buf);
+				buf.append(')');
+				return true;
+			}
+		} else if (size == 3) {
+			if (name.equals("Power")) {
+				fUsesPower = true;
+				buf.append("$power");
+				translateArguments(functionNode, ", ", buf);
+				return true;
+			}
+			if (name.equals("Divide")) {
+				fUsesDivide = true;
+				buf.append("$divide");
+				translateArguments(functionNode, ", ", buf);
+				return true;
+			}
+			if (name.equals("ArcTan")) {
+				buf.append("Math.atan2");
+				translateArguments(functionNode, ", ", buf);
+				return true;
+			}
+			if (name.equals("Log")) {
+				// Log[base, z] == log(z) / log(base)
+				buf.append("(Math.log(");
+				translate(functionNode.getNode(2), buf);
+				buf.append(") / Math.log(");
+				translate(functionNode.getNode(1), buf);
+				buf.append("))");
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	protected boolean translateComparison(String name, FunctionNode functionNode, StringBuilder buf) {
+		String operator = null;
+		if (name.equals("Equal") || name.equals("Unequal")) {
+			buf.append(name.equals("Equal") ? "(Math.abs(" : "!(Math.abs(");
+			translate(functionNode.getNode(1), buf);
+			buf.append(" - ");
+			translate(functionNode.getNode(2), buf);
+			buf.append(") < ").append(Double.toString(DoubleEvaluator.EPSILON)).append(')');
+			return true;
+		}
+		if (name.equals("Less")) {
+			operator = " < ";
+		} else if (name.equals("LessEqual")) {
+			operator = " <= ";
+		} else if (name.equals("Greater")) {
+			operator = " > ";
+		} else if (name.equals("GreaterEqual")) {
+			operator = " >= ";
+		}
+		if (operator != null) {
+			buf.append('(');
+			translate(functionNode.getNode(1), buf);
+			buf.append(operator);
+			translate(functionNode.getNode(2), buf);
+			buf.append(')');
+			return true;
+		}
+		return false;
+	}
+}
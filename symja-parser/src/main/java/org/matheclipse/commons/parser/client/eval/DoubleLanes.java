@@ -0,0 +1,206 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+/**
+ * The inner loops of the <code>DoubleBatchProgram</code> kernels. Every method
+ * combines <code>length</code> consecutive values of arrays element by element
+ * and stores the results in <code>result[offset, offset + length)</code>.
+ * 
+ * This implementation uses scalar loops. On Java 17 and newer the multi-release
+ * jar contains a <code>DoubleLanesFactory</code>, which returns an
+ * implementation based on the <code>jdk.incubator.vector</code> API, if this
+ * module is available at runtime.
+ * 
+ * @see #INSTANCE
+ */
+class DoubleLanes {
+
+	/**
+	 * The comparison functions of the <code>DoubleEvaluator</code> registry,
+	 * which are evaluated as masks.
+	 */
+	static final int EQUAL = 0;
+
+	static final int UNEQUAL = 1;
+
+	static final int LESS = 2;
+
+	static final int LESS_EQUAL = 3;
+
+	static final int GREATER = 4;
+
+	static final int GREATER_EQUAL = 5;
+
+	/**
+	 * The lane operations of the current runtime.
+	 */
+	static final DoubleLanes INSTANCE = DoubleLanesFactory.create();
+
+	/**
+	 * Returns <code>true</code> if the loops are evaluated with SIMD
+	 * instructions.
+	 * 
+	 * @return
+	 */
+	boolean isVectorized() {
+		return false;
+	}
+
+	void plus(double[] result, int offset, double value, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			result[i] += value;
+		}
+	}
+
+	void plus(double[] result, int offset, double[] arg, int argOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			result[offset + i] += arg[argOffset + i];
+		}
+	}
+
+	void times(double[] result, int offset, double value, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			result[i] *= value;
+		}
+	}
+
+	void times(double[] result, int offset, double[] arg, int argOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			result[offset + i] *= arg[argOffset + i];
+		}
+	}
+
+	/**
+	 * <code>Max</code> keeps the current result, if the argument isn't greater
+	 * (i.e. if the argument is <code>NaN</code>).
+	 */
+	void max(double[] result, int offset, double value, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			if (value > result[i]) {
+				result[i] = value;
+			}
+		}
+	}
+
+	void max(double[] result, int offset, double[] arg, int argOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			if (arg[argOffset + i] > result[offset + i]) {
+				result[offset + i] = arg[argOffset + i];
+			}
+		}
+	}
+
+	/**
+	 * <code>Min</code> keeps the current result, if the argument isn't less
+	 * (i.e. if the argument is <code>NaN</code>).
+	 */
+	void min(double[] result, int offset, double value, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			if (value < result[i]) {
+				result[i] = value;
+			}
+		}
+	}
+
+	void min(double[] result, int offset, double[] arg, int argOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			if (arg[argOffset + i] < result[offset + i]) {
+				result[offset + i] = arg[argOffset + i];
+			}
+		}
+	}
+
+	void sqrt(double[] result, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			result[i] = Math.sqrt(result[i]);
+		}
+	}
+
+	void abs(double[] result, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			result[i] = Math.abs(result[i]);
+		}
+	}
+
+	/**
+	 * <code>Power[x, exponent]</code> for the small integer exponents
+	 * <code>-1, 2, 3, 4</code> by multiplications. Like the
+	 * <code>Power</code> function a zero base is returned unchanged.
+	 */
+	void power(double[] result, int offset, int exponent, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			double x = result[i];
+			if (x != 0.0) {
+				result[i] = power(x, exponent);
+			}
+		}
+	}
+
+	static double power(double x, int exponent) {
+		switch (exponent) {
+		case -1:
+			return 1.0 / x;
+		case 2:
+			return x * x;
+		case 3:
+			return x * x * x;
+		case 4:
+			double square = x * x;
+			return square * square;
+		default:
+			return Math.pow(x, exponent);
+		}
+	}
+
+	/**
+	 * Select <code>trueValues[i]</code> where the comparison of
+	 * <code>left[i]</code> and <code>right[i]</code> is <code>true</code> and
+	 * keep the value of <code>result</code> otherwise.
+	 * 
+	 * @param comparison
+	 *            one of the comparison constants of this class
+	 * @param valuesOffset
+	 *            the first index of <code>left, right</code> and
+	 *            <code>trueValues</code>
+	 */
+	void select(int comparison, double[] left, double[] right, double[] trueValues, int valuesOffset,
+			double[] result, int offset, int length) {
+		for (int i = 0; i < length; i++) {
+			int j = valuesOffset + i;
+			if (compare(comparison, left[j], right[j])) {
+				result[offset + i] = trueValues[j];
+			}
+		}
+	}
+
+	static boolean compare(int comparison, double arg1, double arg2) {
+		switch (comparison) {
+		case EQUAL:
+			return Math.abs(arg1 - arg2) < DoubleEvaluator.EPSILON;
+		case UNEQUAL:
+			return !(Math.abs(arg1 - arg2) < DoubleEvaluator.EPSILON);
+		case LESS:
+			return arg1 < arg2;
+		case LESS_EQUAL:
+			return arg1 <= arg2;
+		case GREATER:
+			return arg1 > arg2;
+		default:
+			return arg1 >= arg2;
+		}
+	}
+}
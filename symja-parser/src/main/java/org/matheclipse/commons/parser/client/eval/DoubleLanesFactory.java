@@ -0,0 +1,31 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+/**
+ * Creates the <code>DoubleLanes</code> of the current runtime. This class is
+ * replaced in the <code>META-INF/versions/17</code> directory of the
+ * multi-release jar.
+ */
+final class DoubleLanesFactory {
+
+	private DoubleLanesFactory() {
+	}
+
+	static DoubleLanes create() {
+		return new DoubleLanes();
+	}
+}
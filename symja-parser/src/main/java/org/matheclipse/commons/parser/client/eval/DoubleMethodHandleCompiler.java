@@ -0,0 +1,431 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleUnaryOperator;
+
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FunctionNode;
+import org.matheclipse.commons.parser.client.ast.NumberNode;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
+import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean1Function;
+import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean2Function;
+import org.matheclipse.commons.parser.client.eval.api.IBooleanLazy2Function;
+import org.matheclipse.commons.parser.client.math.ArithmeticMathException;
+
+/**
+ * Compiles a <code>double</code> expression into a composed
+ * <code>java.lang.invoke.MethodHandle</code> of type
+ * <code>(double[])double</code>. The leaf handles are bound to the function
+ * objects registered in the <code>DoubleEvaluator</code>, so no classes are
+ * generated at runtime.
+ * 
+ * All other subexpressions (i.e. callback functions or variables defined in
+ * the <code>DoubleEvaluator</code>) are delegated to the closure compiled form
+ * of <code>DoubleEvaluator#compile()</code>.
+ */
+final class DoubleMethodHandleCompiler {
+
+	/**
+	 * Evaluates the compiled method handle.
+	 */
+	static final class MethodHandleFunction implements IDoubleFrameFunction {
+		private final MethodHandle fHandle;
+
+		MethodHandleFunction(MethodHandle handle) {
+			fHandle = handle;
+		}
+
+		@Override
+		public double applyAsDouble(double[] frame) {
+			try {
+				return (double) fHandle.invokeExact(frame);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new ArithmeticMathException("MethodHandleFunction#applyAsDouble(double[]) " + t.getMessage());
+			}
+		}
+
+		/**
+		 * Returns the method handle of type <code>(double[])double</code>.
+		 * 
+		 * @return
+		 */
+		MethodHandle getHandle() {
+			return fHandle;
+		}
+	}
+
+	private static final MethodType FUNCTION_TYPE = MethodType.methodType(double.class, double[].class);
+
+	private static final MethodType PREDICATE_TYPE = MethodType.methodType(boolean.class, double[].class);
+
+	private static final MethodHandle ARRAY_GETTER = MethodHandles.arrayElementGetter(double[].class);
+
+	private static final MethodHandle ARRAY_SETTER = MethodHandles.arrayElementSetter(double[].class);
+
+	private static final MethodHandle UNARY_OPERATOR = findVirtual(DoubleUnaryOperator.class, "applyAsDouble",
+			MethodType.methodType(double.class, double.class));
+
+	private static final MethodHandle BINARY_OPERATOR = findVirtual(DoubleBinaryOperator.class, "applyAsDouble",
+			MethodType.methodType(double.class, double.class, double.class));
+
+	private static final MethodHandle SUPPLIER = findVirtual(DoubleSupplier.class, "getAsDouble",
+			MethodType.methodType(double.class));
+
+	private static final MethodHandle FRAME_FUNCTION = findVirtual(IDoubleFrameFunction.class, "applyAsDouble",
+			FUNCTION_TYPE);
+
+	private static final MethodHandle FRAME_PREDICATE = findVirtual(IDoubleFramePredicate.class, "test",
+			PREDICATE_TYPE);
+
+	private static final MethodHandle BINARY_PREDICATE = findVirtual(DoubleBinaryPredicate.class, "test",
+			MethodType.methodType(boolean.class, double.class, double.class));
+
+	private static final MethodHandle BOOLEAN1_FUNCTION = findVirtual(IBooleanBoolean1Function.class, "evaluate",
+			MethodType.methodType(boolean.class, boolean.class));
+
+	private static final MethodHandle BOOLEAN2_FUNCTION = findVirtual(IBooleanBoolean2Function.class, "evaluate",
+			MethodType.methodType(boolean.class, boolean.class, boolean.class));
+
+	private static final MethodHandle MAX_STEP = findStatic("maxStep");
+
+	private static final MethodHandle MIN_STEP = findStatic("minStep");
+
+	private static final MethodHandle EXCEPTION_CONSTRUCTOR;
+
+	static {
+		try {
+			EXCEPTION_CONSTRUCTOR = MethodHandles.lookup().findConstructor(ArithmeticMathException.class,
+					MethodType.methodType(void.class, String.class));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MethodHandle findVirtual(Class<?> clazz, String name, MethodType type) {
+		try {
+			return MethodHandles.publicLookup().findVirtual(clazz, name, type);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MethodHandle findStatic(String name) {
+		try {
+			return MethodHandles.lookup().findStatic(DoubleMethodHandleCompiler.class, name,
+					MethodType.methodType(double.class, double.class, double.class));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * One step of the <code>Max</code> function, which ignores
+	 * <code>NaN</code> arguments after the first argument.
+	 */
+	private static double maxStep(double result, double arg) {
+		double temp = Math.max(result, arg);
+		return temp > result ? temp : result;
+	}
+
+	/**
+	 * One step of the <code>Min</code> function, which ignores
+	 * <code>NaN</code> arguments after the first argument.
+	 */
+	private static double minStep(double result, double arg) {
+		double temp = Math.min(result, arg);
+		return temp < result ? temp : result;
+	}
+
+	/**
+	 * Compile the <code>node</code> into a method handle of type
+	 * <code>(double[])double</code>.
+	 * 
+	 * @param engine
+	 *            the evaluator which resolves the symbols
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param slots
+	 *            the slot indices of the variables in the evaluation frame.
+	 *            Local variables assigned with <code>Set</code> are added to
+	 *            this map.
+	 * @return
+	 * @throws ArithmeticMathException
+	 *             if the <code>node</code> cannot be compiled.
+	 */
+	static IDoubleFrameFunction compile(DoubleEvaluator engine, ASTNode node, Map<String, Integer> slots) {
+		DoubleMethodHandleCompiler compiler = new DoubleMethodHandleCompiler(engine, slots);
+		return new MethodHandleFunction(compiler.compileNode(node));
+	}
+
+	private final DoubleEvaluator fEngine;
+
+	private final Map<String, Integer> fSlots;
+
+	private DoubleMethodHandleCompiler(DoubleEvaluator engine, Map<String, Integer> slots) {
+		fEngine = engine;
+		fSlots = slots;
+	}
+
+	/**
+	 * Returns a handle of type <code>(double[])double</code>, which ignores the
+	 * frame and returns the <code>value</code>.
+	 */
+	private static MethodHandle constant(double value) {
+		return MethodHandles.dropArguments(MethodHandles.constant(double.class, value), 0, double[].class);
+	}
+
+	/**
+	 * Returns a handle of type <code>(double[])boolean</code>, which ignores the
+	 * frame and returns the <code>value</code>.
+	 */
+	private static MethodHandle constant(boolean value) {
+		return MethodHandles.dropArguments(MethodHandles.constant(boolean.class, value), 0, double[].class);
+	}
+
+	/**
+	 * Apply the binary <code>combiner</code> to the results of the two frame
+	 * handles.
+	 * 
+	 * @param combiner
+	 *            a handle with two arguments
+	 * @param arg1
+	 *            a handle with a <code>double[]</code> frame argument
+	 * @param arg2
+	 *            a handle with a <code>double[]</code> frame argument
+	 * @return a handle with a <code>double[]</code> frame argument
+	 */
+	private static MethodHandle combine(MethodHandle combiner, MethodHandle arg1, MethodHandle arg2) {
+		MethodHandle handle = MethodHandles.filterArguments(combiner, 0, arg1, arg2);
+		return MethodHandles.permuteArguments(handle,
+				MethodType.methodType(combiner.type().returnType(), double[].class), 0, 0);
+	}
+
+	private MethodHandle fallback(ASTNode node) {
+		return FRAME_FUNCTION.bindTo(fEngine.compileNode(node, fSlots));
+	}
+
+	private MethodHandle fallbackLogical(ASTNode node) {
+		return FRAME_PREDICATE.bindTo(fEngine.compileNodeLogical(node, fSlots));
+	}
+
+	private MethodHandle compileNode(ASTNode node) {
+		if (node instanceof DoubleNode) {
+			return constant(((DoubleNode) node).doubleValue());
+		}
+		if (node instanceof FunctionNode) {
+			return compileFunction((FunctionNode) node);
+		}
+		if (node instanceof SymbolNode) {
+			Integer slot = fSlots.get(node.toString());
+			if (slot != null) {
+				return MethodHandles.insertArguments(ARRAY_GETTER, 1, slot.intValue());
+			}
+			Double dbl = fEngine.getSymbolDouble(node.toString());
+			if (dbl != null && !fEngine.isVariable(node.toString())) {
+				return constant(dbl.doubleValue());
+			}
+		} else if (node instanceof NumberNode) {
+			return constant(((NumberNode) node).doubleValue());
+		}
+		return fallback(node);
+	}
+
+	private MethodHandle compileFunction(FunctionNode functionNode) {
+		if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode) {
+			String symbol = functionNode.getNode(0).toString();
+			int size = functionNode.size();
+			if (fEngine.isSymbol((SymbolNode) functionNode.getNode(0), "If")) {
+				if (size == 3 || size == 4) {
+					return compileIf(functionNode);
+				}
+			} else {
+				Object obj = fEngine.getFunctionDouble(symbol);
+				if (obj instanceof IDoubleFunction) {
+					MethodHandle handle = compileFunctionNode((IDoubleFunction) obj, functionNode);
+					if (handle != null) {
+						return handle;
+					}
+				} else if (size == 1) {
+					if (obj instanceof DoubleSupplier) {
+						return MethodHandles.dropArguments(SUPPLIER.bindTo(obj), 0, double[].class);
+					}
+				} else if (size == 2) {
+					if (obj instanceof DoubleUnaryOperator) {
+						return MethodHandles.filterReturnValue(compileNode(functionNode.getNode(1)),
+								UNARY_OPERATOR.bindTo(obj));
+					}
+				} else if (size == 3) {
+					if (obj instanceof DoubleBinaryOperator) {
+						return combine(BINARY_OPERATOR.bindTo(obj), compileNode(functionNode.getNode(1)),
+								compileNode(functionNode.getNode(2)));
+					}
+				}
+			}
+		}
+		return fallback(functionNode);
+	}
+
+	private MethodHandle compileIf(FunctionNode functionNode) {
+		MethodHandle condition = compileNodeLogical(functionNode.getNode(1));
+		MethodHandle trueCase = compileNode(functionNode.getNode(2));
+		MethodHandle falseCase;
+		if (functionNode.size() == 4) {
+			falseCase = compileNode(functionNode.getNode(3));
+		} else {
+			String message = "EvalDouble#evaluateFunction(FunctionNode) not possible for: " + functionNode.toString();
+			MethodHandle exception = MethodHandles.insertArguments(EXCEPTION_CONSTRUCTOR, 0, message);
+			MethodHandle thrower = MethodHandles.filterReturnValue(exception,
+					MethodHandles.throwException(double.class, ArithmeticMathException.class));
+			falseCase = MethodHandles.dropArguments(thrower, 0, double[].class);
+		}
+		return MethodHandles.guardWithTest(condition, trueCase, falseCase);
+	}
+
+	/**
+	 * Compile the built-in functions, which evaluate the
+	 * <code>FunctionNode</code> arguments on their own.
+	 * 
+	 * @return <code>null</code> if the function cannot be compiled.
+	 */
+	private MethodHandle compileFunctionNode(IDoubleFunction function, FunctionNode functionNode) {
+		int size = functionNode.size();
+		if (function instanceof DoubleEvaluator.SetFunction) {
+			if (size == 3 && functionNode.getNode(1) instanceof SymbolNode) {
+				MethodHandle value = compileNode(functionNode.getNode(2));
+				String variableName = functionNode.getNode(1).toString();
+				Integer slot = fSlots.get(variableName);
+				if (slot == null) {
+					// allocate a new slot for a local variable
+					slot = Integer.valueOf(fSlots.size());
+					fSlots.put(variableName, slot);
+				}
+				// (double, double[])double stores the value in the frame and
+				// returns it
+				MethodHandle setter = MethodHandles.permuteArguments(
+						MethodHandles.insertArguments(ARRAY_SETTER, 1, slot.intValue()),
+						MethodType.methodType(void.class, double.class, double[].class), 1, 0);
+				MethodHandle store = MethodHandles.foldArguments(
+						MethodHandles.dropArguments(MethodHandles.identity(double.class), 1, double[].class), setter);
+				return MethodHandles.foldArguments(store, value);
+			}
+			return null;
+		}
+		if (function instanceof DoubleEvaluator.CompoundExpressionFunction) {
+			if (size == 1) {
+				return constant(Double.NaN);
+			}
+			// compile in evaluation order, so that local variables are
+			// assigned to their slots before they are read
+			MethodHandle[] args = new MethodHandle[size - 1];
+			for (int i = 1; i < size; i++) {
+				args[i - 1] = compileNode(functionNode.getNode(i));
+			}
+			MethodHandle result = args[args.length - 1];
+			for (int i = args.length - 2; i >= 0; i--) {
+				// evaluate the previous argument first and drop its result
+				result = MethodHandles.foldArguments(MethodHandles.dropArguments(result, 0, double.class), args[i]);
+			}
+			return result;
+		}
+		MethodHandle step;
+		MethodHandle result;
+		if (function instanceof DoubleEvaluator.PlusFunction) {
+			step = BINARY_OPERATOR.bindTo(function);
+			result = constant(0.0);
+		} else if (function instanceof DoubleEvaluator.TimesFunction) {
+			step = BINARY_OPERATOR.bindTo(function);
+			result = constant(1.0);
+		} else if (function instanceof DoubleEvaluator.MaxFunction) {
+			step = MAX_STEP;
+			result = constant(Double.NaN);
+		} else if (function instanceof DoubleEvaluator.MinFunction) {
+			step = MIN_STEP;
+			result = constant(Double.NaN);
+		} else {
+			return null;
+		}
+		for (int i = 1; i < size; i++) {
+			MethodHandle arg = compileNode(functionNode.getNode(i));
+			if (i == 1 && !(function instanceof DoubleEvaluator.PlusFunction)) {
+				result = arg;
+			} else {
+				result = combine(step, result, arg);
+			}
+		}
+		return result;
+	}
+
+	private MethodHandle compileNodeLogical(ASTNode node) {
+		if (node instanceof FunctionNode) {
+			return compileFunctionLogical((FunctionNode) node);
+		}
+		if (node instanceof SymbolNode) {
+			Boolean boole = fEngine.getSymbolBoolean(node.toString());
+			if (boole != null && !fEngine.isVariable(node.toString())) {
+				return constant(boole.booleanValue());
+			}
+		}
+		return fallbackLogical(node);
+	}
+
+	private MethodHandle compileFunctionLogical(FunctionNode functionNode) {
+		if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode) {
+			String symbol = functionNode.getNode(0).toString();
+			Object obj = fEngine.getFunctionBoolean(symbol);
+			if (functionNode.size() == 2) {
+				if (obj instanceof IBooleanBoolean1Function) {
+					return MethodHandles.filterReturnValue(compileNodeLogical(functionNode.getNode(1)),
+							BOOLEAN1_FUNCTION.bindTo(obj));
+				}
+			} else if (functionNode.size() == 3) {
+				if (obj instanceof DoubleBinaryPredicate) {
+					return combine(BINARY_PREDICATE.bindTo(obj), compileNode(functionNode.getNode(1)),
+							compileNode(functionNode.getNode(2)));
+				}
+			}
+			if (functionNode.size() >= 3 && obj instanceof IBooleanLazy2Function) {
+				// And[a, b, c] becomes a ? (b ? c : false) : false
+				boolean shortCircuit = ((IBooleanLazy2Function<?>) obj).getShortCircuitValue();
+				MethodHandle result = compileNodeLogical(functionNode.getNode(functionNode.size() - 1));
+				for (int i = functionNode.size() - 2; i >= 1; i--) {
+					MethodHandle test = compileNodeLogical(functionNode.getNode(i));
+					result = shortCircuit ? MethodHandles.guardWithTest(test, constant(true), result)
+							: MethodHandles.guardWithTest(test, result, constant(false));
+				}
+				return result;
+			}
+			if (functionNode.size() >= 3 && obj instanceof IBooleanBoolean2Function) {
+				// the parser flattens And[a, b, c, ...] and Or[a, b, c, ...]
+				MethodHandle result = compileNodeLogical(functionNode.getNode(1));
+				for (int i = 2; i < functionNode.size(); i++) {
+					MethodHandle arg = compileNodeLogical(functionNode.getNode(i));
+					result = combine(BOOLEAN2_FUNCTION.bindTo(obj), result, arg);
+				}
+				return result;
+			}
+		}
+		return fallbackLogical(functionNode);
+	}
+}
@@ -15,8 +15,10 @@
  */
 package org.matheclipse.commons.parser.client.eval;
 
+import org.apache.commons.math3.FieldElement;
 import org.apache.commons.math3.util.MathUtils;
 import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.eval.api.IASTVisitor;
 
 /**
  * 
@@ -30,6 +32,11 @@ public class DoubleNode extends ASTNode {
 		this.value = value;
 	}
 
+	@Override
+	public <T extends FieldElement<T>> T accept(final IASTVisitor<T> visitor) {
+		return visitor.visit(this);
+	}
+
 	public double doubleValue() {
 		return value;
 	}
@@ -0,0 +1,476 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleUnaryOperator;
+
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FunctionNode;
+import org.matheclipse.commons.parser.client.ast.NumberNode;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
+import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean1Function;
+import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean2Function;
+import org.matheclipse.commons.parser.client.eval.api.IBooleanLazy2Function;
+
+/**
+ * Compiles a <code>double</code> expression into a
+ * <code>DoubleRegisterProgram</code>.
+ * 
+ * The temporary registers are numbered with negative values during the
+ * compilation, because <code>Set</code> can still add local variables to the
+ * frame. They are relocated behind the variable slots at the end.
+ * 
+ * Subexpressions which cannot be encoded as instructions (i.e. callback
+ * functions or variables defined in the <code>DoubleEvaluator</code>) are
+ * called in their closure compiled form.
+ */
+final class DoubleRegisterCompiler {
+
+	/**
+	 * Compile the <code>node</code> into a register program.
+	 * 
+	 * @param engine
+	 *            the evaluator which resolves the symbols
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param slots
+	 *            the slot indices of the variables in the evaluation frame.
+	 *            Local variables assigned with <code>Set</code> are added to
+	 *            this map.
+	 * @return
+	 * @throws org.matheclipse.commons.parser.client.math.ArithmeticMathException
+	 *             if the <code>node</code> cannot be compiled.
+	 */
+	static DoubleRegisterProgram compile(DoubleEvaluator engine, ASTNode node, Map<String, Integer> slots) {
+		DoubleRegisterCompiler compiler = new DoubleRegisterCompiler(engine, slots);
+		return compiler.compile(node);
+	}
+
+	private final DoubleEvaluator fEngine;
+
+	private final Map<String, Integer> fSlots;
+
+	private int[] fCode = new int[64];
+
+	private int fCodeLength = 0;
+
+	private final Map<Long, Integer> fConstantIndex = new HashMap<Long, Integer>();
+
+	private final List<Double> fConstants = new ArrayList<Double>();
+
+	private final List<DoubleUnaryOperator> fUnaryOperators = new ArrayList<DoubleUnaryOperator>();
+
+	private final List<DoubleBinaryOperator> fBinaryOperators = new ArrayList<DoubleBinaryOperator>();
+
+	private final List<DoubleSupplier> fSuppliers = new ArrayList<DoubleSupplier>();
+
+	private final List<DoubleBinaryPredicate> fPredicates = new ArrayList<DoubleBinaryPredicate>();
+
+	private final List<IBooleanBoolean1Function<?>> fBoolean1Functions = new ArrayList<IBooleanBoolean1Function<?>>();
+
+	private final List<IBooleanBoolean2Function<?>> fBoolean2Functions = new ArrayList<IBooleanBoolean2Function<?>>();
+
+	private final List<IDoubleFrameFunction> fFrameFunctions = new ArrayList<IDoubleFrameFunction>();
+
+	private final List<IDoubleFramePredicate> fFramePredicates = new ArrayList<IDoubleFramePredicate>();
+
+	private final List<String> fMessages = new ArrayList<String>();
+
+	/**
+	 * The number of temporary registers in use.
+	 */
+	private int fTemporaries = 0;
+
+	private int fMaxTemporaries = 0;
+
+	/**
+	 * <code>true</code> if the variables can be used as operands directly from
+	 * their slots. This isn't possible if the expression assigns variables with
+	 * <code>Set</code>, because a slot could be modified before the operand is
+	 * used.
+	 */
+	private boolean fDirectSlots;
+
+	private DoubleRegisterCompiler(DoubleEvaluator engine, Map<String, Integer> slots) {
+		fEngine = engine;
+		fSlots = slots;
+	}
+
+	private DoubleRegisterProgram compile(ASTNode node) {
+		fDirectSlots = !DoubleEvaluator.containsSet(node, fEngine.getRegistry());
+		int result = operand(node);
+		emit(DoubleRegisterProgram.RETURN, 0, result, 0);
+
+		// relocate the temporary registers behind the variable slots
+		int slotCount = fSlots.size();
+		for (int pc = 0; pc < fCodeLength; pc += DoubleRegisterProgram.INSTRUCTION_SIZE) {
+			for (int i = 1; i < DoubleRegisterProgram.INSTRUCTION_SIZE; i++) {
+				if (fCode[pc + i] < 0) {
+					fCode[pc + i] = slotCount - fCode[pc + i] - 1;
+				}
+			}
+		}
+		int[] code = new int[fCodeLength];
+		System.arraycopy(fCode, 0, code, 0, fCodeLength);
+		double[] constants = new double[fConstants.size()];
+		for (int i = 0; i < constants.length; i++) {
+			constants[i] = fConstants.get(i);
+		}
+		return new DoubleRegisterProgram(code, constants, slotCount + fMaxTemporaries,
+				fUnaryOperators.toArray(new DoubleUnaryOperator[fUnaryOperators.size()]),
+				fBinaryOperators.toArray(new DoubleBinaryOperator[fBinaryOperators.size()]),
+				fSuppliers.toArray(new DoubleSupplier[fSuppliers.size()]),
+				fPredicates.toArray(new DoubleBinaryPredicate[fPredicates.size()]),
+				fBoolean1Functions.toArray(new IBooleanBoolean1Function<?>[fBoolean1Functions.size()]),
+				fBoolean2Functions.toArray(new IBooleanBoolean2Function<?>[fBoolean2Functions.size()]),
+				fFrameFunctions.toArray(new IDoubleFrameFunction[fFrameFunctions.size()]),
+				fFramePredicates.toArray(new IDoubleFramePredicate[fFramePredicates.size()]),
+				fMessages.toArray(new String[fMessages.size()]));
+	}
+
+	/**
+	 * Append an instruction.
+	 * 
+	 * @return the index of the instruction
+	 */
+	private int emit(int opcode, int dst, int a, int b) {
+		if (fCodeLength + DoubleRegisterProgram.INSTRUCTION_SIZE > fCode.length) {
+			int[] code = new int[fCode.length * 2];
+			System.arraycopy(fCode, 0, code, 0, fCodeLength);
+			fCode = code;
+		}
+		int index = fCodeLength / DoubleRegisterProgram.INSTRUCTION_SIZE;
+		fCode[fCodeLength++] = opcode;
+		fCode[fCodeLength++] = dst;
+		fCode[fCodeLength++] = a;
+		fCode[fCodeLength++] = b;
+		return index;
+	}
+
+	/**
+	 * Append an instruction, which refers to an entry of a constant or function
+	 * table.
+	 */
+	private <T> void emit(int opcode, List<T> table, T entry, int dst, int a, int b) {
+		int index = table.size();
+		table.add(entry);
+		emit(opcode | (index << 8), dst, a, b);
+	}
+
+	private int instructionCount() {
+		return fCodeLength / DoubleRegisterProgram.INSTRUCTION_SIZE;
+	}
+
+	/**
+	 * Set the jump target of the instruction at the given index to the next
+	 * instruction.
+	 */
+	private void patchJump(int instruction) {
+		fCode[instruction * DoubleRegisterProgram.INSTRUCTION_SIZE + 3] = instructionCount();
+	}
+
+	private int newTemporary() {
+		int register = -(++fTemporaries);
+		if (fTemporaries > fMaxTemporaries) {
+			fMaxTemporaries = fTemporaries;
+		}
+		return register;
+	}
+
+	private void loadConstant(double value, int dst) {
+		Long key = Double.doubleToRawLongBits(value);
+		Integer index = fConstantIndex.get(key);
+		if (index == null) {
+			index = fConstants.size();
+			fConstants.add(value);
+			fConstantIndex.put(key, index);
+		}
+		emit(DoubleRegisterProgram.LOAD_CONSTANT | (index << 8), dst, 0, 0);
+	}
+
+	/**
+	 * Returns the register which contains the value of the <code>node</code>.
+	 * If possible variables are read directly from their slot, all other values
+	 * are computed into a new temporary register.
+	 */
+	private int operand(ASTNode node) {
+		if (fDirectSlots && node instanceof SymbolNode) {
+			Integer slot = fSlots.get(node.toString());
+			if (slot != null) {
+				return slot.intValue();
+			}
+		}
+		int dst = newTemporary();
+		compileNode(node, dst);
+		return dst;
+	}
+
+	private int operandLogical(ASTNode node) {
+		int dst = newTemporary();
+		compileNodeLogical(node, dst);
+		return dst;
+	}
+
+	private void compileNode(ASTNode node, int dst) {
+		if (node instanceof DoubleNode) {
+			loadConstant(((DoubleNode) node).doubleValue(), dst);
+			return;
+		}
+		if (node instanceof FunctionNode) {
+			compileFunction((FunctionNode) node, dst);
+			return;
+		}
+		if (node instanceof SymbolNode) {
+			Integer slot = fSlots.get(node.toString());
+			if (slot != null) {
+				emit(DoubleRegisterProgram.MOVE, dst, slot.intValue(), 0);
+				return;
+			}
+			Double dbl = fEngine.getSymbolDouble(node.toString());
+			if (dbl != null && !fEngine.isVariable(node.toString())) {
+				loadConstant(dbl.doubleValue(), dst);
+				return;
+			}
+		} else if (node instanceof NumberNode) {
+			loadConstant(((NumberNode) node).doubleValue(), dst);
+			return;
+		}
+		fallback(node, dst);
+	}
+
+	private void fallback(ASTNode node, int dst) {
+		emit(DoubleRegisterProgram.CALL, fFrameFunctions, fEngine.compileNode(node, fSlots), dst, 0, 0);
+	}
+
+	private void fallbackLogical(ASTNode node, int dst) {
+		emit(DoubleRegisterProgram.CALL_LOGICAL, fFramePredicates, fEngine.compileNodeLogical(node, fSlots), dst, 0,
+				0);
+	}
+
+	private void compileFunction(FunctionNode functionNode, int dst) {
+		if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode) {
+			String symbol = functionNode.getNode(0).toString();
+			int size = functionNode.size();
+			int temporaries = fTemporaries;
+			if (fEngine.isSymbol((SymbolNode) functionNode.getNode(0), "If")) {
+				if (size == 3 || size == 4) {
+					compileIf(functionNode, dst);
+					return;
+				}
+			} else {
+				Object obj = fEngine.getFunctionDouble(symbol);
+				if (obj instanceof IDoubleFunction) {
+					if (compileFunctionNode((IDoubleFunction) obj, functionNode, dst)) {
+						fTemporaries = temporaries;
+						return;
+					}
+				} else if (size == 1) {
+					if (obj instanceof DoubleSupplier) {
+						emit(DoubleRegisterProgram.SUPPLIER, fSuppliers, (DoubleSupplier) obj, dst, 0, 0);
+						return;
+					}
+				} else if (size == 2) {
+					if (obj instanceof DoubleUnaryOperator) {
+						int a = operand(functionNode.getNode(1));
+						emit(DoubleRegisterProgram.UNARY, fUnaryOperators, (DoubleUnaryOperator) obj, dst, a, 0);
+						fTemporaries = temporaries;
+						return;
+					}
+				} else if (size == 3) {
+					if (obj instanceof DoubleBinaryOperator) {
+						int a = operand(functionNode.getNode(1));
+						int b = operand(functionNode.getNode(2));
+						emit(DoubleRegisterProgram.BINARY, fBinaryOperators, (DoubleBinaryOperator) obj, dst, a, b);
+						fTemporaries = temporaries;
+						return;
+					}
+				}
+			}
+		}
+		fallback(functionNode, dst);
+	}
+
+	private void compileIf(FunctionNode functionNode, int dst) {
+		int temporaries = fTemporaries;
+		int condition = operandLogical(functionNode.getNode(1));
+		fTemporaries = temporaries;
+		int jumpFalse = emit(DoubleRegisterProgram.JUMP_FALSE, 0, condition, 0);
+		compileNode(functionNode.getNode(2), dst);
+		int jumpEnd = emit(DoubleRegisterProgram.JUMP, 0, 0, 0);
+		patchJump(jumpFalse);
+		if (functionNode.size() == 4) {
+			compileNode(functionNode.getNode(3), dst);
+		} else {
+			emit(DoubleRegisterProgram.THROW, fMessages,
+					"EvalDouble#evaluateFunction(FunctionNode) not possible for: " + functionNode.toString(), 0, 0, 0);
+		}
+		patchJump(jumpEnd);
+	}
+
+	/**
+	 * Compile the built-in functions, which evaluate the
+	 * <code>FunctionNode</code> arguments on their own.
+	 * 
+	 * @return <code>false</code> if the function cannot be compiled.
+	 */
+	private boolean compileFunctionNode(IDoubleFunction function, FunctionNode functionNode, int dst) {
+		int size = functionNode.size();
+		if (function instanceof DoubleEvaluator.SetFunction) {
+			if (size == 3 && functionNode.getNode(1) instanceof SymbolNode) {
+				int value = operand(functionNode.getNode(2));
+				String variableName = functionNode.getNode(1).toString();
+				Integer slot = fSlots.get(variableName);
+				if (slot == null) {
+					// allocate a new slot for a local variable
+					slot = Integer.valueOf(fSlots.size());
+					fSlots.put(variableName, slot);
+				}
+				emit(DoubleRegisterProgram.MOVE, slot.intValue(), value, 0);
+				emit(DoubleRegisterProgram.MOVE, dst, value, 0);
+				return true;
+			}
+			return false;
+		}
+		if (function instanceof DoubleEvaluator.CompoundExpressionFunction) {
+			if (size == 1) {
+				loadConstant(Double.NaN, dst);
+				return true;
+			}
+			for (int i = 1; i < size; i++) {
+				compileNode(functionNode.getNode(i), dst);
+			}
+			return true;
+		}
+		int opcode;
+		if (function instanceof DoubleEvaluator.PlusFunction) {
+			opcode = DoubleRegisterProgram.PLUS;
+		} else if (function instanceof DoubleEvaluator.TimesFunction) {
+			opcode = DoubleRegisterProgram.TIMES;
+		} else if (function instanceof DoubleEvaluator.MaxFunction) {
+			opcode = DoubleRegisterProgram.MAX;
+		} else if (function instanceof DoubleEvaluator.MinFunction) {
+			opcode = DoubleRegisterProgram.MIN;
+		} else {
+			return false;
+		}
+		if (size == 1) {
+			double value = Double.NaN;
+			if (opcode == DoubleRegisterProgram.PLUS) {
+				value = 0.0;
+			} else if (opcode == DoubleRegisterProgram.TIMES) {
+				value = 1.0;
+			}
+			loadConstant(value, dst);
+			return true;
+		}
+		if (size == 2) {
+			compileNode(functionNode.getNode(1), dst);
+			return true;
+		}
+		// the accumulator is dst, so no temporary register is needed for it
+		int temporaries = fTemporaries;
+		int a = operand(functionNode.getNode(1));
+		int b = operand(functionNode.getNode(2));
+		emit(opcode, dst, a, b);
+		for (int i = 3; i < size; i++) {
+			fTemporaries = temporaries;
+			b = operand(functionNode.getNode(i));
+			emit(opcode, dst, dst, b);
+		}
+		return true;
+	}
+
+	private void compileNodeLogical(ASTNode node, int dst) {
+		if (node instanceof FunctionNode) {
+			compileFunctionLogical((FunctionNode) node, dst);
+			return;
+		}
+		if (node instanceof SymbolNode) {
+			Boolean boole = fEngine.getSymbolBoolean(node.toString());
+			if (boole != null && !fEngine.isVariable(node.toString())) {
+				loadConstant(boole.booleanValue() ? 1.0 : 0.0, dst);
+				return;
+			}
+		}
+		fallbackLogical(node, dst);
+	}
+
+	private void compileFunctionLogical(FunctionNode functionNode, int dst) {
+		if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode) {
+			String symbol = functionNode.getNode(0).toString();
+			Object obj = fEngine.getFunctionBoolean(symbol);
+			int temporaries = fTemporaries;
+			if (functionNode.size() == 2) {
+				if (obj instanceof IBooleanBoolean1Function) {
+					int a = operandLogical(functionNode.getNode(1));
+					emit(DoubleRegisterProgram.BOOLEAN1, fBoolean1Functions, (IBooleanBoolean1Function<?>) obj, dst,
+							a, 0);
+					fTemporaries = temporaries;
+					return;
+				}
+			} else if (functionNode.size() == 3) {
+				if (obj instanceof DoubleBinaryPredicate) {
+					int a = operand(functionNode.getNode(1));
+					int b = operand(functionNode.getNode(2));
+					emit(DoubleRegisterProgram.PREDICATE, fPredicates, (DoubleBinaryPredicate) obj, dst, a, b);
+					fTemporaries = temporaries;
+					return;
+				}
+			}
+			if (functionNode.size() >= 3 && obj instanceof IBooleanLazy2Function) {
+				// jump to the short circuit result at the first argument, which
+				// decides the result; only the last argument is written to dst
+				boolean shortCircuit = ((IBooleanLazy2Function<?>) obj).getShortCircuitValue();
+				int[] jumps = new int[functionNode.size() - 2];
+				for (int i = 1; i < functionNode.size() - 1; i++) {
+					int a = operandLogical(functionNode.getNode(i));
+					fTemporaries = temporaries;
+					jumps[i - 1] = emit(shortCircuit ? DoubleRegisterProgram.JUMP_TRUE : DoubleRegisterProgram.JUMP_FALSE,
+							0, a, 0);
+				}
+				compileNodeLogical(functionNode.getNode(functionNode.size() - 1), dst);
+				int jumpEnd = emit(DoubleRegisterProgram.JUMP, 0, 0, 0);
+				for (int jump : jumps) {
+					patchJump(jump);
+				}
+				loadConstant(shortCircuit ? 1.0 : 0.0, dst);
+				patchJump(jumpEnd);
+				fTemporaries = temporaries;
+				return;
+			}
+			if (functionNode.size() >= 3 && obj instanceof IBooleanBoolean2Function) {
+				// the parser flattens And[a, b, c, ...] and Or[a, b, c, ...]; the
+				// intermediate results are accumulated in the first operand
+				int a = operandLogical(functionNode.getNode(1));
+				for (int i = 2; i < functionNode.size(); i++) {
+					int b = operandLogical(functionNode.getNode(i));
+					int target = i == functionNode.size() - 1 ? dst : a;
+					emit(DoubleRegisterProgram.BOOLEAN2, fBoolean2Functions, (IBooleanBoolean2Function<?>) obj,
+							target, a, b);
+				}
+				fTemporaries = temporaries;
+				return;
+			}
+		}
+		fallbackLogical(functionNode, dst);
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleUnaryOperator;
+
+import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean1Function;
+import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean2Function;
+import org.matheclipse.commons.parser.client.math.ArithmeticMathException;
+
+/**
+ * A <code>double</code> expression encoded as a linear <code>int[]</code>
+ * instruction stream for a register machine. Created by
+ * <code>DoubleEvaluator#compileRegisterProgram()</code>.
+ * 
+ * Every instruction has the fixed layout <code>[opcode, dst, a, b]</code>.
+ * The lower 8 bits of the <code>opcode</code> word select the operation, the
+ * upper bits contain an index into the constant pool or one of the function
+ * tables. <code>dst</code>, <code>a</code> and <code>b</code> are register
+ * indices (or the instruction index of a jump target).
+ * 
+ * The register file is the evaluation frame: the first registers contain the
+ * declared variables and the local variables assigned with <code>Set</code>,
+ * the following registers contain the temporary values. Booleans are stored as
+ * <code>0.0</code> and <code>1.0</code>.
+ */
+public final class DoubleRegisterProgram implements IDoubleFrameFunction {
+
+	static final int LOAD_CONSTANT = 0;
+
+	static final int MOVE = 1;
+
+	static final int PLUS = 2;
+
+	static final int TIMES = 3;
+
+	static final int MAX = 4;
+
+	static final int MIN = 5;
+
+	static final int UNARY = 6;
+
+	static final int BINARY = 7;
+
+	static final int SUPPLIER = 8;
+
+	static final int PREDICATE = 9;
+
+	static final int BOOLEAN1 = 10;
+
+	static final int BOOLEAN2 = 11;
+
+	static final int CALL = 12;
+
+	static final int CALL_LOGICAL = 13;
+
+	static final int JUMP = 14;
+
+	static final int JUMP_FALSE = 15;
+
+	static final int JUMP_TRUE = 16;
+
+	static final int THROW = 17;
+
+	static final int RETURN = 18;
+
+	/**
+	 * The number of <code>int</code> values of one instruction.
+	 */
+	static final int INSTRUCTION_SIZE = 4;
+
+	private final int[] fCode;
+
+	private final double[] fConstants;
+
+	private final int fRegisterCount;
+
+	private final DoubleUnaryOperator[] fUnaryOperators;
+
+	private final DoubleBinaryOperator[] fBinaryOperators;
+
+	private final DoubleSupplier[] fSuppliers;
+
+	private final DoubleBinaryPredicate[] fPredicates;
+
+	private final IBooleanBoolean1Function<?>[] fBoolean1Functions;
+
+	private final IBooleanBoolean2Function<?>[] fBoolean2Functions;
+
+	private final IDoubleFrameFunction[] fFrameFunctions;
+
+	private final IDoubleFramePredicate[] fFramePredicates;
+
+	private final String[] fMessages;
+
+	DoubleRegisterProgram(int[] code, double[] constants, int registerCount, DoubleUnaryOperator[] unaryOperators,
+			DoubleBinaryOperator[] binaryOperators, DoubleSupplier[] suppliers, DoubleBinaryPredicate[] predicates,
+			IBooleanBoolean1Function<?>[] boolean1Functions, IBooleanBoolean2Function<?>[] boolean2Functions,
+			IDoubleFrameFunction[] frameFunctions, IDoubleFramePredicate[] framePredicates, String[] messages) {
+		fCode = code;
+		fConstants = constants;
+		fRegisterCount = registerCount;
+		fUnaryOperators = unaryOperators;
+		fBinaryOperators = binaryOperators;
+		fSuppliers = suppliers;
+		fPredicates = predicates;
+		fBoolean1Functions = boolean1Functions;
+		fBoolean2Functions = boolean2Functions;
+		fFrameFunctions = frameFunctions;
+		fFramePredicates = framePredicates;
+		fMessages = messages;
+	}
+
+	/**
+	 * Execute the program on the given register file. The register file isn't
+	 * allocated by this method, so a caller can reuse the same array for
+	 * repeated evaluations.
+	 * 
+	 * @param registers
+	 *            the register file with at least
+	 *            <code>getRegisterCount()</code> elements. The first elements
+	 *            contain the values of the declared variables.
+	 * @return the resulting double value
+	 */
+	@Override
+	public double applyAsDouble(double[] registers) {
+		final int[] code = fCode;
+		final double[] r = registers;
+		int pc = 0;
+		while (true) {
+			final int word = code[pc];
+			final int dst = code[pc + 1];
+			final int a = code[pc + 2];
+			final int b = code[pc + 3];
+			pc += INSTRUCTION_SIZE;
+			switch (word & 0xff) {
+			case LOAD_CONSTANT:
+				r[dst] = fConstants[word >>> 8];
+				break;
+			case MOVE:
+				r[dst] = r[a];
+				break;
+			case PLUS:
+				r[dst] = r[a] + r[b];
+				break;
+			case TIMES:
+				r[dst] = r[a] * r[b];
+				break;
+			case MAX: {
+				// NaN arguments after the first argument are ignored
+				double result = r[a];
+				double temp = Math.max(result, r[b]);
+				r[dst] = temp > result ? temp : result;
+				break;
+			}
+			case MIN: {
+				double result = r[a];
+				double temp = Math.min(result, r[b]);
+				r[dst] = temp < result ? temp : result;
+				break;
+			}
+			case UNARY:
+				r[dst] = fUnaryOperators[word >>> 8].applyAsDouble(r[a]);
+				break;
+			case BINARY:
+				r[dst] = fBinaryOperators[word >>> 8].applyAsDouble(r[a], r[b]);
+				break;
+			case SUPPLIER:
+				r[dst] = fSuppliers[word >>> 8].getAsDouble();
+				break;
+			case PREDICATE:
+				r[dst] = fPredicates[word >>> 8].test(r[a], r[b]) ? 1.0 : 0.0;
+				break;
+			case BOOLEAN1:
+				r[dst] = fBoolean1Functions[word >>> 8].evaluate(r[a] != 0.0) ? 1.0 : 0.0;
+				break;
+			case BOOLEAN2:
+				r[dst] = fBoolean2Functions[word >>> 8].evaluate(r[a] != 0.0, r[b] != 0.0) ? 1.0 : 0.0;
+				break;
+			case CALL:
+				r[dst] = fFrameFunctions[word >>> 8].applyAsDouble(r);
+				break;
+			case CALL_LOGICAL:
+				r[dst] = fFramePredicates[word >>> 8].test(r) ? 1.0 : 0.0;
+				break;
+			case JUMP:
+				pc = b * INSTRUCTION_SIZE;
+				break;
+			case JUMP_FALSE:
+				if (r[a] == 0.0) {
+					pc = b * INSTRUCTION_SIZE;
+				}
+				break;
+			case JUMP_TRUE:
+				if (r[a] != 0.0) {
+					pc = b * INSTRUCTION_SIZE;
+				}
+				break;
+			case THROW:
+				throw new ArithmeticMathException(fMessages[word >>> 8]);
+			case RETURN:
+				return r[a];
+			default:
+				throw new ArithmeticMathException(
+						"DoubleRegisterProgram#applyAsDouble(double[]) unknown opcode: " + (word & 0xff));
+			}
+		}
+	}
+
+	/**
+	 * Returns the constant pool of this program.
+	 * 
+	 * @return a copy of the constant pool
+	 */
+	public double[] getConstants() {
+		return fConstants.clone();
+	}
+
+	/**
+	 * Returns the number of instructions of this program. Each instruction
+	 * occupies <code>4</code> elements of the instruction stream.
+	 * 
+	 * @return the instruction count
+	 */
+	public int getInstructionCount() {
+		return fCode.length / INSTRUCTION_SIZE;
+	}
+
+	/**
+	 * Returns the size of the register file, which is needed to execute this
+	 * program.
+	 * 
+	 * @return the register count
+	 */
+	public int getRegisterCount() {
+		return fRegisterCount;
+	}
+}
@@ -24,7 +24,6 @@ import org.matheclipse.commons.parser.client.ast.FloatNode;
 import org.matheclipse.commons.parser.client.ast.FractionNode;
 import org.matheclipse.commons.parser.client.ast.FunctionNode;
 import org.matheclipse.commons.parser.client.ast.IntegerNode;
-import org.matheclipse.commons.parser.client.ast.NumberNode;
 import org.matheclipse.commons.parser.client.ast.PatternNode;
 import org.matheclipse.commons.parser.client.ast.StringNode;
 import org.matheclipse.commons.parser.client.ast.SymbolNode;
@@ -65,6 +64,8 @@ public abstract class AbstractASTVisitor<T extends FieldElement<T>> implements I
 				if (function instanceof IBooleanFieldElement2Function) {
 					return ((IBooleanFieldElement2Function<T>) function).evaluate(evaluateNode(functionNode.getNode(1)),
 							evaluateNode(functionNode.getNode(2)));
+				} else if (function instanceof IBooleanLazy2Function) {
+					return evaluateShortCircuit((IBooleanLazy2Function<T>) function, functionNode);
 				} else if (function instanceof IBooleanBoolean2Function) {
 					return ((IBooleanBoolean2Function) function).evaluate(evaluateNodeLogical(functionNode.getNode(1)),
 							evaluateNodeLogical(functionNode.getNode(2)));
@@ -75,6 +76,20 @@ public abstract class AbstractASTVisitor<T extends FieldElement<T>> implements I
 				// return ((IBooleanDoubleFunction) obj).evaluate(this,
 				// functionNode);
 				// }
+			} else if (functionNode.size() > 3) {
+				// the parser flattens And[a, b, c, ...] and Or[a, b, c, ...]
+				IBooleanFunction<T> function = getFunctionBooleanMap(symbol);
+				if (function instanceof IBooleanLazy2Function) {
+					return evaluateShortCircuit((IBooleanLazy2Function<T>) function, functionNode);
+				}
+				if (function instanceof IBooleanBoolean2Function) {
+					IBooleanBoolean2Function<T> f = (IBooleanBoolean2Function<T>) function;
+					boolean result = evaluateNodeLogical(functionNode.getNode(1));
+					for (int i = 2; i < functionNode.size(); i++) {
+						result = f.evaluate(result, evaluateNodeLogical(functionNode.getNode(i)));
+					}
+					return result;
+				}
 			}
 		}
 		throw new ArithmeticMathException("AbstractASTVisitor#evaluateFunctionLogical(FunctionNode) not possible for: "
@@ -82,6 +97,27 @@ public abstract class AbstractASTVisitor<T extends FieldElement<T>> implements I
 
 	}
 
+	/**
+	 * Evaluate the (flattened) <code>And[a, b, c, ...]</code> or
+	 * <code>Or[a, b, c, ...]</code> from left to right and stop at the first
+	 * argument, which decides the result. The remaining arguments aren't
+	 * evaluated.
+	 * 
+	 * @param function
+	 * @param functionNode
+	 * @return
+	 */
+	protected boolean evaluateShortCircuit(final IBooleanLazy2Function<T> function, final FunctionNode functionNode) {
+		final boolean shortCircuit = function.getShortCircuitValue();
+		final int last = functionNode.size() - 1;
+		for (int i = 1; i < last; i++) {
+			if (evaluateNodeLogical(functionNode.getNode(i)) == shortCircuit) {
+				return shortCircuit;
+			}
+		}
+		return evaluateNodeLogical(functionNode.getNode(last));
+	}
+
 	/**
 	 * Evaluate an already parsed-in abstract syntax tree node (ASTNode) into a
 	 * <code>T</code> value.
@@ -94,36 +130,7 @@ public abstract class AbstractASTVisitor<T extends FieldElement<T>> implements I
 	 */
 	@Override
 	public T evaluateNode(ASTNode node) {
-		if (node instanceof DoubleNode) {
-			return visit((DoubleNode) node);
-		}
-		if (node instanceof ComplexNode) {
-			return visit((ComplexNode) node);
-		}
-		if (node instanceof FunctionNode) {
-			return visit((FunctionNode) node);
-		}
-		if (node instanceof NumberNode) {
-			if (node instanceof FloatNode) {
-				return visit((FloatNode) node);
-			}
-			if (node instanceof FractionNode) {
-				return visit((FractionNode) node);
-			}
-			if (node instanceof IntegerNode) {
-				return visit((IntegerNode) node);
-			}
-		}
-		if (node instanceof PatternNode) {
-			return visit((PatternNode) node);
-		}
-		if (node instanceof StringNode) {
-			return visit((StringNode) node);
-		}
-		if (node instanceof SymbolNode) {
-			return visit((SymbolNode) node);
-		}
-		return null;
+		return node.accept(this);
 	}
 
 	/**
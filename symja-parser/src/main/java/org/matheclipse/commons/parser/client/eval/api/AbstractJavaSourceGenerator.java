@@ -0,0 +1,614 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval.api;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.matheclipse.commons.parser.client.Parser;
+import org.matheclipse.commons.parser.client.SyntaxError;
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FunctionNode;
+import org.matheclipse.commons.parser.client.ast.PatternNode;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
+import org.matheclipse.commons.parser.client.math.ArithmeticMathException;
+import org.matheclipse.commons.parser.client.operator.ASTNodeFactory;
+
+/**
+ * Generates the source code of a Java class from formula definitions, so that
+ * the formulas can be compiled at build time. Each definition of the form
+ * <code>f[x_, y_] := x^2 + y</code> (or <code>f(x_, y_) := x^2 + y</code> in
+ * relaxed mode) becomes a <code>public static</code> method of the number type
+ * of the generator, i.e. <code>public static double f(double x, double
+ * y)</code>. Formulas can call the other formulas defined in the same source.
+ * 
+ * The subclasses translate the numbers, the constants and the built-in
+ * functions with the same semantics as their evaluator.
+ */
+public abstract class AbstractJavaSourceGenerator {
+
+	/**
+	 * The reserved words of the Java language, which cannot be used as method
+	 * or parameter names.
+	 */
+	private static final Set<String> JAVA_KEYWORDS = new HashSet<String>(Arrays.asList("abstract", "assert",
+			"boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue", "default", "do",
+			"double", "else", "enum", "extends", "false", "final", "finally", "float", "for", "goto", "if",
+			"implements", "import", "instanceof", "int", "interface", "long", "native", "new", "null", "package",
+			"private", "protected", "public", "return", "short", "static", "strictfp", "super", "switch",
+			"synchronized", "this", "throw", "throws", "transient", "true", "try", "void", "volatile", "while", "_"));
+
+	protected final boolean fRelaxedSyntax;
+
+	/**
+	 * Maps the lower case names of the built-in functions and constants to
+	 * their names.
+	 */
+	private final Map<String, String> fRelaxedNames = new HashMap<String, String>();
+
+	/**
+	 * The names of the generated helper methods.
+	 */
+	private final Set<String> fHelperNames = new HashSet<String>();
+
+	/**
+	 * The arities of the defined formulas.
+	 */
+	private final Map<String, Set<Integer>> fFormulas = new HashMap<String, Set<Integer>>();
+
+	/**
+	 * Maps the initializers of the generated constants to their field names.
+	 */
+	private final Map<String, String> fConstants = new LinkedHashMap<String, String>();
+
+	/**
+	 * The parameter names of the currently generated method.
+	 */
+	protected Set<String> fParameters;
+
+	private String fClassName;
+
+	private boolean fUsesUndefined;
+
+	/**
+	 * 
+	 * @param relaxedSyntax
+	 * @param builtinNames
+	 *            the names of the built-in functions and constants
+	 * @param helperNames
+	 *            the names of the helper methods, which the subclass generates
+	 */
+	protected AbstractJavaSourceGenerator(boolean relaxedSyntax, Collection<String> builtinNames,
+			Collection<String> helperNames) {
+		fRelaxedSyntax = relaxedSyntax;
+		for (String name : Arrays.asList("If", "Set", "SetDelayed")) {
+			fRelaxedNames.put(name.toLowerCase(), name);
+		}
+		for (String name : builtinNames) {
+			fRelaxedNames.put(name.toLowerCase(), name);
+		}
+		fHelperNames.addAll(helperNames);
+		fHelperNames.add("$undefined");
+	}
+
+	/**
+	 * Parse the formula definitions and generate the source code of a Java
+	 * class.
+	 * 
+	 * @param packageName
+	 *            the package of the generated class or <code>""</code> for the
+	 *            default package
+	 * @param className
+	 *            the simple name of the generated class
+	 * @param formulas
+	 *            the formula definitions
+	 * @return the Java source code
+	 * @throws SyntaxError
+	 * @throws ArithmeticMathException
+	 *             if a formula cannot be translated into Java code
+	 */
+	public String generate(String packageName, String className, String formulas) {
+		Parser p;
+		if (fRelaxedSyntax) {
+			p = new Parser(ASTNodeFactory.RELAXED_STYLE_FACTORY, true, true);
+		} else {
+			p = new Parser(ASTNodeFactory.MMA_STYLE_FACTORY, false, true);
+		}
+		return generate(packageName, className, p.parsePackage(formulas));
+	}
+
+	/**
+	 * Generate the source code of a Java class from already parsed formula
+	 * definitions.
+	 * 
+	 * @param packageName
+	 *            the package of the generated class or <code>""</code> for the
+	 *            default package
+	 * @param className
+	 *            the simple name of the generated class
+	 * @param definitions
+	 *            the formula definitions
+	 * @return the Java source code
+	 * @throws ArithmeticMathException
+	 *             if a formula cannot be translated into Java code
+	 */
+	public String generate(String packageName, String className, List<ASTNode> definitions) {
+		fFormulas.clear();
+		fConstants.clear();
+		fClassName = className;
+		fUsesUndefined = false;
+		reset();
+		checkIdentifier(className, "class name", className);
+		for (ASTNode definition : definitions) {
+			FunctionNode lhs = getLeftHandSide(definition);
+			String name = lhs.getNode(0).toString();
+			checkIdentifier(name, "method name", definition.toString());
+			if (fHelperNames.contains(name)) {
+				throw new ArithmeticMathException(
+						getClass().getSimpleName() + "#generate() reserved method name: " + definition.toString());
+			}
+			for (int i = 1; i < lhs.size(); i++) {
+				String parameter = ((PatternNode) lhs.getNode(i)).getSymbol().toString();
+				checkIdentifier(parameter, "parameter name", definition.toString());
+				if (parameter.matches("\\$c[0-9]+")) {
+					throw new ArithmeticMathException(getClass().getSimpleName()
+							+ "#generate() reserved parameter name: " + definition.toString());
+				}
+			}
+			Set<Integer> arities = fFormulas.get(name);
+			if (arities == null) {
+				arities = new HashSet<Integer>();
+				fFormulas.put(name, arities);
+			}
+			if (!arities.add(lhs.size() - 1)) {
+				throw new ArithmeticMathException(
+						getClass().getSimpleName() + "#generate() duplicate definition: " + definition.toString());
+			}
+		}
+
+		// the methods first, because they define the constants
+		StringBuilder methods = new StringBuilder();
+		for (ASTNode definition : definitions) {
+			methods.append('\n');
+			generateMethod(definition, methods);
+		}
+		generateHelpers(methods);
+		if (fUsesUndefined) {
+			methods.append("\n");
+			methods.append("\tprivate static ").append(getTypeName()).append(" $undefined(String message) {\n");
+			methods.append("\t\tthrow new ArithmeticException(message);\n");
+			methods.append("\t}\n");
+		}
+
+		StringBuilder buf = new StringBuilder();
+		if (packageName != null && packageName.length() > 0) {
+			buf.append("package ").append(packageName).append(";\n\n");
+		}
+		generateImports(buf);
+		buf.append("/**\n");
+		buf.append(" * Generated by <code>").append(getClass().getSimpleName())
+				.append("</code> from formula definitions. Do not edit.\n");
+		buf.append(" */\n");
+		buf.append("public final class ").append(className).append(" {\n\n");
+		int length = buf.length();
+		generateFields(buf);
+		for (Map.Entry<String, String> constant : fConstants.entrySet()) {
+			buf.append("\tprivate static final ").append(getTypeName()).append(' ').append(constant.getValue())
+					.append(" = ").append(constant.getKey()).append(";\n");
+		}
+		if (buf.length() > length) {
+			buf.append('\n');
+		}
+		buf.append("\tprivate ").append(className).append("() {\n");
+		buf.append("\t}\n");
+		buf.append(methods);
+		buf.append("}\n");
+		return buf.toString();
+	}
+
+	/**
+	 * Returns the simple name of the currently generated class.
+	 * 
+	 * @return
+	 */
+	protected String getClassName() {
+		return fClassName;
+	}
+
+	/**
+	 * Returns the Java type of the parameters and the results of the generated
+	 * methods.
+	 * 
+	 * @return
+	 */
+	protected abstract String getTypeName();
+
+	/**
+	 * Optimize the right-hand side of a formula with the evaluator of the
+	 * generator.
+	 * 
+	 * @param functionNode
+	 * @return
+	 */
+	protected abstract ASTNode optimizeFunction(FunctionNode functionNode);
+
+	/**
+	 * Returns the value of a built-in boolean constant.
+	 * 
+	 * @param symbol
+	 * @return <code>null</code> if the symbol isn't a boolean constant
+	 */
+	protected abstract Boolean getSymbolBoolean(String symbol);
+
+	/**
+	 * Returns the message of the exception, which is thrown if the condition
+	 * of an <code>If[]</code> without a false case isn't satisfied.
+	 * 
+	 * @param functionNode
+	 * @return
+	 */
+	protected String getUndefinedMessage(FunctionNode functionNode) {
+		return "AbstractASTVisitor#evaluateFunction(FunctionNode) not possible for: " + functionNode.toString();
+	}
+
+	/**
+	 * Clear the state of the subclass before a class is generated.
+	 */
+	protected void reset() {
+	}
+
+	/**
+	 * Generate the import declarations of the class.
+	 * 
+	 * @param buf
+	 */
+	protected void generateImports(StringBuilder buf) {
+	}
+
+	/**
+	 * Generate the fields of the class in front of the constants.
+	 * 
+	 * @param buf
+	 */
+	protected void generateFields(StringBuilder buf) {
+	}
+
+	/**
+	 * Generate the used helper methods.
+	 * 
+	 * @param buf
+	 */
+	protected void generateHelpers(StringBuilder buf) {
+	}
+
+	/**
+	 * Returns the name of a <code>private static final</code> field, which is
+	 * initialized with the given expression. Equal initializers share the same
+	 * field.
+	 * 
+	 * @param initializer
+	 *            a Java expression of the type of the generator
+	 * @return
+	 */
+	protected String constant(String initializer) {
+		String name = fConstants.get(initializer);
+		if (name == null) {
+			name = "$c" + fConstants.size();
+			fConstants.put(initializer, name);
+		}
+		return name;
+	}
+
+	/**
+	 * Check that the name is a valid Java identifier and no reserved word.
+	 * 
+	 * @param name
+	 * @param kind
+	 *            the kind of the name for the error message
+	 * @param context
+	 *            the definition for the error message
+	 * @throws ArithmeticMathException
+	 *             if the name cannot be used in the generated source
+	 */
+	private void checkIdentifier(String name, String kind, String context) {
+		boolean valid = name.length() > 0 && Character.isJavaIdentifierStart(name.charAt(0))
+				&& !JAVA_KEYWORDS.contains(name);
+		for (int i = 1; valid && i < name.length(); i++) {
+			valid = Character.isJavaIdentifierPart(name.charAt(i));
+		}
+		if (!valid) {
+			throw new ArithmeticMathException(getClass().getSimpleName() + "#generate() invalid Java " + kind + " "
+					+ name + " in: " + context);
+		}
+	}
+
+	private FunctionNode getLeftHandSide(ASTNode definition) {
+		if (definition instanceof FunctionNode) {
+			FunctionNode functionNode = (FunctionNode) definition;
+			if (functionNode.size() == 3 && functionNode.getNode(0) instanceof SymbolNode) {
+				String head = builtinName(functionNode.getNode(0).toString());
+				if ((head.equals("SetDelayed") || head.equals("Set"))
+						&& functionNode.getNode(1) instanceof FunctionNode) {
+					FunctionNode lhs = (FunctionNode) functionNode.getNode(1);
+					boolean valid = lhs.getNode(0) instanceof SymbolNode;
+					for (int i = 1; i < lhs.size(); i++) {
+						ASTNode arg = lhs.getNode(i);
+						if (!(arg instanceof PatternNode) || ((PatternNode) arg).getSymbol() == null
+								|| ((PatternNode) arg).getConstraint() != null) {
+							valid = false;
+						}
+					}
+					if (valid) {
+						return lhs;
+					}
+				}
+			}
+		}
+		throw new ArithmeticMathException(
+				getClass().getSimpleName() + "#generate() not a formula definition: " + definition.toString());
+	}
+
+	private void generateMethod(ASTNode definition, StringBuilder buf) {
+		FunctionNode lhs = getLeftHandSide(definition);
+		String comment = escapeComment(definition.toString());
+		ASTNode rhs = ((FunctionNode) definition).getNode(2);
+		if (rhs instanceof FunctionNode) {
+			rhs = optimizeFunction((FunctionNode) rhs);
+		}
+		fParameters = new HashSet<String>();
+
+		buf.append("\t/**\n");
+		buf.append("\t * <code>").append(comment).append("</code>\n");
+		buf.append("\t */\n");
+		buf.append("\tpublic static ").append(getTypeName()).append(' ').append(lhs.getNode(0).toString())
+				.append('(');
+		for (int i = 1; i < lhs.size(); i++) {
+			String parameter = ((PatternNode) lhs.getNode(i)).getSymbol().toString();
+			if (!fParameters.add(parameter)) {
+				throw new ArithmeticMathException(
+						getClass().getSimpleName() + "#generate() duplicate parameter: " + definition.toString());
+			}
+			if (i > 1) {
+				buf.append(", ");
+			}
+			buf.append(getTypeName()).append(' ').append(parameter);
+		}
+		buf.append(") {\n");
+		buf.append("\t\treturn ");
+		translate(rhs, buf);
+		buf.append(";\n");
+		buf.append("\t}\n");
+	}
+
+	/**
+	 * Returns the built-in name of the given symbol.
+	 * 
+	 * @param symbol
+	 * @return
+	 */
+	protected String builtinName(String symbol) {
+		if (fRelaxedSyntax) {
+			String name = fRelaxedNames.get(symbol.toLowerCase());
+			return name != null ? name : symbol;
+		}
+		return symbol;
+	}
+
+	private static String escapeComment(String str) {
+		return str.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("*/", "*&#47;");
+	}
+
+	/**
+	 * Returns the content of a Java string literal for the given string.
+	 * 
+	 * @param str
+	 * @return
+	 */
+	protected static String escapeString(String str) {
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < str.length(); i++) {
+			char ch = str.charAt(i);
+			if (ch == '"' || ch == '\\') {
+				buf.append('\\').append(ch);
+			} else if (ch < ' ' || ch > '~') {
+				buf.append(String.format("\\u%04x", (int) ch));
+			} else {
+				buf.append(ch);
+			}
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Append the Java literal of the given <code>double</code> value.
+	 * 
+	 * @param value
+	 * @param buf
+	 */
+	protected static void literal(double value, StringBuilder buf) {
+		if (Double.isNaN(value)) {
+			buf.append("Double.NaN");
+		} else if (value == Double.POSITIVE_INFINITY) {
+			buf.append("Double.POSITIVE_INFINITY");
+		} else if (value == Double.NEGATIVE_INFINITY) {
+			buf.append("Double.NEGATIVE_INFINITY");
+		} else if (value < 0.0 || (value == 0.0 && 1.0 / value < 0.0)) {
+			buf.append('(').append(Double.toString(value)).append(')');
+		} else {
+			buf.append(Double.toString(value));
+		}
+	}
+
+	/**
+	 * Translate the node into a Java expression.
+	 * 
+	 * @param node
+	 * @param buf
+	 * @throws ArithmeticMathException
+	 *             if the node cannot be translated
+	 */
+	protected void translate(ASTNode node, StringBuilder buf) {
+		if (node instanceof FunctionNode) {
+			translateFunction((FunctionNode) node, buf);
+			return;
+		}
+		if (node instanceof SymbolNode && fParameters.contains(node.toString())) {
+			buf.append(node.toString());
+			return;
+		}
+		if (!translateValue(node, buf)) {
+			throw new ArithmeticMathException(
+					getClass().getSimpleName() + "#translate() not possible for: " + node.toString());
+		}
+	}
+
+	/**
+	 * Translate a number or a built-in constant into a Java expression.
+	 * 
+	 * @param node
+	 *            a number node or a symbol, which isn't a parameter
+	 * @param buf
+	 * @return <code>false</code> if the node cannot be translated
+	 */
+	protected abstract boolean translateValue(ASTNode node, StringBuilder buf);
+
+	/**
+	 * Translate the arguments of the function, separated by the given
+	 * operator, in parentheses.
+	 * 
+	 * @param functionNode
+	 * @param operator
+	 * @param buf
+	 */
+	protected void translateArguments(FunctionNode functionNode, String operator, StringBuilder buf) {
+		buf.append('(');
+		for (int i = 1; i < functionNode.size(); i++) {
+			if (i > 1) {
+				buf.append(operator);
+			}
+			translate(functionNode.getNode(i), buf);
+		}
+		buf.append(')');
+	}
+
+	private void translateFunction(FunctionNode functionNode, StringBuilder buf) {
+		if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode) {
+			String symbol = functionNode.getNode(0).toString();
+			String name = builtinName(symbol);
+			int size = functionNode.size();
+			Set<Integer> arities = fFormulas.get(symbol);
+			if (arities != null && arities.contains(size - 1)) {
+				// call another formula
+				buf.append(symbol);
+				translateArguments(functionNode, ", ", buf);
+				return;
+			}
+			if (name.equals("If") && (size == 3 || size == 4)) {
+				buf.append('(');
+				translateLogical(functionNode.getNode(1), buf);
+				buf.append(" ? ");
+				translate(functionNode.getNode(2), buf);
+				buf.append(" : ");
+				if (size == 4) {
+					translate(functionNode.getNode(3), buf);
+				} else {
+					fUsesUndefined = true;
+					buf.append("$undefined(\"").append(escapeString(getUndefinedMessage(functionNode))).append("\")");
+				}
+				buf.append(')');
+				return;
+			}
+			if (translateBuiltin(name, functionNode, buf)) {
+				return;
+			}
+		}
+		throw new ArithmeticMathException(
+				getClass().getSimpleName() + "#translate() not possible for: " + functionNode.toString());
+	}
+
+	/**
+	 * Translate a call of a built-in function into a Java expression.
+	 * 
+	 * @param name
+	 *            the built-in name of the function
+	 * @param functionNode
+	 * @param buf
+	 * @return <code>false</code> if the function cannot be translated
+	 */
+	protected abstract boolean translateBuiltin(String name, FunctionNode functionNode, StringBuilder buf);
+
+	/**
+	 * Translate a condition into a Java <code>boolean</code> expression.
+	 * 
+	 * @param node
+	 * @param buf
+	 * @throws ArithmeticMathException
+	 *             if the node cannot be translated
+	 */
+	protected void translateLogical(ASTNode node, StringBuilder buf) {
+		if (node instanceof SymbolNode) {
+			Boolean boole = getSymbolBoolean(node.toString());
+			if (boole != null) {
+				buf.append(boole.booleanValue() ? "true" : "false");
+				return;
+			}
+		} else if (node instanceof FunctionNode) {
+			FunctionNode functionNode = (FunctionNode) node;
+			if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode) {
+				String name = builtinName(functionNode.getNode(0).toString());
+				if (functionNode.size() == 2 && name.equals("Not")) {
+					buf.append("!");
+					translateLogical(functionNode.getNode(1), buf);
+					return;
+				}
+				if (functionNode.size() >= 3 && (name.equals("And") || name.equals("Or"))) {
+					buf.append('(');
+					translateLogical(functionNode.getNode(1), buf);
+					for (int i = 2; i < functionNode.size(); i++) {
+						buf.append(name.equals("And") ? " && " : " || ");
+						translateLogical(functionNode.getNode(i), buf);
+					}
+					buf.append(')');
+					return;
+				}
+				if (functionNode.size() == 3 && translateComparison(name, functionNode, buf)) {
+					return;
+				}
+			}
+		}
+		throw new ArithmeticMathException(
+				getClass().getSimpleName() + "#translateLogical() not possible for: " + node.toString());
+	}
+
+	/**
+	 * Translate a comparison of two numbers into a Java <code>boolean</code>
+	 * expression.
+	 * 
+	 * @param name
+	 *            the built-in name of the comparison, i.e. <code>Less</code>
+	 * @param functionNode
+	 *            the comparison with two arguments
+	 * @param buf
+	 * @return <code>false</code> if the comparison cannot be translated
+	 */
+	protected abstract boolean translateComparison(String name, FunctionNode functionNode, StringBuilder buf);
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval.api;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.math3.fraction.BigFraction;
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FractionNode;
+import org.matheclipse.commons.parser.client.ast.FunctionNode;
+import org.matheclipse.commons.parser.client.ast.IntegerNode;
+import org.matheclipse.commons.parser.client.ast.NumberNode;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
+
+/**
+ * Rewrites a parsed expression into a canonical form, so that the different
+ * notations of the same formula (i.e. <code>x*y+1</code>, <code>1+y*x</code>
+ * and <code>y x + 1</code>) result in equal trees with the same
+ * {@link ASTNode#fingerprint()}:
+ * 
+ * <ul>
+ * <li>the arguments of the commutative functions <code>Plus</code> and
+ * <code>Times</code> are flattened and sorted by a structural order
+ * (numbers, other leaves, symbols and then functions)</li>
+ * <li>the arguments of <code>And</code> and <code>Or</code> are flattened,
+ * but not sorted, because the evaluators short circuit them from left to
+ * right</li>
+ * <li><code>Max</code> and <code>Min</code> are left unchanged, because the
+ * evaluators ignore a <code>NaN</code> after the first argument, so their
+ * result depends on the order and the nesting of the arguments</li>
+ * <li>the integer and fraction literals of <code>Plus</code> and
+ * <code>Times</code> are folded into a single literal (i.e.
+ * <code>Times[-1, 2/4, x]</code> becomes <code>Times[-1/2, x]</code>),
+ * neutral literals are removed</li>
+ * <li>integer literals are written in decimal notation without leading
+ * zeros, fractions are reduced to lowest terms with a positive
+ * denominator</li>
+ * </ul>
+ * 
+ * The given tree isn't modified.
+ */
+public final class CanonicalForm {
+
+	private static final String[] COMMUTATIVE_FUNCTION_NAMES = { "Plus", "Times" };
+
+	private static final String[] ASSOCIATIVE_FUNCTION_NAMES = { "And", "Or" };
+
+	/**
+	 * Returns the canonical form of the parsed <code>node</code>.
+	 * 
+	 * @param node
+	 *            a parsed node
+	 * @param relaxedSyntax
+	 *            if <code>true</code> the function names are case insensitive
+	 * @return
+	 */
+	public static ASTNode transform(final ASTNode node, boolean relaxedSyntax) {
+		return new CanonicalForm(relaxedSyntax).canonical(node);
+	}
+
+	private final boolean fRelaxedSyntax;
+
+	private CanonicalForm(boolean relaxedSyntax) {
+		fRelaxedSyntax = relaxedSyntax;
+	}
+
+	private ASTNode canonical(final ASTNode node) {
+		if (node instanceof IntegerNode) {
+			return integer(bigInteger((IntegerNode) node), (IntegerNode) node);
+		}
+		if (node instanceof FractionNode) {
+			BigFraction value = rational(node);
+			return value == null ? node : rational(value, (FractionNode) node);
+		}
+		if (!(node instanceof FunctionNode)) {
+			return node;
+		}
+		FunctionNode functionNode = (FunctionNode) node;
+		FunctionNode result = functionNode;
+		for (int i = 1; i < functionNode.size(); i++) {
+			ASTNode arg = canonical(functionNode.getNode(i));
+			if (arg != functionNode.getNode(i)) {
+				if (result == functionNode) {
+					result = functionNode.copy();
+				}
+				result.set(i, arg);
+			}
+		}
+		String name = flatName(result);
+		if (name == null) {
+			return result;
+		}
+		List<ASTNode> args = new ArrayList<ASTNode>();
+		for (int i = 1; i < result.size(); i++) {
+			ASTNode arg = result.getNode(i);
+			if (name.equals(flatName(arg))) {
+				// Plus[a, Plus[b, c]] becomes Plus[a, b, c]
+				FunctionNode nested = (FunctionNode) arg;
+				for (int j = 1; j < nested.size(); j++) {
+					args.add(nested.getNode(j));
+				}
+			} else {
+				args.add(arg);
+			}
+		}
+		if (name.equals("Plus") || name.equals("Times")) {
+			args = foldNumbers(name, args);
+			if (args.size() == 1) {
+				return args.get(0);
+			}
+		}
+		if (isCommutative(name)) {
+			Collections.sort(args, this::compare);
+		}
+		boolean changed = args.size() != result.size() - 1;
+		for (int i = 0; !changed && i < args.size(); i++) {
+			changed = args.get(i) != result.getNode(i + 1);
+		}
+		if (!changed) {
+			return result;
+		}
+		FunctionNode sorted = new FunctionNode(result.getNode(0));
+		sorted.addAll(args);
+		return sorted;
+	}
+
+	/**
+	 * Fold the integer and fraction literals of <code>Plus</code> or
+	 * <code>Times</code> into one literal at the start of the arguments.
+	 */
+	private static List<ASTNode> foldNumbers(String name, List<ASTNode> args) {
+		boolean times = name.equals("Times");
+		BigFraction value = times ? BigFraction.ONE : BigFraction.ZERO;
+		ASTNode literal = null;
+		int count = 0;
+		List<ASTNode> result = new ArrayList<ASTNode>(args.size());
+		for (ASTNode arg : args) {
+			BigFraction number = rational(arg);
+			if (number != null) {
+				value = times ? value.multiply(number) : value.add(number);
+				literal = arg;
+				count++;
+			} else {
+				result.add(arg);
+			}
+		}
+		if (count == 0) {
+			return args;
+		}
+		boolean neutral = times ? value.equals(BigFraction.ONE) : value.equals(BigFraction.ZERO);
+		if (!neutral || result.isEmpty()) {
+			result.add(0, count == 1 ? literal : rational(value, null));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the value of an integer or fraction literal, or
+	 * <code>null</code> if the <code>node</code> isn't a literal or has a zero
+	 * denominator.
+	 */
+	private static BigFraction rational(final ASTNode node) {
+		if (node instanceof IntegerNode) {
+			return new BigFraction(bigInteger((IntegerNode) node));
+		}
+		if (node instanceof FractionNode) {
+			FractionNode fraction = (FractionNode) node;
+			BigInteger denominator = bigInteger(fraction.getDenominator());
+			if (denominator.signum() == 0) {
+				return null;
+			}
+			BigInteger numerator = bigInteger(fraction.getNumerator());
+			return new BigFraction(fraction.isSign() ? numerator.negate() : numerator, denominator);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns an integer literal or a reduced fraction literal with the sign
+	 * in the numerator for the <code>value</code>.
+	 * 
+	 * @param value
+	 * @param node
+	 *            the literal which is returned, if it has the canonical
+	 *            notation
+	 * @return
+	 */
+	private static NumberNode rational(BigFraction value, NumberNode node) {
+		if (value.getDenominator().equals(BigInteger.ONE)) {
+			return integer(value.getNumerator(), node instanceof IntegerNode ? (IntegerNode) node : null);
+		}
+		FractionNode result = new FractionNode(integer(value.getNumerator(), null),
+				integer(value.getDenominator(), null));
+		return result.equals(node) ? node : result;
+	}
+
+	private static BigInteger bigInteger(final IntegerNode node) {
+		return new BigInteger(node.toString(), node.getNumberFormat());
+	}
+
+	/**
+	 * Returns a decimal integer literal for the <code>value</code>.
+	 * 
+	 * @param value
+	 * @param node
+	 *            the literal which is returned, if it has the canonical
+	 *            notation
+	 * @return
+	 */
+	private static IntegerNode integer(BigInteger value, IntegerNode node) {
+		if (node != null && node.toString().equals(value.toString())) {
+			return node;
+		}
+		IntegerNode result = new IntegerNode(value.abs().toString());
+		if (value.signum() < 0) {
+			result.toggleSign();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the canonical name of a commutative or associative function, or
+	 * <code>null</code> if the <code>node</code> isn't such a function.
+	 */
+	private String flatName(final ASTNode node) {
+		if (node instanceof FunctionNode && ((FunctionNode) node).size() > 0
+				&& ((FunctionNode) node).getNode(0) instanceof SymbolNode) {
+			String head = ((FunctionNode) node).getNode(0).toString();
+			String name = findName(COMMUTATIVE_FUNCTION_NAMES, head);
+			return name != null ? name : findName(ASSOCIATIVE_FUNCTION_NAMES, head);
+		}
+		return null;
+	}
+
+	private String findName(final String[] names, final String head) {
+		for (String name : names) {
+			if (name.equals(head) || (fRelaxedSyntax && name.equalsIgnoreCase(head))) {
+				return name;
+			}
+		}
+		return null;
+	}
+
+	private static boolean isCommutative(final String name) {
+		for (String commutativeName : COMMUTATIVE_FUNCTION_NAMES) {
+			if (commutativeName.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The structural order of the nodes: numbers, other leaves, symbols and
+	 * then functions. Functions are compared by their heads, their number of
+	 * arguments and then argument by argument.
+	 */
+	private int compare(final ASTNode node1, final ASTNode node2) {
+		int cmp = Integer.compare(rank(node1), rank(node2));
+		if (cmp != 0) {
+			return cmp;
+		}
+		if (node1 instanceof FunctionNode) {
+			FunctionNode functionNode1 = (FunctionNode) node1;
+			FunctionNode functionNode2 = (FunctionNode) node2;
+			if (functionNode1.isEmpty() || functionNode2.isEmpty()) {
+				return Integer.compare(functionNode1.size(), functionNode2.size());
+			}
+			cmp = compare(functionNode1.getNode(0), functionNode2.getNode(0));
+			if (cmp != 0) {
+				return cmp;
+			}
+			cmp = Integer.compare(functionNode1.size(), functionNode2.size());
+			for (int i = 1; cmp == 0 && i < functionNode1.size(); i++) {
+				cmp = compare(functionNode1.getNode(i), functionNode2.getNode(i));
+			}
+			return cmp;
+		}
+		cmp = node1.getClass().getName().compareTo(node2.getClass().getName());
+		if (cmp != 0) {
+			return cmp;
+		}
+		return node1.toString().compareTo(node2.toString());
+	}
+
+	private static int rank(final ASTNode node) {
+		if (node instanceof NumberNode) {
+			return 0;
+		}
+		if (node instanceof SymbolNode) {
+			return 2;
+		}
+		if (node instanceof FunctionNode) {
+			return 3;
+		}
+		return 1;
+	}
+}
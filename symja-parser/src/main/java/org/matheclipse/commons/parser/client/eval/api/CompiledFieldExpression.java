@@ -0,0 +1,111 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval.api;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.FieldElement;
+import org.matheclipse.commons.parser.client.math.ArithmeticMathException;
+
+/**
+ * An immutable, compiled <code>T</code> expression created by
+ * <code>FieldElementEvaluator#compile()</code>.
+ * 
+ * All function and constant lookups are resolved at compile time. The declared
+ * variables are read from a <code>T[]</code> frame by index, so the
+ * expression can be reevaluated without any map lookups or
+ * <code>instanceof</code> dispatch on the AST. The compiled expression doesn't
+ * use the state of its evaluator, so it can be evaluated concurrently from
+ * different threads with separate frames.
+ * 
+ * @param <T>
+ * 
+ * @see FieldElementEvaluator#compile(String, String...)
+ * @see FieldElementEvaluator#compile(org.matheclipse.commons.parser.client.ast.ASTNode,
+ *      String...)
+ */
+public final class CompiledFieldExpression<T extends FieldElement<T>> {
+
+	private final IFieldElementFrameFunction<T> fFunction;
+
+	private final String[] fVariables;
+
+	private final int fFrameSize;
+
+	CompiledFieldExpression(IFieldElementFrameFunction<T> function, String[] variables, int frameSize) {
+		fFunction = function;
+		fVariables = variables;
+		fFrameSize = frameSize;
+	}
+
+	/**
+	 * Evaluate the compiled expression for the given variable values.
+	 * 
+	 * If the expression assigns to a declared variable (i.e.
+	 * <code>x = x + 1</code>), the new value is written into the
+	 * <code>args</code> array.
+	 * 
+	 * @param args
+	 *            the values of the variables in the order they were declared
+	 *            in the <code>compile()</code> call
+	 * @return the resulting value
+	 * 
+	 * @throws ArithmeticMathException
+	 *             if the number of arguments doesn't match the number of
+	 *             declared variables or the expression cannot be evaluated.
+	 */
+	@SafeVarargs
+	public final T evaluate(T... args) {
+		if (args.length != fVariables.length) {
+			throw new ArithmeticMathException("CompiledFieldExpression#evaluate(T[]) expects " + fVariables.length
+					+ " arguments, but got: " + args.length);
+		}
+		if (fFrameSize == args.length) {
+			return fFunction.apply(args);
+		}
+		// the expression assigns local variables, which need additional slots
+		return fFunction.apply(Arrays.copyOf(args, fFrameSize));
+	}
+
+	/**
+	 * Returns the number of slots in a variable frame. This is the number of
+	 * declared variables plus the number of local variables assigned with
+	 * <code>Set</code> in the expression.
+	 * 
+	 * @return the frame size
+	 */
+	public int getFrameSize() {
+		return fFrameSize;
+	}
+
+	/**
+	 * Returns the frame function which evaluates this expression.
+	 * 
+	 * @return the frame function
+	 */
+	public IFieldElementFrameFunction<T> getFunction() {
+		return fFunction;
+	}
+
+	/**
+	 * Returns the declared variable names in slot order.
+	 * 
+	 * @return a copy of the declared variable names
+	 */
+	public String[] getVariables() {
+		return fVariables.clone();
+	}
+}
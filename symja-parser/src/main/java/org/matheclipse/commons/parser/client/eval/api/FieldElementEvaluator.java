@@ -15,11 +15,23 @@
  */
 package org.matheclipse.commons.parser.client.eval.api;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
 import org.apache.commons.math3.FieldElement;
 import org.matheclipse.commons.parser.client.Parser;
 import org.matheclipse.commons.parser.client.SyntaxError;
 import org.matheclipse.commons.parser.client.ast.ASTNode;
 import org.matheclipse.commons.parser.client.ast.FunctionNode;
+import org.matheclipse.commons.parser.client.ast.IntegerNode;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
+import org.matheclipse.commons.parser.client.eval.BooleanVariable;
+import org.matheclipse.commons.parser.client.eval.api.function.CompoundExpressionFunction;
+import org.matheclipse.commons.parser.client.eval.api.function.PlusFunction;
+import org.matheclipse.commons.parser.client.eval.api.function.SetFunction;
+import org.matheclipse.commons.parser.client.eval.api.function.TimesFunction;
+import org.matheclipse.commons.parser.client.math.ArithmeticMathException;
 import org.matheclipse.commons.parser.client.operator.ASTNodeFactory;
 
 /**
@@ -39,15 +51,403 @@ public abstract class FieldElementEvaluator<T extends FieldElement<T>> extends A
 
 	protected final boolean fRelaxedSyntax;
 
-	public FieldElementEvaluator(boolean relaxedSyntax) {
+	/**
+	 * The functions and constants of this evaluator.
+	 */
+	protected final FunctionRegistry<IFieldElementFunction<T>, IBooleanFunction<T>, T> fRegistry;
+
+	/**
+	 * The registry with the built-in functions of this evaluator class. Only
+	 * built-in functions, which <code>fRegistry</code> doesn't override, may
+	 * be rewritten by the optimizer.
+	 */
+	private final FunctionRegistry<IFieldElementFunction<T>, IBooleanFunction<T>, T> fDefaultRegistry;
+
+	private final TieredCompiler<Supplier<T>> fTieredCompiler;
+
+	/**
+	 * 
+	 * @param registry
+	 *            the functions and constants of this evaluator. In relaxed
+	 *            mode the lower case names are also defined.
+	 * @param relaxedSyntax
+	 */
+	public FieldElementEvaluator(FunctionRegistry<IFieldElementFunction<T>, IBooleanFunction<T>, T> registry,
+			boolean relaxedSyntax) {
+		this(registry, registry, relaxedSyntax);
+	}
+
+	/**
+	 * 
+	 * @param registry
+	 *            the functions and constants of this evaluator. In relaxed
+	 *            mode the lower case names are also defined.
+	 * @param defaultRegistry
+	 *            the built-in functions of the evaluator class, which the
+	 *            <code>registry</code> is derived from
+	 * @param relaxedSyntax
+	 */
+	protected FieldElementEvaluator(FunctionRegistry<IFieldElementFunction<T>, IBooleanFunction<T>, T> registry,
+			FunctionRegistry<IFieldElementFunction<T>, IBooleanFunction<T>, T> defaultRegistry,
+			boolean relaxedSyntax) {
 		super(relaxedSyntax);
 		fRelaxedSyntax = relaxedSyntax;
+		fRegistry = relaxedSyntax ? registry.relaxed() : registry;
+		fDefaultRegistry = defaultRegistry;
+		fTieredCompiler = new TieredCompiler<Supplier<T>>(this::compileNode);
+	}
+
+	/**
+	 * Compile an already parsed in abstract syntax tree node into the closure
+	 * of the tiered compiler. Variables are read from this evaluator at each
+	 * call, the subexpressions which cannot be compiled (i.e. callback
+	 * functions or <code>Set</code>) are delegated to
+	 * <code>evaluateNode()</code>.
+	 * 
+	 * @param node
+	 *            abstract syntax tree node
+	 * @return the compiled node
+	 */
+	protected Supplier<T> compileNode(final ASTNode node) {
+		final IFieldElementFrameFunction<T> function = compileNode(node, null);
+		// the closure doesn't use any frame slots
+		return () -> function.apply(null);
+	}
+
+	/**
+	 * Parse the given <code>expression String</code> and compile it into an
+	 * immutable <code>CompiledFieldExpression</code>. The given
+	 * <code>variables</code> are read from the evaluation frame in the given
+	 * order.
+	 * 
+	 * @param expression
+	 * @param variables
+	 *            the variable names which are assigned to the slots of the
+	 *            evaluation frame
+	 * @return the compiled expression
+	 * @throws SyntaxError
+	 * @throws ArithmeticMathException
+	 *             if the expression cannot be compiled.
+	 */
+	public CompiledFieldExpression<T> compile(String expression, String... variables) {
+		return compile(parseOptimized(expression, true), variables);
+	}
+
+	/**
+	 * Compile an already parsed in abstract syntax tree node into an immutable
+	 * <code>CompiledFieldExpression</code>. The given <code>variables</code>
+	 * are read from the evaluation frame in the given order.
+	 * 
+	 * Symbols which aren't declared in <code>variables</code> are resolved at
+	 * compile time to the variables defined in this evaluator or to the
+	 * built-in constants.
+	 * 
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param variables
+	 *            the variable names which are assigned to the slots of the
+	 *            evaluation frame
+	 * @return the compiled expression
+	 * @throws ArithmeticMathException
+	 *             if the <code>node</code> cannot be compiled.
+	 */
+	public CompiledFieldExpression<T> compile(final ASTNode node, String... variables) {
+		Map<String, Integer> slots = new HashMap<String, Integer>();
+		for (int i = 0; i < variables.length; i++) {
+			String variableName = fRelaxedSyntax ? variables[i].toLowerCase() : variables[i];
+			if (slots.put(variableName, i) != null) {
+				throw new ArithmeticMathException(
+						"FieldElementEvaluator#compile(ASTNode, String[]) duplicate variable: " + variables[i]);
+			}
+		}
+		IFieldElementFrameFunction<T> function = compileNode(node, slots);
+		return new CompiledFieldExpression<T>(function, variables.clone(), slots.size());
+	}
+
+	/**
+	 * Compile the <code>node</code> into a function of the evaluation frame.
+	 * 
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param slots
+	 *            the frame slots of the variables, or <code>null</code> for the
+	 *            closure of the tiered compiler, which reads the variables from
+	 *            this evaluator at each call and delegates the subexpressions
+	 *            which cannot be compiled to <code>evaluateNode()</code>
+	 * @return the compiled node
+	 * @throws ArithmeticMathException
+	 *             if the <code>node</code> cannot be compiled into a function of
+	 *             the evaluation frame.
+	 */
+	private IFieldElementFrameFunction<T> compileNode(final ASTNode node, final Map<String, Integer> slots) {
+		if (node instanceof FunctionNode) {
+			return compileFunction((FunctionNode) node, slots);
+		}
+		if (node instanceof SymbolNode && slots == null) {
+			final String name = node.toString();
+			final T constant = getSymbolFieldElementMap(name);
+			return frame -> {
+				FieldElementVariable<T> v = fVariableMap.get(name);
+				if (v != null) {
+					return v.getValue();
+				}
+				if (constant != null) {
+					return constant;
+				}
+				return evaluateNode(node);
+			};
+		}
+		if (node instanceof SymbolNode) {
+			Integer slot = slots.get(node.toString());
+			if (slot != null) {
+				final int index = slot.intValue();
+				return frame -> frame[index];
+			}
+			final FieldElementVariable<T> v = fVariableMap.get(node.toString());
+			if (v != null) {
+				return frame -> v.getValue();
+			}
+			final T constant = getSymbolFieldElementMap(node.toString());
+			if (constant != null) {
+				return frame -> constant;
+			}
+		} else {
+			// numbers and the number nodes of the evaluators
+			final T value = evaluateNode(node);
+			if (value != null) {
+				return frame -> value;
+			}
+			if (slots == null) {
+				return frame -> evaluateNode(node);
+			}
+		}
+		throw new ArithmeticMathException(
+				"FieldElementEvaluator#compile(ASTNode) not possible for: " + node.toString());
+	}
+
+	@SuppressWarnings("unchecked")
+	private IFieldElementFrameFunction<T>[] compileArguments(final FunctionNode functionNode,
+			final Map<String, Integer> slots) {
+		IFieldElementFrameFunction<T>[] args = new IFieldElementFrameFunction[functionNode.size() - 1];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = compileNode(functionNode.getNode(i + 1), slots);
+		}
+		return args;
+	}
+
+	@SuppressWarnings("unchecked")
+	private IFieldElementFrameFunction<T> compileFunction(final FunctionNode functionNode,
+			final Map<String, Integer> slots) {
+		if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode) {
+			if (isIfFunction(functionNode)) {
+				final IFieldElementFramePredicate<T> condition = compileNodeLogical(functionNode.getNode(1), slots);
+				final IFieldElementFrameFunction<T> trueCase = compileNode(functionNode.getNode(2), slots);
+				if (functionNode.size() == 3 && slots == null) {
+					// without a false case evaluateNode() throws the evaluator specific exception
+					return frame -> condition.test(frame) ? trueCase.apply(frame) : evaluateNode(functionNode);
+				}
+				if (functionNode.size() == 3) {
+					final String message = "FieldElementEvaluator#evaluate(FunctionNode) not possible for: "
+							+ functionNode.toString();
+					return frame -> {
+						if (condition.test(frame)) {
+							return trueCase.apply(frame);
+						}
+						throw new ArithmeticMathException(message);
+					};
+				}
+				final IFieldElementFrameFunction<T> falseCase = compileNode(functionNode.getNode(3), slots);
+				return frame -> condition.test(frame) ? trueCase.apply(frame) : falseCase.apply(frame);
+			}
+			IFieldElementFunction<T> function = getFunctionMap(functionNode.getNode(0).toString());
+			if (function instanceof IFieldElementFunctionNode) {
+				IFieldElementFrameFunction<T> result = compileFunctionNode(function, functionNode, slots);
+				if (result != null) {
+					return result;
+				}
+			} else if (functionNode.size() == 1) {
+				if (function instanceof IFieldElement0Function) {
+					final IFieldElement0Function<T> f = (IFieldElement0Function<T>) function;
+					return frame -> f.evaluate();
+				}
+			} else if (functionNode.size() == 2) {
+				if (function instanceof IFieldElement1Function) {
+					final IFieldElement1Function<T> f = (IFieldElement1Function<T>) function;
+					final IFieldElementFrameFunction<T> arg1 = compileNode(functionNode.getNode(1), slots);
+					return frame -> f.evaluate(arg1.apply(frame));
+				}
+			} else if (functionNode.size() == 3) {
+				ASTNode node2 = functionNode.getNode(2);
+				if (function instanceof IFieldElementInt2Function && node2 instanceof IntegerNode) {
+					final IFieldElementInt2Function<T> f = (IFieldElementInt2Function<T>) function;
+					final IFieldElementFrameFunction<T> arg1 = compileNode(functionNode.getNode(1), slots);
+					final int n = ((IntegerNode) node2).getIntValue();
+					return frame -> f.evaluate(arg1.apply(frame), n);
+				}
+				if (function instanceof IFieldElement2Function) {
+					final IFieldElement2Function<T> f = (IFieldElement2Function<T>) function;
+					final IFieldElementFrameFunction<T> arg1 = compileNode(functionNode.getNode(1), slots);
+					final IFieldElementFrameFunction<T> arg2 = compileNode(node2, slots);
+					return frame -> f.evaluate(arg1.apply(frame), arg2.apply(frame));
+				}
+			}
+		}
+		if (slots == null) {
+			return frame -> evaluateNode(functionNode);
+		}
+		throw new ArithmeticMathException(
+				"FieldElementEvaluator#compile(FunctionNode) not possible for: " + functionNode.toString());
+	}
+
+	/**
+	 * Compile the built-in functions, which evaluate the
+	 * <code>FunctionNode</code> arguments on their own. Functions with a binary
+	 * form (i.e. <code>Max</code> or <code>Min</code>) are folded from left to
+	 * right.
+	 * 
+	 * @return <code>null</code> if the function cannot be compiled.
+	 */
+	@SuppressWarnings("unchecked")
+	private IFieldElementFrameFunction<T> compileFunctionNode(final IFieldElementFunction<T> function,
+			final FunctionNode functionNode, final Map<String, Integer> slots) {
+		if (function instanceof SetFunction) {
+			// the interpreted Set of the tiered compiler defines the variable in this evaluator
+			if (slots != null && functionNode.size() == 3 && functionNode.getNode(1) instanceof SymbolNode) {
+				final IFieldElementFrameFunction<T> value = compileNode(functionNode.getNode(2), slots);
+				String variableName = functionNode.getNode(1).toString();
+				Integer slot = slots.get(variableName);
+				if (slot == null) {
+					// allocate a new slot for a local variable
+					slot = Integer.valueOf(slots.size());
+					slots.put(variableName, slot);
+				}
+				final int index = slot.intValue();
+				return frame -> frame[index] = value.apply(frame);
+			}
+			return null;
+		}
+		final IFieldElementFrameFunction<T>[] args = compileArguments(functionNode, slots);
+		if (function instanceof PlusFunction) {
+			if (args.length == 2) {
+				final IFieldElementFrameFunction<T> arg1 = args[0];
+				final IFieldElementFrameFunction<T> arg2 = args[1];
+				return frame -> arg1.apply(frame).add(arg2.apply(frame));
+			}
+			final T zero = getField().getZero();
+			return frame -> {
+				T result = zero;
+				for (int i = 0; i < args.length; i++) {
+					result = result.add(args[i].apply(frame));
+				}
+				return result;
+			};
+		}
+		if (function instanceof TimesFunction) {
+			if (args.length == 2) {
+				final IFieldElementFrameFunction<T> arg1 = args[0];
+				final IFieldElementFrameFunction<T> arg2 = args[1];
+				return frame -> arg1.apply(frame).multiply(arg2.apply(frame));
+			}
+			final T one = getField().getOne();
+			return frame -> {
+				T result = one;
+				for (int i = 0; i < args.length; i++) {
+					result = result.multiply(args[i].apply(frame));
+				}
+				return result;
+			};
+		}
+		if (function instanceof CompoundExpressionFunction) {
+			return frame -> {
+				T result = null;
+				for (int i = 0; i < args.length; i++) {
+					result = args[i].apply(frame);
+				}
+				return result;
+			};
+		}
+		if (function instanceof IFieldElement2Function && args.length > 0) {
+			final IFieldElement2Function<T> f = (IFieldElement2Function<T>) function;
+			return frame -> {
+				T result = args[0].apply(frame);
+				for (int i = 1; i < args.length; i++) {
+					result = f.evaluate(result, args[i].apply(frame));
+				}
+				return result;
+			};
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private IFieldElementFramePredicate<T> compileNodeLogical(final ASTNode node, final Map<String, Integer> slots) {
+		if (node instanceof FunctionNode) {
+			FunctionNode functionNode = (FunctionNode) node;
+			if (functionNode.size() > 0 && functionNode.getNode(0) instanceof SymbolNode) {
+				IBooleanFunction<T> function = getFunctionBooleanMap(functionNode.getNode(0).toString());
+				if (functionNode.size() == 2) {
+					if (function instanceof IBooleanBoolean1Function) {
+						final IBooleanBoolean1Function<T> f = (IBooleanBoolean1Function<T>) function;
+						final IFieldElementFramePredicate<T> arg1 = compileNodeLogical(functionNode.getNode(1), slots);
+						return frame -> f.evaluate(arg1.test(frame));
+					}
+				} else if (functionNode.size() == 3) {
+					if (function instanceof IBooleanFieldElement2Function) {
+						final IBooleanFieldElement2Function<T> f = (IBooleanFieldElement2Function<T>) function;
+						final IFieldElementFrameFunction<T> arg1 = compileNode(functionNode.getNode(1), slots);
+						final IFieldElementFrameFunction<T> arg2 = compileNode(functionNode.getNode(2), slots);
+						return frame -> f.evaluate(arg1.apply(frame), arg2.apply(frame));
+					}
+				}
+				if (functionNode.size() >= 3 && function instanceof IBooleanLazy2Function) {
+					// And[a, b, c] becomes a ? (b ? c : false) : false
+					final boolean shortCircuit = ((IBooleanLazy2Function<T>) function).getShortCircuitValue();
+					IFieldElementFramePredicate<T> result = compileNodeLogical(
+							functionNode.getNode(functionNode.size() - 1), slots);
+					for (int i = functionNode.size() - 2; i >= 1; i--) {
+						final IFieldElementFramePredicate<T> arg1 = compileNodeLogical(functionNode.getNode(i), slots);
+						final IFieldElementFramePredicate<T> arg2 = result;
+						result = frame -> arg1.test(frame) == shortCircuit ? shortCircuit : arg2.test(frame);
+					}
+					return result;
+				}
+				if (functionNode.size() >= 3 && function instanceof IBooleanBoolean2Function) {
+					// the parser flattens And[a, b, c, ...] and Or[a, b, c, ...]
+					final IBooleanBoolean2Function<T> f = (IBooleanBoolean2Function<T>) function;
+					IFieldElementFramePredicate<T> result = compileNodeLogical(functionNode.getNode(1), slots);
+					for (int i = 2; i < functionNode.size(); i++) {
+						final IFieldElementFramePredicate<T> arg1 = result;
+						final IFieldElementFramePredicate<T> arg2 = compileNodeLogical(functionNode.getNode(i), slots);
+						result = frame -> f.evaluate(arg1.test(frame), arg2.test(frame));
+					}
+					return result;
+				}
+			}
+		} else if (node instanceof SymbolNode && slots != null) {
+			final BooleanVariable v = fBooleanVariables.get(node.toString());
+			if (v != null) {
+				return frame -> v.getValue();
+			}
+			Boolean boole = getSymbolBooleanMap(node.toString());
+			if (boole != null) {
+				final boolean value = boole.booleanValue();
+				return frame -> value;
+			}
+		}
+		if (slots == null) {
+			return frame -> evaluateNodeLogical(node);
+		}
+		throw new ArithmeticMathException(
+				"FieldElementEvaluator#compileLogical(ASTNode) not possible for: " + node.toString());
 	}
 
 	/**
 	 * Reevaluate the <code>expression</code> (possibly after a new Variable
 	 * assignment)
 	 * 
+	 * After <code>getTieredCompiler().getThreshold()</code> reevaluations the
+	 * expression is transparently promoted to its compiled form.
+	 * 
 	 * @return the resulting FieldElement
 	 * @throws SyntaxError
 	 */
@@ -55,31 +455,392 @@ public abstract class FieldElementEvaluator<T extends FieldElement<T>> extends A
 		if (fNode == null) {
 			throw new SyntaxError(0, 0, 0, " ", "No parser input defined", 1);
 		}
+		Supplier<T> compiled = fTieredCompiler.get(fNode);
+		if (compiled != null) {
+			return compiled.get();
+		}
 		return evaluateNode(fNode);
 	}
 
 	/**
-	 * Parse the given expression <code>String</code> and evaluate it to a
-	 * <code>DATA</code> value.
+	 * Parse the given <code>expression String</code> with the syntax of this
+	 * evaluator and optimize the resulting ASTNode (constant folding).
 	 * 
 	 * @param expression
 	 * @return
 	 * @throws SyntaxError
 	 */
-	public T evaluate(String expression) {
+	protected ASTNode parseOptimized(String expression) {
+		return parseOptimized(expression, false);
+	}
+
+	/**
+	 * Parse the given <code>expression String</code> with the syntax of this
+	 * evaluator and optimize the resulting ASTNode (constant folding).
+	 * 
+	 * @param expression
+	 * @param hornerForm
+	 *            if <code>true</code> the polynomial sums are rewritten into
+	 *            Horner form. Only the compiled forms use it, because the
+	 *            rewrite changes the rounding of the results.
+	 * @return
+	 * @throws SyntaxError
+	 */
+	protected ASTNode parseOptimized(String expression, boolean hornerForm) {
 		Parser p;
 		if (fRelaxedSyntax) {
 			p = new Parser(ASTNodeFactory.RELAXED_STYLE_FACTORY, true);
 		} else {
 			p = new Parser(ASTNodeFactory.MMA_STYLE_FACTORY, false);
 		}
-		fNode = p.parse(expression);
-		if (fNode instanceof FunctionNode) {
-			fNode = optimizeFunction((FunctionNode) fNode);
+		ASTNode node = p.parse(expression);
+		if (node instanceof FunctionNode) {
+			FunctionNode functionNode = (FunctionNode) node;
+			if (hornerForm && isBuiltin("Plus", "Times", "Power")) {
+				functionNode = HornerForm.transform(functionNode, fRelaxedSyntax);
+			}
+			return optimizeFunction(functionNode);
+		}
+		return node;
+	}
+
+	/**
+	 * Test if the registry of this evaluator doesn't override the built-in
+	 * functions with the given names.
+	 * 
+	 * @param names
+	 * @return
+	 */
+	protected boolean isBuiltin(String... names) {
+		for (String name : names) {
+			IFieldElementFunction<T> function = fRegistry.getFunction(name);
+			if (function == null || function != fDefaultRegistry.getFunction(name)) {
+				return false;
+			}
 		}
+		return true;
+	}
+
+	/**
+	 * Parse the given expression <code>String</code> and evaluate it to a
+	 * <code>DATA</code> value.
+	 * 
+	 * @param expression
+	 * @return
+	 * @throws SyntaxError
+	 */
+	public T evaluate(String expression) {
+		fNode = bindFunctions(parseOptimized(expression));
 		return evaluateNode(fNode);
 	}
 
+	@Override
+	public IBooleanFunction<T> getFunctionBooleanMap(String symbolName) {
+		return fRegistry.getBooleanFunction(symbolName);
+	}
+
+	@Override
+	public IFieldElementFunction<T> getFunctionMap(String symbolName) {
+		return fRegistry.getFunction(symbolName);
+	}
+
+	/**
+	 * Returns the registry of the functions and constants of this evaluator.
+	 * In relaxed mode it contains the additional lower case names.
+	 * 
+	 * @return
+	 */
+	public FunctionRegistry<IFieldElementFunction<T>, IBooleanFunction<T>, T> getRegistry() {
+		return fRegistry;
+	}
+
+	@Override
+	public Boolean getSymbolBooleanMap(String symbolName) {
+		return fRegistry.getBooleanSymbol(symbolName);
+	}
+
+	@Override
+	public T getSymbolFieldElementMap(String symbolName) {
+		return fRegistry.getSymbol(symbolName);
+	}
+
+	/**
+	 * Returns the tiered compiler, which promotes the expression of
+	 * <code>evaluate()</code> to its compiled form. It's used to configure the
+	 * promotion threshold and the background compilation, and to query the
+	 * promotion statistics.
+	 * 
+	 * @return
+	 */
+	public TieredCompiler<Supplier<T>> getTieredCompiler() {
+		return fTieredCompiler;
+	}
+
+	/**
+	 * Specialize the expression <code>node</code> for the given values of the
+	 * <code>fixed</code> variables. The fixed variables are substituted and all
+	 * subexpressions, which don't depend on the remaining free variables, are
+	 * constant folded by <code>optimizeFunction()</code>. The given
+	 * <code>node</code> isn't modified.
+	 * 
+	 * @param node
+	 *            abstract syntax tree node
+	 * @param fixed
+	 *            the values of the fixed variables
+	 * @return the residual expression
+	 */
+	public ASTNode specialize(final ASTNode node, final Map<String, T> fixed) {
+		Map<String, ASTNode> values = new HashMap<String, ASTNode>();
+		for (Map.Entry<String, T> entry : fixed.entrySet()) {
+			String variableName = fRelaxedSyntax ? entry.getKey().toLowerCase() : entry.getKey();
+			values.put(variableName, createNode(entry.getValue()));
+		}
+		ASTNode result = substitute(node, values);
+		if (result instanceof FunctionNode) {
+			return optimizeFunction((FunctionNode) result);
+		}
+		return result;
+	}
+
+	/**
+	 * Substitute the <code>fixed</code> variables in <code>node</code> with
+	 * their value nodes. Subtrees, which don't depend on a fixed variable, are
+	 * shared with the given <code>node</code>.
+	 */
+	private static ASTNode substitute(final ASTNode node, final Map<String, ASTNode> fixed) {
+		if (node instanceof SymbolNode) {
+			ASTNode value = fixed.get(node.toString());
+			if (value != null) {
+				return value;
+			}
+		} else if (node instanceof FunctionNode) {
+			FunctionNode functionNode = (FunctionNode) node;
+			for (String variableName : fixed.keySet()) {
+				if (functionNode.dependsOn(variableName)) {
+					FunctionNode result = functionNode.copy();
+					for (int i = 1; i < result.size(); i++) {
+						result.set(i, substitute(functionNode.getNode(i), fixed));
+					}
+					return result;
+				}
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Replace the function nodes of an optimized tree with
+	 * <code>FieldElementFunctionNode</code>s, which hold the resolved function
+	 * objects of this evaluator. Function nodes, which cannot be resolved (i.e.
+	 * <code>If</code> without a false case), are kept and evaluated by the
+	 * visitor. Nodes, which were bound by another evaluator, are bound again.
+	 * 
+	 * @param node
+	 *            an optimized node
+	 * @return
+	 */
+	protected ASTNode bindFunctions(final ASTNode node) {
+		if (!(node instanceof FunctionNode)
+				|| (node instanceof FieldElementFunctionNode && ((FieldElementFunctionNode<?>) node).isBoundTo(this))) {
+			return node;
+		}
+		FunctionNode functionNode = (FunctionNode) node;
+		if (functionNode.isEmpty()) {
+			return functionNode;
+		}
+		ASTNode[] args = new ASTNode[functionNode.size() - 1];
+		boolean changed = false;
+		for (int i = 1; i < functionNode.size(); i++) {
+			args[i - 1] = bindFunctions(functionNode.getNode(i));
+			changed |= args[i - 1] != functionNode.getNode(i);
+		}
+		if (functionNode.getNode(0) instanceof SymbolNode) {
+			SymbolNode head = (SymbolNode) functionNode.getNode(0);
+			FieldElementFunctionNode<T> bound;
+			if (isIfFunction(functionNode)) {
+				bound = args.length == 3 ? FieldElementFunctionNode.<T> createIf(getClass(), fRegistry, head, args)
+						: null;
+			} else {
+				bound = FieldElementFunctionNode.create(getClass(), fRegistry, head, getFunctionMap(head.toString()),
+						args);
+			}
+			if (bound != null) {
+				return bound;
+			}
+		}
+		if (!changed && !(functionNode instanceof FieldElementFunctionNode)) {
+			return functionNode;
+		}
+		FunctionNode result = functionNode.copy();
+		for (int i = 0; i < args.length; i++) {
+			result.set(i + 1, args[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Optimize the condition of an <code>If</code> function with
+	 * <code>optimizeNodeLogical()</code> and drop the dead branch of
+	 * <code>If[True, a, b]</code> or <code>If[False, a, b]</code>.
+	 * 
+	 * @param functionNode
+	 *            an <code>If</code> function, whose arguments are already
+	 *            optimized by <code>optimizeFunction()</code>
+	 * @return the remaining branch or the <code>If</code> function
+	 */
+	protected ASTNode optimizeIf(final FunctionNode functionNode) {
+		FunctionNode result = functionNode;
+		ASTNode condition = optimizeNodeLogical(functionNode.getNode(1));
+		if (condition != functionNode.getNode(1)) {
+			result = functionNode.copy();
+			result.set(1, condition);
+		}
+		Boolean value = getBooleanConstant(condition);
+		if (value != null) {
+			if (value.booleanValue()) {
+				return result.getNode(2);
+			}
+			if (result.size() == 4) {
+				return result.getNode(3);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Optimize a <code>boolean</code> valued node (i.e. the condition of
+	 * <code>If</code>). Comparisons of constants and boolean functions of
+	 * constants are folded into the symbols <code>True</code> or
+	 * <code>False</code>. Constant arguments of <code>And</code> and
+	 * <code>Or</code>, which don't decide the result, are removed.
+	 * 
+	 * @param node
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	protected ASTNode optimizeNodeLogical(final ASTNode node) {
+		if (!(node instanceof FunctionNode) || ((FunctionNode) node).isEmpty()
+				|| !(((FunctionNode) node).getNode(0) instanceof SymbolNode)) {
+			return node;
+		}
+		FunctionNode functionNode = (FunctionNode) node;
+		IBooleanFunction<T> function = getFunctionBooleanMap(functionNode.getNode(0).toString());
+		if (function == null) {
+			return functionNode;
+		}
+		if (function instanceof IBooleanFieldElement2Function) {
+			ASTNode optNode = optimizeFunction(functionNode);
+			if (!(optNode instanceof FunctionNode)) {
+				return functionNode;
+			}
+			FunctionNode result = (FunctionNode) optNode;
+			if (result.size() == 3 && isConstant(result.getNode(1)) && isConstant(result.getNode(2))) {
+				try {
+					return createBooleanNode(((IBooleanFieldElement2Function<T>) function)
+							.evaluate(evaluateNode(result.getNode(1)), evaluateNode(result.getNode(2))));
+				} catch (RuntimeException e) {
+
+				}
+			}
+			return result;
+		}
+		FunctionNode result = functionNode;
+		for (int i = 1; i < functionNode.size(); i++) {
+			ASTNode arg = functionNode.getNode(i);
+			ASTNode optNode = optimizeNodeLogical(arg);
+			if (optNode != arg) {
+				if (result == functionNode) {
+					result = functionNode.copy();
+				}
+				result.set(i, optNode);
+			}
+		}
+		if (function instanceof IBooleanBoolean1Function) {
+			if (result.size() == 2) {
+				Boolean arg = getBooleanConstant(result.getNode(1));
+				if (arg != null) {
+					return createBooleanNode(((IBooleanBoolean1Function<T>) function).evaluate(arg.booleanValue()));
+				}
+			}
+		} else if (function instanceof IBooleanLazy2Function) {
+			if (result.size() >= 3) {
+				// And[x>0, True, y>0] becomes And[x>0, y>0], And[x>0, False] becomes False
+				boolean shortCircuit = ((IBooleanLazy2Function<T>) function).getShortCircuitValue();
+				FunctionNode reduced = new FunctionNode(result.getNode(0));
+				for (int i = 1; i < result.size(); i++) {
+					Boolean arg = getBooleanConstant(result.getNode(i));
+					if (arg == null) {
+						reduced.add(result.getNode(i));
+					} else if (arg.booleanValue() == shortCircuit) {
+						return createBooleanNode(shortCircuit);
+					}
+				}
+				if (reduced.size() == 1) {
+					return createBooleanNode(!shortCircuit);
+				}
+				if (reduced.size() == 2) {
+					return reduced.getNode(1);
+				}
+				if (reduced.size() < result.size()) {
+					return reduced;
+				}
+			}
+		} else if (function instanceof IBooleanBoolean2Function) {
+			if (result.size() >= 3) {
+				IBooleanBoolean2Function<T> f = (IBooleanBoolean2Function<T>) function;
+				Boolean value = getBooleanConstant(result.getNode(1));
+				for (int i = 2; value != null && i < result.size(); i++) {
+					Boolean arg = getBooleanConstant(result.getNode(i));
+					value = arg == null ? null : f.evaluate(value.booleanValue(), arg.booleanValue());
+				}
+				if (value != null) {
+					return createBooleanNode(value.booleanValue());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the value of the <code>True</code> or <code>False</code> symbol,
+	 * if it isn't redefined as a variable.
+	 * 
+	 * @param node
+	 * @return <code>null</code> if the <code>node</code> isn't a boolean
+	 *         constant
+	 */
+	private Boolean getBooleanConstant(final ASTNode node) {
+		if (node instanceof SymbolNode && !fVariableMap.containsKey(node.toString())
+				&& !fBooleanVariables.containsKey(node.toString())) {
+			return getSymbolBooleanMap(node.toString());
+		}
+		return null;
+	}
+
+	private static SymbolNode createBooleanNode(boolean value) {
+		return new SymbolNode(value ? "True" : "False");
+	}
+
+	/**
+	 * Test if the optimized <code>node</code> is a constant leaf (i.e. a
+	 * number), which doesn't depend on a variable.
+	 */
+	private static boolean isConstant(final ASTNode node) {
+		return !(node instanceof FunctionNode) && !(node instanceof SymbolNode);
+	}
+
+	/**
+	 * Test if the <code>functionNode</code> is <code>If[condition, a]</code> or
+	 * <code>If[condition, a, b]</code>.
+	 */
+	protected boolean isIfFunction(final FunctionNode functionNode) {
+		if ((functionNode.size() == 3 || functionNode.size() == 4) && functionNode.getNode(0) instanceof SymbolNode) {
+			String symbol = functionNode.getNode(0).toString();
+			return symbol.equals("If") || (fRelaxedSyntax && symbol.equalsIgnoreCase("If"));
+		}
+		return false;
+	}
+
 	@Override
 	public boolean isRelaxedSyntax() {
 		return fRelaxedSyntax;
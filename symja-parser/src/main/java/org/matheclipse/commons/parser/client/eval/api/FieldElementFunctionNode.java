@@ -0,0 +1,260 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval.api;
+
+import org.apache.commons.math3.FieldElement;
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FunctionNode;
+import org.matheclipse.commons.parser.client.ast.IntegerNode;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
+
+/**
+ * A <code>FunctionNode</code>, whose function is resolved once, when a
+ * <code>FieldElementEvaluator</code> parses an expression. It holds the
+ * function object of the evaluators function map and calls it through the
+ * path for its number of arguments, so an evaluation is a single virtual call
+ * without symbol name comparisons and map lookups.
+ * 
+ * The node is an ordinary <code>FunctionNode</code> with the same head and
+ * arguments for all other purposes. Only evaluators of the class and with the
+ * registry, which created the node, use the resolved function object. The
+ * node must not be modified.
+ * 
+ * @param <T>
+ */
+public abstract class FieldElementFunctionNode<T extends FieldElement<T>> extends FunctionNode {
+
+	/**
+	 * <code>If[condition, trueCase, falseCase]</code>
+	 */
+	private static final class IfNode<T extends FieldElement<T>> extends FieldElementFunctionNode<T> {
+		private final ASTNode fCondition;
+		private final ASTNode fTrueCase;
+		private final ASTNode fFalseCase;
+
+		IfNode(Class<?> engineClass, FunctionRegistry<?, ?, ?> registry, SymbolNode head, ASTNode[] args) {
+			super(engineClass, registry, head, args);
+			fCondition = args[0];
+			fTrueCase = args[1];
+			fFalseCase = args[2];
+		}
+
+		@Override
+		public T evaluate(AbstractASTVisitor<T> engine) {
+			return engine.evaluateNode(engine.evaluateNodeLogical(fCondition) ? fTrueCase : fFalseCase);
+		}
+	}
+
+	/**
+	 * A function, which evaluates the <code>FunctionNode</code> arguments on
+	 * its own (i.e. <code>Plus</code> or <code>Times</code>).
+	 */
+	private static final class CallNode<T extends FieldElement<T>> extends FieldElementFunctionNode<T> {
+		private final IFieldElementFunctionNode<T> fFunction;
+
+		CallNode(Class<?> engineClass, FunctionRegistry<?, ?, ?> registry, SymbolNode head,
+				IFieldElementFunctionNode<T> function, ASTNode[] args) {
+			super(engineClass, registry, head, args);
+			fFunction = function;
+		}
+
+		@Override
+		public T evaluate(AbstractASTVisitor<T> engine) {
+			return fFunction.evaluate(engine, this);
+		}
+	}
+
+	private static final class Function0Node<T extends FieldElement<T>> extends FieldElementFunctionNode<T> {
+		private final IFieldElement0Function<T> fFunction;
+
+		Function0Node(Class<?> engineClass, FunctionRegistry<?, ?, ?> registry, SymbolNode head,
+				IFieldElement0Function<T> function, ASTNode[] args) {
+			super(engineClass, registry, head, args);
+			fFunction = function;
+		}
+
+		@Override
+		public T evaluate(AbstractASTVisitor<T> engine) {
+			return fFunction.evaluate();
+		}
+	}
+
+	private static final class Function1Node<T extends FieldElement<T>> extends FieldElementFunctionNode<T> {
+		private final IFieldElement1Function<T> fFunction;
+		private final ASTNode fArg1;
+
+		Function1Node(Class<?> engineClass, FunctionRegistry<?, ?, ?> registry, SymbolNode head,
+				IFieldElement1Function<T> function, ASTNode[] args) {
+			super(engineClass, registry, head, args);
+			fFunction = function;
+			fArg1 = args[0];
+		}
+
+		@Override
+		public T evaluate(AbstractASTVisitor<T> engine) {
+			return fFunction.evaluate(engine.evaluateNode(fArg1));
+		}
+	}
+
+	/**
+	 * A function with an <code>int</code> second argument (i.e.
+	 * <code>Power[x, 3]</code>).
+	 */
+	private static final class Int2Node<T extends FieldElement<T>> extends FieldElementFunctionNode<T> {
+		private final IFieldElementInt2Function<T> fFunction;
+		private final ASTNode fArg1;
+		private final IntegerNode fArg2;
+
+		Int2Node(Class<?> engineClass, FunctionRegistry<?, ?, ?> registry, SymbolNode head,
+				IFieldElementInt2Function<T> function, ASTNode[] args) {
+			super(engineClass, registry, head, args);
+			fFunction = function;
+			fArg1 = args[0];
+			fArg2 = (IntegerNode) args[1];
+		}
+
+		@Override
+		public T evaluate(AbstractASTVisitor<T> engine) {
+			return fFunction.evaluate(engine.evaluateNode(fArg1), fArg2.getIntValue());
+		}
+	}
+
+	private static final class Function2Node<T extends FieldElement<T>> extends FieldElementFunctionNode<T> {
+		private final IFieldElement2Function<T> fFunction;
+		private final ASTNode fArg1;
+		private final ASTNode fArg2;
+
+		Function2Node(Class<?> engineClass, FunctionRegistry<?, ?, ?> registry, SymbolNode head,
+				IFieldElement2Function<T> function, ASTNode[] args) {
+			super(engineClass, registry, head, args);
+			fFunction = function;
+			fArg1 = args[0];
+			fArg2 = args[1];
+		}
+
+		@Override
+		public T evaluate(AbstractASTVisitor<T> engine) {
+			return fFunction.evaluate(engine.evaluateNode(fArg1), engine.evaluateNode(fArg2));
+		}
+	}
+
+	/**
+	 * Create a bound node for the <code>If</code> function with a false case.
+	 * 
+	 * @param engineClass
+	 *            the class of the evaluator, which resolved the function
+	 * @param registry
+	 *            the registry of the evaluator, which resolved the function
+	 * @param head
+	 * @param args
+	 *            the condition, the true case and the false case
+	 * @return
+	 */
+	static <T extends FieldElement<T>> FieldElementFunctionNode<T> createIf(Class<?> engineClass,
+			FunctionRegistry<?, ?, ?> registry, SymbolNode head, ASTNode[] args) {
+		return new IfNode<T>(engineClass, registry, head, args);
+	}
+
+	/**
+	 * Create a bound node for the given function object in the same order as
+	 * the evaluators <code>evaluateFunction()</code> tests its interfaces.
+	 * 
+	 * @param engineClass
+	 *            the class of the evaluator, which resolved the function
+	 * @param registry
+	 *            the registry of the evaluator, which resolved the function
+	 * @param head
+	 * @param function
+	 *            a function object of the evaluators function map
+	 * @param args
+	 *            the (already bound) arguments
+	 * @return <code>null</code> if the function cannot be called with the
+	 *         given arguments
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends FieldElement<T>> FieldElementFunctionNode<T> create(Class<?> engineClass,
+			FunctionRegistry<?, ?, ?> registry, SymbolNode head, IFieldElementFunction<T> function, ASTNode[] args) {
+		if (function instanceof IFieldElementFunctionNode) {
+			return new CallNode<T>(engineClass, registry, head, (IFieldElementFunctionNode<T>) function, args);
+		}
+		if (args.length == 0 && function instanceof IFieldElement0Function) {
+			return new Function0Node<T>(engineClass, registry, head, (IFieldElement0Function<T>) function, args);
+		}
+		if (args.length == 1 && function instanceof IFieldElement1Function) {
+			return new Function1Node<T>(engineClass, registry, head, (IFieldElement1Function<T>) function, args);
+		}
+		if (args.length == 2) {
+			if (function instanceof IFieldElementInt2Function && args[1] instanceof IntegerNode) {
+				return new Int2Node<T>(engineClass, registry, head, (IFieldElementInt2Function<T>) function, args);
+			}
+			if (function instanceof IFieldElement2Function) {
+				return new Function2Node<T>(engineClass, registry, head, (IFieldElement2Function<T>) function, args);
+			}
+		}
+		return null;
+	}
+
+	private final Class<?> fEngineClass;
+
+	private final FunctionRegistry<?, ?, ?> fRegistry;
+
+	private FieldElementFunctionNode(Class<?> engineClass, FunctionRegistry<?, ?, ?> registry, SymbolNode head,
+			ASTNode[] args) {
+		super(head);
+		fEngineClass = engineClass;
+		fRegistry = registry;
+		for (ASTNode arg : args) {
+			add(arg);
+		}
+	}
+
+	/**
+	 * Evaluate the function with the resolved function object, if the
+	 * <code>visitor</code> is of the class, which created this node. Otherwise
+	 * the visitor evaluates the node as an ordinary <code>FunctionNode</code>.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <S extends FieldElement<S>> S accept(final IASTVisitor<S> visitor) {
+		if (isBoundTo(visitor)) {
+			// the evaluator class determines the field element type S == T
+			return ((FieldElementFunctionNode<S>) (FieldElementFunctionNode<?>) this)
+					.evaluate((AbstractASTVisitor<S>) visitor);
+		}
+		return visitor.visit(this);
+	}
+
+	/**
+	 * Evaluate the function with the resolved function object.
+	 * 
+	 * @param engine
+	 *            the evaluator, which evaluates the arguments
+	 * @return
+	 */
+	public abstract T evaluate(AbstractASTVisitor<T> engine);
+
+	/**
+	 * Test if the function was resolved by an evaluator of the same class and
+	 * with the same registry as the given <code>engine</code>.
+	 * 
+	 * @param engine
+	 * @return
+	 */
+	public boolean isBoundTo(final IASTVisitor<?> engine) {
+		return fEngineClass == engine.getClass() && engine instanceof FieldElementEvaluator
+				&& ((FieldElementEvaluator<?>) engine).getRegistry() == fRegistry;
+	}
+}
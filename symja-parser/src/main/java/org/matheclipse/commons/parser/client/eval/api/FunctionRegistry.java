@@ -0,0 +1,451 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval.api;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.matheclipse.commons.parser.client.PerfectHashTable;
+
+/**
+ * An immutable table of the built-in functions and constants of an evaluator.
+ * 
+ * The names are looked up in perfect hash tables. The default registries of
+ * the evaluators use the precomputed tables of {@link RegistryHashTables};
+ * the tables of other registries are built once at construction. The tables
+ * are never modified after construction, so a registry can be shared by any
+ * number of evaluators and threads without locking. New registries (i.e. with
+ * the custom functions of a tenant) are derived with the
+ * <code>with...()</code> methods, which copy the tables and leave this
+ * registry unchanged.
+ * 
+ * @param <F>
+ *            the type of the functions
+ * @param <B>
+ *            the type of the boolean functions
+ * @param <V>
+ *            the type of the constant values
+ */
+public final class FunctionRegistry<F, B, V> {
+
+	/**
+	 * The registry with the case folded names for the relaxed syntax. It's
+	 * created at the first call of <code>relaxed()</code>.
+	 */
+	private volatile FunctionRegistry<F, B, V> fRelaxed;
+
+	/**
+	 * The precomputed hash tables or <code>null</code>, if the tables were
+	 * built at construction.
+	 */
+	private final RegistryHashTables fHashTables;
+
+	private final Table<F> fFunctionTable;
+
+	private final Table<B> fBooleanFunctionTable;
+
+	private final Table<V> fSymbolTable;
+
+	private final Table<Boolean> fBooleanSymbolTable;
+
+	/**
+	 * Create a registry from copies of the given tables.
+	 * 
+	 * @param functions
+	 * @param booleanFunctions
+	 * @param symbols
+	 *            the constant values
+	 * @param booleanSymbols
+	 *            the boolean constants
+	 */
+	public FunctionRegistry(Map<String, ? extends F> functions, Map<String, ? extends B> booleanFunctions,
+			Map<String, ? extends V> symbols, Map<String, Boolean> booleanSymbols) {
+		fFunctionTable = new Table<F>(functions);
+		fBooleanFunctionTable = new Table<B>(booleanFunctions);
+		fSymbolTable = new Table<V>(symbols);
+		fBooleanSymbolTable = new Table<Boolean>(booleanSymbols);
+		fHashTables = null;
+	}
+
+	/**
+	 * Create a registry from copies of the given tables, whose names are
+	 * looked up in the precomputed hash tables. Only the default registries of
+	 * the evaluators are created this way.
+	 * 
+	 * @param functions
+	 * @param booleanFunctions
+	 * @param symbols
+	 *            the constant values
+	 * @param booleanSymbols
+	 *            the boolean constants
+	 * @param hashTables
+	 *            the hash tables of the names of the tables
+	 * @throws IllegalArgumentException
+	 *             if the hash tables weren't generated for the names of the
+	 *             tables
+	 */
+	public FunctionRegistry(Map<String, ? extends F> functions, Map<String, ? extends B> booleanFunctions,
+			Map<String, ? extends V> symbols, Map<String, Boolean> booleanSymbols, RegistryHashTables hashTables) {
+		fFunctionTable = new Table<F>(functions, hashTables.fFunctions);
+		fBooleanFunctionTable = new Table<B>(booleanFunctions, hashTables.fBooleanFunctions);
+		fSymbolTable = new Table<V>(symbols, hashTables.fSymbols);
+		fBooleanSymbolTable = new Table<Boolean>(booleanSymbols, hashTables.fBooleanSymbols);
+		fHashTables = hashTables;
+	}
+
+	private FunctionRegistry(Table<F> functionTable, Table<B> booleanFunctionTable, Table<V> symbolTable,
+			Table<Boolean> booleanSymbolTable) {
+		fFunctionTable = functionTable;
+		fBooleanFunctionTable = booleanFunctionTable;
+		fSymbolTable = symbolTable;
+		fBooleanSymbolTable = booleanSymbolTable;
+		fHashTables = null;
+	}
+
+	/**
+	 * Returns the boolean function for the given name.
+	 * 
+	 * @param name
+	 * @return <code>null</code> if no boolean function is defined for the name
+	 */
+	public B getBooleanFunction(String name) {
+		return fBooleanFunctionTable.get(name);
+	}
+
+	/**
+	 * Returns the boolean constant for the given name.
+	 * 
+	 * @param name
+	 * @return <code>null</code> if no boolean constant is defined for the name
+	 */
+	public Boolean getBooleanSymbol(String name) {
+		return fBooleanSymbolTable.get(name);
+	}
+
+	/**
+	 * Returns the function for the given name.
+	 * 
+	 * @param name
+	 * @return <code>null</code> if no function is defined for the name
+	 */
+	public F getFunction(String name) {
+		return fFunctionTable.get(name);
+	}
+
+	/**
+	 * Returns the names of the defined boolean functions.
+	 * 
+	 * @return an unmodifiable copy of the names
+	 */
+	public Set<String> getBooleanFunctionNames() {
+		return fBooleanFunctionTable.getNames();
+	}
+
+	/**
+	 * Returns the names of the defined boolean constants.
+	 * 
+	 * @return an unmodifiable copy of the names
+	 */
+	public Set<String> getBooleanSymbolNames() {
+		return fBooleanSymbolTable.getNames();
+	}
+
+	/**
+	 * Returns the names of the defined functions.
+	 * 
+	 * @return an unmodifiable copy of the names
+	 */
+	public Set<String> getFunctionNames() {
+		return fFunctionTable.getNames();
+	}
+
+	/**
+	 * Returns the names of the defined constants.
+	 * 
+	 * @return an unmodifiable copy of the names
+	 */
+	public Set<String> getSymbolNames() {
+		return fSymbolTable.getNames();
+	}
+
+	/**
+	 * Returns the constant value for the given name.
+	 * 
+	 * @param name
+	 * @return <code>null</code> if no constant is defined for the name
+	 */
+	public V getSymbol(String name) {
+		return fSymbolTable.get(name);
+	}
+
+	/**
+	 * Returns a registry for the relaxed syntax, which looks up the names
+	 * ignoring upper and lower case. If names only differ in case, the exact
+	 * name is preferred; other spellings resolve to the lower case name or, if
+	 * it's not defined, to the first name in sorted order. The result shares
+	 * the values of this registry; it's created once and reused for later
+	 * calls.
+	 * 
+	 * The default registries of the evaluators use the precomputed case folded
+	 * hash tables of {@link RegistryHashTables}.
+	 * 
+	 * @return
+	 */
+	public FunctionRegistry<F, B, V> relaxed() {
+		FunctionRegistry<F, B, V> relaxed = fRelaxed;
+		if (relaxed == null) {
+			final RegistryHashTables hashTables = fHashTables;
+			if (hashTables == null) {
+				relaxed = new FunctionRegistry<F, B, V>(fFunctionTable.relaxed(null),
+						fBooleanFunctionTable.relaxed(null), fSymbolTable.relaxed(null),
+						fBooleanSymbolTable.relaxed(null));
+			} else {
+				relaxed = new FunctionRegistry<F, B, V>(fFunctionTable.relaxed(hashTables.fFoldedFunctions),
+						fBooleanFunctionTable.relaxed(hashTables.fFoldedBooleanFunctions),
+						fSymbolTable.relaxed(hashTables.fFoldedSymbols),
+						fBooleanSymbolTable.relaxed(hashTables.fFoldedBooleanSymbols));
+			}
+			relaxed.fRelaxed = relaxed;
+			fRelaxed = relaxed;
+		}
+		return relaxed;
+	}
+
+	/**
+	 * Derive a registry, which additionally defines the given boolean
+	 * function.
+	 * 
+	 * @param name
+	 * @param function
+	 * @return a new registry; this registry isn't modified
+	 */
+	public FunctionRegistry<F, B, V> withBooleanFunction(String name, B function) {
+		Map<String, B> booleanFunctions = fBooleanFunctionTable.toMap();
+		booleanFunctions.put(name, function);
+		return new FunctionRegistry<F, B, V>(fFunctionTable.toMap(), booleanFunctions, fSymbolTable.toMap(),
+				fBooleanSymbolTable.toMap());
+	}
+
+	/**
+	 * Derive a registry, which additionally defines the given boolean constant.
+	 * 
+	 * @param name
+	 * @param value
+	 * @return a new registry; this registry isn't modified
+	 */
+	public FunctionRegistry<F, B, V> withBooleanSymbol(String name, boolean value) {
+		Map<String, Boolean> booleanSymbols = fBooleanSymbolTable.toMap();
+		booleanSymbols.put(name, Boolean.valueOf(value));
+		return new FunctionRegistry<F, B, V>(fFunctionTable.toMap(), fBooleanFunctionTable.toMap(),
+				fSymbolTable.toMap(), booleanSymbols);
+	}
+
+	/**
+	 * Derive a registry, which additionally defines the given function.
+	 * 
+	 * @param name
+	 * @param function
+	 * @return a new registry; this registry isn't modified
+	 */
+	public FunctionRegistry<F, B, V> withFunction(String name, F function) {
+		Map<String, F> functions = fFunctionTable.toMap();
+		functions.put(name, function);
+		return new FunctionRegistry<F, B, V>(functions, fBooleanFunctionTable.toMap(), fSymbolTable.toMap(),
+				fBooleanSymbolTable.toMap());
+	}
+
+	/**
+	 * Derive a registry, which additionally defines all the given functions.
+	 * 
+	 * @param functions
+	 * @return a new registry; this registry isn't modified
+	 */
+	public FunctionRegistry<F, B, V> withFunctions(Map<String, ? extends F> functions) {
+		Map<String, F> result = fFunctionTable.toMap();
+		result.putAll(functions);
+		return new FunctionRegistry<F, B, V>(result, fBooleanFunctionTable.toMap(), fSymbolTable.toMap(),
+				fBooleanSymbolTable.toMap());
+	}
+
+	/**
+	 * Derive a registry, which additionally defines the given constant.
+	 * 
+	 * @param name
+	 * @param value
+	 * @return a new registry; this registry isn't modified
+	 */
+	public FunctionRegistry<F, B, V> withSymbol(String name, V value) {
+		Map<String, V> symbols = fSymbolTable.toMap();
+		symbols.put(name, value);
+		return new FunctionRegistry<F, B, V>(fFunctionTable.toMap(), fBooleanFunctionTable.toMap(), symbols,
+				fBooleanSymbolTable.toMap());
+	}
+
+	/**
+	 * The values of a map, indexed by the perfect hash table of its keys. It's
+	 * the only copy of the map in the registry; a derived registry creates a
+	 * new map with <code>toMap()</code>. A relaxed table additionally indexes
+	 * the values by the case folded table of the keys.
+	 */
+	private static final class Table<E> {
+		private final PerfectHashTable fTable;
+
+		private final Object[] fValues;
+
+		/**
+		 * The case folded table or <code>null</code>, if the table isn't
+		 * relaxed.
+		 */
+		private final PerfectHashTable fFoldedTable;
+
+		private final Object[] fFoldedValues;
+
+		/**
+		 * Marks the case folded names, which stand for more than one name, or
+		 * is <code>null</code>, if there are none.
+		 */
+		private final boolean[] fAmbiguous;
+
+		Table(Map<String, ? extends E> map) {
+			this(map, new PerfectHashTable(map.keySet().toArray(new String[map.size()])));
+		}
+
+		Table(Map<String, ? extends E> map, PerfectHashTable table) {
+			if (table.size() != map.size()) {
+				throw new IllegalArgumentException("FunctionRegistry: the hash table doesn't match the names");
+			}
+			fTable = table;
+			fValues = new Object[table.size()];
+			for (int i = 0; i < fValues.length; i++) {
+				String name = table.getName(i);
+				if (!map.containsKey(name)) {
+					throw new IllegalArgumentException(
+							"FunctionRegistry: the hash table doesn't match the name " + name);
+				}
+				fValues[i] = map.get(name);
+			}
+			fFoldedTable = null;
+			fFoldedValues = null;
+			fAmbiguous = null;
+		}
+
+		private Table(Table<E> table, PerfectHashTable foldedTable) {
+			fTable = table.fTable;
+			fValues = table.fValues;
+			fFoldedTable = foldedTable;
+			fFoldedValues = new Object[foldedTable.size()];
+			final String[] chosen = new String[fFoldedValues.length];
+			boolean[] ambiguous = null;
+			for (int i = 0; i < fValues.length; i++) {
+				String name = fTable.getName(i);
+				int j = foldedTable.indexOf(name);
+				if (j < 0) {
+					throw new IllegalArgumentException(
+							"FunctionRegistry: the hash table doesn't match the name " + name);
+				}
+				if (chosen[j] != null) {
+					if (ambiguous == null) {
+						ambiguous = new boolean[fFoldedValues.length];
+					}
+					ambiguous[j] = true;
+					String foldedName = foldedTable.getName(j);
+					if (chosen[j].equals(foldedName) || (!name.equals(foldedName) && chosen[j].compareTo(name) < 0)) {
+						continue;
+					}
+				}
+				chosen[j] = name;
+				fFoldedValues[j] = fValues[i];
+			}
+			for (int j = 0; j < chosen.length; j++) {
+				if (chosen[j] == null) {
+					throw new IllegalArgumentException(
+							"FunctionRegistry: the hash table doesn't match the name " + foldedTable.getName(j));
+				}
+			}
+			fAmbiguous = ambiguous;
+		}
+
+		@SuppressWarnings("unchecked")
+		E get(String name) {
+			if (fFoldedTable == null) {
+				int index = fTable.indexOf(name);
+				return index >= 0 ? (E) fValues[index] : null;
+			}
+			int index = fFoldedTable.indexOf(name);
+			if (index < 0) {
+				return null;
+			}
+			if (fAmbiguous != null && fAmbiguous[index]) {
+				int exactIndex = fTable.indexOf(name);
+				if (exactIndex >= 0) {
+					return (E) fValues[exactIndex];
+				}
+			}
+			return (E) fFoldedValues[index];
+		}
+
+		Set<String> getNames() {
+			return Collections.unmodifiableSet(toMap().keySet());
+		}
+
+		/**
+		 * Returns the relaxed table, which shares the values of this table.
+		 * 
+		 * @param foldedTable
+		 *            the precomputed case folded table of the lower case names
+		 *            or <code>null</code>, if it should be built
+		 * @return
+		 */
+		Table<E> relaxed(PerfectHashTable foldedTable) {
+			if (foldedTable == null) {
+				TreeSet<String> foldedNames = new TreeSet<String>();
+				for (int i = 0; i < fValues.length; i++) {
+					foldedNames.add(fTable.getName(i).toLowerCase());
+				}
+				foldedTable = new PerfectHashTable(foldedNames.toArray(new String[foldedNames.size()]), true);
+			}
+			return new Table<E>(this, foldedTable);
+		}
+
+		/**
+		 * Returns a new map of the names and values. A relaxed table
+		 * additionally contains the lower case names, which aren't defined
+		 * otherwise.
+		 * 
+		 * @return
+		 */
+		@SuppressWarnings("unchecked")
+		Map<String, E> toMap() {
+			final int size = fValues.length + (fFoldedValues != null ? fFoldedValues.length : 0);
+			Map<String, E> map = new HashMap<String, E>(size * 2);
+			for (int i = 0; i < fValues.length; i++) {
+				map.put(fTable.getName(i), (E) fValues[i]);
+			}
+			if (fFoldedValues != null) {
+				for (int j = 0; j < fFoldedValues.length; j++) {
+					String name = fFoldedTable.getName(j);
+					if (!map.containsKey(name)) {
+						map.put(name, (E) fFoldedValues[j]);
+					}
+				}
+			}
+			return map;
+		}
+	}
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval.api;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FunctionNode;
+import org.matheclipse.commons.parser.client.ast.IntegerNode;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
+
+/**
+ * Rewrites the polynomial sums of a parsed expression into Horner form, so
+ * that a polynomial of degree <code>n</code> is evaluated with <code>n</code>
+ * multiplications and additions instead of a <code>Power</code> call per term:
+ * 
+ * <pre>
+ * 3*x^4 + 2*x^3 - x + 7
+ * </pre>
+ * 
+ * becomes
+ * 
+ * <pre>
+ * 7 + x*(-1 + x^2*(2 + x*3))
+ * </pre>
+ * 
+ * A sum is a polynomial in the variable <code>x</code>, if every term is a
+ * product of factors <code>x</code>, <code>x^n</code> (with a positive integer
+ * <code>n</code>) and coefficients, which don't depend on <code>x</code>.
+ * Sparse polynomials skip the missing powers with <code>x^gap</code>. For a
+ * multivariate polynomial the variable with the highest degree is factored
+ * out and the coefficients are rewritten as polynomials in the remaining
+ * variables.
+ * 
+ * The rewritten tree only uses <code>Plus</code>, <code>Times</code> and
+ * <code>Power</code>, so it can be evaluated by every evaluator. The rewrite
+ * assumes the built-in meaning of these functions, so it must not be applied
+ * for a registry, which overrides one of them. The given tree isn't modified.
+ * 
+ * The rewrite changes the rounding of floating point results, so the
+ * evaluators only apply it in their <code>compile...()</code> methods and not
+ * in <code>parse()</code> or <code>evaluate()</code>.
+ */
+public final class HornerForm {
+
+	/**
+	 * All integers up to <code>2^53</code> are exact <code>double</code>
+	 * values.
+	 */
+	private static final BigInteger MAX_EXACT_INTEGER = BigInteger.ONE.shiftLeft(53);
+
+	/**
+	 * Rewrite the polynomial sums in the parsed <code>functionNode</code> into
+	 * Horner form.
+	 * 
+	 * @param functionNode
+	 *            a parsed function node
+	 * @param relaxedSyntax
+	 *            if <code>true</code> the function names are case insensitive
+	 * @return the rewritten node or the <code>functionNode</code> itself, if
+	 *         it contains no polynomial
+	 */
+	public static FunctionNode transform(final FunctionNode functionNode, boolean relaxedSyntax) {
+		return new HornerForm(relaxedSyntax).rewrite(functionNode);
+	}
+
+	private final boolean fRelaxedSyntax;
+
+	private HornerForm(boolean relaxedSyntax) {
+		fRelaxedSyntax = relaxedSyntax;
+	}
+
+	private FunctionNode rewrite(final FunctionNode functionNode) {
+		FunctionNode result = functionNode;
+		for (int i = 1; i < functionNode.size(); i++) {
+			ASTNode node = functionNode.getNode(i);
+			if (node instanceof FunctionNode) {
+				ASTNode rewritten = rewrite((FunctionNode) node);
+				if (rewritten != node) {
+					if (result == functionNode) {
+						result = functionNode.copy();
+					}
+					result.set(i, rewritten);
+				}
+			}
+		}
+		if (isFunction(result, "Plus")) {
+			FunctionNode horner = horner(result);
+			if (horner != null) {
+				return horner;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the Horner form of the sum <code>plus</code> for the variable
+	 * with the highest degree.
+	 * 
+	 * @param plus
+	 * @return <code>null</code> if the sum isn't a polynomial with at least two
+	 *         different powers of a variable
+	 */
+	private FunctionNode horner(final FunctionNode plus) {
+		List<String> variables = new ArrayList<String>();
+		for (int i = 1; i < plus.size(); i++) {
+			ASTNode term = plus.getNode(i);
+			if (isFunction(term, "Times")) {
+				for (int j = 1; j < ((FunctionNode) term).size(); j++) {
+					addVariable(((FunctionNode) term).getNode(j), variables);
+				}
+			} else {
+				addVariable(term, variables);
+			}
+		}
+		SymbolNode variable = null;
+		TreeMap<Integer, List<ASTNode>> polynomial = null;
+		for (String name : variables) {
+			TreeMap<Integer, List<ASTNode>> coefficients = coefficients(plus, name);
+			if (coefficients != null && (polynomial == null || coefficients.lastKey() > polynomial.lastKey())) {
+				variable = new SymbolNode(name);
+				polynomial = coefficients;
+			}
+		}
+		if (polynomial == null) {
+			return null;
+		}
+		int powers = polynomial.size();
+		if (polynomial.firstKey() == 0) {
+			powers--;
+		}
+		if (powers < 2) {
+			return null;
+		}
+		ASTNode result = null;
+		int exponent = 0;
+		for (Map.Entry<Integer, List<ASTNode>> entry : polynomial.descendingMap().entrySet()) {
+			ASTNode coefficient = coefficient(entry.getValue());
+			if (result == null) {
+				result = coefficient;
+			} else {
+				result = new FunctionNode(new SymbolNode("Plus"), coefficient,
+						times(power(variable, exponent - entry.getKey()), result));
+			}
+			exponent = entry.getKey();
+		}
+		if (exponent > 0) {
+			result = times(power(variable, exponent), result);
+		}
+		return (FunctionNode) result;
+	}
+
+	/**
+	 * Add the name of the variable <code>x</code> in a factor
+	 * <code>x</code> or <code>x^n</code> to the <code>variables</code>.
+	 */
+	private void addVariable(final ASTNode factor, List<String> variables) {
+		ASTNode base = factor;
+		if (isFunction(factor, "Power") && ((FunctionNode) factor).size() == 3) {
+			base = ((FunctionNode) factor).getNode(1);
+		}
+		if (base instanceof SymbolNode && !variables.contains(base.toString())) {
+			variables.add(base.toString());
+		}
+	}
+
+	/**
+	 * Returns the coefficients of the sum <code>plus</code> as polynomial in
+	 * the given variable, i.e. the lists of the coefficient terms for each
+	 * exponent.
+	 * 
+	 * @param plus
+	 * @param variable
+	 * @return <code>null</code> if the sum isn't a polynomial in the variable
+	 */
+	private TreeMap<Integer, List<ASTNode>> coefficients(final FunctionNode plus, String variable) {
+		TreeMap<Integer, List<ASTNode>> coefficients = new TreeMap<Integer, List<ASTNode>>();
+		for (int i = 1; i < plus.size(); i++) {
+			ASTNode term = plus.getNode(i);
+			int exponent = 0;
+			List<ASTNode> factors = new ArrayList<ASTNode>();
+			if (isFunction(term, "Times")) {
+				FunctionNode times = (FunctionNode) term;
+				for (int j = 1; j < times.size(); j++) {
+					int n = exponent(times.getNode(j), variable);
+					if (n < 0) {
+						return null;
+					}
+					if (n == 0) {
+						factors.add(times.getNode(j));
+					}
+					exponent += n;
+				}
+			} else {
+				exponent = exponent(term, variable);
+				if (exponent < 0) {
+					return null;
+				}
+				if (exponent == 0) {
+					factors.add(term);
+				}
+			}
+			List<ASTNode> terms = coefficients.get(exponent);
+			if (terms == null) {
+				terms = new ArrayList<ASTNode>();
+				coefficients.put(exponent, terms);
+			}
+			terms.add(product(factors));
+		}
+		return coefficients;
+	}
+
+	/**
+	 * Returns the exponent of the variable in the <code>factor</code>.
+	 * 
+	 * @param factor
+	 * @param variable
+	 * @return <code>0</code> if the factor doesn't depend on the variable and
+	 *         <code>-1</code> if the factor isn't a positive integer power of
+	 *         the variable
+	 */
+	private int exponent(final ASTNode factor, String variable) {
+		if (factor instanceof SymbolNode && factor.toString().equals(variable)) {
+			return 1;
+		}
+		if (isFunction(factor, "Power") && ((FunctionNode) factor).size() == 3) {
+			FunctionNode power = (FunctionNode) factor;
+			if (power.getNode(1) instanceof SymbolNode && power.getNode(1).toString().equals(variable)) {
+				return positiveInteger(power.getNode(2));
+			}
+		}
+		if (factor.dependsOn(variable)) {
+			return -1;
+		}
+		return 0;
+	}
+
+	private static int positiveInteger(final ASTNode node) {
+		if (node instanceof IntegerNode) {
+			try {
+				int n = Integer.parseInt(node.toString());
+				if (n > 0) {
+					return n;
+				}
+			} catch (NumberFormatException nfe) {
+				// not an int exponent
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the sum of the coefficient <code>terms</code> of one exponent,
+	 * which is itself rewritten as a polynomial in the remaining variables.
+	 */
+	private ASTNode coefficient(final List<ASTNode> terms) {
+		if (terms.size() == 1) {
+			return terms.get(0);
+		}
+		FunctionNode plus = new FunctionNode(new SymbolNode("Plus"));
+		plus.addAll(terms);
+		return rewrite(plus);
+	}
+
+	/**
+	 * Returns the product of the coefficient <code>factors</code> of a term.
+	 * The integer literals (i.e. the <code>-1</code> of a subtraction) are
+	 * folded into one literal, if the product is exact in
+	 * <code>double</code> arithmetic.
+	 */
+	private static ASTNode product(List<ASTNode> factors) {
+		factors = foldIntegers(factors);
+		if (factors.isEmpty()) {
+			return IntegerNode.C1;
+		}
+		if (factors.size() == 1) {
+			return factors.get(0);
+		}
+		FunctionNode times = new FunctionNode(new SymbolNode("Times"));
+		times.addAll(factors);
+		return times;
+	}
+
+	private static List<ASTNode> foldIntegers(final List<ASTNode> factors) {
+		BigInteger value = BigInteger.ONE;
+		int count = 0;
+		List<ASTNode> result = new ArrayList<ASTNode>(factors.size());
+		for (ASTNode factor : factors) {
+			if (factor instanceof IntegerNode) {
+				value = value.multiply(new BigInteger(factor.toString(), ((IntegerNode) factor).getNumberFormat()));
+				count++;
+			} else {
+				result.add(factor);
+			}
+		}
+		if (count < 2 || value.abs().compareTo(MAX_EXACT_INTEGER) > 0) {
+			return factors;
+		}
+		if (!value.equals(BigInteger.ONE)) {
+			IntegerNode literal = new IntegerNode(value.abs().toString());
+			if (value.signum() < 0) {
+				literal.toggleSign();
+			}
+			result.add(0, literal);
+		}
+		return result;
+	}
+
+	private static ASTNode power(final SymbolNode variable, int exponent) {
+		if (exponent == 1) {
+			return variable;
+		}
+		return new FunctionNode(new SymbolNode("Power"), variable, new IntegerNode(Integer.toString(exponent)));
+	}
+
+	private static ASTNode times(final ASTNode power, final ASTNode factor) {
+		if (factor == IntegerNode.C1) {
+			return power;
+		}
+		return new FunctionNode(new SymbolNode("Times"), power, factor);
+	}
+
+	private boolean isFunction(final ASTNode node, String name) {
+		if (node instanceof FunctionNode && ((FunctionNode) node).size() > 0
+				&& ((FunctionNode) node).getNode(0) instanceof SymbolNode) {
+			String head = ((FunctionNode) node).getNode(0).toString();
+			return name.equals(head) || (fRelaxedSyntax && name.equalsIgnoreCase(head));
+		}
+		return false;
+	}
+}
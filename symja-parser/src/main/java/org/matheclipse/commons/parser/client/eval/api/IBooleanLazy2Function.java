@@ -0,0 +1,41 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval.api;
+
+import org.apache.commons.math3.FieldElement;
+
+/**
+ * A boolean function of two arguments, whose second argument is only
+ * evaluated, if the first argument doesn't already decide the result (i.e.
+ * <code>And</code> and <code>Or</code>).
+ * 
+ * For the first argument <code>getShortCircuitValue()</code> the result is
+ * <code>getShortCircuitValue()</code>, otherwise the result is the second
+ * argument. For the n-ary (flattened) form <code>And[a, b, c, ...]</code> the
+ * evaluators stop at the first argument, which decides the result.
+ * 
+ * @param <T>
+ */
+public interface IBooleanLazy2Function<T extends FieldElement<T>> extends IBooleanBoolean2Function<T> {
+	/**
+	 * Returns the value of the first argument, which decides the result without
+	 * evaluating the second argument.
+	 * 
+	 * @return <code>false</code> for <code>And</code> and <code>true</code>
+	 *         for <code>Or</code>
+	 */
+	public boolean getShortCircuitValue();
+}
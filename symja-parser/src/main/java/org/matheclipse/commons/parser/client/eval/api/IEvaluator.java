@@ -84,9 +84,20 @@ public interface IEvaluator<T extends FieldElement<T>> {
 	 */
 	public FieldElementVariable<T> createVariable(T value);
 
+	/**
+	 * Returns a new abstract syntax tree node, which holds the given constant
+	 * value.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public ASTNode createNode(T value);
+
 	/**
 	 * Optimize an already parsed in <code>functionNode</code> into an
-	 * <code>ASTNode</code>.
+	 * <code>ASTNode</code>. Implementations don't modify the
+	 * <code>functionNode</code>, but return a new tree, which shares the
+	 * unchanged subtrees with the given <code>functionNode</code>.
 	 * 
 	 * @param functionNode
 	 * @return
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval.api;
+
+import org.apache.commons.math3.FieldElement;
+
+/**
+ * A compiled boolean valued function, which reads its variable values from a
+ * <code>T[]</code> frame by index.
+ * 
+ * This is a functional interface whose functional method is
+ * <code>test(T[])</code>.
+ * 
+ * @param <T>
+ * 
+ * @see CompiledFieldExpression
+ */
+@FunctionalInterface
+public interface IFieldElementFramePredicate<T extends FieldElement<T>> {
+	/**
+	 * Evaluates this predicate on the given variable frame.
+	 * 
+	 * @param frame
+	 *            the variable values, indexed by their slot number
+	 * @return <code>true</code> if the frame matches the predicate, otherwise
+	 *         <code>false</code>
+	 */
+	public boolean test(T[] frame);
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval.api;
+
+/**
+ * An immutable snapshot of the counters of a <code>TieredCompiler</code>,
+ * which can be used to tune the promotion threshold.
+ * 
+ * @see TieredCompiler#getStatistics()
+ */
+public final class PromotionStatistics {
+
+	private final long fInterpretedEvaluations;
+
+	private final long fCompiledEvaluations;
+
+	private final int fPromotions;
+
+	private final int fFailedPromotions;
+
+	private final long fCompilationNanos;
+
+	PromotionStatistics(long interpretedEvaluations, long compiledEvaluations, int promotions, int failedPromotions,
+			long compilationNanos) {
+		fInterpretedEvaluations = interpretedEvaluations;
+		fCompiledEvaluations = compiledEvaluations;
+		fPromotions = promotions;
+		fFailedPromotions = failedPromotions;
+		fCompilationNanos = compilationNanos;
+	}
+
+	/**
+	 * Returns the accumulated time which was spent in successful and failed
+	 * compilations.
+	 * 
+	 * @return the compilation time in nanoseconds
+	 */
+	public long getCompilationNanos() {
+		return fCompilationNanos;
+	}
+
+	/**
+	 * Returns the number of evaluations which used a compiled expression.
+	 * 
+	 * @return
+	 */
+	public long getCompiledEvaluations() {
+		return fCompiledEvaluations;
+	}
+
+	/**
+	 * Returns the number of expressions which couldn't be compiled and stay in
+	 * the interpreter.
+	 * 
+	 * @return
+	 */
+	public int getFailedPromotions() {
+		return fFailedPromotions;
+	}
+
+	/**
+	 * Returns the number of evaluations which walked the abstract syntax tree.
+	 * 
+	 * @return
+	 */
+	public long getInterpretedEvaluations() {
+		return fInterpretedEvaluations;
+	}
+
+	/**
+	 * Returns the number of expressions which were promoted to their compiled
+	 * form.
+	 * 
+	 * @return
+	 */
+	public int getPromotions() {
+		return fPromotions;
+	}
+
+	@Override
+	public String toString() {
+		return "PromotionStatistics[interpreted=" + fInterpretedEvaluations + ", compiled=" + fCompiledEvaluations
+				+ ", promotions=" + fPromotions + ", failed=" + fFailedPromotions + ", compilationNanos="
+				+ fCompilationNanos + "]";
+	}
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval.api;
+
+import org.matheclipse.commons.parser.client.PerfectHashTable;
+
+/**
+ * The precomputed perfect hash tables of the built-in function and constant
+ * names of the evaluators' default registries, and the case folded tables of
+ * their lower case names for the relaxed syntax.
+ * 
+ * The arrays are generated by the <code>GenerateOperatorArrays</code> tool.
+ * The tables check the seeds against the names once at class initialization
+ * and a {@link FunctionRegistry} checks the names against its tables, so
+ * stale arrays fail fast.
+ * 
+ * @see FunctionRegistry#FunctionRegistry(java.util.Map, java.util.Map,
+ *      java.util.Map, java.util.Map, RegistryHashTables)
+ */
+public final class RegistryHashTables {
+
+	// DoubleEvaluator
+	static final String[] DOUBLE_FUNCTION_NAMES = { "Abs", "ArcCos", "ArcSin", "ArcTan", "Ceiling",
+			"CompoundExpression", "Cos", "Cosh", "Divide", "Exp", "Floor", "Log", "Max", "Min", "Minus", "Plus",
+			"Power", "Random", "Round", "Set", "Sign", "Sin", "Sinh", "Sqrt", "Tan", "Tanh", "Times" };
+	static final int[] DOUBLE_FUNCTION_HASH_SEEDS = { 1, 0, 0, 0, 0, 0, 3, 2, 2, 0, 1, 1, 1, 3, 2, 1, 0, 2, 5, 0, 1, 1,
+			8, 4, 6, 13, 14 };
+	static final int[] DOUBLE_FUNCTION_HASH_INDEXES = { 12, 7, 8, 5, 6, 13, 26, 14, 2, 22, 3, 4, 24, 15, 18, 21, 11, 10,
+			20, 23, 0, 17, 25, 19, 1, 9, 16 };
+	static final String[] DOUBLE_FUNCTION_FOLDED_NAMES = { "abs", "arccos", "arcsin", "arctan", "ceiling",
+			"compoundexpression", "cos", "cosh", "divide", "exp", "floor", "log", "max", "min", "minus", "plus",
+			"power", "random", "round", "set", "sign", "sin", "sinh", "sqrt", "tan", "tanh", "times" };
+	static final int[] DOUBLE_FUNCTION_FOLDED_HASH_SEEDS = { 4, 2, 2, 0, 1, 0, 1, 0, 2, 8, 1, 1, 3, 0, 0, 1, 9, 9, 0, 2,
+			0, 0, 0, 3, 3, 17, 1 };
+	static final int[] DOUBLE_FUNCTION_FOLDED_HASH_INDEXES = { 10, 9, 2, 19, 11, 6, 26, 23, 14, 15, 16, 24, 3, 13, 4,
+			20, 0, 25, 12, 8, 18, 7, 5, 21, 17, 1, 22 };
+	static final String[] DOUBLE_BOOLEAN_FUNCTION_NAMES = { "And", "Equal", "Greater", "GreaterEqual", "Less",
+			"LessEqual", "Not", "Or", "Unequal" };
+	static final int[] DOUBLE_BOOLEAN_FUNCTION_HASH_SEEDS = { 0, 1, 1, 0, 15, 0, 1, 4, 1 };
+	static final int[] DOUBLE_BOOLEAN_FUNCTION_HASH_INDEXES = { 7, 4, 0, 1, 2, 3, 8, 5, 6 };
+	static final String[] DOUBLE_BOOLEAN_FUNCTION_FOLDED_NAMES = { "and", "equal", "greater", "greaterequal", "less",
+			"lessequal", "not", "or", "unequal" };
+	static final int[] DOUBLE_BOOLEAN_FUNCTION_FOLDED_HASH_SEEDS = { 1, 0, 1, 2, 2, 0, 0, 1, 3 };
+	static final int[] DOUBLE_BOOLEAN_FUNCTION_FOLDED_HASH_INDEXES = { 8, 2, 3, 5, 7, 0, 1, 6, 4 };
+	static final String[] DOUBLE_SYMBOL_NAMES = { "Catalan", "Degree", "E", "EulerGamma", "Glaisher", "GoldenRatio",
+			"Khinchin", "Pi" };
+	static final int[] DOUBLE_SYMBOL_HASH_SEEDS = { 0, 0, 0, 0, 2, 9, 3, 22 };
+	static final int[] DOUBLE_SYMBOL_HASH_INDEXES = { 0, 4, 2, 7, 1, 5, 6, 3 };
+	static final String[] DOUBLE_SYMBOL_FOLDED_NAMES = { "catalan", "degree", "e", "eulergamma", "glaisher",
+			"goldenratio", "khinchin", "pi" };
+	static final int[] DOUBLE_SYMBOL_FOLDED_HASH_SEEDS = { 1, 1, 1, 13, 0, 1, 0, 11 };
+	static final int[] DOUBLE_SYMBOL_FOLDED_HASH_INDEXES = { 6, 0, 2, 4, 3, 5, 1, 7 };
+	static final String[] DOUBLE_BOOLEAN_SYMBOL_NAMES = { "False", "True" };
+	static final int[] DOUBLE_BOOLEAN_SYMBOL_HASH_SEEDS = { 0, 1 };
+	static final int[] DOUBLE_BOOLEAN_SYMBOL_HASH_INDEXES = { 1, 0 };
+	static final String[] DOUBLE_BOOLEAN_SYMBOL_FOLDED_NAMES = { "false", "true" };
+	static final int[] DOUBLE_BOOLEAN_SYMBOL_FOLDED_HASH_SEEDS = { 3, 0 };
+	static final int[] DOUBLE_BOOLEAN_SYMBOL_FOLDED_HASH_INDEXES = { 1, 0 };
+
+	// ComplexEvaluator
+	static final String[] COMPLEX_FUNCTION_NAMES = { "Abs", "ArcCos", "ArcSin", "ArcTan", "CompoundExpression", "Cos",
+			"Cosh", "Exp", "Log", "Plus", "Power", "Random", "Set", "Sin", "Sinh", "Sqrt", "Tan", "Tanh", "Times" };
+	static final int[] COMPLEX_FUNCTION_HASH_SEEDS = { 1, 1, 1, 3, 1, 1, 2, 1, 4, 0, 2, 0, 4, 0, 0, 0, 0, 0, 40 };
+	static final int[] COMPLEX_FUNCTION_HASH_INDEXES = { 0, 17, 4, 9, 2, 5, 8, 18, 14, 11, 3, 16, 10, 6, 15, 1, 13, 12,
+			7 };
+	static final String[] COMPLEX_FUNCTION_FOLDED_NAMES = { "abs", "arccos", "arcsin", "arctan", "compoundexpression",
+			"cos", "cosh", "exp", "log", "plus", "power", "random", "set", "sin", "sinh", "sqrt", "tan", "tanh",
+			"times" };
+	static final int[] COMPLEX_FUNCTION_FOLDED_HASH_SEEDS = { 0, 5, 5, 0, 1, 0, 1, 0, 0, 4, 0, 0, 3, 8, 15, 7, 4, 13,
+			1 };
+	static final int[] COMPLEX_FUNCTION_FOLDED_HASH_INDEXES = { 4, 18, 14, 10, 7, 8, 13, 5, 16, 2, 17, 15, 9, 11, 3, 6,
+			0, 1, 12 };
+	static final String[] COMPLEX_BOOLEAN_FUNCTION_NAMES = { "And", "Equal", "Not", "Or", "Unequal" };
+	static final int[] COMPLEX_BOOLEAN_FUNCTION_HASH_SEEDS = { 1, 10, 0, 13, 0 };
+	static final int[] COMPLEX_BOOLEAN_FUNCTION_HASH_INDEXES = { 3, 4, 1, 0, 2 };
+	static final String[] COMPLEX_BOOLEAN_FUNCTION_FOLDED_NAMES = { "and", "equal", "not", "or", "unequal" };
+	static final int[] COMPLEX_BOOLEAN_FUNCTION_FOLDED_HASH_SEEDS = { 1, 0, 1, 1, 7 };
+	static final int[] COMPLEX_BOOLEAN_FUNCTION_FOLDED_HASH_INDEXES = { 0, 4, 3, 2, 1 };
+	static final String[] COMPLEX_SYMBOL_NAMES = { "Catalan", "Degree", "E", "EulerGamma", "Glaisher", "GoldenRatio",
+			"I", "Khinchin", "Pi" };
+	static final int[] COMPLEX_SYMBOL_HASH_SEEDS = { 2, 2, 0, 2, 11, 0, 3, 0, 0 };
+	static final int[] COMPLEX_SYMBOL_HASH_INDEXES = { 8, 6, 3, 4, 1, 7, 5, 2, 0 };
+	static final String[] COMPLEX_SYMBOL_FOLDED_NAMES = { "catalan", "degree", "e", "eulergamma", "glaisher",
+			"goldenratio", "i", "khinchin", "pi" };
+	static final int[] COMPLEX_SYMBOL_FOLDED_HASH_SEEDS = { 0, 1, 0, 3, 1, 1, 4, 6, 1 };
+	static final int[] COMPLEX_SYMBOL_FOLDED_HASH_INDEXES = { 7, 8, 1, 4, 0, 3, 6, 5, 2 };
+	static final String[] COMPLEX_BOOLEAN_SYMBOL_NAMES = { "False", "True" };
+	static final int[] COMPLEX_BOOLEAN_SYMBOL_HASH_SEEDS = { 0, 1 };
+	static final int[] COMPLEX_BOOLEAN_SYMBOL_HASH_INDEXES = { 1, 0 };
+	static final String[] COMPLEX_BOOLEAN_SYMBOL_FOLDED_NAMES = { "false", "true" };
+	static final int[] COMPLEX_BOOLEAN_SYMBOL_FOLDED_HASH_SEEDS = { 3, 0 };
+	static final int[] COMPLEX_BOOLEAN_SYMBOL_FOLDED_HASH_INDEXES = { 1, 0 };
+
+	// DfpEvaluator
+	static final String[] DFP_FUNCTION_NAMES = { "ArcCos", "ArcSin", "ArcTan", "Ceiling", "CompoundExpression", "Cos",
+			"Cosh", "Exp", "Floor", "Log", "Max", "Min", "Plus", "Power", "Set", "Sign", "Sin", "Sinh", "Sqrt", "Tan",
+			"Tanh", "Times" };
+	static final int[] DFP_FUNCTION_HASH_SEEDS = { 0, 0, 2, 0, 7, 0, 0, 18, 3, 3, 1, 0, 0, 0, 5, 2, 0, 1, 7, 2, 84,
+			10 };
+	static final int[] DFP_FUNCTION_HASH_INDEXES = { 12, 4, 0, 21, 14, 1, 7, 18, 17, 10, 3, 15, 9, 5, 2, 16, 6, 19, 13,
+			20, 8, 11 };
+	static final String[] DFP_FUNCTION_FOLDED_NAMES = { "arccos", "arcsin", "arctan", "ceiling", "compoundexpression",
+			"cos", "cosh", "exp", "floor", "log", "max", "min", "plus", "power", "set", "sign", "sin", "sinh", "sqrt",
+			"tan", "tanh", "times" };
+	static final int[] DFP_FUNCTION_FOLDED_HASH_SEEDS = { 0, 1, 0, 4, 1, 0, 0, 0, 0, 4, 1, 4, 0, 6, 0, 3, 11, 0, 11, 8,
+			16, 21 };
+	static final int[] DFP_FUNCTION_FOLDED_HASH_INDEXES = { 8, 17, 2, 19, 12, 1, 5, 9, 21, 14, 18, 10, 16, 7, 13, 20, 0,
+			4, 11, 3, 6, 15 };
+	static final String[] DFP_BOOLEAN_FUNCTION_NAMES = { "And", "Equal", "Greater", "GreaterEqual", "Less", "LessEqual",
+			"Not", "Or", "Unequal" };
+	static final int[] DFP_BOOLEAN_FUNCTION_HASH_SEEDS = { 0, 1, 1, 0, 15, 0, 1, 4, 1 };
+	static final int[] DFP_BOOLEAN_FUNCTION_HASH_INDEXES = { 7, 4, 0, 1, 2, 3, 8, 5, 6 };
+	static final String[] DFP_BOOLEAN_FUNCTION_FOLDED_NAMES = { "and", "equal", "greater", "greaterequal", "less",
+			"lessequal", "not", "or", "unequal" };
+	static final int[] DFP_BOOLEAN_FUNCTION_FOLDED_HASH_SEEDS = { 1, 0, 1, 2, 2, 0, 0, 1, 3 };
+	static final int[] DFP_BOOLEAN_FUNCTION_FOLDED_HASH_INDEXES = { 8, 2, 3, 5, 7, 0, 1, 6, 4 };
+	static final String[] DFP_SYMBOL_NAMES = {};
+	static final int[] DFP_SYMBOL_HASH_SEEDS = { 0 };
+	static final int[] DFP_SYMBOL_HASH_INDEXES = {};
+	static final String[] DFP_SYMBOL_FOLDED_NAMES = {};
+	static final int[] DFP_SYMBOL_FOLDED_HASH_SEEDS = { 0 };
+	static final int[] DFP_SYMBOL_FOLDED_HASH_INDEXES = {};
+	static final String[] DFP_BOOLEAN_SYMBOL_NAMES = { "False", "True" };
+	static final int[] DFP_BOOLEAN_SYMBOL_HASH_SEEDS = { 0, 1 };
+	static final int[] DFP_BOOLEAN_SYMBOL_HASH_INDEXES = { 1, 0 };
+	static final String[] DFP_BOOLEAN_SYMBOL_FOLDED_NAMES = { "false", "true" };
+	static final int[] DFP_BOOLEAN_SYMBOL_FOLDED_HASH_SEEDS = { 3, 0 };
+	static final int[] DFP_BOOLEAN_SYMBOL_FOLDED_HASH_INDEXES = { 1, 0 };
+
+	// BigFractionEvaluator
+	static final String[] BIGFRACTION_FUNCTION_NAMES = { "CompoundExpression", "Max", "Min", "Plus", "Power", "Set",
+			"Sign", "Times" };
+	static final int[] BIGFRACTION_FUNCTION_HASH_SEEDS = { 0, 1, 4, 0, 2, 2, 0, 7 };
+	static final int[] BIGFRACTION_FUNCTION_HASH_INDEXES = { 6, 1, 7, 0, 2, 3, 5, 4 };
+	static final String[] BIGFRACTION_FUNCTION_FOLDED_NAMES = { "compoundexpression", "max", "min", "plus", "power",
+			"set", "sign", "times" };
+	static final int[] BIGFRACTION_FUNCTION_FOLDED_HASH_SEEDS = { 0, 0, 4, 1, 0, 20, 0, 7 };
+	static final int[] BIGFRACTION_FUNCTION_FOLDED_HASH_INDEXES = { 4, 5, 3, 6, 1, 7, 0, 2 };
+	static final String[] BIGFRACTION_BOOLEAN_FUNCTION_NAMES = { "And", "Equal", "Greater", "GreaterEqual", "Less",
+			"LessEqual", "Not", "Or", "Unequal" };
+	static final int[] BIGFRACTION_BOOLEAN_FUNCTION_HASH_SEEDS = { 0, 1, 1, 0, 15, 0, 1, 4, 1 };
+	static final int[] BIGFRACTION_BOOLEAN_FUNCTION_HASH_INDEXES = { 7, 4, 0, 1, 2, 3, 8, 5, 6 };
+	static final String[] BIGFRACTION_BOOLEAN_FUNCTION_FOLDED_NAMES = { "and", "equal", "greater", "greaterequal",
+			"less", "lessequal", "not", "or", "unequal" };
+	static final int[] BIGFRACTION_BOOLEAN_FUNCTION_FOLDED_HASH_SEEDS = { 1, 0, 1, 2, 2, 0, 0, 1, 3 };
+	static final int[] BIGFRACTION_BOOLEAN_FUNCTION_FOLDED_HASH_INDEXES = { 8, 2, 3, 5, 7, 0, 1, 6, 4 };
+	static final String[] BIGFRACTION_SYMBOL_NAMES = {};
+	static final int[] BIGFRACTION_SYMBOL_HASH_SEEDS = { 0 };
+	static final int[] BIGFRACTION_SYMBOL_HASH_INDEXES = {};
+	static final String[] BIGFRACTION_SYMBOL_FOLDED_NAMES = {};
+	static final int[] BIGFRACTION_SYMBOL_FOLDED_HASH_SEEDS = { 0 };
+	static final int[] BIGFRACTION_SYMBOL_FOLDED_HASH_INDEXES = {};
+	static final String[] BIGFRACTION_BOOLEAN_SYMBOL_NAMES = { "False", "True" };
+	static final int[] BIGFRACTION_BOOLEAN_SYMBOL_HASH_SEEDS = { 0, 1 };
+	static final int[] BIGFRACTION_BOOLEAN_SYMBOL_HASH_INDEXES = { 1, 0 };
+	static final String[] BIGFRACTION_BOOLEAN_SYMBOL_FOLDED_NAMES = { "false", "true" };
+	static final int[] BIGFRACTION_BOOLEAN_SYMBOL_FOLDED_HASH_SEEDS = { 3, 0 };
+	static final int[] BIGFRACTION_BOOLEAN_SYMBOL_FOLDED_HASH_INDEXES = { 1, 0 };
+
+	/**
+	 * The tables of the <code>DoubleEvaluator</code>.
+	 */
+	public static final RegistryHashTables DOUBLE = new RegistryHashTables(
+			new PerfectHashTable(DOUBLE_FUNCTION_NAMES, DOUBLE_FUNCTION_HASH_SEEDS, DOUBLE_FUNCTION_HASH_INDEXES),
+			new PerfectHashTable(DOUBLE_BOOLEAN_FUNCTION_NAMES, DOUBLE_BOOLEAN_FUNCTION_HASH_SEEDS,
+					DOUBLE_BOOLEAN_FUNCTION_HASH_INDEXES),
+			new PerfectHashTable(DOUBLE_SYMBOL_NAMES, DOUBLE_SYMBOL_HASH_SEEDS, DOUBLE_SYMBOL_HASH_INDEXES),
+			new PerfectHashTable(DOUBLE_BOOLEAN_SYMBOL_NAMES, DOUBLE_BOOLEAN_SYMBOL_HASH_SEEDS,
+					DOUBLE_BOOLEAN_SYMBOL_HASH_INDEXES),
+			new PerfectHashTable(DOUBLE_FUNCTION_FOLDED_NAMES, DOUBLE_FUNCTION_FOLDED_HASH_SEEDS,
+					DOUBLE_FUNCTION_FOLDED_HASH_INDEXES, true),
+			new PerfectHashTable(DOUBLE_BOOLEAN_FUNCTION_FOLDED_NAMES, DOUBLE_BOOLEAN_FUNCTION_FOLDED_HASH_SEEDS,
+					DOUBLE_BOOLEAN_FUNCTION_FOLDED_HASH_INDEXES, true),
+			new PerfectHashTable(DOUBLE_SYMBOL_FOLDED_NAMES, DOUBLE_SYMBOL_FOLDED_HASH_SEEDS,
+					DOUBLE_SYMBOL_FOLDED_HASH_INDEXES, true),
+			new PerfectHashTable(DOUBLE_BOOLEAN_SYMBOL_FOLDED_NAMES, DOUBLE_BOOLEAN_SYMBOL_FOLDED_HASH_SEEDS,
+					DOUBLE_BOOLEAN_SYMBOL_FOLDED_HASH_INDEXES, true));
+
+	/**
+	 * The tables of the <code>ComplexEvaluator</code>.
+	 */
+	public static final RegistryHashTables COMPLEX = new RegistryHashTables(
+			new PerfectHashTable(COMPLEX_FUNCTION_NAMES, COMPLEX_FUNCTION_HASH_SEEDS, COMPLEX_FUNCTION_HASH_INDEXES),
+			new PerfectHashTable(COMPLEX_BOOLEAN_FUNCTION_NAMES, COMPLEX_BOOLEAN_FUNCTION_HASH_SEEDS,
+					COMPLEX_BOOLEAN_FUNCTION_HASH_INDEXES),
+			new PerfectHashTable(COMPLEX_SYMBOL_NAMES, COMPLEX_SYMBOL_HASH_SEEDS, COMPLEX_SYMBOL_HASH_INDEXES),
+			new PerfectHashTable(COMPLEX_BOOLEAN_SYMBOL_NAMES, COMPLEX_BOOLEAN_SYMBOL_HASH_SEEDS,
+					COMPLEX_BOOLEAN_SYMBOL_HASH_INDEXES),
+			new PerfectHashTable(COMPLEX_FUNCTION_FOLDED_NAMES, COMPLEX_FUNCTION_FOLDED_HASH_SEEDS,
+					COMPLEX_FUNCTION_FOLDED_HASH_INDEXES, true),
+			new PerfectHashTable(COMPLEX_BOOLEAN_FUNCTION_FOLDED_NAMES, COMPLEX_BOOLEAN_FUNCTION_FOLDED_HASH_SEEDS,
+					COMPLEX_BOOLEAN_FUNCTION_FOLDED_HASH_INDEXES, true),
+			new PerfectHashTable(COMPLEX_SYMBOL_FOLDED_NAMES, COMPLEX_SYMBOL_FOLDED_HASH_SEEDS,
+					COMPLEX_SYMBOL_FOLDED_HASH_INDEXES, true),
+			new PerfectHashTable(COMPLEX_BOOLEAN_SYMBOL_FOLDED_NAMES, COMPLEX_BOOLEAN_SYMBOL_FOLDED_HASH_SEEDS,
+					COMPLEX_BOOLEAN_SYMBOL_FOLDED_HASH_INDEXES, true));
+
+	/**
+	 * The tables of the <code>DfpEvaluator</code>.
+	 */
+	public static final RegistryHashTables DFP = new RegistryHashTables(
+			new PerfectHashTable(DFP_FUNCTION_NAMES, DFP_FUNCTION_HASH_SEEDS, DFP_FUNCTION_HASH_INDEXES),
+			new PerfectHashTable(DFP_BOOLEAN_FUNCTION_NAMES, DFP_BOOLEAN_FUNCTION_HASH_SEEDS,
+					DFP_BOOLEAN_FUNCTION_HASH_INDEXES),
+			new PerfectHashTable(DFP_SYMBOL_NAMES, DFP_SYMBOL_HASH_SEEDS, DFP_SYMBOL_HASH_INDEXES),
+			new PerfectHashTable(DFP_BOOLEAN_SYMBOL_NAMES, DFP_BOOLEAN_SYMBOL_HASH_SEEDS,
+					DFP_BOOLEAN_SYMBOL_HASH_INDEXES),
+			new PerfectHashTable(DFP_FUNCTION_FOLDED_NAMES, DFP_FUNCTION_FOLDED_HASH_SEEDS,
+					DFP_FUNCTION_FOLDED_HASH_INDEXES, true),
+			new PerfectHashTable(DFP_BOOLEAN_FUNCTION_FOLDED_NAMES, DFP_BOOLEAN_FUNCTION_FOLDED_HASH_SEEDS,
+					DFP_BOOLEAN_FUNCTION_FOLDED_HASH_INDEXES, true),
+			new PerfectHashTable(DFP_SYMBOL_FOLDED_NAMES, DFP_SYMBOL_FOLDED_HASH_SEEDS, DFP_SYMBOL_FOLDED_HASH_INDEXES,
+					true),
+			new PerfectHashTable(DFP_BOOLEAN_SYMBOL_FOLDED_NAMES, DFP_BOOLEAN_SYMBOL_FOLDED_HASH_SEEDS,
+					DFP_BOOLEAN_SYMBOL_FOLDED_HASH_INDEXES, true));
+
+	/**
+	 * The tables of the <code>BigFractionEvaluator</code>.
+	 */
+	public static final RegistryHashTables BIGFRACTION = new RegistryHashTables(
+			new PerfectHashTable(BIGFRACTION_FUNCTION_NAMES, BIGFRACTION_FUNCTION_HASH_SEEDS,
+					BIGFRACTION_FUNCTION_HASH_INDEXES),
+			new PerfectHashTable(BIGFRACTION_BOOLEAN_FUNCTION_NAMES, BIGFRACTION_BOOLEAN_FUNCTION_HASH_SEEDS,
+					BIGFRACTION_BOOLEAN_FUNCTION_HASH_INDEXES),
+			new PerfectHashTable(BIGFRACTION_SYMBOL_NAMES, BIGFRACTION_SYMBOL_HASH_SEEDS,
+					BIGFRACTION_SYMBOL_HASH_INDEXES),
+			new PerfectHashTable(BIGFRACTION_BOOLEAN_SYMBOL_NAMES, BIGFRACTION_BOOLEAN_SYMBOL_HASH_SEEDS,
+					BIGFRACTION_BOOLEAN_SYMBOL_HASH_INDEXES),
+			new PerfectHashTable(BIGFRACTION_FUNCTION_FOLDED_NAMES, BIGFRACTION_FUNCTION_FOLDED_HASH_SEEDS,
+					BIGFRACTION_FUNCTION_FOLDED_HASH_INDEXES, true),
+			new PerfectHashTable(BIGFRACTION_BOOLEAN_FUNCTION_FOLDED_NAMES,
+					BIGFRACTION_BOOLEAN_FUNCTION_FOLDED_HASH_SEEDS, BIGFRACTION_BOOLEAN_FUNCTION_FOLDED_HASH_INDEXES,
+					true),
+			new PerfectHashTable(BIGFRACTION_SYMBOL_FOLDED_NAMES, BIGFRACTION_SYMBOL_FOLDED_HASH_SEEDS,
+					BIGFRACTION_SYMBOL_FOLDED_HASH_INDEXES, true),
+			new PerfectHashTable(BIGFRACTION_BOOLEAN_SYMBOL_FOLDED_NAMES, BIGFRACTION_BOOLEAN_SYMBOL_FOLDED_HASH_SEEDS,
+					BIGFRACTION_BOOLEAN_SYMBOL_FOLDED_HASH_INDEXES, true));
+
+	final PerfectHashTable fFunctions;
+
+	final PerfectHashTable fBooleanFunctions;
+
+	final PerfectHashTable fSymbols;
+
+	final PerfectHashTable fBooleanSymbols;
+
+	final PerfectHashTable fFoldedFunctions;
+
+	final PerfectHashTable fFoldedBooleanFunctions;
+
+	final PerfectHashTable fFoldedSymbols;
+
+	final PerfectHashTable fFoldedBooleanSymbols;
+
+	private RegistryHashTables(PerfectHashTable functions, PerfectHashTable booleanFunctions,
+			PerfectHashTable symbols, PerfectHashTable booleanSymbols, PerfectHashTable foldedFunctions,
+			PerfectHashTable foldedBooleanFunctions, PerfectHashTable foldedSymbols,
+			PerfectHashTable foldedBooleanSymbols) {
+		fFunctions = functions;
+		fBooleanFunctions = booleanFunctions;
+		fSymbols = symbols;
+		fBooleanSymbols = booleanSymbols;
+		fFoldedFunctions = foldedFunctions;
+		fFoldedBooleanFunctions = foldedBooleanFunctions;
+		fFoldedSymbols = foldedSymbols;
+		fFoldedBooleanSymbols = foldedBooleanSymbols;
+	}
+}
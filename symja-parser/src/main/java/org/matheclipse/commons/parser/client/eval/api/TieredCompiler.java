@@ -0,0 +1,254 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval.api;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+
+/**
+ * Counts the evaluations of a parsed expression and promotes the expression to
+ * a compiled representation <code>C</code>, after it was evaluated
+ * <code>getThreshold()</code> times.
+ * 
+ * If an <code>Executor</code> is set, the compilation runs in the background
+ * and the expression is interpreted until the compiled form is available.
+ * Otherwise the expression is compiled on the caller's thread.
+ * 
+ * An evaluator isn't thread-safe, so <code>get()</code> and
+ * <code>invalidate()</code> must be called from the evaluator's thread. Only
+ * the background compilation runs concurrently.
+ * 
+ * @param <C>
+ *            the compiled representation of an expression
+ */
+public class TieredCompiler<C> {
+
+	/**
+	 * The default number of interpreted evaluations, before an expression is
+	 * compiled.
+	 */
+	public static final int DEFAULT_THRESHOLD = 1000;
+
+	private final Function<ASTNode, C> fCompiler;
+
+	private int fThreshold = DEFAULT_THRESHOLD;
+
+	private Executor fExecutor = null;
+
+	/**
+	 * The currently counted expression.
+	 */
+	private ASTNode fNode = null;
+
+	private long fCount = 0;
+
+	/**
+	 * <code>true</code>, if the compilation of <code>fNode</code> was started
+	 * (or failed).
+	 */
+	private boolean fPromoted = false;
+
+	private volatile C fCompiled = null;
+
+	/**
+	 * Incremented for each new expression or invalidation, so that an outdated
+	 * background compilation is discarded.
+	 */
+	private int fGeneration = 0;
+
+	private long fInterpretedEvaluations = 0;
+
+	private long fCompiledEvaluations = 0;
+
+	private int fPromotions = 0;
+
+	private int fFailedPromotions = 0;
+
+	private long fCompilationNanos = 0;
+
+	/**
+	 * 
+	 * @param compiler
+	 *            compiles an expression. A <code>RuntimeException</code>
+	 *            thrown by the compiler keeps the expression in the
+	 *            interpreter.
+	 */
+	public TieredCompiler(Function<ASTNode, C> compiler) {
+		fCompiler = compiler;
+	}
+
+	/**
+	 * Count an evaluation of the <code>node</code> and return its compiled
+	 * form.
+	 * 
+	 * @param node
+	 *            the parsed expression which should be evaluated
+	 * @return <code>null</code> if the <code>node</code> should be interpreted
+	 */
+	public C get(final ASTNode node) {
+		if (node != fNode) {
+			reset(node);
+		}
+		C compiled = fCompiled;
+		if (compiled != null) {
+			fCompiledEvaluations++;
+			return compiled;
+		}
+		fInterpretedEvaluations++;
+		if (!fPromoted && fThreshold > 0 && ++fCount >= fThreshold) {
+			fPromoted = true;
+			promote(node);
+			compiled = fCompiled;
+			if (compiled != null) {
+				// compiled synchronously
+				fInterpretedEvaluations--;
+				fCompiledEvaluations++;
+			}
+			return compiled;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the executor for background compilations.
+	 * 
+	 * @return <code>null</code> if the expressions are compiled on the caller's
+	 *         thread
+	 */
+	public Executor getExecutor() {
+		return fExecutor;
+	}
+
+	/**
+	 * Returns a snapshot of the promotion counters.
+	 * 
+	 * @return
+	 */
+	public synchronized PromotionStatistics getStatistics() {
+		return new PromotionStatistics(fInterpretedEvaluations, fCompiledEvaluations, fPromotions, fFailedPromotions,
+				fCompilationNanos);
+	}
+
+	/**
+	 * Returns the number of interpreted evaluations before an expression is
+	 * compiled.
+	 * 
+	 * @return
+	 */
+	public int getThreshold() {
+		return fThreshold;
+	}
+
+	/**
+	 * Discard the compiled form of the current expression and restart the
+	 * evaluation count. This must be called, if the compiled form depends on
+	 * changed evaluator state (i.e. variable definitions).
+	 */
+	public void invalidate() {
+		reset(fNode);
+	}
+
+	/**
+	 * Returns <code>true</code> if the compiled form of the current expression
+	 * is available.
+	 * 
+	 * @return
+	 */
+	public boolean isCompiled() {
+		return fCompiled != null;
+	}
+
+	/**
+	 * Reset all counters of the statistics.
+	 */
+	public synchronized void resetStatistics() {
+		fInterpretedEvaluations = 0;
+		fCompiledEvaluations = 0;
+		fPromotions = 0;
+		fFailedPromotions = 0;
+		fCompilationNanos = 0;
+	}
+
+	/**
+	 * Set the executor for background compilations.
+	 * 
+	 * @param executor
+	 *            <code>null</code> if the expressions should be compiled on the
+	 *            caller's thread
+	 */
+	public void setExecutor(Executor executor) {
+		fExecutor = executor;
+	}
+
+	/**
+	 * Set the number of interpreted evaluations before an expression is
+	 * compiled.
+	 * 
+	 * @param threshold
+	 *            <code>1</code> compiles an expression at its first evaluation;
+	 *            <code>0</code> disables the compilation.
+	 */
+	public void setThreshold(int threshold) {
+		fThreshold = threshold;
+	}
+
+	private void promote(final ASTNode node) {
+		final int generation;
+		synchronized (this) {
+			generation = fGeneration;
+		}
+		if (fExecutor == null) {
+			compile(node, generation);
+			return;
+		}
+		try {
+			fExecutor.execute(() -> compile(node, generation));
+		} catch (RejectedExecutionException e) {
+			compile(node, generation);
+		}
+	}
+
+	private void compile(ASTNode node, int generation) {
+		long start = System.nanoTime();
+		C compiled = null;
+		try {
+			compiled = fCompiler.apply(node);
+		} catch (RuntimeException e) {
+			// the expression stays in the interpreter
+		}
+		long nanos = System.nanoTime() - start;
+		synchronized (this) {
+			fCompilationNanos += nanos;
+			if (compiled == null) {
+				fFailedPromotions++;
+			} else if (generation == fGeneration) {
+				fPromotions++;
+				fCompiled = compiled;
+			}
+		}
+	}
+
+	private synchronized void reset(ASTNode node) {
+		fGeneration++;
+		fNode = node;
+		fCount = 0;
+		fPromoted = false;
+		fCompiled = null;
+	}
+}
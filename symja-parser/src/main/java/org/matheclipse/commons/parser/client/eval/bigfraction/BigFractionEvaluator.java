@@ -19,7 +19,6 @@ import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.math3.Field;
 import org.apache.commons.math3.fraction.BigFraction;
@@ -40,10 +39,12 @@ import org.matheclipse.commons.parser.client.eval.ComplexNode;
 import org.matheclipse.commons.parser.client.eval.DoubleNode;
 import org.matheclipse.commons.parser.client.eval.api.FieldElementEvaluator;
 import org.matheclipse.commons.parser.client.eval.api.FieldElementVariable;
+import org.matheclipse.commons.parser.client.eval.api.FunctionRegistry;
 import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean1Function;
 import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean2Function;
 import org.matheclipse.commons.parser.client.eval.api.IBooleanFieldElement2Function;
 import org.matheclipse.commons.parser.client.eval.api.IBooleanFunction;
+import org.matheclipse.commons.parser.client.eval.api.IBooleanLazy2Function;
 import org.matheclipse.commons.parser.client.eval.api.IEvaluator;
 import org.matheclipse.commons.parser.client.eval.api.IFieldElement0Function;
 import org.matheclipse.commons.parser.client.eval.api.IFieldElement1Function;
@@ -51,6 +52,7 @@ import org.matheclipse.commons.parser.client.eval.api.IFieldElement2Function;
 import org.matheclipse.commons.parser.client.eval.api.IFieldElementFunction;
 import org.matheclipse.commons.parser.client.eval.api.IFieldElementFunctionNode;
 import org.matheclipse.commons.parser.client.eval.api.IFieldElementInt2Function;
+import org.matheclipse.commons.parser.client.eval.api.RegistryHashTables;
 import org.matheclipse.commons.parser.client.eval.api.function.CompoundExpressionFunction;
 import org.matheclipse.commons.parser.client.eval.api.function.PlusFunction;
 import org.matheclipse.commons.parser.client.eval.api.function.SetFunction;
@@ -105,87 +107,92 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 		}
 	}
 
-	private static Map<String, BigFraction> SYMBOL_MAP;
-
-	private static Map<String, Boolean> SYMBOL_BOOLEAN_MAP;
-
-	private static Map<String, IFieldElementFunction<BigFraction>> FUNCTION_MAP;
-
-	private static Map<String, IBooleanFunction<BigFraction>> FUNCTION_BOOLEAN_MAP;
+	private static final FunctionRegistry<IFieldElementFunction<BigFraction>, IBooleanFunction<BigFraction>,
+			BigFraction> DEFAULT_REGISTRY;
 
 	static {
 		// TODO: get better precision for constants
-		SYMBOL_MAP = new ConcurrentHashMap<String, BigFraction>();
+		Map<String, BigFraction> symbols = new HashMap<String, BigFraction>();
 
-		SYMBOL_BOOLEAN_MAP = new ConcurrentHashMap<String, Boolean>();
-		SYMBOL_BOOLEAN_MAP.put("False", Boolean.FALSE);
-		SYMBOL_BOOLEAN_MAP.put("True", Boolean.TRUE);
+		Map<String, Boolean> booleanSymbols = new HashMap<String, Boolean>();
+		booleanSymbols.put("False", Boolean.FALSE);
+		booleanSymbols.put("True", Boolean.TRUE);
 
-		FUNCTION_BOOLEAN_MAP = new ConcurrentHashMap<String, IBooleanFunction<BigFraction>>();
+		Map<String, IBooleanFunction<BigFraction>> booleanFunctions = new HashMap<>();
 
-		FUNCTION_BOOLEAN_MAP.put("And", new IBooleanBoolean2Function<BigFraction>() {
+		booleanFunctions.put("And", new IBooleanLazy2Function<BigFraction>() {
 			@Override
 			public boolean evaluate(boolean arg1, boolean arg2) {
 				return arg1 && arg2;
 			}
+
+			@Override
+			public boolean getShortCircuitValue() {
+				return false;
+			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Not", new IBooleanBoolean1Function<BigFraction>() {
+		booleanFunctions.put("Not", new IBooleanBoolean1Function<BigFraction>() {
 			@Override
 			public boolean evaluate(boolean arg1) {
 				return !arg1;
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Or", new IBooleanBoolean2Function<BigFraction>() {
+		booleanFunctions.put("Or", new IBooleanLazy2Function<BigFraction>() {
 			@Override
 			public boolean evaluate(boolean arg1, boolean arg2) {
 				return arg1 || arg2;
 			}
+
+			@Override
+			public boolean getShortCircuitValue() {
+				return true;
+			}
 		});
 
-		FUNCTION_BOOLEAN_MAP.put("Equal", new IBooleanFieldElement2Function<BigFraction>() {
+		booleanFunctions.put("Equal", new IBooleanFieldElement2Function<BigFraction>() {
 			@Override
 			public boolean evaluate(BigFraction arg1, BigFraction arg2) {
 				return arg1.equals(arg2);
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Greater", new IBooleanFieldElement2Function<BigFraction>() {
+		booleanFunctions.put("Greater", new IBooleanFieldElement2Function<BigFraction>() {
 			@Override
 			public boolean evaluate(BigFraction arg1, BigFraction arg2) {
 				return (arg1.compareTo(arg2)) > 0;
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("GreaterEqual", new IBooleanFieldElement2Function<BigFraction>() {
+		booleanFunctions.put("GreaterEqual", new IBooleanFieldElement2Function<BigFraction>() {
 			@Override
 			public boolean evaluate(BigFraction arg1, BigFraction arg2) {
 				return (arg1.compareTo(arg2)) >= 0;
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Less", new IBooleanFieldElement2Function<BigFraction>() {
+		booleanFunctions.put("Less", new IBooleanFieldElement2Function<BigFraction>() {
 			@Override
 			public boolean evaluate(BigFraction arg1, BigFraction arg2) {
 				return (arg1.compareTo(arg2)) < 0;
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("LessEqual", new IBooleanFieldElement2Function<BigFraction>() {
+		booleanFunctions.put("LessEqual", new IBooleanFieldElement2Function<BigFraction>() {
 			@Override
 			public boolean evaluate(BigFraction arg1, BigFraction arg2) {
 				return (arg1.compareTo(arg2)) <= 0;
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Unequal", new IBooleanFieldElement2Function<BigFraction>() {
+		booleanFunctions.put("Unequal", new IBooleanFieldElement2Function<BigFraction>() {
 			@Override
 			public boolean evaluate(BigFraction arg1, BigFraction arg2) {
 				return !arg1.equals(arg2);
 			}
 		});
 
-		FUNCTION_MAP = new ConcurrentHashMap<String, IFieldElementFunction<BigFraction>>();
-		FUNCTION_MAP.put("CompoundExpression", new CompoundExpressionFunction<BigFraction>());
-		FUNCTION_MAP.put("Set", new SetFunction<BigFraction>());
-		FUNCTION_MAP.put("Max", new MaxFunction());
-		FUNCTION_MAP.put("Min", new MinFunction());
-		FUNCTION_MAP.put("Plus", new PlusFunction<BigFraction>());
-		FUNCTION_MAP.put("Times", new TimesFunction<BigFraction>());
+		Map<String, IFieldElementFunction<BigFraction>> functions = new HashMap<>();
+		functions.put("CompoundExpression", new CompoundExpressionFunction<BigFraction>());
+		functions.put("Set", new SetFunction<BigFraction>());
+		functions.put("Max", new MaxFunction());
+		functions.put("Min", new MinFunction());
+		functions.put("Plus", new PlusFunction<BigFraction>());
+		functions.put("Times", new TimesFunction<BigFraction>());
 		//
 		// Functions with 0 argument
 		//
@@ -198,20 +205,20 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 		// Functions with 1 argument
 		//
 
-		// FUNCTION_MAP.put("Ceiling", new IFieldElement1Function<BigFraction>()
+		// functions.put("Ceiling", new IFieldElement1Function<BigFraction>()
 		// {
 		// @Override
 		// public BigFraction evaluate(BigFraction arg1) {
 		// return arg1.ceil();
 		// }
 		// });
-		// FUNCTION_MAP.put("Floor", new IFieldElement1Function<BigFraction>() {
+		// functions.put("Floor", new IFieldElement1Function<BigFraction>() {
 		// @Override
 		// public BigFraction evaluate(BigFraction arg1) {
 		// return arg1.floor();
 		// }
 		// });
-		FUNCTION_MAP.put("Sign", new IFieldElement1Function<BigFraction>() {
+		functions.put("Sign", new IFieldElement1Function<BigFraction>() {
 			@Override
 			public BigFraction evaluate(BigFraction arg1) {
 				return (arg1.equals(BigFraction.ZERO)) ? BigFraction.ZERO
@@ -222,7 +229,7 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 		//
 		// Functions with 2 arguments
 		//
-		FUNCTION_MAP.put("Power", new IFieldElementInt2Function<BigFraction>() {
+		functions.put("Power", new IFieldElementInt2Function<BigFraction>() {
 			@Override
 			public BigFraction evaluate(BigFraction arg1, BigFraction arg2) {
 				if (arg2.getDenominator().equals(BigInteger.ONE)) {
@@ -237,7 +244,8 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 				return arg1.pow(n);
 			}
 		});
-
+		DEFAULT_REGISTRY = new FunctionRegistry<>(functions, booleanFunctions, symbols, booleanSymbols,
+				RegistryHashTables.BIGFRACTION);
 	}
 
 	/**
@@ -257,16 +265,38 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 
 	private final BigFractionNode fZERO;
 
-	private ASTNode fNode;
-
 	private final ASTNodeFactory fASTFactory;
 
+	/**
+	 * Returns the default functions and constants of the <code>BigFractionEvaluator</code>.
+	 * Derive new registries from it with the <code>with...()</code> methods.
+	 * 
+	 * @return
+	 */
+	public static FunctionRegistry<IFieldElementFunction<BigFraction>, IBooleanFunction<BigFraction>,
+			BigFraction> getDefaultRegistry() {
+		return DEFAULT_REGISTRY;
+	}
+
 	public BigFractionEvaluator() {
 		this(null, false);
 	}
 
 	public BigFractionEvaluator(ASTNode node, boolean relaxedSyntax) {
-		super(relaxedSyntax);
+		this(node, relaxedSyntax, DEFAULT_REGISTRY);
+	}
+
+	/**
+	 * 
+	 * @param node
+	 * @param relaxedSyntax
+	 * @param registry
+	 *            the functions and constants of this evaluator
+	 * @see #getDefaultRegistry()
+	 */
+	public BigFractionEvaluator(ASTNode node, boolean relaxedSyntax,
+			FunctionRegistry<IFieldElementFunction<BigFraction>, IBooleanFunction<BigFraction>, BigFraction> registry) {
+		super(registry, DEFAULT_REGISTRY, relaxedSyntax);
 		fASTFactory = new ASTNodeFactory(relaxedSyntax);
 		fVariableMap = new HashMap<String, FieldElementVariable<BigFraction>>();
 		fBooleanVariables = new HashMap<String, BooleanVariable>();
@@ -274,23 +304,6 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 		fDfpField = BigFractionField.getInstance();
 		fZERO = new BigFractionNode(fDfpField.getZero());
 		init();
-		if (fRelaxedSyntax) {
-			if (SYMBOL_MAP.get("pi") == null) {
-				// init tables for relaxed mode
-				for (String key : SYMBOL_MAP.keySet()) {
-					SYMBOL_MAP.put(key.toLowerCase(), SYMBOL_MAP.get(key));
-				}
-				for (String key : SYMBOL_BOOLEAN_MAP.keySet()) {
-					SYMBOL_BOOLEAN_MAP.put(key.toLowerCase(), SYMBOL_BOOLEAN_MAP.get(key));
-				}
-				for (String key : FUNCTION_MAP.keySet()) {
-					FUNCTION_MAP.put(key.toLowerCase(), FUNCTION_MAP.get(key));
-				}
-				for (String key : FUNCTION_BOOLEAN_MAP.keySet()) {
-					FUNCTION_BOOLEAN_MAP.put(key.toLowerCase(), FUNCTION_BOOLEAN_MAP.get(key));
-				}
-			}
-		}
 	}
 
 	public BigFractionEvaluator(boolean relaxedSyntax) {
@@ -311,6 +324,11 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 		return new BigFractionVariable(value);
 	}
 
+	@Override
+	public ASTNode createNode(BigFraction value) {
+		return new BigFractionNode(value);
+	}
+
 	/**
 	 * Define a value for a given variable name.
 	 * 
@@ -492,7 +510,7 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 			if (v != null) {
 				return new BigFractionNode(fDfpField.getZero());
 			}
-			BigFraction dbl = SYMBOL_MAP.get(node.toString());
+			BigFraction dbl = getSymbolFieldElementMap(node.toString());
 			if (dbl != null) {
 				return new BigFractionNode(fDfpField.getZero());
 			}
@@ -513,11 +531,9 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 	 * @return
 	 * @throws SyntaxError
 	 */
+	@Override
 	public BigFraction evaluate() {
-		if (fNode == null) {
-			throw new SyntaxError(0, 0, 0, " ", "No parser input defined", 1);
-		}
-		return evaluateNode(fNode);
+		return super.evaluate();
 	}
 
 	/**
@@ -529,16 +545,7 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 	 * @throws SyntaxError
 	 */
 	public BigFraction evaluate(String expression) {
-		Parser p;
-		if (fRelaxedSyntax) {
-			p = new Parser(ASTNodeFactory.RELAXED_STYLE_FACTORY, true);
-		} else {
-			p = new Parser(ASTNodeFactory.MMA_STYLE_FACTORY, false);
-		}
-		fNode = p.parse(expression);
-		if (fNode instanceof FunctionNode) {
-			fNode = optimizeFunction((FunctionNode) fNode);
-		}
+		fNode = bindFunctions(parseOptimized(expression));
 		return evaluateNode(fNode);
 	}
 
@@ -568,7 +575,7 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 					}
 				}
 			} else {
-				IFieldElementFunction<BigFraction> function = FUNCTION_MAP.get(symbol);
+				IFieldElementFunction<BigFraction> function = getFunctionMap(symbol);
 				if (function instanceof IFieldElementFunctionNode) {
 					return ((IFieldElementFunctionNode<BigFraction>) function).evaluate(this, functionNode);
 				}
@@ -612,26 +619,42 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 		if (!functionNode.isEmpty() && functionNode.getNode(0) instanceof SymbolNode) {
 			String symbol = functionNode.getNode(0).toString();
 			if (functionNode.size() == 2) {
-				IBooleanFunction<BigFraction> function = FUNCTION_BOOLEAN_MAP.get(symbol);
+				IBooleanFunction<BigFraction> function = getFunctionBooleanMap(symbol);
 				if (function instanceof IBooleanBoolean1Function) {
 					return ((IBooleanBoolean1Function<BigFraction>) function)
 							.evaluate(evaluateNodeLogical(functionNode.getNode(1)));
 				}
 			} else if (functionNode.size() == 3) {
-				IBooleanFunction<BigFraction> function = FUNCTION_BOOLEAN_MAP.get(symbol);
+				IBooleanFunction<BigFraction> function = getFunctionBooleanMap(symbol);
 				if (function instanceof IBooleanFieldElement2Function) {
 					return ((IBooleanFieldElement2Function<BigFraction>) function)
 							.evaluate(evaluateNode(functionNode.getNode(1)), evaluateNode(functionNode.getNode(2)));
+				} else if (function instanceof IBooleanLazy2Function) {
+					return evaluateShortCircuit((IBooleanLazy2Function<BigFraction>) function, functionNode);
 				} else if (function instanceof IBooleanBoolean2Function) {
 					return ((IBooleanBoolean2Function<BigFraction>) function).evaluate(
 							evaluateNodeLogical(functionNode.getNode(1)), evaluateNodeLogical(functionNode.getNode(2)));
 				}
 				// } else {
-				// Object obj = FUNCTION_BOOLEAN_MAP.get(symbol);
+				// Object obj = getFunctionBooleanMap(symbol);
 				// if (obj instanceof IBooleanBigFractionFunction) {
 				// return ((IBooleanBigFractionFunction) obj).evaluate(this,
 				// functionNode);
 				// }
+			} else if (functionNode.size() > 3) {
+				// the parser flattens And[a, b, c, ...] and Or[a, b, c, ...]
+				IBooleanFunction<BigFraction> function = getFunctionBooleanMap(symbol);
+				if (function instanceof IBooleanLazy2Function) {
+					return evaluateShortCircuit((IBooleanLazy2Function<BigFraction>) function, functionNode);
+				}
+				if (function instanceof IBooleanBoolean2Function) {
+					IBooleanBoolean2Function<BigFraction> f = (IBooleanBoolean2Function<BigFraction>) function;
+					boolean result = evaluateNodeLogical(functionNode.getNode(1));
+					for (int i = 2; i < functionNode.size(); i++) {
+						result = f.evaluate(result, evaluateNodeLogical(functionNode.getNode(i)));
+					}
+					return result;
+				}
 			}
 		}
 		throw new ArithmeticMathException(
@@ -657,34 +680,10 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 		if (node instanceof BigFractionNode) {
 			return ((BigFractionNode) node).getValue();
 		}
-		if (node instanceof FunctionNode) {
-			return evaluateFunction((FunctionNode) node);
-		}
-		if (node instanceof SymbolNode) {
-			FieldElementVariable<BigFraction> v = fVariableMap.get(node.toString());
-			if (v != null) {
-				return v.getValue();
-			}
-			BigFraction dbl = SYMBOL_MAP.get(node.toString());
-			if (dbl != null) {
-				return dbl;
-			}
-		} else if (node instanceof NumberNode) {
-			if (node instanceof FractionNode) {
-				return new BigFraction(new BigInteger(((FractionNode) node).getNumerator().getString()),
-						new BigInteger(((FractionNode) node).getDenominator().getString()));
-			} else if (node instanceof IntegerNode) {
-				String iStr = ((NumberNode) node).getString();
-				if (iStr != null) {
-					return new BigFraction(new BigInteger(iStr), BigInteger.ONE);
-				} else {
-					return new BigFraction(((IntegerNode) node).getIntValue(), 1);
-				}
-			}
-
-			return new BigFraction(((NumberNode) node).doubleValue());
+		BigFraction result = node.accept(this);
+		if (result != null) {
+			return result;
 		}
-
 		throw new ArithmeticMathException(
 				"BigFractionEvaluator#evaluateNode(ASTNode) not possible for: " + node.toString());
 	}
@@ -699,7 +698,7 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 			if (v != null) {
 				return v.getValue();
 			}
-			Boolean boole = SYMBOL_BOOLEAN_MAP.get(node.toString());
+			Boolean boole = getSymbolBooleanMap(node.toString());
 			if (boole != null) {
 				return boole.booleanValue();
 			}
@@ -724,26 +723,6 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 		return fDfpField;
 	}
 
-	@Override
-	public IBooleanFunction<BigFraction> getFunctionBooleanMap(String symbolName) {
-		return FUNCTION_BOOLEAN_MAP.get(symbolName);
-	}
-
-	@Override
-	public IFieldElementFunction<BigFraction> getFunctionMap(String symbolName) {
-		return FUNCTION_MAP.get(symbolName);
-	}
-
-	@Override
-	public Boolean getSymbolBooleanMap(String symbolName) {
-		return SYMBOL_BOOLEAN_MAP.get(symbolName);
-	}
-
-	@Override
-	public BigFraction getSymbolFieldElementMap(String symbolName) {
-		return SYMBOL_MAP.get(symbolName);
-	}
-
 	/**
 	 * Returns the BigFraction variable value to which the specified
 	 * variableName is mapped, or {@code null} if this map contains no mapping
@@ -779,9 +758,9 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 			}
 		}
 		if (node instanceof SymbolNode) {
-			Object obj = SYMBOL_MAP.get(node.toString());
+			Object obj = getSymbolFieldElementMap(node.toString());
 			if (obj == null) {
-				obj = SYMBOL_BOOLEAN_MAP.get(node.toString());
+				obj = getSymbolBooleanMap(node.toString());
 				if (obj == null) {
 					result.add(node.toString());
 				}
@@ -910,7 +889,7 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 		// }
 		// functionNode.set(i, optNode);
 		// } else if (node instanceof SymbolNode) {
-		// BigFraction dbl = SYMBOL_MAP.get(node.toString());
+		// BigFraction dbl = getSymbolFieldElementMap(node.toString());
 		// if (dbl != null) {
 		// functionNode.set(i, new BigFractionNode(dbl));
 		// } else {
@@ -940,16 +919,7 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 	 * @throws SyntaxError
 	 */
 	public ASTNode parse(String expression) {
-		Parser p;
-		if (fRelaxedSyntax) {
-			p = new Parser(ASTNodeFactory.RELAXED_STYLE_FACTORY, true);
-		} else {
-			p = new Parser(ASTNodeFactory.MMA_STYLE_FACTORY, false);
-		}
-		fNode = p.parse(expression);
-		if (fNode instanceof FunctionNode) {
-			fNode = optimizeFunction((FunctionNode) fNode);
-		}
+		fNode = bindFunctions(parseOptimized(expression));
 		return fNode;
 	}
 
@@ -987,6 +957,11 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 				new BigInteger(((FractionNode) node).getDenominator().getString()));
 	}
 
+	@Override
+	public BigFraction visit(FunctionNode node) {
+		return evaluateFunction(node);
+	}
+
 	@Override
 	public BigFraction visit(IntegerNode node) {
 		String iStr = ((NumberNode) node).getString();
@@ -1007,6 +982,15 @@ public class BigFractionEvaluator extends FieldElementEvaluator<BigFraction> {
 		return null;
 	}
 
+	@Override
+	public BigFraction visit(SymbolNode node) {
+		FieldElementVariable<BigFraction> v = fVariableMap.get(node.toString());
+		if (v != null) {
+			return v.getValue();
+		}
+		return getSymbolFieldElementMap(node.toString());
+	}
+
 	/**
 	 * Returns a <code>String</code> representation of the given
 	 * <code>org.apache.commons.math3.fraction.BigFraction</code> number.
@@ -15,10 +15,10 @@
  */
 package org.matheclipse.commons.parser.client.eval.dfp;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.math3.Field;
 import org.apache.commons.math3.dfp.Dfp;
@@ -40,10 +40,12 @@ import org.matheclipse.commons.parser.client.eval.ComplexNode;
 import org.matheclipse.commons.parser.client.eval.DoubleNode;
 import org.matheclipse.commons.parser.client.eval.api.FieldElementEvaluator;
 import org.matheclipse.commons.parser.client.eval.api.FieldElementVariable;
+import org.matheclipse.commons.parser.client.eval.api.FunctionRegistry;
 import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean1Function;
 import org.matheclipse.commons.parser.client.eval.api.IBooleanBoolean2Function;
 import org.matheclipse.commons.parser.client.eval.api.IBooleanFieldElement2Function;
 import org.matheclipse.commons.parser.client.eval.api.IBooleanFunction;
+import org.matheclipse.commons.parser.client.eval.api.IBooleanLazy2Function;
 import org.matheclipse.commons.parser.client.eval.api.IEvaluator;
 import org.matheclipse.commons.parser.client.eval.api.IFieldElement0Function;
 import org.matheclipse.commons.parser.client.eval.api.IFieldElement1Function;
@@ -51,6 +53,7 @@ import org.matheclipse.commons.parser.client.eval.api.IFieldElement2Function;
 import org.matheclipse.commons.parser.client.eval.api.IFieldElementFunction;
 import org.matheclipse.commons.parser.client.eval.api.IFieldElementFunctionNode;
 import org.matheclipse.commons.parser.client.eval.api.IFieldElementInt2Function;
+import org.matheclipse.commons.parser.client.eval.api.RegistryHashTables;
 import org.matheclipse.commons.parser.client.eval.api.function.CompoundExpressionFunction;
 import org.matheclipse.commons.parser.client.eval.api.function.PlusFunction;
 import org.matheclipse.commons.parser.client.eval.api.function.SetFunction;
@@ -129,89 +132,93 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 		}
 	}
 
-	private static Map<String, Dfp> SYMBOL_MAP;
-
-	private static Map<String, Boolean> SYMBOL_BOOLEAN_MAP;
-
-	private static Map<String, IFieldElementFunction<Dfp>> FUNCTION_MAP;
-
-	private static Map<String, IBooleanFunction<Dfp>> FUNCTION_BOOLEAN_MAP;
+	private static final FunctionRegistry<IFieldElementFunction<Dfp>, IBooleanFunction<Dfp>, Dfp> DEFAULT_REGISTRY;
 
 	static {
 		// TODO: get better precision for constants
-		SYMBOL_MAP = new ConcurrentHashMap<String, Dfp>();
+		Map<String, Dfp> symbols = new HashMap<String, Dfp>();
 
-		SYMBOL_BOOLEAN_MAP = new ConcurrentHashMap<String, Boolean>();
-		SYMBOL_BOOLEAN_MAP.put("False", Boolean.FALSE);
-		SYMBOL_BOOLEAN_MAP.put("True", Boolean.TRUE);
+		Map<String, Boolean> booleanSymbols = new HashMap<String, Boolean>();
+		booleanSymbols.put("False", Boolean.FALSE);
+		booleanSymbols.put("True", Boolean.TRUE);
 
-		FUNCTION_BOOLEAN_MAP = new ConcurrentHashMap<String, IBooleanFunction<Dfp>>();
+		Map<String, IBooleanFunction<Dfp>> booleanFunctions = new HashMap<String, IBooleanFunction<Dfp>>();
 
-		FUNCTION_BOOLEAN_MAP.put("And", new IBooleanBoolean2Function<Dfp>() {
+		booleanFunctions.put("And", new IBooleanLazy2Function<Dfp>() {
 			@Override
 			public boolean evaluate(boolean arg1, boolean arg2) {
 				return arg1 && arg2;
 			}
+
+			@Override
+			public boolean getShortCircuitValue() {
+				return false;
+			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Not", new IBooleanBoolean1Function<Dfp>() {
+		booleanFunctions.put("Not", new IBooleanBoolean1Function<Dfp>() {
 			@Override
 			public boolean evaluate(boolean arg1) {
 				return !arg1;
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Or", new IBooleanBoolean2Function<Dfp>() {
+		booleanFunctions.put("Or", new IBooleanLazy2Function<Dfp>() {
 			@Override
 			public boolean evaluate(boolean arg1, boolean arg2) {
 				return arg1 || arg2;
 			}
+
+			@Override
+			public boolean getShortCircuitValue() {
+				return true;
+			}
 		});
 
-		FUNCTION_BOOLEAN_MAP.put("Equal", new IBooleanFieldElement2Function<Dfp>() {
+		booleanFunctions.put("Equal", new IBooleanFieldElement2Function<Dfp>() {
 			@Override
 			public boolean evaluate(Dfp arg1, Dfp arg2) {
 				return arg1.equals(arg2);
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Greater", new IBooleanFieldElement2Function<Dfp>() {
+		booleanFunctions.put("Greater", new IBooleanFieldElement2Function<Dfp>() {
 			@Override
 			public boolean evaluate(Dfp arg1, Dfp arg2) {
 				return arg1.greaterThan(arg2);
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("GreaterEqual", new IBooleanFieldElement2Function<Dfp>() {
+		booleanFunctions.put("GreaterEqual", new IBooleanFieldElement2Function<Dfp>() {
 			@Override
 			public boolean evaluate(Dfp arg1, Dfp arg2) {
 				return !arg1.lessThan(arg2);
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Less", new IBooleanFieldElement2Function<Dfp>() {
+		booleanFunctions.put("Less", new IBooleanFieldElement2Function<Dfp>() {
 			@Override
 			public boolean evaluate(Dfp arg1, Dfp arg2) {
 				return arg1.lessThan(arg2);
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("LessEqual", new IBooleanFieldElement2Function<Dfp>() {
+		booleanFunctions.put("LessEqual", new IBooleanFieldElement2Function<Dfp>() {
 			@Override
 			public boolean evaluate(Dfp arg1, Dfp arg2) {
 				return !arg1.greaterThan(arg2);
 			}
 		});
-		FUNCTION_BOOLEAN_MAP.put("Unequal", new IBooleanFieldElement2Function<Dfp>() {
+		booleanFunctions.put("Unequal", new IBooleanFieldElement2Function<Dfp>() {
 			@Override
 			public boolean evaluate(Dfp arg1, Dfp arg2) {
 				return !arg1.equals(arg2);
 			}
 		});
 
-		FUNCTION_MAP = new ConcurrentHashMap<String, IFieldElementFunction<Dfp>>();
-		FUNCTION_MAP.put("ArcTan", new ArcTanFunction());
-		FUNCTION_MAP.put("CompoundExpression", new CompoundExpressionFunction<Dfp>());
-		FUNCTION_MAP.put("Set", new SetFunction<Dfp>());
-		FUNCTION_MAP.put("Log", new LogFunction());
-		FUNCTION_MAP.put("Max", new MaxFunction());
-		FUNCTION_MAP.put("Min", new MinFunction());
-		FUNCTION_MAP.put("Plus", new PlusFunction<Dfp>());
-		FUNCTION_MAP.put("Times", new TimesFunction<Dfp>());
+		Map<String, IFieldElementFunction<Dfp>> functions = new HashMap<String, IFieldElementFunction<Dfp>>();
+		functions.put("ArcTan", new ArcTanFunction());
+		functions.put("CompoundExpression", new CompoundExpressionFunction<Dfp>());
+		functions.put("Set", new SetFunction<Dfp>());
+		functions.put("Log", new LogFunction());
+		functions.put("Max", new MaxFunction());
+		functions.put("Min", new MinFunction());
+		functions.put("Plus", new PlusFunction<Dfp>());
+		functions.put("Times", new TimesFunction<Dfp>());
 		//
 		// Functions with 0 argument
 		//
@@ -223,43 +230,43 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 		//
 		// Functions with 1 argument
 		//
-		FUNCTION_MAP.put("ArcCos", new IFieldElement1Function<Dfp>() {
+		functions.put("ArcCos", new IFieldElement1Function<Dfp>() {
 			@Override
 			public Dfp evaluate(Dfp arg1) {
 				return DfpMath.acos(arg1);
 			}
 		});
-		FUNCTION_MAP.put("ArcSin", new IFieldElement1Function<Dfp>() {
+		functions.put("ArcSin", new IFieldElement1Function<Dfp>() {
 			@Override
 			public Dfp evaluate(Dfp arg1) {
 				return DfpMath.asin(arg1);
 			}
 		});
-		FUNCTION_MAP.put("Ceiling", new IFieldElement1Function<Dfp>() {
+		functions.put("Ceiling", new IFieldElement1Function<Dfp>() {
 			@Override
 			public Dfp evaluate(Dfp arg1) {
 				return arg1.ceil();
 			}
 		});
-		FUNCTION_MAP.put("Cos", new IFieldElement1Function<Dfp>() {
+		functions.put("Cos", new IFieldElement1Function<Dfp>() {
 			@Override
 			public Dfp evaluate(Dfp arg1) {
 				return arg1.cos();
 			}
 		});
-		FUNCTION_MAP.put("Cosh", new IFieldElement1Function<Dfp>() {
+		functions.put("Cosh", new IFieldElement1Function<Dfp>() {
 			@Override
 			public Dfp evaluate(Dfp arg1) {
 				return arg1.cosh();
 			}
 		});
-		FUNCTION_MAP.put("Exp", new IFieldElement1Function<Dfp>() {
+		functions.put("Exp", new IFieldElement1Function<Dfp>() {
 			@Override
 			public Dfp evaluate(Dfp arg1) {
 				return DfpMath.exp(arg1);
 			}
 		});
-		FUNCTION_MAP.put("Floor", new IFieldElement1Function<Dfp>() {
+		functions.put("Floor", new IFieldElement1Function<Dfp>() {
 			@Override
 			public Dfp evaluate(Dfp arg1) {
 				return arg1.floor();
@@ -270,37 +277,37 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 		// return arg1.round();
 		// }
 		// });
-		FUNCTION_MAP.put("Sign", new IFieldElement1Function<Dfp>() {
+		functions.put("Sign", new IFieldElement1Function<Dfp>() {
 			@Override
 			public Dfp evaluate(Dfp arg1) {
 				return arg1.signum();
 			}
 		});
-		FUNCTION_MAP.put("Sin", new IFieldElement1Function<Dfp>() {
+		functions.put("Sin", new IFieldElement1Function<Dfp>() {
 			@Override
 			public Dfp evaluate(Dfp arg1) {
 				return DfpMath.sin(arg1);
 			}
 		});
-		FUNCTION_MAP.put("Sinh", new IFieldElement1Function<Dfp>() {
+		functions.put("Sinh", new IFieldElement1Function<Dfp>() {
 			@Override
 			public Dfp evaluate(Dfp arg1) {
 				return arg1.sinh();
 			}
 		});
-		FUNCTION_MAP.put("Sqrt", new IFieldElement1Function<Dfp>() {
+		functions.put("Sqrt", new IFieldElement1Function<Dfp>() {
 			@Override
 			public Dfp evaluate(Dfp arg1) {
 				return arg1.sqrt();
 			}
 		});
-		FUNCTION_MAP.put("Tan", new IFieldElement1Function<Dfp>() {
+		functions.put("Tan", new IFieldElement1Function<Dfp>() {
 			@Override
 			public Dfp evaluate(Dfp arg1) {
 				return DfpMath.tan(arg1);
 			}
 		});
-		FUNCTION_MAP.put("Tanh", new IFieldElement1Function<Dfp>() {
+		functions.put("Tanh", new IFieldElement1Function<Dfp>() {
 			@Override
 			public Dfp evaluate(Dfp arg1) {
 				return arg1.tanh();
@@ -310,7 +317,7 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 		//
 		// Functions with 2 arguments
 		//
-		FUNCTION_MAP.put("Power", new IFieldElementInt2Function<Dfp>() {
+		functions.put("Power", new IFieldElementInt2Function<Dfp>() {
 			@Override
 			public Dfp evaluate(Dfp arg1, Dfp arg2) {
 				return arg1.pow(arg2);
@@ -321,7 +328,8 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 				return arg1.pow(n);
 			}
 		});
-
+		DEFAULT_REGISTRY = new FunctionRegistry<>(functions, booleanFunctions, symbols, booleanSymbols,
+				RegistryHashTables.DFP);
 	}
 
 	/**
@@ -343,16 +351,45 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 
 	private final DfpNode fZERO;
 
-	private ASTNode fNode;
-
 	private final ASTNodeFactory fASTFactory;
 
+	/**
+	 * The constants which depend on the precision of this evaluator.
+	 */
+	private final Map<String, Dfp> fConstants = new HashMap<String, Dfp>();
+
+	/**
+	 * Returns the default functions and constants of the <code>DfpEvaluator</code>.
+	 * Derive new registries from it with the <code>with...()</code> methods.
+	 * 
+	 * @return
+	 */
+	public static FunctionRegistry<IFieldElementFunction<Dfp>, IBooleanFunction<Dfp>, Dfp> getDefaultRegistry() {
+		return DEFAULT_REGISTRY;
+	}
+
 	public DfpEvaluator(final int decimalDigits) {
 		this(decimalDigits, null, false);
 	}
 
 	public DfpEvaluator(final int decimalDigits, ASTNode node, boolean relaxedSyntax) {
-		super(relaxedSyntax);
+		this(decimalDigits, node, relaxedSyntax, DEFAULT_REGISTRY);
+	}
+
+	/**
+	 * 
+	 * @param decimalDigits
+	 * @param node
+	 * @param relaxedSyntax
+	 * @param registry
+	 *            the functions and constants of this evaluator. The precision
+	 *            dependent constants like <code>Pi</code> are defined by the
+	 *            evaluator itself.
+	 * @see #getDefaultRegistry()
+	 */
+	public DfpEvaluator(final int decimalDigits, ASTNode node, boolean relaxedSyntax,
+			FunctionRegistry<IFieldElementFunction<Dfp>, IBooleanFunction<Dfp>, Dfp> registry) {
+		super(registry, DEFAULT_REGISTRY, relaxedSyntax);
 		fASTFactory = new ASTNodeFactory(relaxedSyntax);
 		fVariableMap = new HashMap<String, FieldElementVariable<Dfp>>();
 		fBooleanVariables = new HashMap<String, BooleanVariable>();
@@ -360,23 +397,6 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 		fDfpField = new DfpField(decimalDigits);
 		fZERO = new DfpNode(fDfpField.getZero());
 		init();
-		if (fRelaxedSyntax) {
-			if (SYMBOL_MAP.get("pi") == null) {
-				// init tables for relaxed mode
-				for (String key : SYMBOL_MAP.keySet()) {
-					SYMBOL_MAP.put(key.toLowerCase(), SYMBOL_MAP.get(key));
-				}
-				for (String key : SYMBOL_BOOLEAN_MAP.keySet()) {
-					SYMBOL_BOOLEAN_MAP.put(key.toLowerCase(), SYMBOL_BOOLEAN_MAP.get(key));
-				}
-				for (String key : FUNCTION_MAP.keySet()) {
-					FUNCTION_MAP.put(key.toLowerCase(), FUNCTION_MAP.get(key));
-				}
-				for (String key : FUNCTION_BOOLEAN_MAP.keySet()) {
-					FUNCTION_BOOLEAN_MAP.put(key.toLowerCase(), FUNCTION_BOOLEAN_MAP.get(key));
-				}
-			}
-		}
 	}
 
 	public DfpEvaluator(final int decimalDigits, boolean relaxedSyntax) {
@@ -397,6 +417,11 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 		return new DfpVariable(value);
 	}
 
+	@Override
+	public ASTNode createNode(Dfp value) {
+		return new DfpNode(value);
+	}
+
 	/**
 	 * Define a value for a given variable name.
 	 * 
@@ -576,7 +601,7 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 			if (v != null) {
 				return new DfpNode(fDfpField.getZero());
 			}
-			Dfp dbl = SYMBOL_MAP.get(node.toString());
+			Dfp dbl = getSymbolFieldElementMap(node.toString());
 			if (dbl != null) {
 				return new DfpNode(fDfpField.getZero());
 			}
@@ -597,11 +622,9 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 	 * @return
 	 * @throws SyntaxError
 	 */
+	@Override
 	public Dfp evaluate() {
-		if (fNode == null) {
-			throw new SyntaxError(0, 0, 0, " ", "No parser input defined", 1);
-		}
-		return evaluateNode(fNode);
+		return super.evaluate();
 	}
 
 	/**
@@ -613,16 +636,7 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 	 * @throws SyntaxError
 	 */
 	public Dfp evaluate(String expression) {
-		Parser p;
-		if (fRelaxedSyntax) {
-			p = new Parser(ASTNodeFactory.RELAXED_STYLE_FACTORY, true);
-		} else {
-			p = new Parser(ASTNodeFactory.MMA_STYLE_FACTORY, false);
-		}
-		fNode = p.parse(expression);
-		if (fNode instanceof FunctionNode) {
-			fNode = optimizeFunction((FunctionNode) fNode);
-		}
+		fNode = bindFunctions(parseOptimized(expression));
 		return evaluateNode(fNode);
 	}
 
@@ -652,7 +666,7 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 					}
 				}
 			} else {
-				IFieldElementFunction<Dfp> function = FUNCTION_MAP.get(symbol);
+				IFieldElementFunction<Dfp> function = getFunctionMap(symbol);
 				if (function instanceof IFieldElementFunctionNode) {
 					return ((IFieldElementFunctionNode<Dfp>) function).evaluate(this, functionNode);
 				}
@@ -693,26 +707,42 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 		if (functionNode.size() > 0 && functionNode.getNode(0) instanceof SymbolNode) {
 			String symbol = functionNode.getNode(0).toString();
 			if (functionNode.size() == 2) {
-				IBooleanFunction<Dfp> function = FUNCTION_BOOLEAN_MAP.get(symbol);
+				IBooleanFunction<Dfp> function = getFunctionBooleanMap(symbol);
 				if (function instanceof IBooleanBoolean1Function) {
 					return ((IBooleanBoolean1Function<Dfp>) function)
 							.evaluate(evaluateNodeLogical(functionNode.getNode(1)));
 				}
 			} else if (functionNode.size() == 3) {
-				IBooleanFunction<Dfp> function = FUNCTION_BOOLEAN_MAP.get(symbol);
+				IBooleanFunction<Dfp> function = getFunctionBooleanMap(symbol);
 				if (function instanceof IBooleanFieldElement2Function) {
 					return ((IBooleanFieldElement2Function<Dfp>) function)
 							.evaluate(evaluateNode(functionNode.getNode(1)), evaluateNode(functionNode.getNode(2)));
+				} else if (function instanceof IBooleanLazy2Function) {
+					return evaluateShortCircuit((IBooleanLazy2Function<Dfp>) function, functionNode);
 				} else if (function instanceof IBooleanBoolean2Function) {
 					return ((IBooleanBoolean2Function<Dfp>) function).evaluate(
 							evaluateNodeLogical(functionNode.getNode(1)), evaluateNodeLogical(functionNode.getNode(2)));
 				}
 				// } else {
-				// Object obj = FUNCTION_BOOLEAN_MAP.get(symbol);
+				// Object obj = getFunctionBooleanMap(symbol);
 				// if (obj instanceof IBooleanDfpFunction) {
 				// return ((IBooleanDfpFunction) obj).evaluate(this,
 				// functionNode);
 				// }
+			} else if (functionNode.size() > 3) {
+				// the parser flattens And[a, b, c, ...] and Or[a, b, c, ...]
+				IBooleanFunction<Dfp> function = getFunctionBooleanMap(symbol);
+				if (function instanceof IBooleanLazy2Function) {
+					return evaluateShortCircuit((IBooleanLazy2Function<Dfp>) function, functionNode);
+				}
+				if (function instanceof IBooleanBoolean2Function) {
+					IBooleanBoolean2Function<Dfp> f = (IBooleanBoolean2Function<Dfp>) function;
+					boolean result = evaluateNodeLogical(functionNode.getNode(1));
+					for (int i = 2; i < functionNode.size(); i++) {
+						result = f.evaluate(result, evaluateNodeLogical(functionNode.getNode(i)));
+					}
+					return result;
+				}
 			}
 		}
 		throw new ArithmeticMathException(
@@ -737,34 +767,10 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 		if (node instanceof DfpNode) {
 			return fDfpField.newDfp(((DfpNode) node).getDfpValue());
 		}
-		if (node instanceof FunctionNode) {
-			return evaluateFunction((FunctionNode) node);
-		}
-		if (node instanceof SymbolNode) {
-			FieldElementVariable<Dfp> v = fVariableMap.get(node.toString());
-			if (v != null) {
-				return v.getValue();
-			}
-			Dfp dbl = SYMBOL_MAP.get(node.toString());
-			if (dbl != null) {
-				return dbl;
-			}
-		} else if (node instanceof NumberNode) {
-			if (node instanceof FractionNode) {
-				return fDfpField.newDfp(((FractionNode) node).getNumerator().toString())
-						.divide(fDfpField.newDfp(((FractionNode) node).getDenominator().toString()));
-			} else if (node instanceof IntegerNode) {
-				String iStr = ((NumberNode) node).getString();
-				if (iStr != null) {
-					return fDfpField.newDfp(iStr);
-				} else {
-					return fDfpField.newDfp(((IntegerNode) node).getIntValue());
-				}
-			}
-
-			return fDfpField.newDfp(((NumberNode) node).getString());
+		Dfp result = node.accept(this);
+		if (result != null) {
+			return result;
 		}
-
 		throw new ArithmeticMathException("DfpEvaluator#evaluateNode(ASTNode) not possible for: " + node.toString());
 	}
 
@@ -778,7 +784,7 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 			if (v != null) {
 				return v.getValue();
 			}
-			Boolean boole = SYMBOL_BOOLEAN_MAP.get(node.toString());
+			Boolean boole = getSymbolBooleanMap(node.toString());
 			if (boole != null) {
 				return boole.booleanValue();
 			}
@@ -812,24 +818,13 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 		return fDfpField;
 	}
 
-	@Override
-	public IBooleanFunction<Dfp> getFunctionBooleanMap(String symbolName) {
-		return FUNCTION_BOOLEAN_MAP.get(symbolName);
-	}
-
-	@Override
-	public IFieldElementFunction<Dfp> getFunctionMap(String symbolName) {
-		return FUNCTION_MAP.get(symbolName);
-	}
-
-	@Override
-	public Boolean getSymbolBooleanMap(String symbolName) {
-		return SYMBOL_BOOLEAN_MAP.get(symbolName);
-	}
-
 	@Override
 	public Dfp getSymbolFieldElementMap(String symbolName) {
-		return SYMBOL_MAP.get(symbolName);
+		Dfp c = fRegistry.getSymbol(symbolName);
+		if (c != null) {
+			return c;
+		}
+		return fConstants.get(symbolName);
 	}
 
 	/**
@@ -867,9 +862,9 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 			}
 		}
 		if (node instanceof SymbolNode) {
-			Object obj = SYMBOL_MAP.get(node.toString());
+			Object obj = getSymbolFieldElementMap(node.toString());
 			if (obj == null) {
-				obj = SYMBOL_BOOLEAN_MAP.get(node.toString());
+				obj = getSymbolBooleanMap(node.toString());
 				if (obj == null) {
 					result.add(node.toString());
 				}
@@ -908,14 +903,22 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 
 	void init() {
 		// TODO: get better precision for constants
-		SYMBOL_MAP.put("Catalan", fDfpField.newDfp(0.91596559417721901505460351493238411077414937428167));
-		SYMBOL_MAP.put("Degree", fDfpField.newDfp(Math.PI / 180));
-		SYMBOL_MAP.put("E", fDfpField.getE());
-		SYMBOL_MAP.put("Pi", fDfpField.getPi());
-		SYMBOL_MAP.put("EulerGamma", fDfpField.newDfp(0.57721566490153286060651209008240243104215933593992));
-		SYMBOL_MAP.put("Glaisher", fDfpField.newDfp(1.2824271291006226368753425688697917277676889273250));
-		SYMBOL_MAP.put("GoldenRatio", fDfpField.newDfp(1.6180339887498948482045868343656381177203091798058));
-		SYMBOL_MAP.put("Khinchin", fDfpField.newDfp(2.6854520010653064453097148354817956938203822939945));
+		fConstants.put("Catalan", fDfpField.newDfp(0.91596559417721901505460351493238411077414937428167));
+		fConstants.put("Degree", fDfpField.newDfp(Math.PI / 180));
+		fConstants.put("E", fDfpField.getE());
+		fConstants.put("Pi", fDfpField.getPi());
+		fConstants.put("EulerGamma", fDfpField.newDfp(0.57721566490153286060651209008240243104215933593992));
+		fConstants.put("Glaisher", fDfpField.newDfp(1.2824271291006226368753425688697917277676889273250));
+		fConstants.put("GoldenRatio", fDfpField.newDfp(1.6180339887498948482045868343656381177203091798058));
+		fConstants.put("Khinchin", fDfpField.newDfp(2.6854520010653064453097148354817956938203822939945));
+		if (fRelaxedSyntax) {
+			for (Map.Entry<String, Dfp> entry : new ArrayList<Map.Entry<String, Dfp>>(fConstants.entrySet())) {
+				String key = entry.getKey().toLowerCase();
+				if (!fConstants.containsKey(key)) {
+					fConstants.put(key, entry.getValue());
+				}
+			}
+		}
 
 	}
 
@@ -951,7 +954,9 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 
 	/**
 	 * Optimize an already parsed in <code>functionNode</code> into an
-	 * <code>ASTNode</code>.
+	 * <code>ASTNode</code>. The <code>functionNode</code> isn't modified; the
+	 * result is a new tree, which shares the unchanged subtrees with the given
+	 * <code>functionNode</code>.
 	 * 
 	 * @param functionNode
 	 * @return
@@ -961,50 +966,60 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 	public ASTNode optimizeFunction(final FunctionNode functionNode) {
 		if (functionNode.size() > 0) {
 			boolean dfpOnly = true;
+			FunctionNode result = functionNode;
 			ASTNode node;
 			for (int i = 1; i < functionNode.size(); i++) {
 				node = functionNode.getNode(i);
+				ASTNode optNode = node;
 				if (node instanceof NumberNode) {
 					if (node instanceof FractionNode) {
-						functionNode.set(i,
-								new DfpNode(fDfpField.newDfp(((FractionNode) node).getNumerator().toString())
-										.divide(fDfpField.newDfp(((FractionNode) node).getDenominator().toString()))));
+						optNode = new DfpNode(fDfpField.newDfp(((FractionNode) node).getNumerator().toString())
+								.divide(fDfpField.newDfp(((FractionNode) node).getDenominator().toString())));
 					} else if (node instanceof IntegerNode) {
-						String iStr = ((NumberNode) functionNode.getNode(i)).getString();
+						String iStr = ((NumberNode) node).getString();
 						if (iStr != null) {
-							functionNode.set(i, new DfpNode(fDfpField.newDfp(iStr)));
+							optNode = new DfpNode(fDfpField.newDfp(iStr));
 						} else {
-							functionNode.set(i, new DfpNode(
-									fDfpField.newDfp(((IntegerNode) functionNode.getNode(i)).getIntValue())));
+							optNode = new DfpNode(fDfpField.newDfp(((IntegerNode) node).getIntValue()));
 						}
 					} else {
-						functionNode.set(i,
-								new DfpNode(fDfpField.newDfp(((NumberNode) functionNode.getNode(i)).getString())));
+						optNode = new DfpNode(fDfpField.newDfp(((NumberNode) node).getString()));
 					}
-				} else if (functionNode.getNode(i) instanceof FunctionNode) {
-					ASTNode optNode = optimizeFunction((FunctionNode) functionNode.getNode(i));
+				} else if (node instanceof DfpNode) {
+					// already optimized
+				} else if (node instanceof FunctionNode) {
+					optNode = optimizeFunction((FunctionNode) node);
 					if (!(optNode instanceof DfpNode)) {
 						dfpOnly = false;
 					}
-					functionNode.set(i, optNode);
 				} else if (node instanceof SymbolNode) {
-					Dfp dbl = SYMBOL_MAP.get(node.toString());
+					Dfp dbl = getSymbolFieldElementMap(node.toString());
 					if (dbl != null) {
-						functionNode.set(i, new DfpNode(dbl));
+						optNode = new DfpNode(dbl);
 					} else {
 						dfpOnly = false;
 					}
 				} else {
 					dfpOnly = false;
 				}
+				if (optNode != node) {
+					if (result == functionNode) {
+						result = functionNode.copy();
+					}
+					result.set(i, optNode);
+				}
+			}
+			if (isIfFunction(result)) {
+				return optimizeIf(result);
 			}
 			if (dfpOnly) {
 				try {
-					return new DfpNode(evaluateFunction(functionNode));
+					return new DfpNode(evaluateFunction(result));
 				} catch (RuntimeException e) {
 
 				}
 			}
+			return result;
 		}
 		return functionNode;
 	}
@@ -1018,16 +1033,7 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 	 * @throws SyntaxError
 	 */
 	public ASTNode parse(String expression) {
-		Parser p;
-		if (fRelaxedSyntax) {
-			p = new Parser(ASTNodeFactory.RELAXED_STYLE_FACTORY, true);
-		} else {
-			p = new Parser(ASTNodeFactory.MMA_STYLE_FACTORY, false);
-		}
-		fNode = p.parse(expression);
-		if (fNode instanceof FunctionNode) {
-			fNode = optimizeFunction((FunctionNode) fNode);
-		}
+		fNode = bindFunctions(parseOptimized(expression));
 		return fNode;
 	}
 
@@ -1061,7 +1067,7 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 
 	@Override
 	public Dfp visit(DoubleNode node) {
-		return fDfpField.newDfp(node.getString());
+		return fDfpField.newDfp(node.doubleValue());
 	}
 
 	@Override
@@ -1071,11 +1077,21 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 
 	@Override
 	public Dfp visit(FractionNode node) {
-		return fDfpField.newDfp(node.doubleValue());
+		return fDfpField.newDfp(node.getNumerator().toString())
+				.divide(fDfpField.newDfp(node.getDenominator().toString()));
+	}
+
+	@Override
+	public Dfp visit(FunctionNode node) {
+		return evaluateFunction(node);
 	}
 
 	@Override
 	public Dfp visit(IntegerNode node) {
+		String iStr = node.getString();
+		if (iStr != null) {
+			return fDfpField.newDfp(iStr);
+		}
 		return fDfpField.newDfp(node.getIntValue());
 	}
 
@@ -1089,6 +1105,15 @@ public class DfpEvaluator extends FieldElementEvaluator<Dfp> {
 		return null;
 	}
 
+	@Override
+	public Dfp visit(SymbolNode node) {
+		FieldElementVariable<Dfp> v = fVariableMap.get(node.toString());
+		if (v != null) {
+			return v.getValue();
+		}
+		return getSymbolFieldElementMap(node.toString());
+	}
+
 	/**
 	 * Returns a <code>String</code> representation of the given
 	 * <code>Complex</code> number.
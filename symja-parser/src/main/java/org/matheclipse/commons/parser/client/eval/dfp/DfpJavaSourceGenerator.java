@@ -0,0 +1,326 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval.dfp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.math3.dfp.Dfp;
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FunctionNode;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
+import org.matheclipse.commons.parser.client.eval.api.AbstractJavaSourceGenerator;
+
+/**
+ * Generates the source code of a Java class from formula definitions, so that
+ * the formulas can be compiled at build time. Each definition of the form
+ * <code>f[x_, y_] := x^2 + y</code> becomes a method <code>public static Dfp
+ * f(Dfp x, Dfp y)</code>.
+ * 
+ * The generated code depends on the Apache Commons Math <code>Dfp</code>
+ * classes and evaluates the formulas with the same semantics as the
+ * <code>DfpEvaluator</code>. The generated class creates its numbers in the
+ * field <code>public static final DfpField FIELD</code> with the precision of
+ * the generator; the arguments of the methods must be created in a field of
+ * the same precision, i.e. by <code>FIELD.newDfp("1.5")</code>.
+ * 
+ * @see org.matheclipse.commons.parser.client.eval.DoubleJavaSourceGenerator
+ */
+public class DfpJavaSourceGenerator extends AbstractJavaSourceGenerator {
+
+	/**
+	 * Maps the built-in function names to the <code>DfpMath</code> methods
+	 * with one argument.
+	 */
+	private static final Map<String, String> MATH_FUNCTIONS = new HashMap<String, String>();
+
+	/**
+	 * Maps the built-in function names to the <code>Dfp</code> methods without
+	 * arguments.
+	 */
+	private static final Map<String, String> UNARY_FUNCTIONS = new HashMap<String, String>();
+
+	/**
+	 * The names of the built-in functions.
+	 */
+	private static final List<String> BUILTIN_NAMES = new ArrayList<String>();
+
+	/**
+	 * The names of the generated helper methods.
+	 */
+	private static final List<String> HELPER_NAMES = Arrays.asList("$max", "$min");
+
+	static {
+		MATH_FUNCTIONS.put("ArcCos", "DfpMath.acos");
+		MATH_FUNCTIONS.put("ArcSin", "DfpMath.asin");
+		MATH_FUNCTIONS.put("ArcTan", "DfpMath.atan");
+		MATH_FUNCTIONS.put("Exp", "DfpMath.exp");
+		MATH_FUNCTIONS.put("Log", "DfpMath.log");
+		MATH_FUNCTIONS.put("Sin", "DfpMath.sin");
+		MATH_FUNCTIONS.put("Tan", "DfpMath.tan");
+
+		UNARY_FUNCTIONS.put("Ceiling", "ceil");
+		UNARY_FUNCTIONS.put("Cos", "cos");
+		UNARY_FUNCTIONS.put("Cosh", "cosh");
+		UNARY_FUNCTIONS.put("Floor", "floor");
+		UNARY_FUNCTIONS.put("Sign", "signum");
+		UNARY_FUNCTIONS.put("Sinh", "sinh");
+		UNARY_FUNCTIONS.put("Sqrt", "sqrt");
+		UNARY_FUNCTIONS.put("Tanh", "tanh");
+
+		BUILTIN_NAMES.addAll(DfpEvaluator.getDefaultRegistry().getFunctionNames());
+		BUILTIN_NAMES.addAll(DfpEvaluator.getDefaultRegistry().getBooleanFunctionNames());
+	}
+
+	private final int fDecimalDigits;
+
+	private final DfpEvaluator fEngine;
+
+	private boolean fUsesDfpMath;
+
+	private boolean fUsesMax;
+
+	private boolean fUsesMin;
+
+	/**
+	 * 
+	 * @param decimalDigits
+	 *            the precision of the generated code
+	 */
+	public DfpJavaSourceGenerator(int decimalDigits) {
+		this(decimalDigits, false);
+	}
+
+	/**
+	 * 
+	 * @param decimalDigits
+	 *            the precision of the generated code
+	 * @param relaxedSyntax
+	 */
+	public DfpJavaSourceGenerator(int decimalDigits, boolean relaxedSyntax) {
+		super(relaxedSyntax, BUILTIN_NAMES, HELPER_NAMES);
+		fDecimalDigits = decimalDigits;
+		fEngine = new DfpEvaluator(decimalDigits, relaxedSyntax);
+	}
+
+	@Override
+	protected String getTypeName() {
+		return "Dfp";
+	}
+
+	@Override
+	protected ASTNode optimizeFunction(FunctionNode functionNode) {
+		return fEngine.optimizeFunction(functionNode);
+	}
+
+	@Override
+	protected Boolean getSymbolBoolean(String symbol) {
+		return fEngine.getSymbolBooleanMap(symbol);
+	}
+
+	@Override
+	protected String getUndefinedMessage(FunctionNode functionNode) {
+		return "DfpEvaluator#evaluateFunction(FunctionNode) not possible for: " + functionNode.toString();
+	}
+
+	@Override
+	protected void reset() {
+		fUsesDfpMath = false;
+		fUsesMax = false;
+		fUsesMin = false;
+	}
+
+	@Override
+	protected void generateImports(StringBuilder buf) {
+		buf.append("import org.apache.commons.math3.dfp.Dfp;\n");
+		buf.append("import org.apache.commons.math3.dfp.DfpField;\n");
+		if (fUsesDfpMath) {
+			buf.append("import org.apache.commons.math3.dfp.DfpMath;\n");
+		}
+		buf.append("\n");
+	}
+
+	@Override
+	protected void generateFields(StringBuilder buf) {
+		buf.append("\tpublic static final DfpField FIELD = new DfpField(").append(fDecimalDigits).append(");\n\n");
+	}
+
+	@Override
+	protected void generateHelpers(StringBuilder buf) {
+		if (fUsesMax) {
+			buf.append("\n");
+			buf.append("\tprivate static Dfp $max(Dfp result, Dfp arg) {\n");
+			buf.append("\t\treturn result.greaterThan(arg) ? result : arg;\n");
+			buf.append("\t}\n");
+		}
+		if (fUsesMin) {
+			buf.append("\n");
+			buf.append("\tprivate static Dfp $min(Dfp result, Dfp arg) {\n");
+			buf.append("\t\treturn result.lessThan(arg) ? result : arg;\n");
+			buf.append("\t}\n");
+		}
+	}
+
+	private void literal(Dfp value, StringBuilder buf) {
+		buf.append(constant("FIELD.newDfp(\"" + value.toString() + "\")"));
+	}
+
+	@Override
+	protected boolean translateValue(ASTNode node, StringBuilder buf) {
+		if (node instanceof DfpNode) {
+			literal(((DfpNode) node).getDfpValue(), buf);
+			return true;
+		}
+		if (node instanceof SymbolNode) {
+			Dfp dfp = fEngine.getSymbolFieldElementMap(node.toString());
+			if (dfp != null) {
+				literal(dfp, buf);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Translate the arguments of the function into a chain of method calls,
+	 * i.e. <code>x.add(y).add(z)</code>.
+	 * 
+	 * @param functionNode
+	 * @param method
+	 * @param buf
+	 */
+	private void translateChain(FunctionNode functionNode, String method, StringBuilder buf) {
+		translate(functionNode.getNode(1), buf);
+		for (int i = 2; i < functionNode.size(); i++) {
+			buf.append('.').append(method).append('(');
+			translate(functionNode.getNode(i), buf);
+			buf.append(')');
+		}
+	}
+
+	@Override
+	protected boolean translateBuiltin(String name, FunctionNode functionNode, StringBuilder buf) {
+		int size = functionNode.size();
+		if (name.equals("Plus")) {
+			if (size == 1) {
+				// a parameter may hide the FIELD constant
+				buf.append(getClassName()).append(".FIELD.getZero()");
+			} else {
+				translateChain(functionNode, "add", buf);
+			}
+			return true;
+		}
+		if (name.equals("Times")) {
+			if (size == 1) {
+				buf.append(getClassName()).append(".FIELD.getOne()");
+			} else {
+				translateChain(functionNode, "multiply", buf);
+			}
+			return true;
+		}
+		if ((name.equals("Max") || name.equals("Min")) && size > 1) {
+			String helper;
+			if (name.equals("Max")) {
+				fUsesMax = true;
+				helper = "$max(";
+			} else {
+				fUsesMin = true;
+				helper = "$min(";
+			}
+			for (int i = 2; i < size; i++) {
+				buf.append(helper);
+			}
+			translate(functionNode.getNode(1), buf);
+			for (int i = 2; i < size; i++) {
+				buf.append(", ");
+				translate(functionNode.getNode(i), buf);
+				buf.append(')');
+			}
+			return true;
+		}
+		if (size == 2) {
+			String method = MATH_FUNCTIONS.get(name);
+			if (method != null) {
+				fUsesDfpMath = true;
+				buf.append(method).append('(');
+				translate(functionNode.getNode(1), buf);
+				buf.append(')');
+				return true;
+			}
+			method = UNARY_FUNCTIONS.get(name);
+			if (method != null) {
+				translate(functionNode.getNode(1), buf);
+				buf.append('.').append(method).append("()");
+				return true;
+			}
+		} else if (size == 3) {
+			if (name.equals("Power")) {
+				translateChain(functionNode, "pow", buf);
+				return true;
+			}
+			if (name.equals("ArcTan")) {
+				translateChain(functionNode, "atan2", buf);
+				return true;
+			}
+			if (name.equals("Log")) {
+				// Log[base, z] == log(z) / log(base)
+				fUsesDfpMath = true;
+				buf.append("DfpMath.log(");
+				translate(functionNode.getNode(2), buf);
+				buf.append(").divide(DfpMath.log(");
+				translate(functionNode.getNode(1), buf);
+				buf.append("))");
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	protected boolean translateComparison(String name, FunctionNode functionNode, StringBuilder buf) {
+		String method;
+		boolean negate = false;
+		if (name.equals("Equal")) {
+			method = "equals";
+		} else if (name.equals("Unequal")) {
+			method = "equals";
+			negate = true;
+		} else if (name.equals("Greater")) {
+			method = "greaterThan";
+		} else if (name.equals("GreaterEqual")) {
+			method = "lessThan";
+			negate = true;
+		} else if (name.equals("Less")) {
+			method = "lessThan";
+		} else if (name.equals("LessEqual")) {
+			method = "greaterThan";
+			negate = true;
+		} else {
+			return false;
+		}
+		if (negate) {
+			buf.append('!');
+		}
+		translate(functionNode.getNode(1), buf);
+		buf.append('.').append(method).append('(');
+		translate(functionNode.getNode(2), buf);
+		buf.append(')');
+		return true;
+	}
+}
@@ -20,6 +20,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.matheclipse.commons.parser.client.PerfectHashTable;
 import org.matheclipse.commons.parser.client.ast.ASTNode;
 import org.matheclipse.commons.parser.client.ast.FloatNode;
 import org.matheclipse.commons.parser.client.ast.FractionNode;
@@ -100,6 +101,37 @@ public class ASTNodeFactory implements IParserFactory {
 			new InfixOperator("+=", "AddTo", 900, InfixOperator.NONE), new PostfixOperator("..", "Repeated", 1500),
 			new InfixOperator("/.", "ReplaceAll", 1000, InfixOperator.LEFT_ASSOCIATIVE) };
 
+	/**
+	 * The seeds of the perfect hash table of the <code>HEADER_STRINGS</code>
+	 * (generated by the <code>GenerateOperatorArrays</code> tool).
+	 */
+	static final int[] HEADER_HASH_SEEDS = { 0, 1, 6, 8, 0, 0, 2, 0, 2, 0, 0, 1, 0, 0, 2, 0, 3, 0, 2, 5, 9, 1, 12, 11,
+			7, 0, 1, 6, 0, 0, 17, 4, 0, 2, 3, 2, 0, 4, 0, 2, 8, 9, 0, 8, 3, 0, 15, 7, 3, 0, 21, 0, 21, 0 };
+
+	static final int[] HEADER_HASH_INDEXES = { 31, 23, 52, 26, 47, 7, 36, 50, 18, 27, 4, 44, 32, 49, 30, 17, 8, 53, 11,
+			51, 21, 42, 37, 24, 20, 41, 40, 46, 48, 12, 35, 9, 0, 28, 13, 25, 38, 22, 14, 5, 45, 19, 3, 39, 10, 33, 29,
+			6, 15, 43, 16, 1, 34, 2 };
+
+	/**
+	 * The distinct <code>OPERATOR_STRINGS</code> in the order of their first
+	 * occurrence.
+	 */
+	static final String[] OPERATOR_TOKENS = { "::", "<<", "?", "//@", "*=", "+", "^=", ";", "/@", "=.", "@@", "//.",
+			"<", "&&", "/", "=", "++", "!!", "<=", "**", "!", "*", "^", ".", "-", "===", ":>", ">=", "/;", ":", "//",
+			"/=", "||", "==", "<>", "!=", "--", "-=", "...", "=!=", "->", "^:=", "&", ">", ":=", "|", "+=", "..",
+			"/." };
+
+	/**
+	 * The seeds of the perfect hash table of the <code>OPERATOR_TOKENS</code>
+	 * (generated by the <code>GenerateOperatorArrays</code> tool).
+	 */
+	static final int[] OPERATOR_TOKEN_HASH_SEEDS = { 2, 0, 3, 0, 0, 3, 1, 0, 1, 0, 1, 0, 3, 0, 0, 12, 5, 0, 8, 1, 5, 13,
+			3, 2, 0, 7, 8, 0, 2, 0, 0, 4, 2, 11, 0, 1, 0, 4, 1, 1, 0, 21, 9, 2, 1, 4, 0, 19, 3 };
+
+	static final int[] OPERATOR_TOKEN_HASH_INDEXES = { 25, 27, 22, 23, 28, 45, 20, 16, 26, 12, 32, 14, 37, 10, 15, 43,
+			31, 48, 1, 46, 30, 41, 36, 2, 44, 6, 0, 33, 40, 18, 34, 39, 42, 9, 3, 13, 5, 8, 35, 11, 47, 24, 19, 4, 17,
+			7, 29, 21, 38 };
+
 	public final static ASTNodeFactory MMA_STYLE_FACTORY = new ASTNodeFactory(false);
 
 	public final static ASTNodeFactory RELAXED_STYLE_FACTORY = new ASTNodeFactory(true);
@@ -112,12 +144,39 @@ public class ASTNodeFactory implements IParserFactory {
 	 */
 	private static HashMap<String, ArrayList<Operator>> fOperatorTokenStartSet;
 
+	/**
+	 * Perfect hash table of the <code>HEADER_STRINGS</code>, which are the
+	 * function names of the operators.
+	 */
+	private final static PerfectHashTable HEADER_TABLE = new PerfectHashTable(HEADER_STRINGS, HEADER_HASH_SEEDS,
+			HEADER_HASH_INDEXES);
+
+	/**
+	 * Perfect hash table of the <code>OPERATOR_TOKENS</code>.
+	 */
+	private final static PerfectHashTable OPERATOR_TABLE = new PerfectHashTable(OPERATOR_TOKENS,
+			OPERATOR_TOKEN_HASH_SEEDS, OPERATOR_TOKEN_HASH_INDEXES);
+
+	/**
+	 * The operators for the tokens of the <code>OPERATOR_TABLE</code>.
+	 */
+	private final static List<Operator>[] OPERATOR_LISTS;
+
 	static {
 		fOperatorMap = new HashMap<String, Operator>();
 		fOperatorTokenStartSet = new HashMap<String, ArrayList<Operator>>();
 		for (int i = 0; i < HEADER_STRINGS.length; i++) {
 			addOperator(fOperatorMap, fOperatorTokenStartSet, OPERATOR_STRINGS[i], HEADER_STRINGS[i], OPERATORS[i]);
 		}
+		if (fOperatorTokenStartSet.size() != OPERATOR_TOKENS.length) {
+			throw new IllegalStateException("ASTNodeFactory: the OPERATOR_TOKENS don't match the OPERATOR_STRINGS");
+		}
+		@SuppressWarnings("unchecked")
+		List<Operator>[] lists = new List[OPERATOR_TOKENS.length];
+		for (int i = 0; i < OPERATOR_TOKENS.length; i++) {
+			lists[i] = fOperatorTokenStartSet.get(OPERATOR_TOKENS[i]);
+		}
+		OPERATOR_LISTS = lists;
 	}
 
 	static public void addOperator(final Map<String, Operator> operatorMap,
@@ -258,7 +317,8 @@ public class ASTNodeFactory implements IParserFactory {
 
 	@Override
 	public Operator get(final String identifier) {
-		return fOperatorMap.get(identifier);
+		int index = HEADER_TABLE.indexOf(identifier);
+		return index >= 0 ? OPERATORS[index] : null;
 	}
 
 	/**
@@ -287,7 +347,8 @@ public class ASTNodeFactory implements IParserFactory {
 	 */
 	@Override
 	public List<Operator> getOperatorList(final String key) {
-		return fOperatorTokenStartSet.get(key);
+		int index = OPERATOR_TABLE.indexOf(key);
+		return index >= 0 ? OPERATOR_LISTS[index] : null;
 	}
 
 	@Override
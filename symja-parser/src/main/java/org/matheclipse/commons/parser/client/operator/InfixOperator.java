@@ -18,6 +18,7 @@ package org.matheclipse.commons.parser.client.operator;
 import org.matheclipse.commons.parser.client.ast.ASTNode;
 import org.matheclipse.commons.parser.client.ast.FunctionNode;
 import org.matheclipse.commons.parser.client.ast.IParserFactory;
+import org.matheclipse.commons.parser.client.ast.SymbolNode;
 
 public class InfixOperator extends Operator {
 	private int fGrouping;
@@ -28,6 +29,14 @@ public class InfixOperator extends Operator {
 
 	public final static int LEFT_ASSOCIATIVE = 2;
 
+	/**
+	 * The function names of the associative operators, which are parsed into
+	 * one n-ary function (i.e. <code>a+b+c</code> into
+	 * <code>Plus(a, b, c)</code> instead of
+	 * <code>Plus(Plus(a, b), c)</code>).
+	 */
+	private final static String[] FLAT_FUNCTION_NAMES = { "Plus", "Times", "And", "Or" };
+
 	public InfixOperator(final String oper, final String functionName, final int precedence, final int grouping) {
 		super(oper, functionName, precedence);
 		fGrouping = grouping;
@@ -49,6 +58,63 @@ public class InfixOperator extends Operator {
 			function.add(lhs);
 			return function;
 		}
+		if (isFlat(getFunctionName())) {
+			return createFlatFunction(factory, getFunctionName(), lhs, rhs);
+		}
 		return factory.createFunction(factory.createSymbol(getFunctionName()), lhs, rhs);
 	}
+
+	/**
+	 * Test if the function with the given name is associative, so that nested
+	 * calls are flattened into one n-ary function by the parser.
+	 * 
+	 * @param functionName
+	 * @return
+	 */
+	public static boolean isFlat(final String functionName) {
+		for (String name : FLAT_FUNCTION_NAMES) {
+			if (name.equals(functionName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Create the n-ary function <code>functionName(lhs, rhs)</code>. The
+	 * arguments of a <code>lhs</code> or <code>rhs</code> with the same head
+	 * are spliced into the new function. The <code>lhs</code> function is
+	 * reused, so that a sum of <code>n</code> terms is parsed in linear time.
+	 * 
+	 * @param factory
+	 * @param functionName
+	 *            the name of an associative function
+	 * @param lhs
+	 * @param rhs
+	 * @return
+	 */
+	public static FunctionNode createFlatFunction(final IParserFactory factory, final String functionName,
+			final ASTNode lhs, final ASTNode rhs) {
+		SymbolNode head = factory.createSymbol(functionName);
+		FunctionNode function;
+		if (hasHead(lhs, head)) {
+			function = (FunctionNode) lhs;
+		} else {
+			function = factory.createFunction(head, lhs);
+		}
+		if (hasHead(rhs, head)) {
+			FunctionNode rhsFunction = (FunctionNode) rhs;
+			for (int i = 1; i < rhsFunction.size(); i++) {
+				function.add(rhsFunction.getNode(i));
+			}
+		} else {
+			function.add(rhs);
+		}
+		return function;
+	}
+
+	private static boolean hasHead(final ASTNode node, final SymbolNode head) {
+		return node instanceof FunctionNode && ((FunctionNode) node).size() > 0
+				&& head.equals(((FunctionNode) node).getNode(0));
+	}
 }
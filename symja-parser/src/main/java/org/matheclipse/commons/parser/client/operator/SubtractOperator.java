@@ -24,8 +24,8 @@ public class SubtractOperator extends InfixOperator {
 	}
 
 	public ASTNode createFunction(final IParserFactory factory, final ASTNode lhs, final ASTNode rhs) {
-		return factory.createFunction(factory.createSymbol("Plus"), lhs, factory.createFunction(factory.createSymbol("Times"), factory
-				.createInteger(-1), rhs));
+		return createFlatFunction(factory, "Plus", lhs,
+				createFlatFunction(factory, "Times", factory.createInteger(-1), rhs));
 
 		// alternatively we can introduce a Subtract operator.
 		// see http://code.google.com/p/symja/issues/detail?id=36
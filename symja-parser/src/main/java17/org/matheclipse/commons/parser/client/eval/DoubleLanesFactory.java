@@ -0,0 +1,39 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+/**
+ * Creates the <code>DoubleLanes</code> of the current runtime. On Java 17 and
+ * newer the <code>DoubleVectorLanes</code> are used, if the
+ * <code>jdk.incubator.vector</code> module is resolved (i.e. the JVM is
+ * started with <code>--add-modules jdk.incubator.vector</code>).
+ */
+final class DoubleLanesFactory {
+
+	private DoubleLanesFactory() {
+	}
+
+	static DoubleLanes create() {
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+			try {
+				return new DoubleVectorLanes();
+			} catch (LinkageError e) {
+				// use the scalar loops
+			}
+		}
+		return new DoubleLanes();
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2005-2008 Axel Kramer (axelclk@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.matheclipse.commons.parser.client.eval;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The lane operations of the <code>DoubleBatchProgram</code> kernels with the
+ * <code>jdk.incubator.vector</code> API. The loops process
+ * <code>DoubleVector.SPECIES_PREFERRED</code> lanes per step (i.e. 8 lanes on
+ * AVX-512 hardware) and the remaining elements with the scalar loops of the
+ * super class.
+ */
+final class DoubleVectorLanes extends DoubleLanes {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	boolean isVectorized() {
+		return true;
+	}
+
+	@Override
+	void plus(double[] result, int offset, double value, int length) {
+		int bound = SPECIES.loopBound(length);
+		for (int i = 0; i < bound; i += SPECIES.length()) {
+			DoubleVector.fromArray(SPECIES, result, offset + i).add(value).intoArray(result, offset + i);
+		}
+		super.plus(result, offset + bound, value, length - bound);
+	}
+
+	@Override
+	void plus(double[] result, int offset, double[] arg, int argOffset, int length) {
+		int bound = SPECIES.loopBound(length);
+		for (int i = 0; i < bound; i += SPECIES.length()) {
+			DoubleVector r = DoubleVector.fromArray(SPECIES, result, offset + i);
+			r.add(DoubleVector.fromArray(SPECIES, arg, argOffset + i)).intoArray(result, offset + i);
+		}
+		super.plus(result, offset + bound, arg, argOffset + bound, length - bound);
+	}
+
+	@Override
+	void times(double[] result, int offset, double value, int length) {
+		int bound = SPECIES.loopBound(length);
+		for (int i = 0; i < bound; i += SPECIES.length()) {
+			DoubleVector.fromArray(SPECIES, result, offset + i).mul(value).intoArray(result, offset + i);
+		}
+		super.times(result, offset + bound, value, length - bound);
+	}
+
+	@Override
+	void times(double[] result, int offset, double[] arg, int argOffset, int length) {
+		int bound = SPECIES.loopBound(length);
+		for (int i = 0; i < bound; i += SPECIES.length()) {
+			DoubleVector r = DoubleVector.fromArray(SPECIES, result, offset + i);
+			r.mul(DoubleVector.fromArray(SPECIES, arg, argOffset + i)).intoArray(result, offset + i);
+		}
+		super.times(result, offset + bound, arg, argOffset + bound, length - bound);
+	}
+
+	@Override
+	void max(double[] result, int offset, double value, int length) {
+		int bound = SPECIES.loopBound(length);
+		DoubleVector v = DoubleVector.broadcast(SPECIES, value);
+		for (int i = 0; i < bound; i += SPECIES.length()) {
+			DoubleVector r = DoubleVector.fromArray(SPECIES, result, offset + i);
+			r.blend(v, v.compare(VectorOperators.GT, r)).intoArray(result, offset + i);
+		}
+		super.max(result, offset + bound, value, length - bound);
+	}
+
+	@Override
+	void max(double[] result, int offset, double[] arg, int argOffset, int length) {
+		int bound = SPECIES.loopBound(length);
+		for (int i = 0; i < bound; i += SPECIES.length()) {
+			DoubleVector r = DoubleVector.fromArray(SPECIES, result, offset + i);
+			DoubleVector a = DoubleVector.fromArray(SPECIES, arg, argOffset + i);
+			r.blend(a, a.compare(VectorOperators.GT, r)).intoArray(result, offset + i);
+		}
+		super.max(result, offset + bound, arg, argOffset + bound, length - bound);
+	}
+
+	@Override
+	void min(double[] result, int offset, double value, int length) {
+		int bound = SPECIES.loopBound(length);
+		DoubleVector v = DoubleVector.broadcast(SPECIES, value);
+		for (int i = 0; i < bound; i += SPECIES.length()) {
+			DoubleVector r = DoubleVector.fromArray(SPECIES, result, offset + i);
+			r.blend(v, v.compare(VectorOperators.LT, r)).intoArray(result, offset + i);
+		}
+		super.min(result, offset + bound, value, length - bound);
+	}
+
+	@Override
+	void min(double[] result, int offset, double[] arg, int argOffset, int length) {
+		int bound = SPECIES.loopBound(length);
+		for (int i = 0; i < bound; i += SPECIES.length()) {
+			DoubleVector r = DoubleVector.fromArray(SPECIES, result, offset + i);
+			DoubleVector a = DoubleVector.fromArray(SPECIES, arg, argOffset + i);
+			r.blend(a, a.compare(VectorOperators.LT, r)).intoArray(result, offset + i);
+		}
+		super.min(result, offset + bound, arg, argOffset + bound, length - bound);
+	}
+
+	@Override
+	void sqrt(double[] result, int offset, int length) {
+		int bound = SPECIES.loopBound(length);
+		for (int i = 0; i < bound; i += SPECIES.length()) {
+			DoubleVector.fromArray(SPECIES, result, offset + i).lanewise(VectorOperators.SQRT).intoArray(result,
+					offset + i);
+		}
+		super.sqrt(result, offset + bound, length - bound);
+	}
+
+	@Override
+	void abs(double[] result, int offset, int length) {
+		int bound = SPECIES.loopBound(length);
+		for (int i = 0; i < bound; i += SPECIES.length()) {
+			DoubleVector.fromArray(SPECIES, result, offset + i).abs().intoArray(result, offset + i);
+		}
+		super.abs(result, offset + bound, length - bound);
+	}
+
+	@Override
+	void power(double[] result, int offset, int exponent, int length) {
+		int bound = SPECIES.loopBound(length);
+		DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+		for (int i = 0; i < bound; i += SPECIES.length()) {
+			DoubleVector x = DoubleVector.fromArray(SPECIES, result, offset + i);
+			DoubleVector power;
+			switch (exponent) {
+			case -1:
+				power = one.div(x);
+				break;
+			case 2:
+				power = x.mul(x);
+				break;
+			case 3:
+				power = x.mul(x).mul(x);
+				break;
+			default:
+				DoubleVector square = x.mul(x);
+				power = square.mul(square);
+				break;
+			}
+			// a zero base is returned unchanged
+			x.blend(power, x.compare(VectorOperators.NE, 0.0)).intoArray(result, offset + i);
+		}
+		super.power(result, offset + bound, exponent, length - bound);
+	}
+
+	@Override
+	void select(int comparison, double[] left, double[] right, double[] trueValues, int valuesOffset,
+			double[] result, int offset, int length) {
+		int bound = SPECIES.loopBound(length);
+		double epsilon = DoubleEvaluator.EPSILON;
+		for (int i = 0; i < bound; i += SPECIES.length()) {
+			DoubleVector l = DoubleVector.fromArray(SPECIES, left, valuesOffset + i);
+			DoubleVector r = DoubleVector.fromArray(SPECIES, right, valuesOffset + i);
+			VectorMask<Double> mask;
+			switch (comparison) {
+			case EQUAL:
+				mask = l.sub(r).abs().compare(VectorOperators.LT, epsilon);
+				break;
+			case UNEQUAL:
+				mask = l.sub(r).abs().compare(VectorOperators.LT, epsilon).not();
+				break;
+			case LESS:
+				mask = l.compare(VectorOperators.LT, r);
+				break;
+			case LESS_EQUAL:
+				mask = l.compare(VectorOperators.LE, r);
+				break;
+			case GREATER:
+				mask = l.compare(VectorOperators.GT, r);
+				break;
+			default:
+				mask = l.compare(VectorOperators.GE, r);
+				break;
+			}
+			DoubleVector trueCase = DoubleVector.fromArray(SPECIES, trueValues, valuesOffset + i);
+			DoubleVector falseCase = DoubleVector.fromArray(SPECIES, result, offset + i);
+			falseCase.blend(trueCase, mask).intoArray(result, offset + i);
+		}
+		super.select(comparison, left, right, trueValues, valuesOffset + bound, result, offset + bound,
+				length - bound);
+	}
+}
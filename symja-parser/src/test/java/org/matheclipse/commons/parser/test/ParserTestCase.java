@@ -1,7 +1,9 @@
 package org.matheclipse.commons.parser.test;
 
 import org.matheclipse.commons.parser.client.Parser;
+import org.matheclipse.commons.parser.client.PerfectHashTable;
 import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.operator.ASTNodeFactory;
 
 import junit.framework.TestCase;
 
@@ -18,7 +20,7 @@ public class ParserTestCase extends TestCase {
 		try {
 			Parser p = new Parser(true);
 			ASTNode obj = p.parse("-a-b*c!!+d");
-			assertEquals(obj.toString(), "Plus(Plus(Times(-1, a), Times(-1, Times(b, Factorial2(c)))), d)");
+			assertEquals(obj.toString(), "Plus(Times(-1, a), Times(-1, b, Factorial2(c)), d)");
 		} catch (RuntimeException e) {
 			e.printStackTrace();
 			assertEquals("", e.getMessage());
@@ -62,7 +64,7 @@ public class ParserTestCase extends TestCase {
 		try {
 			Parser p = new Parser(true);
 			ASTNode obj = p.parse("f(y,z)*(a+b+c)");
-			assertEquals(obj.toString(), "Times(f(y, z), Plus(Plus(a, b), c))");
+			assertEquals(obj.toString(), "Times(f(y, z), Plus(a, b, c))");
 		} catch (RuntimeException e) {
 			e.printStackTrace();
 			assertEquals("", e.getMessage());
@@ -72,7 +74,7 @@ public class ParserTestCase extends TestCase {
 		try {
 			Parser p = new Parser(true);
 			ASTNode obj = p.parse("f(y,z) (a+b+c)");
-			assertEquals(obj.toString(), "Times(f(y, z), Plus(Plus(a, b), c))");
+			assertEquals(obj.toString(), "Times(f(y, z), Plus(a, b, c))");
 		} catch (RuntimeException e) {
 			e.printStackTrace();
 			assertEquals("", e.getMessage());
@@ -105,7 +107,7 @@ public class ParserTestCase extends TestCase {
 		try {
 			Parser p = new Parser(true);
 			ASTNode obj = p.parse("a+%%%+%3*4!");
-			assertEquals(obj.toString(), "Plus(Plus(a, Out(-3)), Times(Out(3), Factorial(4)))");
+			assertEquals(obj.toString(), "Plus(a, Out(-3), Times(Out(3), Factorial(4)))");
 		} catch (RuntimeException e) {
 			e.printStackTrace();
 			assertEquals("", e.getMessage());
@@ -182,7 +184,7 @@ public class ParserTestCase extends TestCase {
 		try {
 			Parser p = new Parser(true);
 			ASTNode obj = p.parse("a*b*c*d");
-			assertEquals(obj.toString(), "Times(Times(Times(a, b), c), d)");
+			assertEquals(obj.toString(), "Times(a, b, c, d)");
 		} catch (RuntimeException e) {
 			e.printStackTrace();
 			assertEquals("", e.getMessage());
@@ -208,7 +210,7 @@ public class ParserTestCase extends TestCase {
 					.parse("Integrate(Sin(a_.*x_)^n_IntegerQ, x_Symbol):= -Sin(a*x)^(n-1)*Cos(a*x)/(n*a)+(n-1)/n*Integrate(Sin(a*x)^(n-2),x)/;Positive(n)&&FreeQ(a,x)");
 			assertEquals(
 					obj.toString(),
-					"SetDelayed(Integrate(Power(Sin(Times(a_., x_)), n_IntegerQ), x_Symbol), Condition(Plus(Times(Times(-1, Power(Sin(Times(a, x)), Plus(n, Times(-1, 1)))), Times(Cos(Times(a, x)), Power(Times(n, a), -1))), Times(Times(Plus(n, Times(-1, 1)), Power(n, -1)), Integrate(Power(Sin(Times(a, x)), Plus(n, Times(-1, 2))), x))), And(Positive(n), FreeQ(a, x))))");
+					"SetDelayed(Integrate(Power(Sin(Times(a_., x_)), n_IntegerQ), x_Symbol), Condition(Plus(Times(-1, Power(Sin(Times(a, x)), Plus(n, Times(-1, 1))), Cos(Times(a, x)), Power(Times(n, a), -1)), Times(Plus(n, Times(-1, 1)), Power(n, -1), Integrate(Power(Sin(Times(a, x)), Plus(n, Times(-1, 2))), x))), And(Positive(n), FreeQ(a, x))))");
 		} catch (RuntimeException e) {
 			e.printStackTrace();
 			assertEquals("", e.getMessage());
@@ -256,7 +258,7 @@ public class ParserTestCase extends TestCase {
 		try {
 			Parser p = new Parser(true);
 			Object obj = p.parse("a sin()cos()x()y z");
-			assertEquals(obj.toString(), "Times(Times(Times(Times(Times(a, sin()), cos()), x()), y), z)");
+			assertEquals(obj.toString(), "Times(a, sin(), cos(), x(), y, z)");
 		} catch (RuntimeException e) {
 			e.printStackTrace();
 		}
@@ -308,7 +310,7 @@ public class ParserTestCase extends TestCase {
 		try {
 			Parser p = new Parser(true);
 			Object obj = p.parse("(a+b)^2 (x+y)^3 (u+w)^4");
-			assertEquals(obj.toString(), "Times(Times(Power(Plus(a, b), 2), Power(Plus(x, y), 3)), Power(Plus(u, w), 4))");
+			assertEquals(obj.toString(), "Times(Power(Plus(a, b), 2), Power(Plus(x, y), 3), Power(Plus(u, w), 4))");
 		} catch (RuntimeException e) {
 			e.printStackTrace();
 		}
@@ -345,6 +347,21 @@ public class ParserTestCase extends TestCase {
 			e.printStackTrace();
 		}
 	}
+
+	public void testParser28() {
+		try {
+			Parser p = new Parser(true);
+			Object obj = p.parse("a-b-c+(d+e)");
+			assertEquals(obj.toString(), "Plus(a, Times(-1, b), Times(-1, c), d, e)");
+			obj = p.parse("a&&b&&c||d||e");
+			assertEquals(obj.toString(), "Or(And(a, b, c), d, e)");
+			obj = p.parse("a*b/c*d");
+			assertEquals(obj.toString(), "Times(a, b, Power(c, -1), d)");
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
 	public void testParserDerive() {
 		try {
 			Parser p = new Parser(true);
@@ -360,7 +377,7 @@ public class ParserTestCase extends TestCase {
 		try {
 			Parser p = new Parser(true);
 			ASTNode obj = p.parse("#^2-3#-1&");
-			assertEquals(obj.toString(), "Function(Plus(Plus(Power(Slot(1), 2), Times(-1, Times(3, Slot(1)))), Times(-1, 1)))");
+			assertEquals(obj.toString(), "Function(Plus(Power(Slot(1), 2), Times(-1, 3, Slot(1)), Times(-1, 1)))");
 		} catch (RuntimeException e) {
 			e.printStackTrace();
 			assertEquals("", e.getMessage());
@@ -377,4 +394,59 @@ public class ParserTestCase extends TestCase {
 			assertEquals("", e.getMessage());
 		}
 	}
+
+	public void testPerfectHashTable001() {
+		try {
+			String[] names = { "Sin", "Cos", "Tan", "ArcTan", "Pi", "E", "Degree", "GoldenRatio", "x", "X" };
+			PerfectHashTable table = new PerfectHashTable(names);
+			for (int i = 0; i < names.length; i++) {
+				assertEquals(table.indexOf(names[i]), i);
+			}
+			assertEquals(table.indexOf("sin"), -1);
+			assertEquals(table.indexOf("Sinh"), -1);
+			assertEquals(table.indexOf(""), -1);
+
+			// precomputed seeds give the same table
+			PerfectHashTable copy = new PerfectHashTable(names, table.getSeeds(), table.getIndexes());
+			assertEquals(copy.indexOf("GoldenRatio"), 7);
+			String[] swapped = names.clone();
+			swapped[0] = "Cos";
+			swapped[1] = "Sin";
+			try {
+				new PerfectHashTable(swapped, table.getSeeds(), table.getIndexes());
+				fail();
+			} catch (IllegalArgumentException e) {
+				// the seeds were computed for another order of the names
+			}
+
+			assertEquals(new PerfectHashTable(new String[0]).indexOf("x"), -1);
+
+			// case folded table
+			String[] foldedNames = { "sin", "cos", "pi", "x" };
+			PerfectHashTable folded = new PerfectHashTable(foldedNames, true);
+			assertEquals(folded.indexOf("sin"), 0);
+			assertEquals(folded.indexOf("Sin"), 0);
+			assertEquals(folded.indexOf("SIN"), 0);
+			assertEquals(folded.indexOf("X"), 3);
+			assertEquals(folded.indexOf("Sinh"), -1);
+			copy = new PerfectHashTable(foldedNames, folded.getSeeds(), folded.getIndexes(), true);
+			assertTrue(copy.isIgnoreCase());
+			assertEquals(copy.indexOf("PI"), 2);
+			try {
+				new PerfectHashTable(names, true);
+				fail();
+			} catch (IllegalArgumentException e) {
+				// x and X are the same name
+			}
+
+			ASTNodeFactory factory = ASTNodeFactory.MMA_STYLE_FACTORY;
+			assertEquals(factory.get("Times").getOperatorString(), "*");
+			assertNull(factory.get("Sin"));
+			assertEquals(factory.getOperatorList("-").size(), 2);
+			assertNull(factory.getOperatorList("#"));
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
 }
\ No newline at end of file
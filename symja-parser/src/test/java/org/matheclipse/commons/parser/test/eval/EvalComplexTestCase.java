@@ -1,5 +1,8 @@
 package org.matheclipse.commons.parser.test.eval;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.commons.math3.complex.Complex;
 import org.junit.Assert;
 import org.matheclipse.commons.parser.client.Parser;
@@ -7,7 +10,10 @@ import org.matheclipse.commons.parser.client.ast.ASTNode;
 import org.matheclipse.commons.parser.client.ast.FunctionNode;
 import org.matheclipse.commons.parser.client.eval.BooleanVariable;
 import org.matheclipse.commons.parser.client.eval.ComplexEvaluator;
+import org.matheclipse.commons.parser.client.eval.ComplexJavaSourceGenerator;
 import org.matheclipse.commons.parser.client.eval.ComplexVariable;
+import org.matheclipse.commons.parser.client.eval.api.CompiledFieldExpression;
+import org.matheclipse.commons.parser.client.math.ArithmeticMathException;
 
 import junit.framework.TestCase;
 
@@ -158,4 +164,147 @@ public class EvalComplexTestCase extends TestCase {
 			assertEquals("", e.getMessage());
 		}
 	}
-}
\ No newline at end of file
+
+	public void testSpecialize001() {
+		try {
+			ComplexEvaluator engine = new ComplexEvaluator();
+			ASTNode node = new Parser().parse("a*Exp[b]+a*x");
+			Map<String, Complex> fixed = new HashMap<String, Complex>();
+			fixed.put("a", Complex.I);
+			fixed.put("b", new Complex(0.0));
+			ASTNode residual = engine.specialize(node, fixed);
+			assertEquals(residual.toString(), "Plus(0.0+I*1.0, Times(0.0+I*1.0, x))");
+			engine.defineVariable("x", new ComplexVariable(2.0));
+			assertEquals(ComplexEvaluator.toString(engine.evaluateNode(residual)), "0.0+I*3.0");
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testShortCircuit001() {
+		try {
+			ComplexEvaluator engine = new ComplexEvaluator();
+			final int[] reads = new int[1];
+			BooleanVariable vb = new BooleanVariable(false);
+			engine.defineVariable("$1", vb);
+			engine.defineVariable("$2", new BooleanVariable(true) {
+				@Override
+				public boolean getValue() {
+					reads[0]++;
+					return super.getValue();
+				}
+			});
+			engine.getTieredCompiler().setThreshold(3);
+			Complex cmp = engine.evaluate("If[$1 && $2 && $1, 1, 0]");
+			Assert.assertEquals(ComplexEvaluator.toString(cmp), "0.0");
+			for (int i = 0; i < 5; i++) {
+				Assert.assertEquals(ComplexEvaluator.toString(engine.evaluate()), "0.0");
+			}
+			// the interpreted and the compiled form stop at $1
+			Assert.assertEquals(reads[0], 0);
+			vb.setValue(true);
+			Assert.assertEquals(ComplexEvaluator.toString(engine.evaluate()), "1.0");
+			Assert.assertEquals(reads[0], 1);
+
+			cmp = engine.evaluate("If[$1 || $2, 1, 0]");
+			Assert.assertEquals(ComplexEvaluator.toString(cmp), "1.0");
+			Assert.assertEquals(reads[0], 1);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			Assert.assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testTieredCompiler001() {
+		try {
+			ComplexEvaluator engine = new ComplexEvaluator();
+			engine.getTieredCompiler().setThreshold(2);
+			ComplexVariable vz = new ComplexVariable(new Complex(0.0, 1.0));
+			engine.defineVariable("z", vz);
+			engine.defineVariable("w", new ComplexVariable(Complex.ZERO));
+			Complex cmp = engine.evaluate("t=z*z; t+t+w");
+			Assert.assertEquals(ComplexEvaluator.toString(cmp), "-2.0");
+			for (int i = 0; i < 3; i++) {
+				Assert.assertEquals(ComplexEvaluator.toString(engine.evaluate()), "-2.0");
+			}
+			Assert.assertTrue(engine.getTieredCompiler().isCompiled());
+			// the compiled Set defines t in the evaluator and the new w is read at the next call
+			vz.setValue(new Complex(2.0));
+			engine.defineVariable("w", new ComplexVariable(new Complex(1.0)));
+			Assert.assertEquals(ComplexEvaluator.toString(engine.evaluate()), "9.0");
+			Assert.assertEquals(ComplexEvaluator.toString(engine.getVariable("t").getValue()), "4.0");
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			Assert.assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testCompile001() {
+		try {
+			ComplexEvaluator engine = new ComplexEvaluator();
+			engine.defineVariable("c", new ComplexVariable(new Complex(0.0, 1.0)));
+			CompiledFieldExpression<Complex> compiled = engine.compile("If[z!=0, z*w+c, Sin[z]^2+w]", "z", "w");
+			Complex z = new Complex(2.0, 1.0);
+			Complex w = new Complex(3.0);
+			Assert.assertEquals(ComplexEvaluator.toString(compiled.evaluate(z, w)),
+					ComplexEvaluator.toString(z.multiply(w).add(Complex.I)));
+			z = Complex.ZERO;
+			Assert.assertEquals(ComplexEvaluator.toString(compiled.evaluate(z, w)),
+					ComplexEvaluator.toString(z.sin().multiply(z.sin()).add(w)));
+
+			// local variables get their own slots in each frame
+			compiled = engine.compile("t=z*z; t+t", "z");
+			Assert.assertEquals(compiled.getFrameSize(), 2);
+			Assert.assertEquals(ComplexEvaluator.toString(compiled.evaluate(new Complex(0.0, 1.0))), "-2.0");
+			Assert.assertEquals(engine.getVariable("t"), null);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			Assert.assertEquals("", e.getMessage());
+		}
+		try {
+			ComplexEvaluator engine = new ComplexEvaluator();
+			engine.compile("x+y", "x", "y").evaluate(Complex.ONE);
+			Assert.assertEquals("", "missing exception");
+		} catch (RuntimeException e) {
+			Assert.assertEquals(e.getMessage(), "CompiledFieldExpression#evaluate(T[]) expects 2 arguments, but got: 1");
+		}
+	}
+
+	public void testJavaSourceGenerator001() {
+		try {
+			ComplexJavaSourceGenerator generator = new ComplexJavaSourceGenerator();
+			String source = generator.generate("org.example", "Formulas",
+					"area[r_] := Pi*r^2\n" + "f[z_, w_] := If[z == 0, Sqrt[w] + area[w], -z/w + I]");
+			assertTrue(source.startsWith("package org.example;\n\nimport org.apache.commons.math3.complex.Complex;"));
+			assertTrue(source.contains("\tprivate static final Complex $c0 = new Complex(3.141592653589793, 0.0);\n"));
+			assertTrue(source.contains(
+					"\tpublic static Complex area(Complex r) {\n" + "\t\treturn $c0.multiply($power(r, $c1));\n"));
+			assertTrue(source.contains(
+					"(z.equals($c2) ? w.sqrt().add(area(w)) : $c3.multiply(z).multiply($power(w, $c3)).add($c4))"));
+			assertTrue(source.contains("private static Complex $power(Complex base, Complex exponent) {"));
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testJavaSourceGenerator002() {
+		try {
+			ComplexJavaSourceGenerator generator = new ComplexJavaSourceGenerator();
+			generator.generate("org.example", "Formulas", "f[z_] := If[z < 1, z, 1]");
+			assertEquals("", "ArithmeticMathException expected");
+		} catch (ArithmeticMathException e) {
+			assertEquals(e.getMessage(),
+					"ComplexJavaSourceGenerator#translateLogical() not possible for: Less(z, 1.0)");
+		}
+		try {
+			ComplexJavaSourceGenerator generator = new ComplexJavaSourceGenerator();
+			generator.generate("org.example", "Formulas", "f[$c0_] := $c0");
+			assertEquals("", "ArithmeticMathException expected");
+		} catch (ArithmeticMathException e) {
+			assertEquals(e.getMessage(),
+					"ComplexJavaSourceGenerator#generate() reserved parameter name: SetDelayed(f($c0_), $c0)");
+		}
+	}
+}
@@ -3,12 +3,20 @@ package org.matheclipse.commons.parser.test.eval;
 import java.util.ArrayList;
 import java.util.HashSet;
 
+import org.apache.commons.math3.complex.Complex;
 import org.apache.commons.math3.dfp.Dfp;
 import org.junit.Assert;
+import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FractionNode;
+import org.matheclipse.commons.parser.client.ast.IntegerNode;
 import org.matheclipse.commons.parser.client.eval.BooleanVariable;
+import org.matheclipse.commons.parser.client.eval.ComplexEvaluator;
+import org.matheclipse.commons.parser.client.eval.ComplexVariable;
 import org.matheclipse.commons.parser.client.eval.DoubleEvaluator;
+import org.matheclipse.commons.parser.client.eval.api.CompiledFieldExpression;
 import org.matheclipse.commons.parser.client.eval.api.FieldElementVariable;
 import org.matheclipse.commons.parser.client.eval.dfp.DfpEvaluator;
+import org.matheclipse.commons.parser.client.eval.dfp.DfpJavaSourceGenerator;
 
 import junit.framework.TestCase;
 
@@ -196,4 +204,80 @@ public class EvalDfpRelaxedTestCase extends TestCase {
 			assertEquals("DfpEvaluator#evaluateFunction(FunctionNode) not possible for: atest(1.)", e.getMessage());
 		}
 	}
+
+	public void testTieredCompiler001() {
+		try {
+			DfpEvaluator engine = new DfpEvaluator(50, true);
+			engine.getTieredCompiler().setThreshold(2);
+			FieldElementVariable<Dfp> vd = engine.defineVariable("X", 3.0);
+			Dfp d = engine.evaluate("If(X>2, X^2+3, 1/X)");
+			assertEquals(d.toString(), "12.");
+			engine.setValue(vd, 4);
+			assertEquals(engine.evaluate().toString(), "19.");
+			engine.setValue(vd, 5);
+			assertEquals(engine.evaluate().toString(), "28.");
+			assertTrue(engine.getTieredCompiler().isCompiled());
+			engine.setValue(vd, 2);
+			assertEquals(engine.evaluate().toString(), "0.5");
+			assertEquals(engine.getTieredCompiler().getStatistics().getCompiledEvaluations(), 2);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testCompile001() {
+		try {
+			DfpEvaluator engine = new DfpEvaluator(50, true);
+			CompiledFieldExpression<Dfp> compiled = engine.compile("max(X^2, 2*X, Y) + If(X>Y, 1, 0)", "X", "Y");
+			Dfp two = engine.getField().getOne().multiply(2);
+			Dfp five = engine.getField().getOne().multiply(5);
+			assertEquals(compiled.evaluate(two, five).toString(), "5.");
+			assertEquals(compiled.evaluate(five, two).toString(), "26.");
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testAccept001() {
+		try {
+			DfpEvaluator engine = new DfpEvaluator(50, true);
+			// the fraction is evaluated exactly and not through its double value
+			ASTNode fraction = new FractionNode(new IntegerNode("1"), new IntegerNode("3"));
+			Dfp third = engine.getField().getOne().divide(3);
+			assertEquals(fraction.accept(engine), third);
+			assertEquals(engine.evaluateNode(fraction), third);
+
+			engine.defineVariable("X", 4.0);
+			ASTNode node = engine.parse("X^2+Sqrt(X)");
+			assertEquals(node.accept(engine).toString(), "18.");
+			// the bound function nodes of the DfpEvaluator are ordinary function nodes for other evaluators
+			ComplexEvaluator complexEngine = new ComplexEvaluator(true);
+			complexEngine.defineVariable("x", new ComplexVariable(2.0));
+			assertEquals(ComplexEvaluator.toString(complexEngine.evaluateNode(engine.parse("x*x+Sqrt(x)"))),
+					ComplexEvaluator.toString(new Complex(4.0 + Math.sqrt(2.0))));
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testJavaSourceGenerator001() {
+		try {
+			DfpJavaSourceGenerator generator = new DfpJavaSourceGenerator(20, true);
+			String source = generator.generate("org.example", "Formulas",
+					"f(x_, y_) := if(x >= 1/4, max(x, y, 3), log(2, y))");
+			assertTrue(source.contains("import org.apache.commons.math3.dfp.DfpMath;\n"));
+			assertTrue(source.contains("\tpublic static final DfpField FIELD = new DfpField(20);\n\n"
+					+ "\tprivate static final Dfp $c0 = FIELD.newDfp(\"0.25\");\n"));
+			assertTrue(source.contains("\tpublic static Dfp f(Dfp x, Dfp y) {\n"
+					+ "\t\treturn (!x.lessThan($c0) ? $max($max(x, y), $c1) : "
+					+ "DfpMath.log(y).divide(DfpMath.log($c2)));\n"));
+			assertTrue(source.contains("\t\treturn result.greaterThan(arg) ? result : arg;\n"));
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
 }
@@ -5,6 +5,7 @@ import java.util.HashSet;
 
 import org.junit.Assert;
 import org.matheclipse.commons.parser.client.eval.BooleanVariable;
+import org.matheclipse.commons.parser.client.eval.CompiledDoubleExpression;
 import org.matheclipse.commons.parser.client.eval.DoubleEvaluator;
 import org.matheclipse.commons.parser.client.eval.DoubleVariable;
 import org.matheclipse.commons.parser.client.eval.IDoubleValue;
@@ -211,4 +212,15 @@ public class EvalDoubleRelaxedTestCase extends TestCase {
 			assertEquals("", e.getMessage());
 		}
 	}
+
+	public void testCompile001() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator(true);
+			CompiledDoubleExpression expr = engine.compile("sin(pi/2*cOs(X))+y", "X", "Y");
+			assertEquals(Double.toString(expr.evaluate(Math.PI, 1.0)), "0.0");
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
 }
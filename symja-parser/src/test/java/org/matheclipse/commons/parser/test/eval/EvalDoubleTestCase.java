@@ -1,14 +1,52 @@
 package org.matheclipse.commons.parser.test.eval;
 
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.dfp.Dfp;
+import org.apache.commons.math3.dfp.DfpField;
 import org.junit.Assert;
+import org.matheclipse.commons.parser.client.Parser;
 import org.matheclipse.commons.parser.client.ast.ASTNode;
+import org.matheclipse.commons.parser.client.ast.FunctionNode;
 import org.matheclipse.commons.parser.client.eval.BooleanVariable;
+import org.matheclipse.commons.parser.client.eval.DoubleBinaryPredicate;
+import org.matheclipse.commons.parser.client.eval.CompiledDoubleExpression;
+import org.matheclipse.commons.parser.client.eval.ComplexEvaluator;
+import org.matheclipse.commons.parser.client.eval.ComplexVariable;
 import org.matheclipse.commons.parser.client.eval.DoubleEvaluator;
+import org.matheclipse.commons.parser.client.eval.DoubleFunctionNode;
+import org.matheclipse.commons.parser.client.eval.DoubleJavaSourceGenerator;
+import org.matheclipse.commons.parser.client.eval.DoubleRegisterProgram;
 import org.matheclipse.commons.parser.client.eval.DoubleVariable;
 import org.matheclipse.commons.parser.client.eval.IDoubleValue;
+import org.matheclipse.commons.parser.client.eval.bigfraction.BigFractionEvaluator;
+import org.matheclipse.commons.parser.client.eval.dfp.DfpEvaluator;
+import org.matheclipse.commons.parser.client.eval.api.CanonicalForm;
+import org.matheclipse.commons.parser.client.eval.api.FieldElementFunctionNode;
+import org.matheclipse.commons.parser.client.eval.api.FunctionRegistry;
+import org.matheclipse.commons.parser.client.eval.api.HornerForm;
+import org.matheclipse.commons.parser.client.eval.api.IFieldElement1Function;
+import org.matheclipse.commons.parser.client.eval.api.PromotionStatistics;
+import org.matheclipse.commons.parser.client.eval.api.RegistryHashTables;
+import org.matheclipse.commons.parser.client.math.ArithmeticMathException;
 
 import junit.framework.TestCase;
 
@@ -238,4 +276,1122 @@ public class EvalDoubleTestCase extends TestCase {
 			assertEquals("", e.getMessage());
 		}
 	}
+
+	public void testCompile001() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			CompiledDoubleExpression expr = engine.compile("x^2+3*y-Sin[Pi/2]", "x", "y");
+			assertEquals(Double.toString(expr.evaluate(3.0, 2.0)), "14.0");
+			assertEquals(Double.toString(expr.evaluate(4.0, 1.0)), "18.0");
+
+			expr = engine.compile("If[x>0 && y<1, Max[x,y,3], Min[x,y]]", "x", "y");
+			assertEquals(Double.toString(expr.evaluate(2.0, 0.5)), "3.0");
+			assertEquals(Double.toString(expr.evaluate(-2.0, 0.5)), "-2.0");
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testCompile002() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			CompiledDoubleExpression expr = engine.compile("$i = $1+$2; If[$i>0, 1, -1]", "$1", "$2");
+			assertEquals(expr.getFrameSize(), 3);
+			Assert.assertEquals(expr.evaluate(3.0, -4.0), -1d, DoubleEvaluator.EPSILON);
+			Assert.assertEquals(expr.evaluate(3.0, 4.0), 1d, DoubleEvaluator.EPSILON);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testCompile003() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			CompiledDoubleExpression expr = engine.compile("aTest[x]", "x");
+			assertEquals(expr.toString(), "");
+		} catch (RuntimeException e) {
+			assertEquals("EvalDouble#compile(FunctionNode) not possible for: aTest(x)", e.getMessage());
+		}
+	}
+
+	public void testCompileBytecode001() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			CompiledDoubleExpression expr = engine.compileBytecode("x^2+3*y-Sin[Pi/2]", "x", "y");
+			assertTrue(expr.getFunction().getClass().getName().contains(".bytecode.DoubleFunction"));
+			assertEquals(Double.toString(expr.evaluate(3.0, 2.0)), "14.0");
+			assertEquals(Double.toString(expr.evaluate(4.0, 1.0)), "18.0");
+
+			expr = engine.compileBytecode("If[x>0 && y<1, Max[x,y,3], Min[x,y]]", "x", "y");
+			assertEquals(Double.toString(expr.evaluate(2.0, 0.5)), "3.0");
+			assertEquals(Double.toString(expr.evaluate(-2.0, 0.5)), "-2.0");
+
+			String[] expressions = { "Log[x, y] + ArcTan[x, y] - ArcTan[y]", "Round[x*y] + Floor[x] - Ceiling[y]",
+					"x^y + 0^y + Sqrt[Abs[x-y]]", "If[x==y || !(x>=y), x/y, y-x]", "Min[x, Max[y, 2, x]] + Sign[x-y]" };
+			double[][] arguments = { { 2.0, 8.0 }, { 3.5, 0.5 }, { 1.0, 1.0 }, { 0.0, 3.0 } };
+			for (String expression : expressions) {
+				CompiledDoubleExpression compiled = engine.compile(expression, "x", "y");
+				CompiledDoubleExpression bytecode = engine.compileBytecode(expression, "x", "y");
+				for (double[] args : arguments) {
+					assertEquals(Double.toString(bytecode.evaluate(args)), Double.toString(compiled.evaluate(args)));
+				}
+			}
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testCompileBytecode002() {
+		try {
+			IDoubleValue vd = new DoubleVariable(3.0);
+			DoubleEvaluator engine = new DoubleEvaluator();
+			engine.defineVariable("a", vd);
+			CompiledDoubleExpression expr = engine.compileBytecode("$i = $1+a; If[$i>0, $i*2, -1]", "$1");
+			assertEquals(expr.getFrameSize(), 2);
+			Assert.assertEquals(expr.evaluate(1.0), 8d, DoubleEvaluator.EPSILON);
+			vd.setValue(-4.0);
+			Assert.assertEquals(expr.evaluate(1.0), -1d, DoubleEvaluator.EPSILON);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testCompileBytecode003() {
+		DoubleEvaluator engine = new DoubleEvaluator();
+		CompiledDoubleExpression expr = engine.compileBytecode("If[x>0, x]", "x");
+		assertEquals(Double.toString(expr.evaluate(2.0)), "2.0");
+		try {
+			expr.evaluate(-2.0);
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("EvalDouble#evaluateFunction(FunctionNode) not possible for: If(Greater(x, 0.0), x)",
+					e.getMessage());
+		}
+	}
+
+	public void testCompileBytecode004() {
+		try {
+			// NaN arguments after the first argument are ignored by Min and Max
+			DoubleEvaluator engine = new DoubleEvaluator();
+			engine.defineVariable("x", 0.5);
+			engine.defineVariable("y", -2.0);
+			String[] variables = { "x", "y" };
+			for (String expression : new String[] { "Min[x, Sqrt[y]]", "Max[x, Sqrt[y]]", "Min[x, Sqrt[y], -x]" }) {
+				String expected = Double.toString(engine.evaluate(expression));
+				assertEquals(Double.toString(engine.compileBytecode(expression, variables).evaluate(0.5, -2.0)),
+						expected);
+				assertEquals(Double.toString(engine.compile(expression, variables).evaluate(0.5, -2.0)), expected);
+				assertEquals(Double.toString(engine.compileMethodHandle(expression, variables).evaluate(0.5, -2.0)),
+						expected);
+				assertEquals(
+						Double.toString(engine.compileRegisterProgram(expression, variables).evaluate(0.5, -2.0)),
+						expected);
+				double[] out = new double[1];
+				engine.evaluateBatch(expression, variables, new double[][] { { 0.5 }, { -2.0 } }, out);
+				assertEquals(Double.toString(out[0]), expected);
+			}
+			assertEquals(Double.toString(engine.evaluate("Min[x, Sqrt[y]]")), "0.5");
+			assertEquals(Double.toString(engine.evaluate("Min[x, Sqrt[y], -x]")), "-0.5");
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+
+	public void testCompileBytecode005() {
+		try {
+			// 65 Power terms and 150 nested Power functions need more than 256 local variable slots
+			DoubleEvaluator engine = new DoubleEvaluator();
+			StringBuilder sum = new StringBuilder("0");
+			for (int i = 1; i <= 65; i++) {
+				sum.append("+(x+" + i + ")^1.5");
+			}
+			StringBuilder nested = new StringBuilder("x");
+			for (int i = 0; i < 150; i++) {
+				nested.insert(0, "(").append(")^1.001");
+			}
+			for (String expression : new String[] { sum.toString(), nested.toString() }) {
+				CompiledDoubleExpression bytecode = engine.compileBytecode(expression, "x");
+				assertTrue(bytecode.getFunction().getClass().getName().contains(".bytecode.DoubleFunction"));
+				CompiledDoubleExpression compiled = engine.compile(expression, "x");
+				assertEquals(Double.toString(bytecode.evaluate(1.25)), Double.toString(compiled.evaluate(1.25)));
+			}
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+	public void testCompileMethodHandle001() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			CompiledDoubleExpression expr = engine.compileMethodHandle("x^2+3*y-Sin[Pi/2]", "x", "y");
+			assertEquals(Double.toString(expr.evaluate(3.0, 2.0)), "14.0");
+			assertEquals(Double.toString(expr.evaluate(4.0, 1.0)), "18.0");
+
+			String[] expressions = { "If[x>0 && y<1, Max[x,y,3], Min[x,y]]", "Log[x, y] + ArcTan[x, y] - ArcTan[y]",
+					"Round[x*y] + Floor[x] - Ceiling[y]", "x^y + 0^y + Sqrt[Abs[x-y]]",
+					"If[x==y || !(x>=y), x/y, y-x]", "Min[x, Max[y, 2, x]] + Sign[x-y]" };
+			double[][] arguments = { { 2.0, 8.0 }, { 3.5, 0.5 }, { 1.0, 1.0 }, { 0.0, 3.0 } };
+			for (String expression : expressions) {
+				CompiledDoubleExpression compiled = engine.compile(expression, "x", "y");
+				CompiledDoubleExpression handle = engine.compileMethodHandle(expression, "x", "y");
+				for (double[] args : arguments) {
+					assertEquals(Double.toString(handle.evaluate(args)), Double.toString(compiled.evaluate(args)));
+				}
+			}
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testCompileMethodHandle002() {
+		try {
+			IDoubleValue vd = new DoubleVariable(3.0);
+			DoubleEvaluator engine = new DoubleEvaluator();
+			engine.defineVariable("a", vd);
+			CompiledDoubleExpression expr = engine.compileMethodHandle("$i = $1+a; $j = $i*2; If[$i>0, $j, -1]",
+					"$1");
+			assertEquals(expr.getFrameSize(), 3);
+			Assert.assertEquals(expr.evaluate(1.0), 8d, DoubleEvaluator.EPSILON);
+			vd.setValue(-4.0);
+			Assert.assertEquals(expr.evaluate(1.0), -1d, DoubleEvaluator.EPSILON);
+
+			expr = engine.compileMethodHandle("If[$1>0, $1]", "$1");
+			assertEquals(Double.toString(expr.evaluate(2.0)), "2.0");
+			expr.evaluate(-2.0);
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("EvalDouble#evaluateFunction(FunctionNode) not possible for: If(Greater($1, 0.0), $1)",
+					e.getMessage());
+		}
+	}
+
+	public void testCompileRegisterProgram001() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			CompiledDoubleExpression expr = engine.compileRegisterProgram("x^2+3*y-Sin[Pi/2]", "x", "y");
+			DoubleRegisterProgram program = (DoubleRegisterProgram) expr.getFunction();
+			// 2 constants, 2*Times, 2*Plus and Return; x^2 is reduced to x*x and
+			// Sin[Pi/2] is folded
+			assertEquals(program.getInstructionCount(), 7);
+			assertEquals(Double.toString(expr.evaluate(3.0, 2.0)), "14.0");
+			assertEquals(Double.toString(expr.evaluate(4.0, 1.0)), "18.0");
+
+			String[] expressions = { "If[x>0 && y<1, Max[x,y,3], Min[x,y]]", "Log[x, y] + ArcTan[x, y] - ArcTan[y]",
+					"Round[x*y] + Floor[x] - Ceiling[y]", "x^y + 0^y + Sqrt[Abs[x-y]]",
+					"If[x==y || !(x>=y), x/y, y-x]", "Min[x, Max[y, 2, x]] + Sign[x-y]", "x + (x = x + y) + x" };
+			double[][] arguments = { { 2.0, 8.0 }, { 3.5, 0.5 }, { 1.0, 1.0 }, { 0.0, 3.0 } };
+			for (String expression : expressions) {
+				CompiledDoubleExpression compiled = engine.compile(expression, "x", "y");
+				CompiledDoubleExpression register = engine.compileRegisterProgram(expression, "x", "y");
+				for (double[] args : arguments) {
+					assertEquals(Double.toString(register.evaluate(args.clone())),
+							Double.toString(compiled.evaluate(args.clone())));
+				}
+			}
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testCompileRegisterProgram002() {
+		try {
+			IDoubleValue vd = new DoubleVariable(3.0);
+			DoubleEvaluator engine = new DoubleEvaluator();
+			engine.defineVariable("a", vd);
+			CompiledDoubleExpression expr = engine.compileRegisterProgram("$i = $1+a; $j = $i*2; If[$i>0, $j, -1]",
+					"$1");
+			Assert.assertEquals(expr.evaluate(1.0), 8d, DoubleEvaluator.EPSILON);
+			vd.setValue(-4.0);
+			Assert.assertEquals(expr.evaluate(1.0), -1d, DoubleEvaluator.EPSILON);
+
+			expr = engine.compileRegisterProgram("If[$1>0, $1]", "$1");
+			assertEquals(Double.toString(expr.evaluate(2.0)), "2.0");
+			expr.evaluate(-2.0);
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("EvalDouble#evaluateFunction(FunctionNode) not possible for: If(Greater($1, 0.0), $1)",
+					e.getMessage());
+		}
+	}
+
+	public void testCompileRegisterProgram003() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			CompiledDoubleExpression expr = engine.compileRegisterProgram("Sin[x]*y+Cos[x]*y", "x", "y");
+			assertTrue(expr.getFrameSize() > 2);
+			double expected = (Math.sin(0.5) + Math.cos(0.5)) * 2.0;
+			for (int i = 0; i < 3; i++) {
+				Assert.assertEquals(expr.evaluate(0.5, 2.0), expected, DoubleEvaluator.EPSILON);
+			}
+			// a frame supplied by the caller
+			double[] frame = new double[expr.getFrameSize()];
+			frame[0] = 0.5;
+			frame[1] = 2.0;
+			Assert.assertEquals(expr.evaluateFrame(frame), expected, DoubleEvaluator.EPSILON);
+			try {
+				expr.evaluateFrame(new double[2]);
+				fail();
+			} catch (ArithmeticMathException e) {
+				// expected
+			}
+
+			// a nested evaluation of the same expression gets its own frame
+			CompiledDoubleExpression[] recursive = new CompiledDoubleExpression[1];
+			engine = new DoubleEvaluator(null, false, DoubleEvaluator.getDefaultRegistry().withFunction("Inner",
+					(DoubleUnaryOperator) x -> x < 1.0 ? x : recursive[0].evaluate(x - 1.0)));
+			recursive[0] = engine.compileRegisterProgram("Inner[x]*2+x", "x");
+			assertEquals(Double.toString(recursive[0].evaluate(2.0)), "4.0");
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testCommonSubexpressions001() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			ASTNode node = engine.parse("Cos[x]^2+Sin[x]*Cos[x]");
+			assertEquals(DoubleEvaluator.eliminateCommonSubexpressions(node).toString(),
+					"CompoundExpression(Set(#cse1, Cos(x)), Plus(Power(#cse1, 2.0), Times(Sin(x), #cse1)))");
+			// no common subexpressions or only in one branch of If
+			node = engine.parse("If[x>0, Cos[x], Cos[x]+1]");
+			assertSame(DoubleEvaluator.eliminateCommonSubexpressions(node), node);
+			node = engine.parse("Random[]+Random[]");
+			assertSame(DoubleEvaluator.eliminateCommonSubexpressions(node), node);
+
+			String[] expressions = { "Cos[x]^2+Sin[x]*Cos[x]", "If[x>0, Cos[x], Cos[x]+1] + Cos[x]",
+					"Sqrt[x^2+y^2] + Log[x^2+y^2] * (x^2+y^2)", "x + (x = x + y) + x" };
+			double[][] arguments = { { 2.0, 8.0 }, { -3.5, 0.5 }, { 0.0, 1.0 } };
+			for (String expression : expressions) {
+				ASTNode expressionNode = engine.parse(expression);
+				for (double[] args : arguments) {
+					engine.defineVariable("x", args[0]);
+					engine.defineVariable("y", args[1]);
+					String expected = Double.toString(engine.evaluateNode(engine.parse(expression)));
+					CompiledDoubleExpression compiled = engine.compile(expressionNode, "x", "y");
+					CompiledDoubleExpression bytecode = engine.compileBytecode(expressionNode, "x", "y");
+					CompiledDoubleExpression register = engine.compileRegisterProgram(expressionNode, "x", "y");
+					assertEquals(Double.toString(compiled.evaluate(args.clone())), expected);
+					assertEquals(Double.toString(bytecode.evaluate(args.clone())), expected);
+					assertEquals(Double.toString(register.evaluate(args.clone())), expected);
+				}
+			}
+
+			// the derivative repeats the subexpressions of the chain rule
+			ASTNode derivative = engine.derivative(engine.parse("Sin[x^2]*Cos[x^2]"), "x");
+			CompiledDoubleExpression expr = engine.compileMethodHandle(derivative, "x");
+			engine.defineVariable("x", 0.5);
+			Assert.assertEquals(expr.evaluate(0.5), engine.evaluateNode(derivative), DoubleEvaluator.EPSILON);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testStrengthReduction001() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			assertEquals(engine.parse("x^2 + y^0.5 - E^x").toString(),
+					"Plus(Times(x, x), Power(y, 0.5), Minus(Exp(x)))");
+			assertEquals(engine.parse("-x/(y+1)").toString(), "Minus(Divide(x, Plus(y, 1.0)))");
+			// the base isn't repeated if it's an expensive subexpression
+			assertEquals(engine.parse("Sin[x]^3").toString(), "Power(Sin(x), 3.0)");
+
+			engine.defineVariable("x", 2.0);
+			engine.defineVariable("y", 0.0);
+			assertEquals(Double.toString(engine.evaluate("x/y + x^3")), "8.0");
+			// Math.pow(-Infinity, 0.5) is Infinity, but Math.sqrt(-Infinity) is NaN
+			engine.defineVariable("z", Double.NEGATIVE_INFINITY);
+			assertEquals(Double.toString(engine.evaluate("z^0.5")), "Infinity");
+			assertEquals(Double.toString(engine.compileBytecode("x^0.5", "x").evaluate(Double.NEGATIVE_INFINITY)),
+					"Infinity");
+			ASTNode derivative = engine.derivative(engine.parse("1/x + Sqrt[x]"), "x");
+			Assert.assertEquals(engine.evaluateNode(derivative), -0.25 + 0.5 / Math.sqrt(2.0), DoubleEvaluator.EPSILON);
+			String[] expressions = { "x/y", "-x*y/(x+1)", "x^4 - y^3 + Sqrt[x]^2", "E^(x*y) + 1/x", "x^0.5" };
+			double[][] arguments = { { 2.0, 8.0 }, { -3.5, 0.5 }, { 0.0, 1.0 }, { 3.0, 0.0 },
+					{ Double.NEGATIVE_INFINITY, 1.0 } };
+			for (String expression : expressions) {
+				CompiledDoubleExpression compiled = engine.compile(expression, "x", "y");
+				CompiledDoubleExpression bytecode = engine.compileBytecode(expression, "x", "y");
+				for (double[] args : arguments) {
+					assertEquals(Double.toString(bytecode.evaluate(args.clone())),
+							Double.toString(compiled.evaluate(args.clone())));
+				}
+			}
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testFlatOperators001() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			StringBuilder buf = new StringBuilder("x");
+			for (int i = 1; i < 20000; i++) {
+				buf.append("+x");
+			}
+			// the n-ary Plus doesn't overflow the stack
+			ASTNode node = engine.parse(buf.toString());
+			assertEquals(((FunctionNode) node).size(), 20001);
+			engine.defineVariable("x", 0.5);
+			assertEquals(Double.toString(engine.evaluateNode(node)), "10000.0");
+			assertEquals(Double.toString(engine.compileBytecode(node, "x").evaluate(0.5)), "10000.0");
+
+			String expression = "If[x>0 && y>0 && x<y || x==2 || y==2, x*y*3, x+y+3]";
+			double[][] arguments = { { 2.0, 8.0 }, { 3.5, 0.5 }, { 1.0, 2.0 }, { 0.0, 3.0 } };
+			CompiledDoubleExpression compiled = engine.compile(expression, "x", "y");
+			CompiledDoubleExpression bytecode = engine.compileBytecode(expression, "x", "y");
+			CompiledDoubleExpression methodHandle = engine.compileMethodHandle(expression, "x", "y");
+			CompiledDoubleExpression register = engine.compileRegisterProgram(expression, "x", "y");
+			for (double[] args : arguments) {
+				engine.defineVariable("x", args[0]);
+				engine.defineVariable("y", args[1]);
+				String expected = Double.toString(engine.evaluate(expression));
+				assertEquals(Double.toString(compiled.evaluate(args.clone())), expected);
+				assertEquals(Double.toString(bytecode.evaluate(args.clone())), expected);
+				assertEquals(Double.toString(methodHandle.evaluate(args.clone())), expected);
+				assertEquals(Double.toString(register.evaluate(args.clone())), expected);
+			}
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testTieredCompiler001() {
+		try {
+			IDoubleValue vd = new DoubleVariable(3.0);
+			DoubleEvaluator engine = new DoubleEvaluator();
+			engine.defineVariable("X", vd);
+			engine.getTieredCompiler().setThreshold(3);
+			assertEquals(Double.toString(engine.evaluate("X^2+3")), "12.0");
+			for (int i = 0; i < 5; i++) {
+				vd.setValue(i);
+				Assert.assertEquals(engine.evaluate(), i * i + 3.0, DoubleEvaluator.EPSILON);
+			}
+			assertTrue(engine.getTieredCompiler().isCompiled());
+			PromotionStatistics statistics = engine.getTieredCompiler().getStatistics();
+			assertEquals(statistics.getInterpretedEvaluations(), 2);
+			assertEquals(statistics.getCompiledEvaluations(), 3);
+			assertEquals(statistics.getPromotions(), 1);
+
+			// the variable of the caller isn't modified, the binding is replaced
+			engine.defineVariable("X", 6.0);
+			assertFalse(engine.getTieredCompiler().isCompiled());
+			assertEquals(Double.toString(engine.evaluate()), "39.0");
+			assertEquals(Double.toString(vd.getValue()), "4.0");
+			for (int i = 0; i < 3; i++) {
+				assertEquals(Double.toString(engine.evaluate()), "39.0");
+			}
+			assertTrue(engine.getTieredCompiler().isCompiled());
+
+			// a new value of a variable of the evaluator keeps the compiled form
+			IDoubleValue owned = engine.getVariable("X");
+			engine.defineVariable("X", 4.0);
+			assertTrue(engine.getTieredCompiler().isCompiled());
+			assertEquals(Double.toString(engine.evaluate()), "19.0");
+			assertSame(engine.getVariable("X"), owned);
+
+			// a new variable object invalidates the compiled form
+			engine.defineVariable("X", new DoubleVariable(5.0));
+			assertFalse(engine.getTieredCompiler().isCompiled());
+			assertEquals(Double.toString(engine.evaluate()), "28.0");
+
+			// Set defines a variable in the evaluator, so it's never compiled
+			engine.evaluate("y = X + 1");
+			for (int i = 0; i < 5; i++) {
+				assertEquals(Double.toString(engine.evaluate()), "6.0");
+			}
+			assertFalse(engine.getTieredCompiler().isCompiled());
+
+			// unknown functions cannot be compiled
+			engine.evaluate("If[X>0, X, aTest[X]]");
+			for (int i = 0; i < 5; i++) {
+				assertEquals(Double.toString(engine.evaluate()), "5.0");
+			}
+			assertFalse(engine.getTieredCompiler().isCompiled());
+			// the Set expression and the unknown function
+			assertEquals(engine.getTieredCompiler().getStatistics().getFailedPromotions(), 2);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testTieredCompiler002() {
+		try {
+			List<Runnable> tasks = new ArrayList<Runnable>();
+			DoubleEvaluator engine = new DoubleEvaluator();
+			engine.getTieredCompiler().setThreshold(1);
+			engine.getTieredCompiler().setExecutor(tasks::add);
+			engine.defineVariable("x", new DoubleVariable(2.0));
+			assertEquals(Double.toString(engine.evaluate("Sqrt[x]*x")), "2.8284271247461903");
+			assertEquals(Double.toString(engine.evaluate()), "2.8284271247461903");
+			// the compilation is pending in the background
+			assertFalse(engine.getTieredCompiler().isCompiled());
+			assertEquals(tasks.size(), 1);
+			tasks.get(0).run();
+			assertTrue(engine.getTieredCompiler().isCompiled());
+			assertEquals(Double.toString(engine.evaluate()), "2.8284271247461903");
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testTieredCompiler003() {
+		try {
+			// the usual loop of defineVariable() and evaluate() is promoted
+			DoubleEvaluator engine = new DoubleEvaluator();
+			engine.getTieredCompiler().setThreshold(10);
+			engine.defineVariable("x", 0.0);
+			engine.evaluate("x^2+1");
+			for (int i = 0; i < 100; i++) {
+				engine.defineVariable("x", i);
+				Assert.assertEquals(engine.evaluate(), i * i + 1.0, DoubleEvaluator.EPSILON);
+			}
+			PromotionStatistics statistics = engine.getTieredCompiler().getStatistics();
+			assertEquals(statistics.getPromotions(), 1);
+			assertEquals(statistics.getCompiledEvaluations(), 91);
+			assertTrue(engine.getTieredCompiler().isCompiled());
+
+			// removing the bindings invalidates the compiled form
+			engine.clearVariables();
+			assertFalse(engine.getTieredCompiler().isCompiled());
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testJavaSourceGenerator001() {
+		try {
+			DoubleJavaSourceGenerator generator = new DoubleJavaSourceGenerator();
+			String source = generator.generate("org.example", "Formulas",
+					"area[r_] := Pi*r^2\n" + "f[x_, y_] := If[x > 0, Sqrt[x] + area[y], -x/y]");
+			assertTrue(source.startsWith("package org.example;"));
+			assertTrue(source.contains("public final class Formulas {"));
+			assertTrue(source.contains("\tpublic static double area(double r) {\n" + "\t\treturn (3.141592653589793 * (r * r));\n"));
+			assertTrue(source.contains("public static double f(double x, double y) {"));
+			assertTrue(source.contains("(x > 0.0) ? (Math.sqrt(x) + area(y)) : (-$divide(x, y))"));
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testJavaSourceGenerator002() {
+		try {
+			DoubleJavaSourceGenerator generator = new DoubleJavaSourceGenerator();
+			generator.generate("org.example", "Formulas", "f[x_] := g[x]");
+			assertEquals("", "ArithmeticMathException expected");
+		} catch (ArithmeticMathException e) {
+			assertEquals(e.getMessage(), "DoubleJavaSourceGenerator#translate() not possible for: g(x)");
+		}
+	}
+
+	public void testJavaSourceGenerator003() {
+		DoubleJavaSourceGenerator generator = new DoubleJavaSourceGenerator();
+		String[][] invalid = { { "double[x_] := x", "invalid Java method name double in: SetDelayed(double(x_), x)" },
+				{ "f[x_, int_] := x", "invalid Java parameter name int in: SetDelayed(f(x_, int_), x)" },
+				{ "$power[x_] := x", "reserved method name: SetDelayed($power(x_), x)" } };
+		for (String[] formula : invalid) {
+			try {
+				generator.generate("org.example", "Formulas", formula[0]);
+				assertEquals("", "ArithmeticMathException expected");
+			} catch (ArithmeticMathException e) {
+				assertEquals(e.getMessage(), "DoubleJavaSourceGenerator#generate() " + formula[1]);
+			}
+		}
+		try {
+			generator.generate("org.example", "class", "f[x_] := x");
+			assertEquals("", "ArithmeticMathException expected");
+		} catch (ArithmeticMathException e) {
+			assertEquals(e.getMessage(), "DoubleJavaSourceGenerator#generate() invalid Java class name class in: class");
+		}
+	}
+
+	public void testEvaluateBatch001() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			engine.defineVariable("a", 0.5);
+			int rows = 1500;
+			double[] x = new double[rows];
+			double[] y = new double[rows];
+			for (int i = 0; i < rows; i++) {
+				x[i] = i * 0.01;
+				y[i] = rows - i;
+			}
+			String[] variables = new String[] { "x", "y" };
+			String expression = "a*x^2+3*y-Sin[x]/y+Max[x,y,7]+If[x>1,x,-x]";
+			double[] out = new double[rows];
+			engine.evaluateBatch(expression, variables, new double[][] { x, y }, out);
+			CompiledDoubleExpression expr = engine.compile(expression, variables);
+			for (int i = 0; i < rows; i++) {
+				assertEquals(out[i], expr.evaluate(x[i], y[i]), 0.0);
+			}
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testEvaluateBatch002() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			double[] out = new double[3];
+			engine.evaluateBatch("x^2", new String[] { "x" }, new double[][] { { 1.0, 2.0, 3.0 } }, out);
+			assertEquals(Arrays.toString(out), "[1.0, 4.0, 9.0]");
+			// local variables are assigned row by row
+			engine.evaluateBatch("t=x+1;t*t", new String[] { "x" }, new double[][] { { 1.0, 2.0, 3.0 } }, out);
+			assertEquals(Arrays.toString(out), "[4.0, 9.0, 16.0]");
+			engine.evaluateBatch("x*y", new String[] { "x", "y" }, new double[][] { { 1.0, 2.0 }, { 3.0, 4.0 } },
+					out);
+			assertEquals("", "ArithmeticMathException expected");
+		} catch (ArithmeticMathException e) {
+			assertEquals(e.getMessage(), "EvalDouble#evaluateBatch() column of variable x has less than 3 rows");
+		}
+	}
+
+	public void testEvaluateBatch003() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			int rows = 1003;
+			double[] x = new double[rows];
+			double[] y = new double[rows];
+			for (int i = 0; i < rows; i++) {
+				x[i] = i % 10 == 0 ? 0.0 : (i - 500) * 0.01;
+				y[i] = i % 13 == 0 ? Double.NaN : (250 - i) * 0.02;
+			}
+			String[] variables = new String[] { "x", "y" };
+			String expression = "Sqrt[Abs[x]]+x^3-y^4+1/x+Max[x,y,2]+Min[x,y,-1]+If[x>y,x*y,x+y]+If[x==0,1,2]";
+			double[] out = new double[rows];
+			engine.evaluateBatch(expression, variables, new double[][] { x, y }, out);
+			CompiledDoubleExpression expr = engine.compile(expression, variables);
+			for (int i = 0; i < rows; i++) {
+				assertEquals(out[i], expr.evaluate(x[i], y[i]), 0.0);
+			}
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testEvaluateBatch004() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			ASTNode node = engine.parse("x^2+y");
+			String[] variables = new String[] { "x", "y" };
+			int rows = 1000;
+			ByteBuffer x = ByteBuffer.allocateDirect(rows * 8).order(ByteOrder.LITTLE_ENDIAN);
+			ByteBuffer y = ByteBuffer.allocateDirect(rows * 8).order(ByteOrder.LITTLE_ENDIAN);
+			for (int i = 0; i < rows; i++) {
+				x.putDouble(i * 8, i);
+				y.putDouble(i * 8, 0.5);
+			}
+			ByteBuffer out = ByteBuffer.allocateDirect(rows * 8).order(ByteOrder.LITTLE_ENDIAN);
+			engine.evaluateBatch(node, variables, new ByteBuffer[] { x, y }, out);
+			assertEquals(out.position(), 0);
+			assertEquals(out.getDouble(999 * 8), 998001.5, 0.0);
+
+			DoubleBuffer result = DoubleBuffer.allocate(3);
+			engine.evaluateBatch(node, variables, new DoubleBuffer[] { DoubleBuffer.wrap(new double[] { 1, 2, 3 }),
+					DoubleBuffer.wrap(new double[] { 1, 1, 1, 1 }) }, result);
+			assertEquals(Arrays.toString(result.array()), "[2.0, 5.0, 10.0]");
+
+			Path directory = Files.createTempDirectory("batch");
+			Path xFile = directory.resolve("x.bin");
+			Path yFile = directory.resolve("y.bin");
+			Path outFile = directory.resolve("out.bin");
+			try {
+				x.clear();
+				y.clear();
+				try (FileChannel channel = FileChannel.open(xFile, StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE)) {
+					channel.write(x);
+				}
+				try (FileChannel channel = FileChannel.open(yFile, StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE)) {
+					channel.write(y);
+				}
+				assertEquals(engine.evaluateBatch(node, variables, new Path[] { xFile, yFile }, outFile), 1000L);
+				ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(outFile)).order(ByteOrder.LITTLE_ENDIAN);
+				assertEquals(bytes.capacity(), rows * 8);
+				assertEquals(bytes.getDouble(10 * 8), 100.5, 0.0);
+			} finally {
+				Files.deleteIfExists(xFile);
+				Files.deleteIfExists(yFile);
+				Files.deleteIfExists(outFile);
+				Files.delete(directory);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testEvaluateBatchInvariant001() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			final int[] reads = new int[1];
+			engine.defineVariable("a", 2.0);
+			engine.defineVariable("b", new IDoubleValue() {
+				@Override
+				public double getValue() {
+					reads[0]++;
+					return 0.25;
+				}
+
+				@Override
+				public void setValue(double value) {
+				}
+			});
+			engine.defineVariable("c", 3.0);
+			engine.defineVariable("k", 5.0);
+			int rows = 10_000;
+			double[] x = new double[rows];
+			for (int i = 0; i < rows; i++) {
+				x[i] = i * 0.01;
+			}
+			String[] variables = new String[] { "x" };
+			double[] out = new double[rows];
+			engine.evaluateBatch("a*Exp[-b*c]*x + Log[k]", variables, new double[][] { x }, out);
+			// Exp[-b*c] is evaluated once and not for every chunk
+			assertEquals(reads[0], 1);
+			for (int i = 0; i < rows; i++) {
+				assertEquals(out[i], 2.0 * Math.exp(-0.25 * 3.0) * x[i] + Math.log(5.0), 1E-12);
+			}
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testEvaluateBatchLanes() throws ReflectiveOperationException {
+		// the java17 profile runs the batch tests a second time with the
+		// jdk.incubator.vector module and the multi-release classes
+		String expected = System.getProperty("symja.lanes", "DoubleLanes");
+		Field field = Class.forName("org.matheclipse.commons.parser.client.eval.DoubleLanes")
+				.getDeclaredField("INSTANCE");
+		field.setAccessible(true);
+		assertEquals(field.get(null).getClass().getSimpleName(), expected);
+	}
+
+	public void testEvaluateBatchParallel001() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			int rows = 100_000;
+			double[] x = new double[rows];
+			for (int i = 0; i < rows; i++) {
+				x[i] = i * 0.001;
+			}
+			String[] variables = new String[] { "x" };
+			double[] out = new double[rows];
+			double[] expected = new double[rows];
+			ASTNode node = engine.parse("If[x>50, Sqrt[x], t=x^2;t+Sin[t]]");
+			engine.evaluateBatchParallel(node, variables, new double[][] { x }, out, pool);
+			engine.evaluateBatch(node, variables, new double[][] { x }, expected);
+			assertTrue(Arrays.equals(out, expected));
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	public void testOptimizeFunctionShared001() {
+		try {
+			Parser p = new Parser();
+			FunctionNode node = (FunctionNode) p.parse("Sin[Pi/2]*4+x*y");
+			String parsed = node.toString();
+			ASTNode xy = node.getNode(2);
+
+			DoubleEvaluator engine = new DoubleEvaluator();
+			engine.defineVariable("x", new DoubleVariable(2.0));
+			engine.defineVariable("y", new DoubleVariable(3.0));
+			FunctionNode optimized = (FunctionNode) engine.optimizeFunction(node);
+			assertEquals(optimized.toString(), "Plus(4.0, Times(x, y))");
+			// the parsed tree isn't modified and the unchanged subtree is shared
+			assertEquals(node.toString(), parsed);
+			assertSame(optimized.getNode(2), xy);
+			assertEquals(engine.evaluateNode(optimized), 10.0, 0.0);
+			assertEquals(engine.evaluateNode(node), 10.0, 0.0);
+
+			// the same parsed tree can be used by another evaluator
+			ComplexEvaluator complexEngine = new ComplexEvaluator();
+			complexEngine.defineVariable("x", new ComplexVariable(new Complex(2.0, 1.0)));
+			complexEngine.defineVariable("y", new ComplexVariable(new Complex(3.0)));
+			FunctionNode complexOptimized = (FunctionNode) complexEngine.optimizeFunction(node);
+			assertEquals(node.toString(), parsed);
+			assertEquals(complexEngine.visit(complexOptimized), new Complex(10.0, 3.0));
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testSpecialize001() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			ASTNode node = engine.parse("a*Sin[b]+a*x+Cos[x]^2");
+			String parsed = node.toString();
+			Map<String, Double> fixed = new HashMap<String, Double>();
+			fixed.put("a", 2.0);
+			fixed.put("b", 0.5);
+			ASTNode residual = engine.specialize(node, fixed);
+			assertEquals(residual.toString(), "Plus(0.958851077208406, Times(2.0, x), Power(Cos(x), 2.0))");
+			assertEquals(node.toString(), parsed);
+
+			engine.defineVariable("a", 2.0);
+			engine.defineVariable("b", 0.5);
+			engine.defineVariable("x", 1.25);
+			assertEquals(engine.evaluateNode(residual), engine.evaluateNode(node), 1E-15);
+			CompiledDoubleExpression compiled = engine.compile(residual, "x");
+			assertEquals(compiled.evaluate(1.25), engine.evaluateNode(node), 1E-15);
+
+			// only the free variables remain
+			fixed.put("x", 1.25);
+			residual = engine.specialize(node, fixed);
+			assertEquals(residual.toString(), String.valueOf(engine.evaluateNode(node)));
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testHornerForm001() {
+		try {
+			Parser p = new Parser();
+			FunctionNode node = (FunctionNode) p.parse("3*x^4 + 2*x^3 - x + 7");
+			assertEquals(HornerForm.transform(node, false).toString(),
+					"Plus(7, Times(x, Plus(-1, Times(Power(x, 2), Plus(2, Times(x, 3))))))");
+			assertEquals(node.toString(), "Plus(Times(3, Power(x, 4)), Times(2, Power(x, 3)), Times(-1, x), 7)");
+			node = (FunctionNode) p.parse("x^2*y + 3*x*y^2 + x*y - 2");
+			assertEquals(HornerForm.transform(node, false).toString(),
+					"Plus(-2, Times(x, Plus(Times(y, Plus(1, Times(y, 3))), Times(x, y))))");
+			// not a polynomial in x
+			node = (FunctionNode) p.parse("x^2 + Sin[x]");
+			assertSame(HornerForm.transform(node, false), node);
+
+			// only the compiled forms use the Horner form
+			DoubleEvaluator horner = new DoubleEvaluator();
+			assertEquals(horner.parse("x^2 + 3*x - 2").toString(), "Plus(Times(x, x), Times(3.0, x), -2.0)");
+
+			DoubleEvaluator engine = new DoubleEvaluator();
+			String polynomial = "1.5 - 2*x + 0.25*x^2 + 3*x^3 - x^5 + 0.5*x^8 + 2*x^11 - 0.125*x^12";
+			CompiledDoubleExpression compiled = engine.compile(polynomial, "x");
+			for (double x = -2.0; x <= 2.0; x += 0.125) {
+				double expected = 1.5 - 2 * x + 0.25 * Math.pow(x, 2) + 3 * Math.pow(x, 3) - Math.pow(x, 5)
+						+ 0.5 * Math.pow(x, 8) + 2 * Math.pow(x, 11) - 0.125 * Math.pow(x, 12);
+				engine.defineVariable("x", x);
+				assertEquals(engine.evaluate(polynomial), expected, 1E-9);
+				assertEquals(compiled.evaluate(x), expected, 1E-9);
+			}
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testCanonicalForm001() {
+		try {
+			Parser p = new Parser();
+			ASTNode node1 = CanonicalForm.transform(p.parse("x*y+1"), false);
+			ASTNode node2 = CanonicalForm.transform(p.parse("1+y*x"), false);
+			ASTNode node3 = CanonicalForm.transform(p.parse("y x + 1"), false);
+			assertEquals(node1.toString(), "Plus(1, Times(x, y))");
+			assertEquals(node2, node1);
+			assertEquals(node3, node1);
+			assertEquals(node2.fingerprint(), node1.fingerprint());
+			assertEquals(node3.fingerprint(), node1.fingerprint());
+			assertFalse(CanonicalForm.transform(p.parse("x*y+2"), false).fingerprint() == node1.fingerprint());
+			assertFalse(p.parse("x-y").fingerprint() == p.parse("y-x").fingerprint());
+
+			assertEquals(CanonicalForm.transform(p.parse("-(y*x)*3+0+007"), false).toString(),
+					"Plus(7, Times(-3, x, y))");
+			// Max and Min aren't commutative for NaN arguments
+			assertEquals(CanonicalForm.transform(p.parse("Max[b,a,Max[c,1]]"), false).toString(),
+					"Max(b, a, Max(c, 1))");
+			DoubleEvaluator nan = new DoubleEvaluator();
+			nan.defineVariable("x", Double.NaN);
+			for (String expression : new String[] { "Max[x, 1]", "Min[0, Min[x, 1]]" }) {
+				ASTNode parsed = p.parse(expression);
+				assertEquals(Double.toString(nan.evaluateNode(CanonicalForm.transform(parsed, false))),
+						Double.toString(nan.evaluateNode(parsed)));
+			}
+			// And and Or keep their short circuit order
+			assertEquals(CanonicalForm.transform(p.parse("b&&c||a||(d||e)"), false).toString(),
+					"Or(And(b, c), a, d, e)");
+
+			ASTNode half = CanonicalForm.transform(p.parse("x/2"), false);
+			assertEquals(half.toString(), "Times(1/2, x)");
+			assertEquals(CanonicalForm.transform(p.parse("2/4*x"), false), half);
+			assertEquals(CanonicalForm.transform(p.parse("2*x/4"), false), half);
+			assertEquals(CanonicalForm.transform(p.parse("2/4*x"), false).fingerprint(), half.fingerprint());
+			assertEquals(CanonicalForm.transform(p.parse("-3/6*x"), false).toString(), "Times(-1/2, x)");
+			assertEquals(CanonicalForm.transform(p.parse("1/2+1/3+x"), false).toString(), "Plus(5/6, x)");
+			assertEquals(CanonicalForm.transform(p.parse("4/2"), false).toString(), "2");
+			assertEquals(CanonicalForm.transform(p.parse("2/4*2*x"), false).toString(), "x");
+
+			DoubleEvaluator engine = new DoubleEvaluator();
+			engine.defineVariable("x", 2.5);
+			engine.defineVariable("y", -1.5);
+			ASTNode node = p.parse("Sin[x]*3*y^2+Max[x,y]-x*y*(-2)+2*x/4-6/4");
+			assertEquals(engine.evaluateNode(CanonicalForm.transform(node, false)), engine.evaluateNode(node), 1E-15);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testShortCircuit001() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			final int[] reads = new int[1];
+			engine.defineVariable("b", new IDoubleValue() {
+				@Override
+				public double getValue() {
+					reads[0]++;
+					return 1.0;
+				}
+
+				@Override
+				public void setValue(double value) {
+				}
+			});
+			String expression = "If[x > 0 && b > 0 && x < 10, 1, If[x < 0 || b > 0 || x > 5, 2, 3]]";
+			engine.defineVariable("x", -1.0);
+			assertEquals(engine.evaluate(expression), 2.0);
+			// x > 0 decides And and x < 0 decides Or
+			assertEquals(reads[0], 0);
+
+			CompiledDoubleExpression[] compiled = { engine.compile(expression, "x"),
+					engine.compileBytecode(expression, "x"), engine.compileMethodHandle(expression, "x"),
+					engine.compileRegisterProgram(expression, "x") };
+			for (CompiledDoubleExpression expr : compiled) {
+				reads[0] = 0;
+				assertEquals(expr.evaluate(-1.0), 2.0);
+				assertEquals(reads[0], 0);
+				assertEquals(expr.evaluate(5.0), 1.0);
+				assertEquals(reads[0], 1);
+				assertEquals(expr.evaluate(20.0), 2.0);
+				assertEquals(reads[0], 3);
+			}
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testOptimizeLogical001() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			Parser p = new Parser();
+			assertEquals(engine.optimizeFunction((FunctionNode) p.parse("If[1<2, x, y]")).toString(), "x");
+			assertEquals(engine.optimizeFunction((FunctionNode) p.parse("If[2<1 && x>0, x, y]")).toString(), "y");
+			assertEquals(engine.optimizeFunction((FunctionNode) p.parse("If[True && x>0 && !(Pi<3), x, y]")).toString(),
+					"If(Greater(x, 0.0), x, y)");
+			assertEquals(engine.optimizeFunction((FunctionNode) p.parse("Sin[If[2>=2 || x>0, x, y]]+1")).toString(),
+					"Plus(Sin(x), 1.0)");
+			// If[False, a] throws at evaluation time, so it isn't removed
+			assertEquals(engine.optimizeFunction((FunctionNode) p.parse("If[1>2, x]")).toString(), "If(False, x)");
+
+			engine.defineVariable("x", 3.0);
+			engine.defineVariable("y", 4.0);
+			assertEquals(engine.evaluate("If[2<1 || x>0, x, y]"), 3.0);
+			assertEquals(engine.evaluate("If[1==2 || !True, x, y]"), 4.0);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testBindFunctions001() {
+		try {
+			DoubleEvaluator engine = new DoubleEvaluator();
+			engine.defineVariable("x", 0.5);
+			ASTNode node = engine.parse("If[x>0, Sin[x]*2+x^3, Cos[x]]+ArcTan[x,2]");
+			assertTrue(node instanceof DoubleFunctionNode);
+			assertEquals(node.toString(), "Plus(If(Greater(x, 0.0), Plus(Times(Sin(x), 2.0), Times(x, x, x)), Cos(x)), "
+					+ "ArcTan(x, 2.0))");
+			double expected = 2.0 * Math.sin(0.5) + 0.125 + Math.atan2(0.5, 2.0);
+			assertEquals(engine.evaluateNode(node), expected, 1E-15);
+			engine.defineVariable("x", -0.5);
+			assertEquals(engine.evaluateNode(node), Math.cos(-0.5) + Math.atan2(-0.5, 2.0), 1E-15);
+
+			// If without a false case isn't bound and keeps its error message
+			assertFalse(engine.parse("If[x>0, x]") instanceof DoubleFunctionNode);
+
+			// bound nodes are ordinary function nodes for other evaluators
+			ComplexEvaluator complexEngine = new ComplexEvaluator();
+			complexEngine.defineVariable("x", new ComplexVariable(new Complex(0.5)));
+			assertEquals(complexEngine.evaluateNode(engine.parse("Sin[x]*2")).getReal(), 2.0 * Math.sin(0.5), 1E-15);
+
+			DfpEvaluator dfpEngine = new DfpEvaluator(30);
+			dfpEngine.defineVariable("x", 3.0);
+			ASTNode dfpNode = dfpEngine.parse("Max[x^2, 2*x]+Sqrt[x]");
+			assertTrue(dfpNode instanceof FieldElementFunctionNode);
+			assertEquals(dfpEngine.evaluateNode(dfpNode).toDouble(), 9.0 + Math.sqrt(3.0), 1E-15);
+			dfpNode = dfpEngine.parse("x*x+Sqrt[x]");
+			assertTrue(dfpNode instanceof FieldElementFunctionNode);
+			assertEquals(complexEngine.evaluateNode(dfpNode).getReal(), 0.25 + Math.sqrt(0.5), 1E-15);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testFunctionRegistry001() {
+		try {
+			FunctionRegistry<Object, Object, Double> registry = DoubleEvaluator.getDefaultRegistry()
+					.withFunction("Twice", (DoubleUnaryOperator) x -> 2.0 * x).withSymbol("Answer", 42.0);
+			DoubleEvaluator engine = new DoubleEvaluator(null, false, registry);
+			assertEquals(engine.evaluate("Twice[Answer]+Sin[0]"), 84.0);
+			// the default registry isn't modified
+			assertNull(DoubleEvaluator.getDefaultRegistry().getFunction("Twice"));
+			try {
+				new DoubleEvaluator().evaluate("Twice[2]");
+				fail();
+			} catch (ArithmeticMathException e) {
+				// expected
+			}
+			// lower case names are only visible in relaxed mode
+			assertNull(engine.getRegistry().getFunction("twice"));
+			engine = new DoubleEvaluator(null, true, registry);
+			assertEquals(engine.evaluate("twice(answer)+Twice(1)"), 86.0);
+			assertSame(registry.relaxed(), engine.getRegistry());
+
+			ComplexEvaluator complexEngine = new ComplexEvaluator(false, ComplexEvaluator.getDefaultRegistry()
+					.withFunction("Conjugate", (IFieldElement1Function<Complex>) z -> z.conjugate()));
+			assertEquals(complexEngine.evaluate("Conjugate[1+I]").getImaginary(), -1.0);
+			assertNull(new ComplexEvaluator(false).getFunctionMap("Conjugate"));
+
+			// the precision dependent constants belong to each evaluator
+			DfpEvaluator dfp10 = new DfpEvaluator(10, null, true, DfpEvaluator.getDefaultRegistry());
+			DfpEvaluator dfp50 = new DfpEvaluator(50);
+			assertEquals(dfp10.evaluate("pi"), ((DfpField) dfp10.getField()).getPi());
+			assertEquals(dfp50.evaluate("Pi"), ((DfpField) dfp50.getField()).getPi());
+			assertFalse(dfp10.evaluate("pi").toString().equals(dfp50.evaluate("Pi").toString()));
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testFunctionRegistry002() {
+		try {
+			// a tenant, which overrides built-in functions
+			FunctionRegistry<Object, Object, Double> registry = DoubleEvaluator.getDefaultRegistry()
+					.withFunction("Sin", (DoubleUnaryOperator) x -> 42.0)
+					.withFunction("Power", (DoubleBinaryOperator) (x, y) -> 7.0)
+					.withBooleanFunction("Less", (DoubleBinaryPredicate) (x, y) -> x > y);
+			DoubleEvaluator engine = new DoubleEvaluator(null, false, registry);
+			engine.defineVariable("x", 2.0);
+			assertEquals(engine.evaluate("Sin[x]"), 42.0);
+			// no strength reduction and no Horner form for an overridden Power
+			assertEquals(engine.evaluate("x^2"), 7.0);
+			assertEquals(engine.evaluate("x^-1"), 7.0);
+			assertEquals(engine.evaluate("x^0.5"), 7.0);
+			assertEquals(engine.evaluate("3*x^2+2*x+1"), 26.0);
+
+			String[] expressions = { "Sin[x]", "x^2", "Sin[x]+x^0.5", "If[x<3, 1, 0]" };
+			double[] expected = { 42.0, 7.0, 49.0, 0.0 };
+			for (int i = 0; i < expressions.length; i++) {
+				assertEquals(engine.compile(expressions[i], "x").evaluate(2.0), expected[i]);
+				assertEquals(engine.compileBytecode(expressions[i], "x").evaluate(2.0), expected[i]);
+				assertEquals(engine.compileMethodHandle(expressions[i], "x").evaluate(2.0), expected[i]);
+				assertEquals(engine.compileRegisterProgram(expressions[i], "x").evaluate(2.0), expected[i]);
+				double[] out = new double[1];
+				engine.evaluateBatch(expressions[i], new String[] { "x" }, new double[][] { { 2.0 } }, out);
+				assertEquals(out[0], expected[i]);
+			}
+
+			// the tiered compiler promotes to the bytecode form
+			engine.getTieredCompiler().setThreshold(1);
+			assertEquals(engine.evaluate("Sin[x]+If[x<3, 1, 0]"), 42.0);
+			for (int i = 0; i < 3; i++) {
+				assertEquals(engine.evaluate(), 42.0);
+			}
+			assertTrue(engine.getTieredCompiler().isCompiled());
+
+			// a node bound by the default registry
+			ASTNode node = DoubleEvaluator.parseNode("Sin[x]", false);
+			assertTrue(node instanceof DoubleFunctionNode);
+			assertEquals(engine.evaluateNode(node), 42.0);
+			DoubleEvaluator defaultEngine = new DoubleEvaluator();
+			defaultEngine.defineVariable("x", 2.0);
+			assertEquals(defaultEngine.evaluateNode(node), Math.sin(2.0));
+
+			DfpEvaluator dfpEngine = new DfpEvaluator(30, null, false, DfpEvaluator.getDefaultRegistry()
+					.withFunction("Sin", (IFieldElement1Function<Dfp>) z -> z.getField().newDfp(42)));
+			dfpEngine.defineVariable("x", 2.0);
+			assertEquals(dfpEngine.evaluate("Sin[x]").toDouble(), 42.0);
+			ASTNode dfpNode = new DfpEvaluator(30).parse("Sin[x]");
+			assertTrue(dfpNode instanceof FieldElementFunctionNode);
+			assertFalse(((FieldElementFunctionNode<?>) dfpNode).isBoundTo(dfpEngine));
+			assertEquals(dfpEngine.evaluateNode(dfpNode).toDouble(), 42.0);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
+
+	public void testFunctionRegistry003() {
+		try {
+			// the default registries use the precomputed case folded tables
+			FunctionRegistry<Object, Object, Double> registry = DoubleEvaluator.getDefaultRegistry();
+			FunctionRegistry<Object, Object, Double> relaxed = registry.relaxed();
+			assertSame(relaxed, registry.relaxed());
+			assertSame(relaxed, relaxed.relaxed());
+			assertSame(relaxed.getFunction("sin"), registry.getFunction("Sin"));
+			assertSame(relaxed.getFunction("SIN"), registry.getFunction("Sin"));
+			assertSame(relaxed.getFunction("Sin"), registry.getFunction("Sin"));
+			assertNull(registry.getFunction("sin"));
+			assertEquals(relaxed.getSymbol("pi"), Math.PI);
+			assertEquals(relaxed.getBooleanSymbol("true"), Boolean.TRUE);
+			assertSame(relaxed.getBooleanFunction("greaterequal"), registry.getBooleanFunction("GreaterEqual"));
+			assertTrue(relaxed.getFunctionNames().contains("arctan"));
+			assertNotNull(ComplexEvaluator.getDefaultRegistry().relaxed().getSymbol("i"));
+			assertNotNull(DfpEvaluator.getDefaultRegistry().relaxed().getFunction("sqrt"));
+			assertNotNull(BigFractionEvaluator.getDefaultRegistry().relaxed().getFunction("max"));
+
+			// names, which only differ in case, in a derived registry
+			relaxed = registry.withSymbol("Answer", 42.0).withSymbol("answer", 43.0).withSymbol("ANSWER", 44.0)
+					.withSymbol("Lucky", 7.0).withSymbol("LUCKY", 8.0).relaxed();
+			assertEquals(relaxed.getSymbol("Answer"), 42.0);
+			assertEquals(relaxed.getSymbol("answer"), 43.0);
+			assertEquals(relaxed.getSymbol("ANSWER"), 44.0);
+			assertEquals(relaxed.getSymbol("AnSwEr"), 43.0);
+			assertEquals(relaxed.getSymbol("Lucky"), 7.0);
+			assertEquals(relaxed.getSymbol("LUCKY"), 8.0);
+			assertEquals(relaxed.getSymbol("lucky"), 8.0);
+
+			// the hash tables must match the names
+			try {
+				new FunctionRegistry<Object, Object, Double>(new HashMap<String, Object>(),
+						new HashMap<String, Object>(), new HashMap<String, Double>(), new HashMap<String, Boolean>(),
+						RegistryHashTables.DOUBLE);
+				fail();
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			assertEquals("", e.getMessage());
+		}
+	}
 }
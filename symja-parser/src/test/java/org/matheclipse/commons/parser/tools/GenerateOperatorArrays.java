@@ -25,9 +25,18 @@ import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeSet;
 
+import org.matheclipse.commons.parser.client.PerfectHashTable;
+import org.matheclipse.commons.parser.client.eval.ComplexEvaluator;
+import org.matheclipse.commons.parser.client.eval.DoubleEvaluator;
+import org.matheclipse.commons.parser.client.eval.api.FunctionRegistry;
+import org.matheclipse.commons.parser.client.eval.bigfraction.BigFractionEvaluator;
+import org.matheclipse.commons.parser.client.eval.dfp.DfpEvaluator;
 import org.matheclipse.commons.parser.client.operator.ASTNodeFactory;
 import org.matheclipse.commons.parser.client.operator.DivideOperator;
 import org.matheclipse.commons.parser.client.operator.InfixOperator;
@@ -40,7 +49,8 @@ import org.matheclipse.commons.parser.client.operator.SubtractOperator;
 
 /**
  * Utility for generating source codes for the <code>ASTNodeFactory's HEADER_STRINGS, OPERATOR_STRINGS, OPERATORS</code> arrays from
- * the operators.txt textfile description
+ * the operators.txt textfile description and for the <code>PerfectHashTable</code> seeds of the operators and of the
+ * built-in functions and constants of the evaluators
  * 
  */
 public class GenerateOperatorArrays {
@@ -144,6 +154,20 @@ public class GenerateOperatorArrays {
 
 			}
 			System.out.println("};");
+
+			final String[] headers = (String[]) operatorMap.keySet().toArray(new String[operatorMap.size()]);
+			printPerfectHashTables("HEADER", headers);
+			final LinkedHashSet<String> tokens = new LinkedHashSet<String>();
+			for (int i = 0; i < headers.length; i++) {
+				tokens.add(((Operator) operatorMap.get(headers[i])).getOperatorString());
+			}
+			final String[] operatorTokens = tokens.toArray(new String[tokens.size()]);
+			printStringArray("OPERATOR_TOKENS", operatorTokens);
+			printPerfectHashTables("OPERATOR_TOKEN", operatorTokens);
+			printPerfectHashTables("DOUBLE", DoubleEvaluator.getDefaultRegistry());
+			printPerfectHashTables("COMPLEX", ComplexEvaluator.getDefaultRegistry());
+			printPerfectHashTables("DFP", DfpEvaluator.getDefaultRegistry());
+			printPerfectHashTables("BIGFRACTION", BigFractionEvaluator.getDefaultRegistry());
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		} finally {
@@ -156,6 +180,99 @@ public class GenerateOperatorArrays {
 		}
 	}
 
+	/**
+	 * Print the <code>RegistryHashTables</code> arrays of an evaluator's
+	 * default registry: the sorted function and constant names and their
+	 * perfect hash tables, and the sorted lower case names and their case
+	 * folded perfect hash tables.
+	 * 
+	 * If the built-in names of an evaluator are changed, its default registry
+	 * must be created without the stale <code>RegistryHashTables</code> before
+	 * running this tool.
+	 * 
+	 * @param prefix
+	 *            the prefix of the generated array names
+	 * @param registry
+	 */
+	public static void printPerfectHashTables(final String prefix, final FunctionRegistry<?, ?, ?> registry) {
+		printPerfectHashTables(prefix + "_FUNCTION", registry.getFunctionNames());
+		printPerfectHashTables(prefix + "_BOOLEAN_FUNCTION", registry.getBooleanFunctionNames());
+		printPerfectHashTables(prefix + "_SYMBOL", registry.getSymbolNames());
+		printPerfectHashTables(prefix + "_BOOLEAN_SYMBOL", registry.getBooleanSymbolNames());
+	}
+
+	private static void printPerfectHashTables(final String prefix, final Set<String> names) {
+		final String[] sortedNames = new TreeSet<String>(names).toArray(new String[0]);
+		printStringArray(prefix + "_NAMES", sortedNames);
+		printPerfectHashTables(prefix, sortedNames);
+		final TreeSet<String> foldedNames = new TreeSet<String>();
+		for (String name : names) {
+			foldedNames.add(name.toLowerCase());
+		}
+		final String[] sortedFoldedNames = foldedNames.toArray(new String[0]);
+		printStringArray(prefix + "_FOLDED_NAMES", sortedFoldedNames);
+		final PerfectHashTable table = new PerfectHashTable(sortedFoldedNames, true);
+		printIntArray(prefix + "_FOLDED_HASH_SEEDS", table.getSeeds());
+		printIntArray(prefix + "_FOLDED_HASH_INDEXES", table.getIndexes());
+	}
+
+	/**
+	 * Print the <code>SEEDS</code> and <code>INDEXES</code> arrays of the
+	 * <code>PerfectHashTable</code> for the given names.
+	 * 
+	 * @param prefix
+	 *            the prefix of the generated array names
+	 * @param names
+	 */
+	public static void printPerfectHashTables(final String prefix, final String[] names) {
+		final PerfectHashTable table = new PerfectHashTable(names);
+		printIntArray(prefix + "_HASH_SEEDS", table.getSeeds());
+		printIntArray(prefix + "_HASH_INDEXES", table.getIndexes());
+	}
+
+	private static void printIntArray(final String name, final int[] values) {
+		final String[] strings = new String[values.length];
+		for (int i = 0; i < values.length; i++) {
+			strings[i] = Integer.toString(values[i]);
+		}
+		printArray("int[] " + name, strings);
+	}
+
+	private static void printStringArray(final String name, final String[] values) {
+		final String[] strings = new String[values.length];
+		for (int i = 0; i < values.length; i++) {
+			strings[i] = "\"" + values[i] + "\"";
+		}
+		printArray("String[] " + name, strings);
+	}
+
+	/**
+	 * Print an array declaration, wrapped at 120 columns like the sources.
+	 * 
+	 * @param declaration
+	 * @param values
+	 */
+	private static void printArray(final String declaration, final String[] values) {
+		StringBuilder line = new StringBuilder("\tstatic final " + declaration + " = {");
+		// a tab counts as 4 columns
+		int column = line.length() + 3;
+		for (int i = 0; i < values.length; i++) {
+			String value = " " + values[i] + (i < values.length - 1 ? "," : " };");
+			if (column + value.length() > 120) {
+				System.out.println(line);
+				line = new StringBuilder("\t\t\t" + value.substring(1));
+				column = 12 + value.length() - 1;
+			} else {
+				line.append(value);
+				column += value.length();
+			}
+		}
+		if (values.length == 0) {
+			line.append("};");
+		}
+		System.out.println(line);
+	}
+
 	public static void generateOperatorTable(final InputStream is, final HashMap operatorMap, final HashMap operatorTokenStartSet) {
 		String record = null;
 		final BufferedReader r = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));